@@ -0,0 +1,92 @@
+package petfeeder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request rate one front-end thread can sustain with the blocking
+ * dispenseMeal against dispenseMealAsync. The async caller keeps at most
+ * WINDOW requests in flight and waits for the oldest one only when the window
+ * is full, so the score is a sustained rate and not just submission speed.
+ * The feeder is restocked before each iteration, so every meal takes its
+ * ingredients and energy and neither runs out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AsyncDispenseBenchmark {
+
+    private static final int WINDOW = 256;
+
+    /**
+     * Time the simulated actuator blocks per meal.
+     */
+    @Param({"0", "1000"})
+    public long actuationMicros;
+
+    private PetFeeder feeder;
+    private CompletableFuture<?>[] inFlight;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long actuationNanos = TimeUnit.MICROSECONDS.toNanos(actuationMicros);
+        feeder = new PetFeeder() {
+            @Override
+            protected void actuate(MealPlan dispensed) {
+                if (actuationNanos > 0) {
+                    LockSupport.parkNanos(actuationNanos);
+                }
+            }
+        };
+        feeder.addMealPlan(BenchmarkStock.meal("Dinner"));
+        inFlight = new CompletableFuture<?>[WINDOW];
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        BenchmarkStock.restock(feeder);
+    }
+
+    @TearDown(Level.Iteration)
+    public void drain() {
+        for (int i = 0; i < WINDOW; i++) {
+            if (inFlight[i] != null) {
+                inFlight[i].join();
+                inFlight[i] = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean dispenseMeal() {
+        return feeder.dispenseMeal(0);
+    }
+
+    @Benchmark
+    public Object dispenseMealAsync() {
+        CompletableFuture<?> oldest = inFlight[next];
+        Object result = oldest != null ? oldest.join() : null;
+        inFlight[next] = feeder.dispenseMealAsync(0);
+        next = (next + 1) % WINDOW;
+        return result;
+    }
+}
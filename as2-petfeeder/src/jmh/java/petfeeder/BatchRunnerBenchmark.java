@@ -0,0 +1,78 @@
+package petfeeder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Commands per second through BatchRunner for a provisioning-like script:
+ * mostly dispenses, then replenishes, stock checks and plan edits. The
+ * feeder is restocked before each iteration, so every dispense takes its
+ * ingredients and energy and succeeds.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchRunnerBenchmark {
+
+    private static final int PLANS = 50;
+    private static final int COMMANDS = 100_000;
+
+    private String script;
+    private BatchRunner runner;
+
+    @Setup(Level.Trial)
+    public void buildScript() {
+        Random random = new Random(1);
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < COMMANDS; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 60) {
+                commands.append("dispense ").append(1 + random.nextInt(PLANS)).append('\n');
+            } else if (kind < 90) {
+                commands.append("replenish 1 1 1 1\n");
+            } else if (kind < 99) {
+                commands.append("stock\n");
+            } else {
+                commands.append("edit ").append(1 + random.nextInt(PLANS)).append(" 1 1 0 0\n");
+            }
+        }
+        script = commands.toString();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        PetFeeder feeder = new PetFeeder();
+        for (int i = 0; i < PLANS; i++) {
+            feeder.addMealPlan(BenchmarkStock.meal("Dinner " + i));
+        }
+        BenchmarkStock.restock(feeder);
+        runner = new BatchRunner(feeder);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public long runScript() throws IOException {
+        runner.run(new BufferedReader(new StringReader(script), 1 << 16), Writer.nullWriter());
+        return runner.getCommands();
+    }
+}
@@ -0,0 +1,50 @@
+package petfeeder;
+
+/**
+ * Shared fixture of the dispensing benchmarks. The meal takes real
+ * ingredients and energy, so every dispense runs the whole check and
+ * deduct, and {@link #restock} fills a feeder up again before each
+ * iteration so it cannot run out while measuring.
+ */
+final class BenchmarkStock {
+
+    /**
+     * Units of each ingredient after a restock. It leaves room for the
+     * replenishes some benchmarks send, and at one kibble per meal it lasts
+     * for about a billion meals.
+     */
+    static final int UNITS = 1 << 30;
+
+    /**
+     * Energy budget after a restock: about 143 million meals of 15 points,
+     * more than any benchmark dispenses in one iteration.
+     */
+    static final int ENERGY = Integer.MAX_VALUE;
+
+    private BenchmarkStock() {
+    }
+
+    /**
+     * Returns a meal of one kibble and one water, 15 energy points.
+     */
+    static MealPlan meal(String name) {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(name);
+        plan.setAmtKibble(1);
+        plan.setAmtWater(1);
+        return plan.build();
+    }
+
+    /**
+     * Fills the feeder's stock and gives it a new energy budget. Not
+     * journaled, so it is only for feeders without a journal.
+     */
+    static void restock(PetFeeder feeder) {
+        FoodContainer stock = feeder.getFoodContainer();
+        stock.setKibble(UNITS);
+        stock.setWater(UNITS);
+        stock.setWetFood(UNITS);
+        stock.setTreats(UNITS);
+        feeder.setEnergyBudget(new EnergyBudget(ENERGY));
+    }
+}
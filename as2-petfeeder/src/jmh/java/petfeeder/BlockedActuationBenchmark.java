@@ -0,0 +1,95 @@
+package petfeeder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to dispense one meal on each of 10k feeders whose actuator blocks
+ * for 200 ms. In PLATFORM_THREADS mode every scheduler owns a platform
+ * thread, so all 10k threads are blocked at once; in VIRTUAL_THREADS mode
+ * the blocked dispenses are virtual threads on a few carriers. The ideal
+ * score is the actuation time; anything above it is threading overhead.
+ * The feeders are restocked before each iteration, so every meal takes its
+ * ingredients and energy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockedActuationBenchmark {
+
+    private static final int FEEDERS = 10_000;
+    private static final long ACTUATION_MILLIS = 200;
+
+    @Param({"PLATFORM_THREADS", "VIRTUAL_THREADS"})
+    public FeedingScheduler.ExecutionMode mode;
+
+    private PetFeeder[] feeders;
+    private FeedingScheduler[] schedulers;
+    private CompletableFuture<?>[] pending;
+
+    /**
+     * A feeder whose actuator sleeps as if driving a motor.
+     */
+    static final class SlowFeeder extends PetFeeder {
+        @Override
+        protected void actuate(MealPlan dispensed) {
+            try {
+                Thread.sleep(ACTUATION_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        feeders = new PetFeeder[FEEDERS];
+        schedulers = new FeedingScheduler[FEEDERS];
+        pending = new CompletableFuture<?>[FEEDERS];
+        MealPlan dinner = BenchmarkStock.meal("Dinner");
+        for (int i = 0; i < FEEDERS; i++) {
+            feeders[i] = new SlowFeeder();
+            feeders[i].addMealPlan(dinner);
+            schedulers[i] = new FeedingScheduler(feeders[i], mode);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        for (PetFeeder feeder : feeders) {
+            BenchmarkStock.restock(feeder);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (FeedingScheduler scheduler : schedulers) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void dispenseOnAllFeeders() {
+        for (int i = 0; i < FEEDERS; i++) {
+            pending[i] = schedulers[i].dispenseNow(0);
+        }
+        CompletableFuture.allOf(pending).join();
+    }
+}
@@ -0,0 +1,78 @@
+package petfeeder;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Meals per second for PetFeeder.dispenseMeals against looping over
+ * dispenseMeal. The feeder is restocked before each iteration, so every
+ * meal takes its ingredients and energy and neither runs out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispenseBatchBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    private PetFeeder feeder;
+    private int[] batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        feeder = new PetFeeder();
+        feeder.addMealPlan(BenchmarkStock.meal("Dinner"));
+        batch = new int[BATCH_SIZE];
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        BenchmarkStock.restock(feeder);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void loopDispenseMeal(Blackhole bh) {
+        for (int i = 0; i < batch.length; i++) {
+            bh.consume(feeder.dispenseMeal(batch[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BitSet batchDispenseMeals() {
+        return feeder.dispenseMeals(batch);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void loopDispenseMeal4Threads(Blackhole bh) {
+        loopDispenseMeal(bh);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BitSet batchDispenseMeals4Threads() {
+        return batchDispenseMeals();
+    }
+}
@@ -0,0 +1,69 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Concurrent dispense throughput with a lifetime budget versus a rolling
+ * hourly window. The feeder uses a {@link LockFreeFoodContainer}, so with
+ * no journal a dispense takes no lock at all; the meal costs one unit of
+ * water and the stock is large enough for the whole run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnergyBudgetBenchmark {
+
+    @Param({"lifetime", "hourly"})
+    public String budget;
+
+    private PetFeeder feeder;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        feeder = new PetFeeder(new LockFreeFoodContainer());
+        feeder.setEnergyBudget("hourly".equals(budget)
+                ? EnergyBudget.perHour(Integer.MAX_VALUE) : new EnergyBudget(Integer.MAX_VALUE));
+        feeder.replenishFood(0, IngredientVector.MAX_UNITS - 15, 0, 0);
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Sip");
+        plan.setAmtWater(1);
+        feeder.addMealPlan(plan.build());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean dispense1Thread() {
+        return dispenseOrRefill();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean dispense4Threads() {
+        return dispenseOrRefill();
+    }
+
+    private boolean dispenseOrRefill() {
+        if (!feeder.dispenseMeal(0)) {
+            feeder.replenishFood(0, 1000, 0, 0);
+            return false;
+        }
+        return true;
+    }
+}
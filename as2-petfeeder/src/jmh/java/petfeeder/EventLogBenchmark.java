@@ -0,0 +1,57 @@
+package petfeeder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost on the scheduling thread of reporting one feeding: printing the
+ * message directly, as the scheduler used to, versus publishing it to an
+ * {@link EventLog}. Both print to a stream that discards its bytes, so the
+ * direct print is a lower bound for a real console.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventLogBenchmark {
+
+    private PrintStream out;
+    private EventLog log;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        out = new PrintStream(OutputStream.nullOutputStream(), false);
+        log = new EventLog(EventOutput.console(out), 1 << 16);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.close();
+    }
+
+    @Benchmark
+    public void println() {
+        out.println("[Scheduler] Dispensed scheduled meal: " + "Breakfast");
+    }
+
+    @Benchmark
+    public boolean publish() {
+        return log.publish(FeederEvent.Type.DISPENSED, 0, "Breakfast", null);
+    }
+}
@@ -0,0 +1,95 @@
+package petfeeder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How many times each of 100k meal plans could be dispensed: the bulk
+ * feasibility query against a loop over the plan objects that divides
+ * stock by every amount.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeasibilityBenchmark {
+
+    private static final int PLANS = 100_000;
+
+    private PetFeeder feeder;
+    private MealPlanBook book;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        MealPlan[] plans = new MealPlan[PLANS];
+        for (int i = 0; i < PLANS; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            plan.setAmtKibble(random.nextInt(8));
+            plan.setAmtWater(random.nextInt(8));
+            plan.setAmtWetFood(random.nextInt(8));
+            plan.setAmtTreats(random.nextInt(8));
+            plans[i] = plan.build();
+        }
+        feeder = new PetFeeder();
+        feeder.setEnergyBudget(new EnergyBudget(1_000_000));
+        feeder.restoreState(15, 15, 15, 15, 0, plans, null);
+        book = new MealPlanBook();
+        book.restore(plans);
+        feeder.feasibility();
+    }
+
+    @Benchmark
+    public int[] feasibility() {
+        return feeder.feasibility();
+    }
+
+    @Benchmark
+    public int[] divisionLoop() {
+        MealPlan[] plans = book.sharedMealPlans();
+        int kibble = 15;
+        int water = 15;
+        int wetFood = 15;
+        int treats = 15;
+        int energy = 1_000_000;
+        int[] counts = new int[plans.length];
+        for (int i = 0; i < plans.length; i++) {
+            MealPlan plan = plans[i];
+            if (plan == null) {
+                continue;
+            }
+            int count = Integer.MAX_VALUE;
+            if (plan.getAmtKibble() > 0) {
+                count = Math.min(count, kibble / plan.getAmtKibble());
+            }
+            if (plan.getAmtWater() > 0) {
+                count = Math.min(count, water / plan.getAmtWater());
+            }
+            if (plan.getAmtWetFood() > 0) {
+                count = Math.min(count, wetFood / plan.getAmtWetFood());
+            }
+            if (plan.getAmtTreats() > 0) {
+                count = Math.min(count, treats / plan.getAmtTreats());
+            }
+            if (plan.getEnergyCost() > 0) {
+                count = Math.min(count, energy / plan.getEnergyCost());
+            }
+            counts[i] = count;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,77 @@
+package petfeeder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sustained journaled events per second. Every operation is one replenish
+ * that is logged (and compacted when the log fills up).
+ * <ul>
+ * <li>none: no journal, the in-memory baseline.</li>
+ * <li>mapped: logged to the mapped file, not forced (durability off).</li>
+ * <li>sync: forced to disk on commit, shared by concurrent callers (durability on).</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeederJournalBenchmark {
+
+    @Param({"none", "mapped", "sync"})
+    public String durability;
+
+    private Path file;
+    private FeederJournal journal;
+    private PetFeeder feeder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if ("none".equals(durability)) {
+            feeder = new PetFeeder();
+        } else {
+            file = Files.createTempFile("feeder", ".journal");
+            Files.delete(file);
+            journal = new FeederJournal(file, FeederJournal.DEFAULT_CAPACITY, "sync".equals(durability));
+            feeder = PetFeeder.open(new FoodContainer(), journal);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public boolean replenish() {
+        return feeder.replenishFood(1, 0, 0, 0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean replenish4Threads() {
+        return replenish();
+    }
+}
@@ -0,0 +1,133 @@
+package petfeeder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Messages per second through a FleetCommandServer over loopback, one
+ * request at a time and with 256 requests in flight per connection. Every
+ * benchmark thread has its own connection and sends dispenses to 1,000
+ * feeders with one replenish in eight. The feeders are restocked before
+ * each iteration, so every dispense takes its ingredients and energy and
+ * every request succeeds.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FleetCommandBenchmark {
+
+    private static final int FEEDERS = 1_000;
+    private static final int PIPELINE = 256;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        FeederFleet fleet;
+        FleetCommandServer server;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fleet = new FeederFleet();
+            MealPlan dinner = BenchmarkStock.meal("Dinner");
+            for (int i = 0; i < FEEDERS; i++) {
+                fleet.getFeeder(fleet.addFeeder()).addMealPlan(dinner);
+            }
+            server = new FleetCommandServer(fleet, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.start();
+        }
+
+        @Setup(Level.Iteration)
+        public void restock() {
+            for (int i = 0; i < FEEDERS; i++) {
+                BenchmarkStock.restock(fleet.getFeeder(i));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        SocketChannel channel;
+        ByteBuffer one;
+        ByteBuffer pipeline;
+        ByteBuffer responses;
+
+        @Setup(Level.Trial)
+        public void setUp(Server server) throws IOException {
+            channel = SocketChannel.open(server.server.getAddress());
+            channel.socket().setTcpNoDelay(true);
+            one = ByteBuffer.allocateDirect(FleetCommandServer.DISPENSE_SIZE);
+            FleetCommandServer.putDispense(one, 0, 0, 0);
+            pipeline = ByteBuffer.allocateDirect(PIPELINE * FleetCommandServer.REPLENISH_SIZE);
+            for (int i = 0; i < PIPELINE; i++) {
+                if (i % 8 == 7) {
+                    FleetCommandServer.putReplenish(pipeline, i, i * 7 % FEEDERS, 0, 0, 0, 0);
+                } else {
+                    FleetCommandServer.putDispense(pipeline, i, i * 7 % FEEDERS, 0);
+                }
+            }
+            responses = ByteBuffer.allocateDirect(PIPELINE * FleetCommandServer.RESPONSE_SIZE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            channel.close();
+        }
+
+        int roundTrip(ByteBuffer requests, int count) throws IOException {
+            requests.flip();
+            while (requests.hasRemaining()) {
+                channel.write(requests);
+            }
+            responses.clear().limit(count * FleetCommandServer.RESPONSE_SIZE);
+            while (responses.hasRemaining()) {
+                if (channel.read(responses) < 0) {
+                    throw new IOException("Server closed the connection");
+                }
+            }
+            return responses.get(FleetCommandServer.RESPONSE_SIZE - 1);
+        }
+    }
+
+    @Benchmark
+    public int oneInFlight(Client client) throws IOException {
+        return client.roundTrip(client.one, 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public int pipelined(Client client) throws IOException {
+        return client.roundTrip(client.pipeline, PIPELINE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(PIPELINE)
+    public int pipelined4Connections(Client client) throws IOException {
+        return client.roundTrip(client.pipeline, PIPELINE);
+    }
+}
@@ -0,0 +1,58 @@
+package petfeeder;
+
+import java.time.Duration;
+
+/**
+ * Simulates a month of feedings for a large fleet on the virtual clock of a
+ * FeedingSimulation and prints simulated events per second. A run is a
+ * single pass rather than a JMH iteration, so this is a plain program:
+ * <pre>
+ * java -cp target/benchmarks.jar petfeeder.FleetSimulationRun [feeders] [days]
+ * </pre>
+ * Every feeder has two meal plans fed every 4 and 6 hours, an hourly treat
+ * and a daily replenishment, and a per-day rolling energy budget on the
+ * virtual clock. A first, shorter run warms up the JIT.
+ */
+public final class FleetSimulationRun {
+
+    private FleetSimulationRun() {
+    }
+
+    public static void main(String[] args) {
+        int feeders = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        System.out.println("Warm-up: " + simulate(feeders, 1));
+        System.out.println(simulate(feeders, days));
+    }
+
+    private static SimulationReport simulate(int feeders, int days) {
+        FeederFleet fleet = new FeederFleet();
+        FeedingSimulation simulation = new FeedingSimulation(fleet);
+        MealPlan breakfast = plan("Breakfast", 2, 1, 1, 0);
+        MealPlan dinner = plan("Dinner", 1, 1, 2, 0);
+        MealPlan treat = plan("Treat", 0, 0, 0, 1);
+        for (int i = 0; i < feeders; i++) {
+            int id = fleet.addFeeder();
+            PetFeeder feeder = fleet.getFeeder(id);
+            feeder.addMealPlan(breakfast);
+            feeder.addMealPlan(dinner);
+            feeder.addMealPlan(treat);
+            feeder.setEnergyBudget(simulation.newEnergyBudget(1_000, Duration.ofDays(1)));
+            simulation.addFeeding(id, 0, 4 * 3600);
+            simulation.addFeeding(id, 1, 6 * 3600);
+            simulation.addFeeding(id, 2, 3600);
+            simulation.addReplenishment(id, 24 * 3600, 12, 8, 12, 20);
+        }
+        return simulation.run(Duration.ofDays(days), Duration.ofHours(1));
+    }
+
+    private static MealPlan plan(String name, int kibble, int water, int wetFood, int treats) {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(name);
+        plan.setAmtKibble(kibble);
+        plan.setAmtWater(water);
+        plan.setAmtWetFood(wetFood);
+        plan.setAmtTreats(treats);
+        return plan.build();
+    }
+}
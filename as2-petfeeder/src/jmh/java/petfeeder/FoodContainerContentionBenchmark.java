@@ -0,0 +1,82 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the monitor-based FoodContainer with the CAS-based
+ * LockFreeFoodContainer when many threads dispense from one container.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FoodContainerContentionBenchmark {
+
+    @Param({"monitor", "lockfree"})
+    public String mode;
+
+    private FoodContainer container;
+    private MealPlan meal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        container = "lockfree".equals(mode) ? new LockFreeFoodContainer() : new FoodContainer();
+        MealPlan.Builder builder = new MealPlan.Builder();
+        builder.setName("Bench");
+        builder.setAmtKibble(1);
+        builder.setAmtWater(1);
+        builder.setAmtWetFood(1);
+        builder.setAmtTreats(1);
+        meal = builder.build();
+        refill();
+    }
+
+    private void refill() {
+        container.setKibble(IngredientVector.MAX_UNITS);
+        container.setWater(IngredientVector.MAX_UNITS);
+        container.setWetFood(IngredientVector.MAX_UNITS);
+        container.setTreats(IngredientVector.MAX_UNITS);
+    }
+
+    private boolean dispense() {
+        if (container.useIngredients(meal)) {
+            return true;
+        }
+        refill();
+        return false;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean useIngredientsUncontended() {
+        return dispense();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean useIngredients4Threads() {
+        return dispense();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean useIngredients16Threads() {
+        return dispense();
+    }
+}
@@ -0,0 +1,135 @@
+package petfeeder;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of POST /dispense on a FeederHttpServer over loopback. Every
+ * client is a virtual thread with one keep-alive connection that sends its
+ * next request as soon as the last one is answered; the clients run for a
+ * fixed time and the program prints requests per second and latency
+ * percentiles of the whole round trip. A run is a single pass rather than
+ * a JMH iteration, so this is a plain program:
+ * <pre>
+ * java -Dsun.net.httpserver.nodelay=true -cp target/benchmarks.jar petfeeder.HttpDispenseLoadTest [clients] [seconds]
+ * </pre>
+ * Without nodelay every keep-alive response waits about 40 ms for a
+ * delayed ACK, see FeederHttpServer.
+ * Clients write the request bytes and read the response straight from the
+ * socket instead of using java.net.http.HttpClient, whose own overhead
+ * would otherwise dominate on the same machine. The feeder is restocked
+ * before each run, so every request takes its ingredients and energy and
+ * dispenses. A first, shorter run warms up the JIT.
+ */
+public final class HttpDispenseLoadTest {
+
+    private static final String BODY = "{\"mealPlanIndex\":0}";
+    private static final byte[] REQUEST = ("POST /dispense HTTP/1.1\r\n"
+            + "Host: localhost\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: " + BODY.length() + "\r\n"
+            + "\r\n"
+            + BODY).getBytes(StandardCharsets.US_ASCII);
+
+    private HttpDispenseLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        PetFeeder feeder = new PetFeeder();
+        feeder.addMealPlan(BenchmarkStock.meal("Dinner"));
+        FeedingScheduler scheduler = new FeedingScheduler(feeder);
+        FeederHttpServer server = new FeederHttpServer(feeder, scheduler,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        try {
+            BenchmarkStock.restock(feeder);
+            System.out.println("Warm-up: " + run(server.getAddress(), clients, Math.max(1, seconds / 3)));
+            BenchmarkStock.restock(feeder);
+            System.out.println(run(server.getAddress(), clients, seconds));
+        } finally {
+            server.stop(0);
+            scheduler.shutdown();
+        }
+    }
+
+    private static String run(InetSocketAddress address, int clients, int seconds) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder failures = new LongAdder();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = Thread.ofVirtual().start(() -> {
+                try (Socket socket = new Socket(address.getAddress(), address.getPort())) {
+                    socket.setTcpNoDelay(true);
+                    OutputStream out = socket.getOutputStream();
+                    InputStream in = new BufferedInputStream(socket.getInputStream());
+                    while (System.nanoTime() < end) {
+                        long sent = System.nanoTime();
+                        out.write(REQUEST);
+                        out.flush();
+                        if (readResponse(in) != 200) {
+                            failures.increment();
+                        }
+                        latency.recordSince(sent);
+                    }
+                } catch (IOException e) {
+                    failures.increment();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        return String.format("%d clients: %.0f requests/s, %d failed, latency %s",
+                clients, snapshot.getCount() / elapsed, failures.sum(), snapshot);
+    }
+
+    /**
+     * Reads one response and returns its status code.
+     */
+    private static int readResponse(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int status = -1;
+        int contentLength = 0;
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+                continue;
+            }
+            if (line.length() == 0) {
+                break;
+            }
+            String header = line.toString();
+            if (status < 0) {
+                status = Integer.parseInt(header.substring(9, 12));
+            } else if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(header.substring(15).trim());
+            }
+            line.setLength(0);
+        }
+        if (in.readNBytes(contentLength).length != contentLength) {
+            throw new IOException("Connection closed");
+        }
+        return status;
+    }
+}
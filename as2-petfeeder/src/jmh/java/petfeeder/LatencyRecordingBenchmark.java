@@ -0,0 +1,62 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of latency recording: one {@link LatencyHistogram#record} call, and
+ * a dispense of a meal from a feeder restocked before each iteration and
+ * an empty replenish with metrics off and on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LatencyRecordingBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private PetFeeder feeder;
+    private long value;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        feeder = new PetFeeder();
+        feeder.addMealPlan(BenchmarkStock.meal("Dinner"));
+        BenchmarkStock.restock(feeder);
+        feeder.setMetrics(metrics ? new FeederMetrics() : null);
+    }
+
+    @Benchmark
+    public void record() {
+        // Spread the values over many buckets, like real latencies.
+        value = (value * 31 + 17) & 0xFFFFF;
+        histogram.record(value);
+    }
+
+    @Benchmark
+    public boolean dispenseMeal() {
+        return feeder.dispenseMeal(0);
+    }
+
+    @Benchmark
+    public boolean replenishFood() {
+        return feeder.replenishFood(0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,71 @@
+package petfeeder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Solving the most-meals and closest-to-energy mixes for hundreds of meal
+ * plans, without the cache and from it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MealMixBenchmark {
+
+    @Param({"100", "300", "500"})
+    public int plans;
+
+    private PetFeeder feeder;
+    private MealMixOptimizer uncached;
+    private MealMixOptimizer cached;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        MealPlan[] book = new MealPlan[plans];
+        for (int i = 0; i < plans; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            plan.setAmtKibble(random.nextInt(20));
+            plan.setAmtWater(random.nextInt(20));
+            plan.setAmtWetFood(random.nextInt(20));
+            plan.setAmtTreats(random.nextInt(20));
+            book[i] = plan.build();
+        }
+        feeder = new PetFeeder();
+        feeder.setEnergyBudget(new EnergyBudget(20_000));
+        feeder.restoreState(500, 500, 500, 500, 0, book, null);
+        uncached = new MealMixOptimizer(0, MealMixOptimizer.DEFAULT_NODE_LIMIT);
+        cached = new MealMixOptimizer();
+    }
+
+    @Benchmark
+    public MealMix mostMeals() {
+        return uncached.mostMeals(feeder);
+    }
+
+    @Benchmark
+    public MealMix closestToEnergy() {
+        return uncached.closestToEnergy(feeder, 5_000);
+    }
+
+    @Benchmark
+    public MealMix mostMealsCached() {
+        return cached.mostMeals(feeder);
+    }
+}
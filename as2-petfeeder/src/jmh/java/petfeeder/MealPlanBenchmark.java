@@ -0,0 +1,78 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import petfeeder.exceptions.MealPlanException;
+
+/**
+ * Configuring meal plans: building a MealPlan from its String or int
+ * amounts and adding, editing and deleting plans in a MealPlanBook.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MealPlanBenchmark {
+
+    private MealPlan.Builder builder;
+    private MealPlan plan;
+    private MealPlan otherPlan;
+    private MealPlanBook book;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        builder = new MealPlan.Builder();
+        builder.setName("Breakfast");
+        plan = builder.build();
+        builder.setName("Dinner");
+        otherPlan = builder.build();
+        book = new MealPlanBook();
+        book.addMealPlan(plan);
+    }
+
+    @Benchmark
+    public MealPlan buildFromStrings() throws MealPlanException {
+        builder.setAmtKibble("5");
+        builder.setAmtWater("2");
+        builder.setAmtWetFood("1");
+        builder.setAmtTreats("1");
+        return builder.build();
+    }
+
+    @Benchmark
+    public MealPlan buildFromInts() {
+        builder.setAmtKibble(5);
+        builder.setAmtWater(2);
+        builder.setAmtWetFood(1);
+        builder.setAmtTreats(1);
+        return builder.build();
+    }
+
+    /**
+     * Adds a plan and deletes it again so the book never fills up.
+     */
+    @Benchmark
+    public String addAndDeleteMealPlan() {
+        book.addMealPlan(otherPlan);
+        return book.deleteMealPlan(1);
+    }
+
+    @Benchmark
+    public String editMealPlan() {
+        return book.editMealPlan(0, plan);
+    }
+}
@@ -0,0 +1,116 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plan lookups by index while another thread keeps editing the book.
+ * Compare the reader score of the 1, 4 and 8 reader groups to see how
+ * lookups scale with cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class MealPlanBookReadBenchmark {
+
+    private static final int PLANS = 64;
+
+    private MealPlanBook book;
+    private MealPlan[] replacements;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        book = new MealPlanBook();
+        replacements = new MealPlan[PLANS];
+        for (int i = 0; i < PLANS; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            plan.setAmtKibble(i);
+            book.addMealPlan(plan.build());
+            MealPlan.Builder replacement = new MealPlan.Builder();
+            replacement.setName("Meal " + i);
+            replacement.setAmtKibble(i + 1);
+            replacements[i] = replacement.build();
+        }
+    }
+
+    private MealPlan read() {
+        return book.getMealPlan(ThreadLocalIndex.next(PLANS));
+    }
+
+    private String edit() {
+        int i = next++ & (PLANS - 1);
+        return book.editMealPlan(i, replacements[i]);
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public MealPlan readers1Read() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("readers1")
+    @GroupThreads(1)
+    public String readers1Edit() {
+        return edit();
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(4)
+    public MealPlan readers4Read() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("readers4")
+    @GroupThreads(1)
+    public String readers4Edit() {
+        return edit();
+    }
+
+    @Benchmark
+    @Group("readers8")
+    @GroupThreads(8)
+    public MealPlan readers8Read() {
+        return read();
+    }
+
+    @Benchmark
+    @Group("readers8")
+    @GroupThreads(1)
+    public String readers8Edit() {
+        return edit();
+    }
+
+    /**
+     * Cheap per-thread index sequence so readers spread over all plans.
+     */
+    private static final class ThreadLocalIndex {
+        private static final ThreadLocal<int[]> COUNTER = ThreadLocal.withInitial(() -> new int[1]);
+
+        static int next(int bound) {
+            int[] counter = COUNTER.get();
+            return counter[0]++ & (bound - 1);
+        }
+    }
+}
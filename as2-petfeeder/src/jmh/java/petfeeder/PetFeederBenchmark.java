@@ -0,0 +1,75 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import petfeeder.exceptions.FoodStockException;
+
+/**
+ * Hot paths of PetFeeder: dispensing at 1/4/16 threads, replenishing and
+ * checking the stock. The feeder is restocked before each iteration, so
+ * every dispense takes its ingredients and energy and none runs out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PetFeederBenchmark {
+
+    private PetFeeder feeder;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        feeder = new PetFeeder();
+        feeder.addMealPlan(BenchmarkStock.meal("Dinner"));
+        BenchmarkStock.restock(feeder);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean dispenseMeal1Thread() {
+        return feeder.dispenseMeal(0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean dispenseMeal4Threads() {
+        return feeder.dispenseMeal(0);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean dispenseMeal16Threads() {
+        return feeder.dispenseMeal(0);
+    }
+
+    @Benchmark
+    public PetFeeder replenishFood() throws FoodStockException {
+        feeder.replenishFood("1", "1", "1", "1");
+        return feeder;
+    }
+
+    @Benchmark
+    public boolean replenishFoodInts() {
+        return feeder.replenishFood(1, 1, 1, 1);
+    }
+
+    @Benchmark
+    public String checkFoodStock() {
+        return feeder.checkFoodStock();
+    }
+}
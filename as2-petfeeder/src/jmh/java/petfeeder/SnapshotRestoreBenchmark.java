@@ -0,0 +1,86 @@
+package petfeeder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to save and to restore a whole fleet with {@link FeederSnapshot}.
+ * Every feeder has three meal plans out of a shared menu of ten, so the
+ * plan table stays small and the per-feeder records dominate.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotRestoreBenchmark {
+
+    @Param({"100000"})
+    public int feeders;
+
+    private FeederFleet fleet;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MealPlan[] menu = new MealPlan[10];
+        for (int p = 0; p < menu.length; p++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal" + p);
+            plan.setAmtKibble(1 + p % 3);
+            plan.setAmtWater(1);
+            plan.setAmtTreats(p % 2);
+            menu[p] = plan.build();
+        }
+        fleet = new FeederFleet(Runtime.getRuntime().availableProcessors(), FoodContainer::new);
+        for (int i = 0; i < feeders; i++) {
+            PetFeeder feeder = fleet.getFeeder(fleet.addFeeder());
+            for (int p = 0; p < 3; p++) {
+                feeder.addMealPlan(menu[(i + p) % menu.length]);
+            }
+            feeder.replenishFood(i % 100, 0, 0, 0);
+            feeder.dispenseMeal(i % 3);
+        }
+        file = Files.createTempFile("fleet", ".snapshot");
+        FeederSnapshot.capture(fleet, null).writeTo(file);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public FeederSnapshot capture() {
+        return FeederSnapshot.capture(fleet, null);
+    }
+
+    @Benchmark
+    public void captureAndWrite() throws IOException {
+        FeederSnapshot.capture(fleet, null).writeTo(file);
+    }
+
+    @Benchmark
+    public FeederFleet readAndRestore() throws IOException {
+        FeederFleet restored = new FeederFleet(Runtime.getRuntime().availableProcessors(), FoodContainer::new);
+        FeederSnapshot.readFrom(file).restoreInto(restored);
+        return restored;
+    }
+}
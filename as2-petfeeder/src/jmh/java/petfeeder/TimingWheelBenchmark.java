@@ -0,0 +1,63 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of scheduling and cancelling a recurring task on a TimingWheel that
+ * already holds a large number of active schedules. Firing jitter at the
+ * same load is measured by {@link TimingWheelJitter}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+
+    @Param({"0", "1000000"})
+    public int activeSchedules;
+
+    private TimingWheel wheel;
+    private final Runnable task = () -> { };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wheel = new TimingWheel();
+        for (int i = 0; i < activeSchedules; i++) {
+            // Periods between one minute and a day, spread over all levels.
+            wheel.schedule(task, 60 + (i % 86340), 60 + (i % 86340), TimeUnit.SECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        return wheel.schedule(task, 30, 30, TimeUnit.SECONDS).cancel();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean scheduleAndCancel4Threads() {
+        return scheduleAndCancel();
+    }
+}
@@ -0,0 +1,81 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how late recurring tasks fire on a TimingWheel holding one
+ * million active schedules. JMH has no mode for lateness of background
+ * callbacks, so this is a plain program:
+ * <pre>
+ * java -cp target/benchmarks.jar petfeeder.TimingWheelJitter [schedules] [seconds]
+ * </pre>
+ * Every task records the difference between its intended and actual firing
+ * time in a log2 histogram; the program prints firings per second and the
+ * lateness percentiles after a warm-up period. Lateness includes the tick length (10 ms).
+ */
+public final class TimingWheelJitter {
+
+    private static final int WARMUP_SECONDS = 12;
+    private static final AtomicLongArray LATENESS = new AtomicLongArray(64);
+    private static final AtomicLong FIRINGS = new AtomicLong();
+
+    private TimingWheelJitter() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int schedules = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        TimingWheel wheel = new TimingWheel();
+        long start = System.nanoTime();
+        for (int i = 0; i < schedules; i++) {
+            // Periods of 1 to 10 seconds, so about 180k firings per second at 1M schedules.
+            long periodMillis = 1000 + (i % 9001);
+            long firstNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            long periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            wheel.schedule(new Runnable() {
+                private long intended = firstNanos;
+
+                @Override
+                public void run() {
+                    long late = Math.max(0, System.nanoTime() - intended);
+                    LATENESS.incrementAndGet(63 - Long.numberOfLeadingZeros(late | 1));
+                    FIRINGS.incrementAndGet();
+                    intended += periodNanos;
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+        System.out.printf("Scheduled %d tasks in %d ms%n", schedules,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        // Let every task fire once and the JIT settle before measuring.
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+        for (int bucket = 0; bucket < 64; bucket++) {
+            LATENESS.set(bucket, 0);
+        }
+        FIRINGS.set(0);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        wheel.shutdown();
+
+        long firings = FIRINGS.get();
+        System.out.printf("Firings: %d (%.0f/s)%n", firings, firings / (double) seconds);
+        for (double q : new double[] {0.5, 0.99, 0.999, 1.0}) {
+            System.out.printf("p%-5s lateness < %.3f ms%n", q * 100, percentile(firings, q) / 1e6);
+        }
+    }
+
+    /**
+     * Returns the upper bound in nanoseconds of the histogram bucket holding the quantile.
+     */
+    private static double percentile(long total, double quantile) {
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int bucket = 0; bucket < 64; bucket++) {
+            seen += LATENESS.get(bucket);
+            if (seen >= target && seen > 0) {
+                return Math.pow(2, bucket + 1);
+            }
+        }
+        return Double.NaN;
+    }
+}
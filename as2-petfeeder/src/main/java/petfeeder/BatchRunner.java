@@ -0,0 +1,360 @@
+package petfeeder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+
+/**
+ * Runs a script of feeder commands without prompts, one command per line,
+ * and writes one result line per command. Used by {@code Main --batch}.
+ * <p>
+ * Commands are the menu operations with their answers on the same line;
+ * meal plans are numbered from 1 as in the menu:
+ * <pre>
+ * add &lt;name&gt; &lt;kibble&gt; &lt;water&gt; &lt;wetFood&gt; &lt;treats&gt;
+ * edit &lt;plan&gt; &lt;kibble&gt; &lt;water&gt; &lt;wetFood&gt; &lt;treats&gt;
+ * delete &lt;plan&gt;
+ * replenish &lt;kibble&gt; &lt;water&gt; &lt;wetFood&gt; &lt;treats&gt;
+ * stock
+ * dispense &lt;plan&gt;
+ * schedule &lt;plan&gt; &lt;seconds&gt;
+ * stop
+ * </pre>
+ * Blank lines and lines starting with '#' are skipped. Each result line is
+ * {@code <line> ok|fail|error <command> [details]}: "fail" is a command the
+ * feeder refused, such as a meal that did not fit, and "error" a line that
+ * could not be run, followed by the reason.
+ * <p>
+ * Lines are split by hand without regular expressions. Consecutive
+ * dispense commands are collected and run as one
+ * {@link PetFeeder#dispenseMeals} batch, which takes the feeder's monitors
+ * once; any other command runs the collected batch first, so results stay
+ * in script order. Results go through the given writer, which is flushed
+ * when the input has nothing more ready and at the end, so a script piped
+ * in line by line still sees its answers.
+ */
+public final class BatchRunner {
+
+    /**
+     * Most dispense commands collected into one batch.
+     */
+    static final int MAX_BATCH = 1024;
+
+    private final PetFeeder petFeeder;
+    private FeedingScheduler feedingScheduler;
+
+    private final int[] batchPlans = new int[MAX_BATCH];
+    private final long[] batchLines = new long[MAX_BATCH];
+    private int batchSize;
+
+    private final String[] tokens = new String[7];
+    private int tokenCount;
+
+    private long lineNumber;
+    private long commands;
+    private long failures;
+    private long errors;
+
+    /**
+     * Creates a runner for a feeder. A scheduler is created the first
+     * time a script schedules a feeding; it reports its feedings on
+     * standard error, so they do not mix with the results.
+     * @param petFeeder The feeder to run commands against.
+     */
+    public BatchRunner(PetFeeder petFeeder) {
+        this(petFeeder, null);
+    }
+
+    /**
+     * Creates a runner for a feeder and its scheduler.
+     * @param petFeeder The feeder to run commands against.
+     * @param feedingScheduler The feeder's scheduler, or null to create one when needed.
+     */
+    public BatchRunner(PetFeeder petFeeder, FeedingScheduler feedingScheduler) {
+        this.petFeeder = petFeeder;
+        this.feedingScheduler = feedingScheduler;
+    }
+
+    /**
+     * Runs every command of a script and writes their results. Line
+     * numbers continue from any earlier run.
+     * @param in The script.
+     * @param out Where the results are written.
+     * @throws IOException if the script cannot be read or the results written.
+     */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (split(line) > 0) {
+                commands++;
+                runCommand(out);
+            }
+            if (!in.ready()) {
+                runBatch(out);
+                out.flush();
+            }
+        }
+        runBatch(out);
+        out.flush();
+    }
+
+    /**
+     * Returns the feeding scheduler, or null if no script has scheduled a feeding.
+     * @return FeedingScheduler
+     */
+    public FeedingScheduler getFeedingScheduler() {
+        return feedingScheduler;
+    }
+
+    /**
+     * Returns the number of commands run, not counting blank and comment lines.
+     * @return long
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the number of commands the feeder refused.
+     * @return long
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the number of lines that could not be run.
+     * @return long
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Splits a line at spaces and tabs into tokens, and returns how many
+     * there are; a line with too many tokens reports one more than fits.
+     */
+    private int split(String line) {
+        tokenCount = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            if (tokenCount == 0 && c == '#') {
+                break;
+            }
+            int start = i;
+            while (i < length && line.charAt(i) != ' ' && line.charAt(i) != '\t') {
+                i++;
+            }
+            if (tokenCount == tokens.length) {
+                tokenCount++;
+                break;
+            }
+            tokens[tokenCount++] = line.substring(start, i);
+        }
+        return tokenCount;
+    }
+
+    private void runCommand(Writer out) throws IOException {
+        String command = tokens[0];
+        try {
+            if (command.equals("dispense")) {
+                expectArguments(1);
+                int plan = parseInt(tokens[1]) - 1;
+                if (batchSize == MAX_BATCH) {
+                    runBatch(out);
+                }
+                batchPlans[batchSize] = plan;
+                batchLines[batchSize++] = lineNumber;
+                return;
+            }
+            runBatch(out);
+            switch (command) {
+                case "add":
+                    add(out);
+                    break;
+                case "edit":
+                    edit(out);
+                    break;
+                case "delete":
+                    expectArguments(1);
+                    int index = parseInt(tokens[1]) - 1;
+                    // deleteMealPlan throws for an index outside the book.
+                    String deleted = petFeeder.getMealPlan(index) != null ? petFeeder.deleteMealPlan(index) : null;
+                    result(out, deleted != null, deleted);
+                    break;
+                case "replenish":
+                    expectArguments(4);
+                    result(out, petFeeder.replenishFood(parseInt(tokens[1]), parseInt(tokens[2]),
+                            parseInt(tokens[3]), parseInt(tokens[4])), null);
+                    break;
+                case "stock":
+                    expectArguments(0);
+                    stock(out);
+                    break;
+                case "schedule":
+                    schedule(out);
+                    break;
+                case "stop":
+                    expectArguments(0);
+                    boolean active = feedingScheduler != null && feedingScheduler.hasActiveSchedule();
+                    if (active) {
+                        feedingScheduler.stop();
+                    }
+                    result(out, active, null);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown command");
+            }
+        } catch (IllegalArgumentException e) {
+            // Dispense commands before this line are answered first.
+            runBatch(out);
+            errors++;
+            writeStart(out, lineNumber, "error", command);
+            out.write(' ');
+            out.write(e.getMessage());
+            out.write('\n');
+        }
+    }
+
+    private void add(Writer out) throws IOException {
+        expectArguments(5);
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(tokens[1]);
+        setAmounts(plan, 2);
+        result(out, petFeeder.addMealPlan(plan.build()), tokens[1]);
+    }
+
+    private void edit(Writer out) throws IOException {
+        expectArguments(5);
+        int index = parseInt(tokens[1]) - 1;
+        MealPlan existing = petFeeder.getMealPlan(index);
+        if (existing == null) {
+            result(out, false, null);
+            return;
+        }
+        // Keep the plan's name, unlike the menu, which has no name prompt.
+        MealPlan.Builder plan = new MealPlan.Builder(existing);
+        setAmounts(plan, 2);
+        String edited = petFeeder.editMealPlan(index, plan.build());
+        result(out, edited != null, edited);
+    }
+
+    private void setAmounts(MealPlan.Builder plan, int first) {
+        if (!plan.setAmtKibble(parseInt(tokens[first]))
+                || !plan.setAmtWater(parseInt(tokens[first + 1]))
+                || !plan.setAmtWetFood(parseInt(tokens[first + 2]))
+                || !plan.setAmtTreats(parseInt(tokens[first + 3]))) {
+            throw new IllegalArgumentException("Amounts must be non-negative and not too large");
+        }
+    }
+
+    private void stock(Writer out) throws IOException {
+        FoodContainer stock = petFeeder.getFoodContainer();
+        writeStart(out, lineNumber, "ok", "stock");
+        out.write(' ');
+        out.write(Integer.toString(stock.getKibble()));
+        out.write(' ');
+        out.write(Integer.toString(stock.getWater()));
+        out.write(' ');
+        out.write(Integer.toString(stock.getWetFood()));
+        out.write(' ');
+        out.write(Integer.toString(stock.getTreats()));
+        out.write('\n');
+    }
+
+    private void schedule(Writer out) throws IOException {
+        expectArguments(2);
+        int index = parseInt(tokens[1]) - 1;
+        long periodSeconds = parseLong(tokens[2]);
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be a positive integer");
+        }
+        if (index < 0 || petFeeder.getMealPlan(index) == null) {
+            result(out, false, null);
+            return;
+        }
+        if (feedingScheduler == null) {
+            feedingScheduler = new FeedingScheduler(petFeeder);
+            // Keep the feeding messages out of the result lines.
+            feedingScheduler.setEventLog(EventLog.standardError());
+        }
+        feedingScheduler.addRecurringFeeding(index, periodSeconds);
+        result(out, true, null);
+    }
+
+    /**
+     * Dispenses the collected dispense commands as one batch and writes their results.
+     */
+    private void runBatch(Writer out) throws IOException {
+        if (batchSize == 0) {
+            return;
+        }
+        int[] plans = batchPlans;
+        if (batchSize < MAX_BATCH) {
+            plans = new int[batchSize];
+            System.arraycopy(batchPlans, 0, plans, 0, batchSize);
+        }
+        BitSet dispensed = petFeeder.dispenseMeals(plans);
+        for (int i = 0; i < batchSize; i++) {
+            boolean ok = dispensed.get(i);
+            if (!ok) {
+                failures++;
+            }
+            writeStart(out, batchLines[i], ok ? "ok" : "fail", "dispense");
+            out.write(' ');
+            out.write(Integer.toString(plans[i] + 1));
+            out.write('\n');
+        }
+        batchSize = 0;
+    }
+
+    private void result(Writer out, boolean ok, String detail) throws IOException {
+        if (!ok) {
+            failures++;
+        }
+        writeStart(out, lineNumber, ok ? "ok" : "fail", tokens[0]);
+        if (detail != null) {
+            out.write(' ');
+            out.write(detail);
+        }
+        out.write('\n');
+    }
+
+    private static void writeStart(Writer out, long line, String status, String command) throws IOException {
+        out.write(Long.toString(line));
+        out.write(' ');
+        out.write(status);
+        out.write(' ');
+        out.write(command);
+    }
+
+    private void expectArguments(int count) {
+        if (tokenCount != count + 1) {
+            throw new IllegalArgumentException("Expected " + count + " argument" + (count == 1 ? "" : "s"));
+        }
+    }
+
+    private static int parseInt(String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + token);
+        }
+    }
+
+    private static long parseLong(String token) {
+        try {
+            return Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + token);
+        }
+    }
+}
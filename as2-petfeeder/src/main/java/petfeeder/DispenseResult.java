@@ -0,0 +1,114 @@
+package petfeeder;
+
+import java.time.Instant;
+
+/**
+ * Result of one asynchronous dispense request, see
+ * {@link PetFeeder#dispenseMealAsync(int)}.
+ */
+public final class DispenseResult {
+
+    /**
+     * What happened to a dispense request.
+     */
+    public enum Outcome {
+        /**
+         * The meal was dispensed.
+         */
+        OK,
+        /**
+         * The food container did not hold enough of some ingredient.
+         */
+        INSUFFICIENT_STOCK,
+        /**
+         * The meal would have exceeded the remaining energy budget.
+         */
+        ENERGY_EXCEEDED,
+        /**
+         * There is no meal plan at the requested index.
+         */
+        NO_PLAN
+    }
+
+    private final Outcome outcome;
+    private final int mealPlanIndex;
+    private final MealPlan mealPlan;
+    private final Instant requestedAt;
+    private final Instant completedAt;
+    private final long latencyNanos;
+
+    DispenseResult(Outcome outcome, int mealPlanIndex, MealPlan mealPlan,
+                   Instant requestedAt, Instant completedAt, long latencyNanos) {
+        this.outcome = outcome;
+        this.mealPlanIndex = mealPlanIndex;
+        this.mealPlan = mealPlan;
+        this.requestedAt = requestedAt;
+        this.completedAt = completedAt;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Returns the outcome of the request.
+     * @return Outcome
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns true if the meal was dispensed.
+     * @return boolean
+     */
+    public boolean isDispensed() {
+        return outcome == Outcome.OK;
+    }
+
+    /**
+     * Returns the requested meal plan index.
+     * @return int
+     */
+    public int getMealPlanIndex() {
+        return mealPlanIndex;
+    }
+
+    /**
+     * Returns the meal plan that was selected, or null for NO_PLAN.
+     * @return MealPlan
+     */
+    public MealPlan getMealPlan() {
+        return mealPlan;
+    }
+
+    /**
+     * Returns when the request was made.
+     * @return Instant
+     */
+    public Instant getRequestedAt() {
+        return requestedAt;
+    }
+
+    /**
+     * Returns when the request completed, after actuation for a dispensed meal.
+     * @return Instant
+     */
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * Returns the time from request to completion in nanoseconds, measured
+     * with a monotonic clock.
+     * @return long
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * Returns the outcome and the meal plan name.
+     * @return String
+     */
+    public String toString() {
+        return outcome + (mealPlan != null ? " " + mealPlan.getName() : "");
+    }
+}
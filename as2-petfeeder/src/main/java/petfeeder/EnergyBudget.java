@@ -0,0 +1,318 @@
+package petfeeder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Energy a feeder may dispense, either over its whole life or within a
+ * rolling window such as the last hour, day or week.
+ * <p>
+ * A rolling window is split into a fixed number of buckets, each covering
+ * an equal slice of time. Every bucket is one atomic long that packs the
+ * slice it belongs to together with the energy used in it, and one more
+ * atomic long holds the total of all buckets. When time moves on, the
+ * buckets whose slice has left the window are zeroed and taken off the
+ * total, each at most once, so rollover is constant time per slice and
+ * needs no background thread. Energy therefore expires in steps of one
+ * bucket: it leaves the window between (buckets - 1) / buckets and one
+ * full window after it was used.
+ * <p>
+ * Consuming energy is a compare-and-set on the total and an add to the
+ * current bucket; it never locks, and concurrent callers never overspend
+ * the limit together.
+ */
+public final class EnergyBudget {
+
+    /**
+     * Number of buckets a rolling window is split into by default.
+     */
+    public static final int DEFAULT_BUCKETS = 16;
+
+    private static final long AMOUNT_MASK = 0xFFFF_FFFFL;
+
+    private final int limit;
+    private final long windowNanos;
+    private final long bucketNanos;
+    private final AtomicLongArray buckets;
+    /**
+     * Energy in all buckets that have not been expired yet.
+     */
+    private final AtomicLong total = new AtomicLong();
+    /**
+     * Every bucket that had left the window by this slice has been expired.
+     */
+    private final AtomicLong expiredUpTo = new AtomicLong();
+    private final LongSupplier nanoClock;
+    private final long origin;
+
+    /**
+     * Creates a budget for the whole life of the feeder.
+     * @param limit The energy that may be used in total.
+     */
+    public EnergyBudget(int limit) {
+        this(limit, 0, 1, System::nanoTime);
+    }
+
+    /**
+     * Creates a rolling-window budget with the default number of buckets.
+     * @param limit The energy that may be used within any one window.
+     * @param window The length of the window.
+     */
+    public EnergyBudget(int limit, Duration window) {
+        this(limit, window.toNanos(), DEFAULT_BUCKETS, System::nanoTime);
+    }
+
+    /**
+     * Creates a rolling-window budget with the default number of buckets
+     * that reads the time from a clock, such as a {@link ManualClock}.
+     * @param limit The energy that may be used within any one window.
+     * @param window The length of the window.
+     * @param clock The clock to read the time from.
+     */
+    public EnergyBudget(int limit, Duration window, FeederClock clock) {
+        this(limit, window.toNanos(), DEFAULT_BUCKETS, clock::nanoTime);
+    }
+
+    /**
+     * Creates a budget.
+     * @param limit The energy that may be used within one window.
+     * @param windowNanos The window length in nanoseconds, or 0 for no window.
+     * @param bucketCount The number of buckets the window is split into.
+     * @param nanoClock Returns the current time in nanoseconds.
+     */
+    EnergyBudget(int limit, long windowNanos, int bucketCount, LongSupplier nanoClock) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Energy limit must not be negative");
+        }
+        if (windowNanos < 0 || bucketCount <= 0 || (windowNanos > 0 && windowNanos < bucketCount)) {
+            throw new IllegalArgumentException("Invalid window");
+        }
+        this.limit = limit;
+        this.windowNanos = windowNanos;
+        this.bucketNanos = windowNanos == 0 ? 0 : windowNanos / bucketCount;
+        this.buckets = new AtomicLongArray(windowNanos == 0 ? 1 : bucketCount);
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    /**
+     * Returns a budget that allows the given energy per rolling hour.
+     * @param limit The energy per hour.
+     * @return EnergyBudget
+     */
+    public static EnergyBudget perHour(int limit) {
+        return new EnergyBudget(limit, Duration.ofHours(1));
+    }
+
+    /**
+     * Returns a budget that allows the given energy per rolling day.
+     * @param limit The energy per day.
+     * @return EnergyBudget
+     */
+    public static EnergyBudget perDay(int limit) {
+        return new EnergyBudget(limit, Duration.ofDays(1));
+    }
+
+    /**
+     * Returns a budget that allows the given energy per rolling week.
+     * @param limit The energy per week.
+     * @return EnergyBudget
+     */
+    public static EnergyBudget perWeek(int limit) {
+        return new EnergyBudget(limit, Duration.ofDays(7));
+    }
+
+    /**
+     * Returns the slice the current time falls in, which is where energy
+     * is booked now.
+     */
+    long currentSlice() {
+        return bucketNanos == 0 ? 0 : (nanoClock.getAsLong() - origin) / bucketNanos;
+    }
+
+    private static long pack(long slice, long amount) {
+        return (slice << 32) | amount;
+    }
+
+    private static long sliceOf(long bucket) {
+        return bucket >>> 32;
+    }
+
+    private static long amountOf(long bucket) {
+        return bucket & AMOUNT_MASK;
+    }
+
+    /**
+     * Zeroes the buckets that have left the window by the given slice and
+     * takes their energy off the total.
+     */
+    private void expire(long slice) {
+        long done = expiredUpTo.get();
+        if (done >= slice) {
+            return;
+        }
+        int n = buckets.length();
+        // Moving from slice done to slice, the slices in (done - n, slice - n]
+        // leave the window; that is every bucket once the gap reaches n.
+        long from = Math.max(done - n + 1, slice - 2L * n + 1);
+        for (long s = from; s <= slice - n; s++) {
+            int index = (int) Math.floorMod(s, (long) n);
+            while (true) {
+                long bucket = buckets.get(index);
+                long amount = amountOf(bucket);
+                if (slice - sliceOf(bucket) < n || amount == 0) {
+                    break;
+                }
+                if (buckets.compareAndSet(index, bucket, pack(sliceOf(bucket), 0))) {
+                    total.addAndGet(-amount);
+                    break;
+                }
+            }
+        }
+        expiredUpTo.accumulateAndGet(slice, Math::max);
+    }
+
+    /**
+     * Takes energy from the budget if enough is left.
+     * @param energy The energy to take.
+     * @return boolean True if the energy was taken.
+     */
+    public boolean tryConsume(int energy) {
+        return acquire(energy) >= 0;
+    }
+
+    /**
+     * Takes energy from the budget if enough is left and returns the slice
+     * it was booked in, for release; returns -1 if too little is left.
+     */
+    long acquire(int energy) {
+        if (energy < 0) {
+            throw new IllegalArgumentException("Energy must not be negative");
+        }
+        long slice = currentSlice();
+        expire(slice);
+        long used;
+        do {
+            used = total.get();
+            if (used + energy > limit) {
+                return -1;
+            }
+        } while (!total.compareAndSet(used, used + energy));
+        return addToBucket(slice, energy);
+    }
+
+    /**
+     * Books energy without checking the limit, such as the energy of a
+     * meal that was dispensed before a restart and is being replayed, and
+     * returns the slice it was booked in, for release.
+     */
+    long book(int energy) {
+        if (energy < 0) {
+            throw new IllegalArgumentException("Energy must not be negative");
+        }
+        long slice = currentSlice();
+        expire(slice);
+        total.addAndGet(energy);
+        return addToBucket(slice, energy);
+    }
+
+    /**
+     * Adds energy already counted in the total to the bucket of the given
+     * slice and returns the slice it was booked in.
+     */
+    private long addToBucket(long slice, int energy) {
+        if (bucketNanos == 0) {
+            return 0;
+        }
+        int index = (int) (slice % buckets.length());
+        while (true) {
+            long bucket = buckets.get(index);
+            long bucketSlice = sliceOf(bucket);
+            if (bucketSlice >= slice) {
+                // The bucket is current, or a later caller already reused
+                // it for a later slice; booking there only expires later.
+                if (buckets.compareAndSet(index, bucket, pack(bucketSlice, amountOf(bucket) + energy))) {
+                    return bucketSlice;
+                }
+            } else if (buckets.compareAndSet(index, bucket, pack(slice, energy))) {
+                // The bucket's old slice has left the window.
+                total.addAndGet(-amountOf(bucket));
+                return slice;
+            }
+        }
+    }
+
+    /**
+     * Gives back energy that acquire booked in the given slice. Nothing
+     * happens if the slice has already left the window.
+     */
+    void release(long slice, int energy) {
+        if (bucketNanos == 0) {
+            total.addAndGet(-energy);
+            return;
+        }
+        int index = (int) (slice % buckets.length());
+        while (true) {
+            long bucket = buckets.get(index);
+            if (sliceOf(bucket) != slice) {
+                return;
+            }
+            long amount = Math.min(amountOf(bucket), energy);
+            if (buckets.compareAndSet(index, bucket, pack(slice, amountOf(bucket) - amount))) {
+                total.addAndGet(-amount);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the energy used within the current window.
+     * @return int
+     */
+    public int getConsumed() {
+        expire(currentSlice());
+        return (int) Math.min(Integer.MAX_VALUE, total.get());
+    }
+
+    /**
+     * Returns the energy that may still be used within the current window.
+     * @return int
+     */
+    public int getRemaining() {
+        return Math.max(0, limit - getConsumed());
+    }
+
+    /**
+     * Returns the energy that may be used within one window.
+     * @return int
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the length of the window, or Duration.ZERO for a budget that
+     * covers the feeder's whole life.
+     * @return Duration
+     */
+    public Duration getWindow() {
+        return Duration.ofNanos(windowNanos);
+    }
+
+    /**
+     * Replaces the energy used so far with a saved value. The whole amount
+     * is booked in the current bucket, so after a restart it expires one
+     * full window later at the latest.
+     */
+    void restore(int consumed) {
+        long slice = currentSlice();
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        buckets.set((int) (slice % buckets.length()), pack(slice, Math.max(0, consumed)));
+        total.set(Math.max(0, consumed));
+        expiredUpTo.set(slice);
+    }
+}
@@ -0,0 +1,202 @@
+package petfeeder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous log of {@link FeederEvent}s.
+ * <p>
+ * Events are copied into a preallocated ring buffer and written to an
+ * {@link EventOutput} by a background thread, so publishing never does I/O
+ * and never blocks: it claims a slot with one compare-and-set and fills it
+ * in. When the writer falls so far behind that the ring is full, new events
+ * are dropped and counted instead of stalling the publisher.
+ */
+public final class EventLog implements Closeable {
+
+    /**
+     * Number of events the ring buffer holds by default.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final FeederEvent[] ring;
+    private final int mask;
+    private final EventOutput output;
+    /**
+     * Next sequence number to hand out to a publisher.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    /**
+     * Every sequence number below this one has been written and its slot
+     * can be reused.
+     */
+    private volatile long consumed;
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+
+    /**
+     * Creates a log with the default capacity.
+     * @param output Where the events are written.
+     */
+    public EventLog(EventOutput output) {
+        this(output, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a log.
+     * @param output Where the events are written.
+     * @param capacity The number of events the ring buffer holds, a power of two.
+     */
+    public EventLog(EventOutput output, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.output = output;
+        this.ring = new FeederEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new FeederEvent();
+        }
+        this.mask = capacity - 1;
+        this.writer = new Thread(this::drain, "petfeeder-events");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the log that prints to standard output, shared by every
+     * scheduler that is not given a log of its own.
+     * @return EventLog
+     */
+    public static EventLog console() {
+        return Console.LOG;
+    }
+
+    /**
+     * Returns the shared log that prints to standard error, for programs
+     * whose standard output is read by another program.
+     * @return EventLog
+     */
+    public static EventLog standardError() {
+        return StandardError.LOG;
+    }
+
+    /**
+     * Publishes an event. Returns at once; the event is written later on
+     * the writer thread.
+     * @param type What happened.
+     * @param mealPlanIndex The index of the meal plan, or -1.
+     * @param mealName The name of the meal plan, or null.
+     * @param detail Extra information, or null.
+     * @return boolean False if the event was dropped because the ring is
+     * full or the log is closed.
+     */
+    public boolean publish(FeederEvent.Type type, int mealPlanIndex, String mealName, String detail) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        FeederEvent event = ring[(int) sequence & mask];
+        event.set(type, System.currentTimeMillis(), mealPlanIndex, mealName, detail);
+        event.sequence = sequence;
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of events that were dropped, or that the output
+     * failed to write.
+     * @return long
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events that were published but not written yet.
+     * @return int
+     */
+    public int getPendingEvents() {
+        return (int) Math.max(0, claimed.get() - consumed);
+    }
+
+    private void drain() {
+        long next = 0;
+        while (true) {
+            FeederEvent event = ring[(int) next & mask];
+            if (event.sequence == next) {
+                try {
+                    output.write(event);
+                } catch (IOException | RuntimeException e) {
+                    dropped.increment();
+                }
+                event.clear();
+                consumed = ++next;
+                continue;
+            }
+            try {
+                output.flush();
+            } catch (IOException | RuntimeException e) {
+                // Nothing to drop; the next flush tries again.
+            }
+            if (closed && claimed.get() == next) {
+                break;
+            }
+            writerWaiting = true;
+            if (event.sequence != next) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerWaiting = false;
+        }
+        try {
+            output.close();
+        } catch (IOException | RuntimeException e) {
+            // The log is closing anyway.
+        }
+    }
+
+    /**
+     * Writes the events that were already published, then stops the
+     * writer thread and closes the output. Events published afterwards
+     * are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Holder of the shared console log, created on first use.
+     */
+    private static final class Console {
+        static final EventLog LOG = new EventLog(EventOutput.console());
+    }
+
+    private static final class StandardError {
+        static final EventLog LOG = new EventLog(EventOutput.console(System.err));
+    }
+}
@@ -0,0 +1,102 @@
+package petfeeder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Destination of the events of an {@link EventLog}. All methods are called
+ * on the log's writer thread only.
+ */
+public interface EventOutput {
+
+    /**
+     * Writes one event. The event is reused after this method returns.
+     * @param event The event to write.
+     * @throws IOException if the event cannot be written.
+     */
+    void write(FeederEvent event) throws IOException;
+
+    /**
+     * Flushes buffered output. Called whenever the log has no more events
+     * waiting.
+     * @throws IOException if the output cannot be flushed.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Releases the output when the log is closed.
+     * @throws IOException if the output cannot be closed.
+     */
+    default void close() throws IOException {
+    }
+
+    /**
+     * Returns an output that prints the human-readable message of every
+     * event to standard output.
+     * @return EventOutput
+     */
+    static EventOutput console() {
+        return console(System.out);
+    }
+
+    /**
+     * Returns an output that prints the human-readable message of every
+     * event to the given stream.
+     * @param out The stream to print to. It is not closed with the log.
+     * @return EventOutput
+     */
+    static EventOutput console(PrintStream out) {
+        return new EventOutput() {
+            @Override
+            public void write(FeederEvent event) {
+                out.println(event.getMessage());
+            }
+
+            @Override
+            public void flush() {
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Returns an output that appends every event to a file as one line of
+     * JSON.
+     * @param file The file to append to; it is created if needed.
+     * @return EventOutput
+     * @throws UncheckedIOException if the file cannot be opened.
+     */
+    static EventOutput file(Path file) {
+        BufferedWriter writer;
+        try {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new EventOutput() {
+            @Override
+            public void write(FeederEvent event) throws IOException {
+                writer.write(event.toJson());
+                writer.newLine();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package petfeeder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time and timers for schedules, energy budget windows and
+ * reservation timeouts.
+ * <p>
+ * {@link SystemClock} and {@link TimingWheel} follow real time.
+ * {@link ManualClock} only moves when it is advanced, and then runs the
+ * timers that became due on the advancing thread, so hours of schedules
+ * can be driven in milliseconds.
+ */
+public interface FeederClock {
+
+    /**
+     * Returns the current time in nanoseconds. Only differences between
+     * two readings are meaningful, as with System.nanoTime.
+     * @return long
+     */
+    long nanoTime();
+
+    /**
+     * Schedules a task to run after the delay and then once every period,
+     * at a fixed rate. A period of zero runs the task only once.
+     * @param task The task to run.
+     * @param delay The delay before the first run.
+     * @param period The time between runs, or 0 for a one-shot task.
+     * @param unit The unit of delay and period.
+     * @return Timer A handle that can cancel the task.
+     */
+    Timer schedule(Runnable task, long delay, long period, TimeUnit unit);
+
+    /**
+     * Handle of a task scheduled on a clock.
+     */
+    interface Timer {
+
+        /**
+         * Cancels the task. A run that has already started is not interrupted.
+         * @return boolean True if this call cancelled the task.
+         */
+        boolean cancel();
+
+        /**
+         * Returns true if the task is still scheduled to run.
+         * @return boolean
+         */
+        boolean isActive();
+    }
+}
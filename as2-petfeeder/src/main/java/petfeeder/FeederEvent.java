@@ -0,0 +1,155 @@
+package petfeeder;
+
+import java.time.Instant;
+
+/**
+ * One entry of an {@link EventLog}.
+ * <p>
+ * Events live in the log's preallocated ring buffer and are reused once
+ * they have been written, so an {@link EventOutput} must not keep a
+ * reference to an event after its write method returns.
+ */
+public final class FeederEvent {
+
+    /**
+     * What happened.
+     */
+    public enum Type {
+        /**
+         * A scheduled meal was dispensed.
+         */
+        DISPENSED,
+        /**
+         * A scheduled meal could not be dispensed, for lack of ingredients
+         * or energy budget, or because there was no such meal plan.
+         */
+        DISPENSE_FAILED,
+        /**
+         * A scheduled feeding threw an exception.
+         */
+        ERROR
+    }
+
+    /**
+     * Sequence number the slot is published under; written last by the
+     * producer and read first by the writer thread.
+     */
+    volatile long sequence = -1;
+    private Type type;
+    private long timeMillis;
+    private int mealPlanIndex;
+    private String mealName;
+    private String detail;
+
+    FeederEvent() {
+    }
+
+    void set(Type type, long timeMillis, int mealPlanIndex, String mealName, String detail) {
+        this.type = type;
+        this.timeMillis = timeMillis;
+        this.mealPlanIndex = mealPlanIndex;
+        this.mealName = mealName;
+        this.detail = detail;
+    }
+
+    void clear() {
+        mealName = null;
+        detail = null;
+    }
+
+    /**
+     * Returns the type of the event.
+     * @return Type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns when the event happened, in milliseconds since the epoch.
+     * @return long
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Returns the index of the meal plan, or -1 if there is none.
+     * @return int
+     */
+    public int getMealPlanIndex() {
+        return mealPlanIndex;
+    }
+
+    /**
+     * Returns the name of the meal plan, or null if it is unknown.
+     * @return String
+     */
+    public String getMealName() {
+        return mealName;
+    }
+
+    /**
+     * Returns extra information, such as an error message, or null.
+     * @return String
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Returns the human-readable message the scheduler used to print.
+     * @return String
+     */
+    public String getMessage() {
+        switch (type) {
+            case DISPENSED:
+                return "[Scheduler] Dispensed scheduled meal: " + (mealName != null ? mealName : "(unknown meal)");
+            case DISPENSE_FAILED:
+                return "[Scheduler] Scheduled meal could not be dispensed (insufficient ingredients or energy budget).";
+            default:
+                return "[Scheduler] Error during scheduled feeding: " + detail;
+        }
+    }
+
+    /**
+     * Returns the event as one line of JSON.
+     * @return String
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"time\":\"").append(Instant.ofEpochMilli(timeMillis))
+                .append("\",\"type\":\"").append(type)
+                .append("\",\"mealPlanIndex\":").append(mealPlanIndex);
+        if (mealName != null) {
+            appendString(json.append(",\"mealName\":"), mealName);
+        }
+        if (detail != null) {
+            appendString(json.append(",\"detail\":"), detail);
+        }
+        return json.append('}').toString();
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Returns the human-readable message.
+     * @return String
+     */
+    public String toString() {
+        return getMessage();
+    }
+}
@@ -0,0 +1,181 @@
+package petfeeder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Hosts many independent pet feeders in one process.
+ * Every feeder owns its own meal plans, food container and energy budget,
+ * so dispensing on one feeder never waits for another. Feeders are
+ * identified by an int id and spread over shards; adding or removing a feeder
+ * only locks its shard, and lookups take no lock at all.
+ */
+public class FeederFleet {
+
+    /**
+     * A slice of the fleet. Writers lock the shard and publish a new
+     * array reference when it grows; readers only read the volatile field.
+     */
+    private static final class Shard {
+        private volatile PetFeeder[] feeders = new PetFeeder[16];
+        private int size;
+    }
+
+    private final Shard[] shards;
+    private final AtomicInteger nextId;
+    private final Supplier<FoodContainer> containerFactory;
+
+    /**
+     * Creates a fleet with one shard per available processor and
+     * monitor-based food containers.
+     */
+    public FeederFleet() {
+        this(Runtime.getRuntime().availableProcessors(), FoodContainer::new);
+    }
+
+    /**
+     * Creates a fleet.
+     * @param shardCount The number of shards to spread feeders over.
+     * @param containerFactory Creates the food container of each new feeder.
+     */
+    public FeederFleet(int shardCount, Supplier<FoodContainer> containerFactory) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.nextId = new AtomicInteger();
+        this.containerFactory = containerFactory;
+    }
+
+    /**
+     * Creates a new feeder in the fleet and returns its id.
+     * @return int The id of the new feeder.
+     */
+    public int addFeeder() {
+        int id = nextId.getAndIncrement();
+        place(id, new PetFeeder(containerFactory.get()));
+        return id;
+    }
+
+    /**
+     * Puts a restored feeder into the fleet under its old id. New ids
+     * handed out afterwards are larger than every restored id.
+     * @param feederId The id the feeder had when it was saved.
+     * @param feeder The restored feeder.
+     */
+    void putFeeder(int feederId, PetFeeder feeder) {
+        if (feederId < 0) {
+            throw new IllegalArgumentException("Feeder id must not be negative");
+        }
+        nextId.accumulateAndGet(feederId + 1, Math::max);
+        place(feederId, feeder);
+    }
+
+    /**
+     * Returns a new food container from the fleet's container factory.
+     * @return FoodContainer
+     */
+    FoodContainer newContainer() {
+        return containerFactory.get();
+    }
+
+    private void place(int id, PetFeeder feeder) {
+        Shard shard = shards[id % shards.length];
+        int slot = id / shards.length;
+        synchronized (shard) {
+            PetFeeder[] feeders = shard.feeders;
+            if (slot >= feeders.length) {
+                feeders = Arrays.copyOf(feeders, Math.max(feeders.length * 2, slot + 1));
+            }
+            if (feeders[slot] == null) {
+                shard.size++;
+            }
+            feeders[slot] = feeder;
+            shard.feeders = feeders;
+        }
+    }
+
+    /**
+     * Returns the feeder with the given id, or null if there is none.
+     * @param feederId The id of the feeder.
+     * @return PetFeeder
+     */
+    public PetFeeder getFeeder(int feederId) {
+        if (feederId < 0) {
+            return null;
+        }
+        PetFeeder[] feeders = shards[feederId % shards.length].feeders;
+        int slot = feederId / shards.length;
+        return slot < feeders.length ? feeders[slot] : null;
+    }
+
+    /**
+     * Removes the feeder with the given id. Ids are never reused.
+     * @param feederId The id of the feeder to remove.
+     * @return PetFeeder The removed feeder, or null if there was none.
+     */
+    public PetFeeder removeFeeder(int feederId) {
+        if (feederId < 0) {
+            return null;
+        }
+        Shard shard = shards[feederId % shards.length];
+        int slot = feederId / shards.length;
+        synchronized (shard) {
+            PetFeeder[] feeders = shard.feeders;
+            if (slot >= feeders.length || feeders[slot] == null) {
+                return null;
+            }
+            PetFeeder removed = feeders[slot];
+            feeders[slot] = null;
+            shard.size--;
+            shard.feeders = feeders;
+            return removed;
+        }
+    }
+
+    /**
+     * Dispenses a meal on one feeder of the fleet.
+     * @param feederId The id of the feeder.
+     * @param mealPlanIndex The index of the meal plan to dispense.
+     * @return boolean True if the feeder exists and dispensed the meal.
+     */
+    public boolean dispenseMeal(int feederId, int mealPlanIndex) {
+        PetFeeder feeder = getFeeder(feederId);
+        return feeder != null && feeder.dispenseMeal(mealPlanIndex);
+    }
+
+    /**
+     * Returns the number of feeders currently in the fleet.
+     * @return int
+     */
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                total += shard.size;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Calls the action for every feeder in the fleet together with its id.
+     * @param action The action to perform.
+     */
+    public void forEach(ObjIntConsumer<PetFeeder> action) {
+        for (int s = 0; s < shards.length; s++) {
+            PetFeeder[] feeders = shards[s].feeders;
+            for (int slot = 0; slot < feeders.length; slot++) {
+                PetFeeder feeder = feeders[slot];
+                if (feeder != null) {
+                    action.accept(feeder, slot * shards.length + s);
+                }
+            }
+        }
+    }
+}
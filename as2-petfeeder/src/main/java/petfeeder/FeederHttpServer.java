@@ -0,0 +1,517 @@
+package petfeeder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP/JSON control API for one feeder and its scheduler, served by the
+ * JDK's built-in {@link HttpServer} with one virtual thread per request.
+ * Meal plans are addressed by their index in the feeder, from 0:
+ * <pre>
+ * GET    /plans                 the meal plans
+ * POST   /plans                 {"name":"Dry","kibble":2,"water":1,"wetFood":0,"treats":0}
+ * PUT    /plans/{index}         {"kibble":3,"water":1,"wetFood":0,"treats":0}
+ * DELETE /plans/{index}
+ * POST   /replenish             {"kibble":10,"water":10,"wetFood":0,"treats":0}
+ * GET    /stock                 stock and remaining energy
+ * POST   /dispense              {"mealPlanIndex":0}
+ * GET    /schedules             the active schedules, [{"mealPlanIndex":0,"period":"PT1H"}]
+ * POST   /schedules             {"mealPlanIndex":0,"periodSeconds":3600}
+ * DELETE /schedules/{position}  cancels one active schedule
+ * DELETE /schedules             stops every schedule
+ * </pre>
+ * Amounts left out of a request body are 0; an edited plan keeps its
+ * name. A refused request answers with a 4xx status and a JSON body with
+ * an "error" or, for a dispense, the outcome: 409 for a meal that does not
+ * fit the stock or energy budget, 404 for a missing plan. Schedule periods
+ * are answered as ISO-8601 durations, so sub-second periods set through
+ * the FeedingScheduler are shown exactly.
+ * <p>
+ * Request bodies are flat JSON objects of numbers and strings, read by a
+ * small parser here rather than a JSON library.
+ * <p>
+ * The JDK server sends the headers and the body of a response in two
+ * writes; with Nagle's algorithm on, the body then waits for the client's
+ * delayed ACK, about 40 ms per request on keep-alive. Run with
+ * {@code -Dsun.net.httpserver.nodelay=true} to turn it off. The property is
+ * JVM-wide and read when the first server is created, so it is left to the
+ * launcher; {@code Main --http} sets it.
+ */
+public final class FeederHttpServer {
+
+    private static final int BACKLOG = 1024;
+
+    private final PetFeeder petFeeder;
+    private final FeedingScheduler feedingScheduler;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server for a feeder and its scheduler, bound to the given
+     * address but not yet started. Port 0 picks a free port.
+     * @param petFeeder The feeder to control.
+     * @param feedingScheduler The feeder's scheduler.
+     * @param address The address to listen on, such as localhost.
+     * @throws IOException if the address cannot be bound.
+     */
+    public FeederHttpServer(PetFeeder petFeeder, FeedingScheduler feedingScheduler,
+                            InetSocketAddress address) throws IOException {
+        this.petFeeder = petFeeder;
+        this.feedingScheduler = feedingScheduler;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/plans", exchange -> handle(exchange, this::plans));
+        server.createContext("/replenish", exchange -> handle(exchange, this::replenish));
+        server.createContext("/stock", exchange -> handle(exchange, this::stock));
+        server.createContext("/dispense", exchange -> handle(exchange, this::dispense));
+        server.createContext("/schedules", exchange -> handle(exchange, this::schedules));
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving, waiting up to the given delay for requests in
+     * progress, and stops the request threads. The scheduler is left
+     * running.
+     * @param delaySeconds The longest wait for requests in progress.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the address the server listens on, with the actual port.
+     * @return InetSocketAddress
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * A response: the HTTP status and the JSON body.
+     */
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private interface Route {
+        Response handle(String method, String path, String body);
+    }
+
+    private static void handle(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String path = exchange.getRequestURI().getPath();
+            // A context matches any path it is a prefix of, such as
+            // /plansX for /plans; only the context and what is below it
+            // are routes.
+            int prefix = exchange.getHttpContext().getPath().length();
+            if (path.length() > prefix && path.charAt(prefix) != '/') {
+                response = error(404, "No such resource");
+            } else {
+                response = route.handle(exchange.getRequestMethod(), path, body);
+            }
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            response = error(500, String.valueOf(e.getMessage()));
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Response plans(String method, String path, String body) {
+        String rest = path.substring("/plans".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            switch (method) {
+                case "GET":
+                    return new Response(200, plansJson());
+                case "POST":
+                    Map<String, String> fields = parseObject(body);
+                    MealPlan.Builder plan = new MealPlan.Builder();
+                    String name = fields.get("name");
+                    if (name == null || name.isEmpty()) {
+                        throw new IllegalArgumentException("A meal plan needs a name");
+                    }
+                    plan.setName(name);
+                    setAmounts(plan, fields);
+                    if (!petFeeder.addMealPlan(plan.build())) {
+                        return error(409, "Meal plan could not be added");
+                    }
+                    return new Response(201, "{\"added\":" + quote(name) + "}");
+                default:
+                    return notAllowed();
+            }
+        }
+        int index = parseIndex(rest);
+        MealPlan existing = petFeeder.getMealPlan(index);
+        switch (method) {
+            case "GET":
+                return existing == null ? noPlan() : new Response(200, planJson(index, existing));
+            case "PUT":
+                if (existing == null) {
+                    return noPlan();
+                }
+                MealPlan.Builder plan = new MealPlan.Builder(existing);
+                setAmounts(plan, parseObject(body));
+                String edited = petFeeder.editMealPlan(index, plan.build());
+                return edited == null ? noPlan() : new Response(200, "{\"edited\":" + quote(edited) + "}");
+            case "DELETE":
+                // deleteMealPlan throws for an index outside the book.
+                String deleted = existing == null ? null : petFeeder.deleteMealPlan(index);
+                return deleted == null ? noPlan() : new Response(200, "{\"deleted\":" + quote(deleted) + "}");
+            default:
+                return notAllowed();
+        }
+    }
+
+    private Response replenish(String method, String path, String body) {
+        if (!method.equals("POST")) {
+            return notAllowed();
+        }
+        Map<String, String> fields = parseObject(body);
+        if (!petFeeder.replenishFood(amount(fields, "kibble"), amount(fields, "water"),
+                amount(fields, "wetFood"), amount(fields, "treats"))) {
+            return error(400, "Amounts must be non-negative and not too large");
+        }
+        return new Response(200, stockJson());
+    }
+
+    private Response stock(String method, String path, String body) {
+        if (!method.equals("GET")) {
+            return notAllowed();
+        }
+        return new Response(200, stockJson());
+    }
+
+    private String stockJson() {
+        FoodContainer stock = petFeeder.getFoodContainer();
+        return "{\"kibble\":" + stock.getKibble()
+                + ",\"water\":" + stock.getWater()
+                + ",\"wetFood\":" + stock.getWetFood()
+                + ",\"treats\":" + stock.getTreats()
+                + ",\"remainingEnergy\":" + petFeeder.getRemainingEnergyBudget() + "}";
+    }
+
+    private Response dispense(String method, String path, String body) {
+        if (!method.equals("POST")) {
+            return notAllowed();
+        }
+        int index = required(parseObject(body), "mealPlanIndex");
+        DispenseResult.Outcome outcome = petFeeder.dispenseWithOutcome(index);
+        int status;
+        switch (outcome) {
+            case OK:
+                status = 200;
+                break;
+            case NO_PLAN:
+                status = 404;
+                break;
+            default:
+                status = 409;
+                break;
+        }
+        return new Response(status, "{\"outcome\":\"" + outcome + "\",\"mealPlanIndex\":" + index
+                + ",\"remainingEnergy\":" + petFeeder.getRemainingEnergyBudget() + "}");
+    }
+
+    private Response schedules(String method, String path, String body) {
+        String rest = path.substring("/schedules".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            switch (method) {
+                case "GET":
+                    return new Response(200, schedulesJson());
+                case "POST":
+                    Map<String, String> fields = parseObject(body);
+                    int index = required(fields, "mealPlanIndex");
+                    long periodSeconds = longValue(fields, "periodSeconds");
+                    if (periodSeconds <= 0) {
+                        throw new IllegalArgumentException("periodSeconds must be positive");
+                    }
+                    if (petFeeder.getMealPlan(index) == null) {
+                        return noPlan();
+                    }
+                    feedingScheduler.addRecurringFeeding(index, periodSeconds);
+                    return new Response(201, schedulesJson());
+                case "DELETE":
+                    feedingScheduler.stop();
+                    return new Response(200, "[]");
+                default:
+                    return notAllowed();
+            }
+        }
+        if (!method.equals("DELETE")) {
+            return notAllowed();
+        }
+        int position = parseIndex(rest);
+        List<FeedingSchedule> active = feedingScheduler.getActiveSchedules();
+        if (position >= active.size()) {
+            return error(404, "No such schedule");
+        }
+        active.get(position).cancel();
+        return new Response(200, schedulesJson());
+    }
+
+    private String plansJson() {
+        MealPlan[] plans = petFeeder.getMealPlans();
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < plans.length; i++) {
+            if (plans[i] != null) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                json.append(planJson(i, plans[i]));
+            }
+        }
+        return json.append(']').toString();
+    }
+
+    private static String planJson(int index, MealPlan plan) {
+        return "{\"mealPlanIndex\":" + index
+                + ",\"name\":" + quote(plan.getName())
+                + ",\"kibble\":" + plan.getAmtKibble()
+                + ",\"water\":" + plan.getAmtWater()
+                + ",\"wetFood\":" + plan.getAmtWetFood()
+                + ",\"treats\":" + plan.getAmtTreats()
+                + ",\"energyCost\":" + plan.getEnergyCost() + "}";
+    }
+
+    private String schedulesJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (FeedingSchedule schedule : feedingScheduler.getActiveSchedules()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"mealPlanIndex\":").append(schedule.getMealPlanIndex())
+                    .append(",\"period\":").append(quote(schedule.getPeriod().toString())).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private static void setAmounts(MealPlan.Builder plan, Map<String, String> fields) {
+        if (!plan.setAmtKibble(amount(fields, "kibble"))
+                || !plan.setAmtWater(amount(fields, "water"))
+                || !plan.setAmtWetFood(amount(fields, "wetFood"))
+                || !plan.setAmtTreats(amount(fields, "treats"))) {
+            throw new IllegalArgumentException("Amounts must be non-negative and not too large");
+        }
+    }
+
+    private static int amount(Map<String, String> fields, String name) {
+        return integer(fields, name, 0);
+    }
+
+    private static int integer(Map<String, String> fields, String name, int missing) {
+        String value = fields.get(name);
+        if (value == null) {
+            return missing;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static int required(Map<String, String> fields, String name) {
+        if (fields.get(name) == null) {
+            throw new IllegalArgumentException(name + " is missing");
+        }
+        return integer(fields, name, 0);
+    }
+
+    private static long longValue(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is missing");
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer");
+        }
+    }
+
+    private static int parseIndex(String rest) {
+        try {
+            int index = Integer.parseInt(rest.substring(1));
+            if (index < 0) {
+                throw new IllegalArgumentException("Index must not be negative");
+            }
+            return index;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an index: " + rest.substring(1));
+        }
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers,
+     * booleans or null into their text; an empty body is an empty object.
+     */
+    static Map<String, String> parseObject(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] at = {skipSpace(json, 0)};
+        if (at[0] == json.length()) {
+            return fields;
+        }
+        expect(json, at, '{');
+        if (peek(json, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String name = readString(json, at);
+                expect(json, at, ':');
+                String value;
+                if (peek(json, at) == '"') {
+                    value = readString(json, at);
+                } else {
+                    int start = at[0];
+                    while (at[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(at[0])) < 0) {
+                        at[0]++;
+                    }
+                    value = json.substring(start, at[0]);
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("Malformed JSON: missing value of " + name);
+                    }
+                    if (value.equals("null")) {
+                        value = null;
+                    }
+                }
+                fields.put(name, value);
+                char next = peek(json, at);
+                at[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Malformed JSON: expected , or }");
+                }
+            }
+        }
+        if (skipSpace(json, at[0]) != json.length()) {
+            throw new IllegalArgumentException("Malformed JSON: text after the object");
+        }
+        return fields;
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static char peek(String json, int[] at) {
+        at[0] = skipSpace(json, at[0]);
+        if (at[0] == json.length()) {
+            throw new IllegalArgumentException("Malformed JSON: unexpected end");
+        }
+        return json.charAt(at[0]);
+    }
+
+    private static void expect(String json, int[] at, char c) {
+        if (peek(json, at) != c) {
+            throw new IllegalArgumentException("Malformed JSON: expected " + c);
+        }
+        at[0]++;
+    }
+
+    private static String readString(String json, int[] at) {
+        expect(json, at, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (at[0] == json.length()) {
+                throw new IllegalArgumentException("Malformed JSON: unterminated string");
+            }
+            char c = json.charAt(at[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c == '\\') {
+                if (at[0] == json.length()) {
+                    throw new IllegalArgumentException("Malformed JSON: unterminated string");
+                }
+                char escaped = json.charAt(at[0]++);
+                switch (escaped) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (at[0] + 4 > json.length()) {
+                            throw new IllegalArgumentException("Malformed JSON: bad escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(at[0], at[0] + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Malformed JSON: bad escape");
+                        }
+                        at[0] += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                        break;
+                }
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2);
+        FeederEvent.appendString(json, value);
+        return json.toString();
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "{\"error\":" + quote(message) + "}");
+    }
+
+    private static Response noPlan() {
+        return error(404, "No such meal plan");
+    }
+
+    private static Response notAllowed() {
+        return error(405, "Method not allowed");
+    }
+}
@@ -0,0 +1,637 @@
+package petfeeder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of the replenish, dispense and meal plan events of one
+ * {@link PetFeeder}, so that its stock, energy use and meal plans survive a
+ * restart.
+ * <p>
+ * Records are appended to a memory-mapped file: an append is a few puts into
+ * the page cache and is not lost if the process dies. Surviving a power loss
+ * also needs the pages forced to disk. With sync on commit, a caller waits in
+ * {@link #commit(long)} until its record is forced; callers that commit at the
+ * same time share one force (group commit) instead of paying one each.
+ * <p>
+ * Locks are always taken in the order feeder monitor, journal monitor,
+ * force lock. A committer holds only the force lock, so appends go on
+ * while a force runs.
+ * <p>
+ * When the file is full the log is compacted: the feeder's current state,
+ * including its pending meal reservations, is written as a single checkpoint
+ * record into a new file, which replaces the old one. If that fails, the
+ * old file is grown instead and appends go on there.
+ * <p>
+ * Every record is {@code int length, int crc, byte type, payload}. Replay
+ * stops at the first record that is empty or fails its checksum, so a record
+ * torn by a crash is ignored.
+ */
+public class FeederJournal implements Closeable {
+
+    /**
+     * Default size of the mapped file.
+     */
+    public static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+    private static final int MAGIC = 0x50464A31; // "PFJ1"
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte CHECKPOINT = 1;
+    private static final byte REPLENISH = 2;
+    private static final byte DISPENSE = 3;
+    private static final byte ADD_PLAN = 4;
+    private static final byte DELETE_PLAN = 5;
+    private static final byte EDIT_PLAN = 6;
+    private static final byte RELEASE = 7;
+    private static final byte RESERVE = 8;
+    private static final byte COMMIT_RESERVATION = 9;
+
+    private final Path path;
+    private final boolean syncOnCommit;
+    private final CRC32C crc = new CRC32C();
+    private final Object forceLock = new Object();
+    private FileChannel channel;
+    /**
+     * The mapped file. Replaced only while holding both the journal
+     * monitor and the force lock, so a committer holding the force lock
+     * can read it without entering the journal monitor.
+     */
+    private volatile MappedByteBuffer buffer;
+    private PetFeeder owner;
+    /**
+     * End of the last record. Written under the journal monitor.
+     */
+    private volatile int written;
+    /**
+     * Everything before this offset has been forced to disk.
+     */
+    private volatile int durable;
+    /**
+     * Set when a change could not be journaled. Until a compaction writes
+     * the whole state again, no record is appended after the gap.
+     */
+    private IOException failure;
+
+    /**
+     * Opens or creates a journal with the default capacity that forces
+     * records to disk on commit.
+     * @param path The journal file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public FeederJournal(Path path) throws IOException {
+        this(path, DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * Opens or creates a journal.
+     * @param path The journal file.
+     * @param capacity The size of the mapped file in bytes; an existing larger file keeps its size.
+     * @param syncOnCommit True to force records to disk on commit, false to
+     *                     leave them in the page cache (lost only on power loss).
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public FeederJournal(Path path, int capacity, boolean syncOnCommit) throws IOException {
+        if (capacity < HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Journal capacity is too small: " + capacity);
+        }
+        this.path = path;
+        this.syncOnCommit = syncOnCommit;
+        checkHeader(path);
+        map(capacity);
+        buffer.putInt(0, MAGIC);
+        written = scan(null);
+        durable = written;
+        // Clear a torn record at the end so later appends cannot form a
+        // valid-looking record with its leftovers.
+        if (written + 4 <= buffer.capacity() && buffer.getInt(written) != 0) {
+            for (int i = written; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Rejects an existing non-empty file that does not start with the
+     * journal magic, before mapping can grow it.
+     */
+    private static void checkHeader(Path path) throws IOException {
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return;
+        }
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // Read the whole magic number.
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a pet feeder journal: " + path);
+            }
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(capacity, channel.size());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Journal is too large: " + path);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * Returns the number of bytes in use, including the header.
+     * @return int
+     */
+    public int size() {
+        return written;
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     * @return int
+     */
+    public synchronized int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Applies every record in the journal to a new feeder that is not
+     * journaled. Called from PetFeeder.open.
+     */
+    synchronized void replay(PetFeeder feeder) {
+        checkUnowned();
+        scan(feeder);
+    }
+
+    /**
+     * Makes the feeder the owner of the journal, whose state it logs and
+     * compacts from then on. Called from PetFeeder.open after replay.
+     */
+    synchronized void attach(PetFeeder feeder) {
+        checkUnowned();
+        owner = feeder;
+    }
+
+    private void checkUnowned() {
+        if (owner != null) {
+            throw new IllegalStateException("Journal already belongs to a feeder");
+        }
+    }
+
+    /**
+     * Logs a replenish. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logReplenish(int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        if (!reserve(17) && compactOrGrow(17)) {
+            return written;
+        }
+        int start = begin(REPLENISH);
+        buffer.putInt(amtKibble).putInt(amtWater).putInt(amtWetFood).putInt(amtTreats);
+        return end(start);
+    }
+
+    /**
+     * Logs a dispensed meal. The record holds the meal's ingredients, not its
+     * index, so a later edit of the plan does not change what replay deducts.
+     * Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logDispense(MealPlan meal) {
+        if (!reserve(1 + planSize(meal)) && compactOrGrow(1 + planSize(meal))) {
+            return written;
+        }
+        int start = begin(DISPENSE);
+        putPlan(meal);
+        return end(start);
+    }
+
+    /**
+     * Logs a meal reservation, which takes its ingredients and energy until
+     * it is committed or released. The deadline lets replay hold a pending
+     * reservation for as long as it would have been held without a restart.
+     * Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logReserve(long id, long deadlineMillis, int mealPlanIndex, MealPlan meal) {
+        if (!reserve(21 + planSize(meal)) && compactOrGrow(21 + planSize(meal))) {
+            return written;
+        }
+        int start = begin(RESERVE);
+        buffer.putLong(id).putLong(deadlineMillis).putInt(mealPlanIndex);
+        putPlan(meal);
+        return end(start);
+    }
+
+    /**
+     * Logs a committed meal reservation. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logCommitReservation(long id) {
+        if (!reserve(9) && compactOrGrow(9)) {
+            return written;
+        }
+        int start = begin(COMMIT_RESERVATION);
+        buffer.putLong(id);
+        return end(start);
+    }
+
+    /**
+     * Logs a meal reservation that was aborted or expired, which gives its
+     * ingredients and energy back. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logRelease(long id) {
+        if (!reserve(9) && compactOrGrow(9)) {
+            return written;
+        }
+        int start = begin(RELEASE);
+        buffer.putLong(id);
+        return end(start);
+    }
+
+    /**
+     * Logs an added meal plan. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logAddMealPlan(MealPlan plan) {
+        if (!reserve(1 + planSize(plan)) && compactOrGrow(1 + planSize(plan))) {
+            return written;
+        }
+        int start = begin(ADD_PLAN);
+        putPlan(plan);
+        return end(start);
+    }
+
+    /**
+     * Logs a deleted meal plan. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logDeleteMealPlan(int index) {
+        if (!reserve(5) && compactOrGrow(5)) {
+            return written;
+        }
+        int start = begin(DELETE_PLAN);
+        buffer.putInt(index);
+        return end(start);
+    }
+
+    /**
+     * Logs an edited meal plan. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     */
+    synchronized long logEditMealPlan(int index, MealPlan plan) {
+        if (!reserve(5 + planSize(plan)) && compactOrGrow(5 + planSize(plan))) {
+            return written;
+        }
+        int start = begin(EDIT_PLAN);
+        buffer.putInt(index);
+        putPlan(plan);
+        return end(start);
+    }
+
+    /**
+     * Waits until every record up to the given position is on disk. Does
+     * nothing without sync on commit. Must not be called while holding the
+     * owner's monitor. Concurrent callers share one force.
+     * @param position A position returned by one of the log methods.
+     */
+    public void commit(long position) {
+        if (!syncOnCommit || position <= durable) {
+            return;
+        }
+        synchronized (forceLock) {
+            if (position <= durable) {
+                return;
+            }
+            int from = durable;
+            // Compaction swaps the buffer only under the force lock, so
+            // the buffer read here is the one written was advanced in.
+            int to = written;
+            // Covers this caller and everyone who appended while the
+            // previous force was running.
+            buffer.force(from, to - from);
+            durable = to;
+        }
+    }
+
+    /**
+     * Rewrites the journal as one checkpoint of the owner's current state.
+     * The checkpoint is written to a new file, and the journal switches to
+     * it only once it has replaced the old one; if that fails the journal
+     * goes on with the old file. Must be called while holding the owner's monitor.
+     * @return long The position to pass to commit.
+     * @throws UncheckedIOException if the new file cannot be written or moved into place.
+     */
+    synchronized long compact() {
+        if (owner == null) {
+            throw new IllegalStateException("Journal has no feeder to compact");
+        }
+        synchronized (forceLock) {
+            MealPlan[] plans = owner.sharedMealPlans();
+            int[] freeSlots = owner.getFreeMealPlanSlots();
+            Collection<MealReservation> reservations = owner.getPendingReservations();
+            int checkpointSize = 1 + 24 + 4 + 4 + 4 * freeSlots.length + 4;
+            for (MealPlan plan : plans) {
+                checkpointSize += 1 + (plan == null ? 0 : planSize(plan));
+            }
+            for (MealReservation reservation : reservations) {
+                checkpointSize += 20 + planSize(reservation.getMealPlan());
+            }
+            int capacity = buffer.capacity();
+            // Leave at least half of the new file for events.
+            while (HEADER_SIZE + RECORD_HEADER_SIZE + checkpointSize > capacity / 2) {
+                capacity *= 2;
+            }
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            FileChannel out = null;
+            try {
+                Files.deleteIfExists(compacted);
+                out = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer checkpoint = out.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                checkpoint.putInt(0, MAGIC);
+                checkpoint.position(HEADER_SIZE + RECORD_HEADER_SIZE);
+                checkpoint.put(CHECKPOINT);
+                FoodContainer stock = owner.getFoodContainer();
+                checkpoint.putInt(stock.getKibble()).putInt(stock.getWater())
+                        .putInt(stock.getWetFood()).putInt(stock.getTreats());
+                checkpoint.putLong(owner.getEnergyConsumed());
+                checkpoint.putInt(plans.length);
+                for (MealPlan plan : plans) {
+                    if (plan == null) {
+                        checkpoint.put((byte) 0);
+                    } else {
+                        checkpoint.put((byte) 1);
+                        putPlan(checkpoint, plan);
+                    }
+                }
+                // Replayed adds must fill the empty slots in the same order.
+                checkpoint.putInt(freeSlots.length);
+                for (int slot : freeSlots) {
+                    checkpoint.putInt(slot);
+                }
+                // Their stock and energy are already taken above.
+                checkpoint.putInt(reservations.size());
+                for (MealReservation reservation : reservations) {
+                    checkpoint.putLong(reservation.getId()).putLong(reservation.getDeadlineMillis())
+                            .putInt(reservation.getMealPlanIndex());
+                    putPlan(checkpoint, reservation.getMealPlan());
+                }
+                int end = seal(checkpoint, HEADER_SIZE);
+                checkpoint.force();
+                // The channel keeps pointing at the file after the move, so
+                // nothing can fail between the move and the switch below.
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                FileChannel old = channel;
+                channel = out;
+                out = null;
+                buffer = checkpoint;
+                written = end;
+                durable = end;
+                failure = null;
+                closeReplaced(old);
+                return end;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not compact journal " + path, e);
+            } finally {
+                if (out != null) {
+                    discard(out, compacted);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes room for a record that does not fit. Returns true if the
+     * journal was compacted, whose checkpoint already holds the caller's
+     * change, and false if the file was grown instead because compaction
+     * failed, in which case the caller appends its record. If growing fails
+     * too, the change is missing from the journal, so it takes no more
+     * records until a compaction writes the whole state again.
+     */
+    private boolean compactOrGrow(int payloadSize) {
+        try {
+            compact();
+            return true;
+        } catch (UncheckedIOException e) {
+            if (failure == null) {
+                try {
+                    grow(written + RECORD_HEADER_SIZE + payloadSize);
+                    return false;
+                } catch (IOException g) {
+                    e.addSuppressed(g);
+                }
+                failure = e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the journal file again with room for at least the given size,
+     * which extends the file.
+     */
+    private void grow(int size) throws IOException {
+        int capacity = buffer.capacity();
+        while (capacity < size) {
+            if (capacity > Integer.MAX_VALUE / 2) {
+                throw new IOException("Journal is too large: " + path);
+            }
+            capacity *= 2;
+        }
+        synchronized (forceLock) {
+            MappedByteBuffer grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            // Force what the old mapping holds before committers move to the new one.
+            buffer.force(durable, written - durable);
+            durable = written;
+            buffer = grown;
+        }
+    }
+
+    private static void closeReplaced(FileChannel old) {
+        try {
+            old.close();
+        } catch (IOException e) {
+            // The new file is already in use; the old one only leaks its descriptor.
+        }
+    }
+
+    private static void discard(FileChannel out, Path compacted) {
+        try {
+            out.close();
+            Files.deleteIfExists(compacted);
+        } catch (IOException e) {
+            // The next compaction deletes the leftover file before it starts.
+        }
+    }
+
+    /**
+     * Forces the journal to disk and closes it.
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private boolean reserve(int payloadSize) {
+        return failure == null && written + RECORD_HEADER_SIZE + payloadSize <= buffer.capacity();
+    }
+
+    private int begin(byte type) {
+        int start = written;
+        buffer.position(start + RECORD_HEADER_SIZE);
+        buffer.put(type);
+        return start;
+    }
+
+    /**
+     * Fills in the length and checksum of the record started at start.
+     * The length is written last, so a record is not visible to replay
+     * until it is complete.
+     */
+    private int end(int start) {
+        written = seal(buffer, start);
+        return written;
+    }
+
+    private int seal(ByteBuffer to, int start) {
+        int length = to.position() - start - RECORD_HEADER_SIZE;
+        crc.reset();
+        crc.update(to.slice(start + RECORD_HEADER_SIZE, length));
+        to.putInt(start + 4, (int) crc.getValue());
+        to.putInt(start, length);
+        return start + RECORD_HEADER_SIZE + length;
+    }
+
+    private static int planSize(MealPlan plan) {
+        return 2 + plan.getName().getBytes(StandardCharsets.UTF_8).length + 8;
+    }
+
+    private void putPlan(MealPlan plan) {
+        putPlan(buffer, plan);
+    }
+
+    private static void putPlan(ByteBuffer to, MealPlan plan) {
+        byte[] name = plan.getName().getBytes(StandardCharsets.UTF_8);
+        to.putShort((short) name.length);
+        to.put(name);
+        to.putLong(plan.getIngredients());
+    }
+
+    private MealPlan getPlan() {
+        byte[] name = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(name);
+        long ingredients = buffer.getLong();
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(new String(name, StandardCharsets.UTF_8));
+        plan.setAmtKibble(IngredientVector.kibble(ingredients));
+        plan.setAmtWater(IngredientVector.water(ingredients));
+        plan.setAmtWetFood(IngredientVector.wetFood(ingredients));
+        plan.setAmtTreats(IngredientVector.treats(ingredients));
+        return plan.build();
+    }
+
+    /**
+     * Walks the valid records, applying them to the feeder unless it is
+     * null, and returns the offset after the last one.
+     */
+    private int scan(PetFeeder feeder) {
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + RECORD_HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            if (feeder != null) {
+                buffer.position(position + RECORD_HEADER_SIZE);
+                apply(feeder, buffer.get());
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private void apply(PetFeeder feeder, byte type) {
+        switch (type) {
+            case CHECKPOINT: {
+                int kibble = buffer.getInt();
+                int water = buffer.getInt();
+                int wetFood = buffer.getInt();
+                int treats = buffer.getInt();
+                long energyConsumed = buffer.getLong();
+                MealPlan[] plans = new MealPlan[buffer.getInt()];
+                for (int i = 0; i < plans.length; i++) {
+                    plans[i] = buffer.get() == 0 ? null : getPlan();
+                }
+                int[] freeSlots = new int[buffer.getInt()];
+                for (int i = 0; i < freeSlots.length; i++) {
+                    freeSlots[i] = buffer.getInt();
+                }
+                feeder.restoreState(kibble, water, wetFood, treats, (int) energyConsumed, plans, freeSlots);
+                int reservations = buffer.getInt();
+                for (int i = 0; i < reservations; i++) {
+                    long id = buffer.getLong();
+                    long deadlineMillis = buffer.getLong();
+                    int index = buffer.getInt();
+                    feeder.restorePendingReservation(id, deadlineMillis, index, getPlan());
+                }
+                break;
+            }
+            case REPLENISH:
+                feeder.replenishFood(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                break;
+            case DISPENSE:
+                feeder.restoreDispense(getPlan());
+                break;
+            case RESERVE: {
+                long id = buffer.getLong();
+                long deadlineMillis = buffer.getLong();
+                int index = buffer.getInt();
+                feeder.restoreReservation(id, deadlineMillis, index, getPlan());
+                break;
+            }
+            case COMMIT_RESERVATION:
+                feeder.restoreCommitReservation(buffer.getLong());
+                break;
+            case RELEASE:
+                feeder.restoreRelease(buffer.getLong());
+                break;
+            case ADD_PLAN:
+                feeder.addMealPlan(getPlan());
+                break;
+            case DELETE_PLAN:
+                feeder.deleteMealPlan(buffer.getInt());
+                break;
+            case EDIT_PLAN: {
+                int index = buffer.getInt();
+                feeder.editMealPlan(index, getPlan());
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type + " in " + path);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package petfeeder;
+
+/**
+ * Latency histograms of a feeder, or of several feeders that share one
+ * instance. Attach it with {@link PetFeeder#setMetrics}; a feeder without
+ * metrics records nothing and does not read the clock.
+ * <p>
+ * All values are in nanoseconds.
+ */
+public final class FeederMetrics {
+
+    private final LatencyHistogram dispenseLatency = new LatencyHistogram();
+    private final LatencyHistogram replenishLatency = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram tickLatency = new LatencyHistogram();
+
+    /**
+     * Returns the time of a whole dispenseMeal call, from the request to
+     * the end of actuation, including dispenses that failed.
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getDispenseLatency() {
+        return dispenseLatency;
+    }
+
+    /**
+     * Returns the time of a whole replenishFood call.
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getReplenishLatency() {
+        return replenishLatency;
+    }
+
+    /**
+     * Returns the time the dispenses, batches and replenishes of journaled
+     * feeders waited to enter the feeder monitor. Feeders without a journal
+     * do not record it, so their timed calls read the clock only twice.
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Returns the time of one scheduled feeding of a FeedingScheduler.
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getTickLatency() {
+        return tickLatency;
+    }
+
+    /**
+     * Clears every histogram.
+     */
+    public void reset() {
+        dispenseLatency.reset();
+        replenishLatency.reset();
+        lockWait.reset();
+        tickLatency.reset();
+    }
+
+    /**
+     * Returns one line per histogram with its count and percentiles.
+     * @return String
+     */
+    public String toString() {
+        return "dispense: " + dispenseLatency.snapshot() + "\n"
+                + "replenish: " + replenishLatency.snapshot() + "\n"
+                + "lock wait: " + lockWait.snapshot() + "\n"
+                + "tick: " + tickLatency.snapshot();
+    }
+}
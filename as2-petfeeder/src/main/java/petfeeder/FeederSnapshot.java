@@ -0,0 +1,315 @@
+package petfeeder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Point-in-time copy of a {@link FeederFleet}: the meal plans, food stock and
+ * energy use of every feeder and the active schedules of its
+ * {@link FeedingScheduler}, saved in a compact binary file.
+ * <p>
+ * {@link #capture} copies each feeder's four stock amounts in one consistent
+ * read of its food container. A journaled feeder changes its state only
+ * under its monitor, which capture holds for the copy, so its stock,
+ * energy use and meal plans match; other feeders dispense without the
+ * monitor, so their energy use may be read one dispense apart from their
+ * stock. Meal plans are immutable and are shared, not copied. Encoding and
+ * writing happen in {@link #writeTo}, which can run on any thread. Plans that
+ * appear on many feeders are written once in a plan table and referred to
+ * by number. {@link #readFrom} reads the whole file with one bulk read.
+ * <p>
+ * Restored schedules start a fresh period; the time left until their next
+ * feeding is not saved.
+ */
+public final class FeederSnapshot {
+
+    private static final int MAGIC = 0x50465331; // "PFS1"
+    /**
+     * Version 2 saves schedule periods in nanoseconds.
+     */
+    private static final int VERSION = 2;
+
+    private final MealPlan[] planTable;
+    private final int[] ids;
+    /**
+     * Kibble, water, wet food and treats of feeder i at 4 * i.
+     */
+    private final int[] stock;
+    private final int[] energyConsumed;
+    /**
+     * Plan table index of every meal plan slot, -1 for an empty slot.
+     */
+    private final int[][] slots;
+    /**
+     * Plan index and period in nanoseconds of every schedule, in pairs; the
+     * first pair is the schedule started by scheduleRecurringFeeding, if any.
+     */
+    private final long[][] schedules;
+    private final boolean[] hasCurrentSchedule;
+
+    private FeederSnapshot(MealPlan[] planTable, int[] ids, int[] stock, int[] energyConsumed,
+                           int[][] slots, long[][] schedules, boolean[] hasCurrentSchedule) {
+        this.planTable = planTable;
+        this.ids = ids;
+        this.stock = stock;
+        this.energyConsumed = energyConsumed;
+        this.slots = slots;
+        this.schedules = schedules;
+        this.hasCurrentSchedule = hasCurrentSchedule;
+    }
+
+    /**
+     * Copies the state of every feeder in the fleet.
+     * @param fleet The fleet to capture.
+     * @param schedulers Returns the scheduler of a feeder id, or null if it has none.
+     * @return FeederSnapshot
+     */
+    public static FeederSnapshot capture(FeederFleet fleet, IntFunction<FeedingScheduler> schedulers) {
+        Map<MealPlan, Integer> planNumbers = new HashMap<>();
+        List<MealPlan> planTable = new ArrayList<>();
+        int capacity = fleet.size();
+        int[] ids = new int[capacity];
+        int[] stock = new int[4 * capacity];
+        int[] energy = new int[capacity];
+        int[][] slots = new int[capacity][];
+        long[][] schedules = new long[capacity][];
+        boolean[] hasCurrent = new boolean[capacity];
+        int[] count = new int[1];
+        long[] noSchedules = new long[0];
+
+        fleet.forEach((feeder, id) -> {
+            int i = count[0];
+            if (i == ids.length) {
+                // The fleet grew while capturing; the snapshot holds as
+                // many feeders as the fleet had when it started.
+                return;
+            }
+            MealPlan[] plans;
+            synchronized (feeder) {
+                feeder.getFoodContainer().copyStock(stock, 4 * i);
+                energy[i] = feeder.getEnergyConsumed();
+                plans = feeder.sharedMealPlans();
+            }
+            int[] refs = new int[plans.length];
+            for (int slot = 0; slot < plans.length; slot++) {
+                MealPlan plan = plans[slot];
+                refs[slot] = plan == null ? -1 : planNumbers.computeIfAbsent(plan, p -> {
+                    planTable.add(p);
+                    return planTable.size() - 1;
+                });
+            }
+            ids[i] = id;
+            slots[i] = refs;
+            schedules[i] = noSchedules;
+            FeedingScheduler scheduler = schedulers == null ? null : schedulers.apply(id);
+            if (scheduler != null) {
+                FeedingSchedule current = scheduler.getCurrentSchedule();
+                List<FeedingSchedule> active = scheduler.getActiveSchedules();
+                long[] pairs = new long[2 * active.size()];
+                int next = 0;
+                if (current != null && active.remove(current)) {
+                    pairs[next++] = current.getMealPlanIndex();
+                    pairs[next++] = current.getPeriodNanos();
+                    hasCurrent[i] = true;
+                }
+                for (FeedingSchedule schedule : active) {
+                    pairs[next++] = schedule.getMealPlanIndex();
+                    pairs[next++] = schedule.getPeriodNanos();
+                }
+                schedules[i] = pairs;
+            }
+            count[0]++;
+        });
+
+        int n = count[0];
+        return new FeederSnapshot(planTable.toArray(new MealPlan[0]), Arrays.copyOf(ids, n),
+                Arrays.copyOf(stock, 4 * n), Arrays.copyOf(energy, n), Arrays.copyOf(slots, n),
+                Arrays.copyOf(schedules, n), Arrays.copyOf(hasCurrent, n));
+    }
+
+    /**
+     * Returns the number of feeders in the snapshot.
+     * @return int
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Writes the snapshot to a file. The file is replaced atomically, so a
+     * crash while writing leaves the previous snapshot in place.
+     * @param file The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path file) throws IOException {
+        byte[][] names = new byte[planTable.length][];
+        int size = 16;
+        for (int p = 0; p < planTable.length; p++) {
+            names[p] = planTable[p].getName().getBytes(StandardCharsets.UTF_8);
+            size += 2 + names[p].length + 8;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            size += 4 + 16 + 4 + 4 + 4 * slots[i].length + 4 + 1 + 12 * (schedules[i].length / 2);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.putInt(planTable.length);
+        for (int p = 0; p < planTable.length; p++) {
+            out.putShort((short) names[p].length).put(names[p]).putLong(planTable[p].getIngredients());
+        }
+        out.putInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            out.putInt(ids[i]);
+            out.putInt(stock[4 * i]).putInt(stock[4 * i + 1]).putInt(stock[4 * i + 2]).putInt(stock[4 * i + 3]);
+            out.putInt(energyConsumed[i]);
+            out.putInt(slots[i].length);
+            for (int ref : slots[i]) {
+                out.putInt(ref);
+            }
+            long[] pairs = schedules[i];
+            out.putInt(pairs.length / 2);
+            out.put((byte) (hasCurrentSchedule[i] ? 1 : 0));
+            for (int s = 0; s < pairs.length; s += 2) {
+                out.putInt((int) pairs[s]).putLong(pairs[s + 1]);
+            }
+        }
+        out.flip();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by writeTo.
+     * @param file The file to read.
+     * @return FeederSnapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static FeederSnapshot readFrom(Path file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("Not a pet feeder snapshot: " + file);
+            }
+            MealPlan[] planTable = new MealPlan[in.getInt()];
+            for (int p = 0; p < planTable.length; p++) {
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                planTable[p] = toPlan(new String(name, StandardCharsets.UTF_8), in.getLong());
+            }
+            int n = in.getInt();
+            int[] ids = new int[n];
+            int[] stock = new int[4 * n];
+            int[] energy = new int[n];
+            int[][] slots = new int[n][];
+            long[][] schedules = new long[n][];
+            boolean[] hasCurrent = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = in.getInt();
+                for (int lane = 0; lane < 4; lane++) {
+                    stock[4 * i + lane] = in.getInt();
+                }
+                energy[i] = in.getInt();
+                int[] refs = new int[in.getInt()];
+                for (int slot = 0; slot < refs.length; slot++) {
+                    refs[slot] = in.getInt();
+                    if (refs[slot] >= planTable.length) {
+                        throw new IOException("Corrupt pet feeder snapshot: " + file);
+                    }
+                }
+                slots[i] = refs;
+                long[] pairs = new long[2 * in.getInt()];
+                hasCurrent[i] = in.get() != 0;
+                for (int s = 0; s < pairs.length; s += 2) {
+                    pairs[s] = in.getInt();
+                    pairs[s + 1] = in.getLong();
+                }
+                schedules[i] = pairs;
+            }
+            return new FeederSnapshot(planTable, ids, stock, energy, slots, schedules, hasCurrent);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt pet feeder snapshot: " + file, e);
+        }
+    }
+
+    private static MealPlan toPlan(String name, long ingredients) {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(name);
+        plan.setAmtKibble(IngredientVector.kibble(ingredients));
+        plan.setAmtWater(IngredientVector.water(ingredients));
+        plan.setAmtWetFood(IngredientVector.wetFood(ingredients));
+        plan.setAmtTreats(IngredientVector.treats(ingredients));
+        return plan.build();
+    }
+
+    /**
+     * Adds every feeder of the snapshot to the fleet under its saved id,
+     * with food containers from the fleet's container factory. The fleet
+     * should be empty.
+     * @param fleet The fleet to restore into.
+     */
+    public void restoreInto(FeederFleet fleet) {
+        for (int i = 0; i < ids.length; i++) {
+            PetFeeder feeder = new PetFeeder(fleet.newContainer());
+            int[] refs = slots[i];
+            MealPlan[] plans = new MealPlan[refs.length];
+            for (int slot = 0; slot < refs.length; slot++) {
+                plans[slot] = refs[slot] < 0 ? null : planTable[refs[slot]];
+            }
+            feeder.restoreState(stock[4 * i], stock[4 * i + 1], stock[4 * i + 2], stock[4 * i + 3],
+                    energyConsumed[i], plans, null);
+            fleet.putFeeder(ids[i], feeder);
+        }
+    }
+
+    /**
+     * Starts the saved schedules again. A scheduler is created with the
+     * factory for every restored feeder that had schedules.
+     * @param fleet The fleet the snapshot was restored into.
+     * @param schedulerFactory Creates the scheduler of a feeder.
+     * @return Map The new schedulers by feeder id.
+     */
+    public Map<Integer, FeedingScheduler> restoreSchedules(FeederFleet fleet,
+                                                           Function<PetFeeder, FeedingScheduler> schedulerFactory) {
+        Map<Integer, FeedingScheduler> restored = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            long[] pairs = schedules[i];
+            PetFeeder feeder = fleet.getFeeder(ids[i]);
+            if (pairs.length == 0 || feeder == null) {
+                continue;
+            }
+            FeedingScheduler scheduler = schedulerFactory.apply(feeder);
+            for (int s = 0; s < pairs.length; s += 2) {
+                if (s == 0 && hasCurrentSchedule[i]) {
+                    scheduler.scheduleRecurringFeeding((int) pairs[s], Duration.ofNanos(pairs[s + 1]));
+                } else {
+                    scheduler.addRecurringFeeding((int) pairs[s], Duration.ofNanos(pairs[s + 1]));
+                }
+            }
+            restored.put(ids[i], scheduler);
+        }
+        return restored;
+    }
+}
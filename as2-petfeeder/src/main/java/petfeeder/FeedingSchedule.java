@@ -0,0 +1,76 @@
+package petfeeder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle of one recurring feeding started by a {@link FeedingScheduler}.
+ */
+public final class FeedingSchedule {
+
+    private final FeedingScheduler scheduler;
+    private final int mealPlanIndex;
+    private final long periodNanos;
+    private final FeederClock.Timer timer;
+
+    FeedingSchedule(FeedingScheduler scheduler, int mealPlanIndex, long periodNanos, FeederClock.Timer timer) {
+        this.scheduler = scheduler;
+        this.mealPlanIndex = mealPlanIndex;
+        this.periodNanos = periodNanos;
+        this.timer = timer;
+    }
+
+    /**
+     * Returns the index of the meal plan this schedule dispenses.
+     * @return int
+     */
+    public int getMealPlanIndex() {
+        return mealPlanIndex;
+    }
+
+    /**
+     * Returns the interval in whole seconds between feedings; 0 for a
+     * sub-second period.
+     * @return long
+     */
+    public long getPeriodSeconds() {
+        return TimeUnit.NANOSECONDS.toSeconds(periodNanos);
+    }
+
+    /**
+     * Returns the interval between feedings.
+     * @return Duration
+     */
+    public Duration getPeriod() {
+        return Duration.ofNanos(periodNanos);
+    }
+
+    /**
+     * Returns the interval in nanoseconds between feedings.
+     */
+    long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * Returns true if the schedule has not been cancelled.
+     * @return boolean
+     */
+    public boolean isActive() {
+        return timer.isActive();
+    }
+
+    /**
+     * Cancels this schedule. A feeding that is already running is not interrupted.
+     */
+    public void cancel() {
+        scheduler.cancel(this);
+    }
+
+    /**
+     * Cancels the underlying task without touching the scheduler's bookkeeping.
+     */
+    void cancelTask() {
+        timer.cancel();
+    }
+}
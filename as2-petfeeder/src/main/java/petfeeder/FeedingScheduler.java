@@ -1,66 +1,312 @@
 package petfeeder;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Schedules recurring automatic feedings while the program is running.
+ * <p>
+ * Schedules run on a {@link FeederClock}. By default every scheduler owns a
+ * {@link SystemClock} with a thread of its own. Schedulers for a fleet of
+ * feeders should instead share one {@link TimingWheel}, which runs any
+ * number of schedules on a small fixed set of threads, and tests can pass a
+ * {@link ManualClock} to run hours of schedules without waiting. Periods
+ * may be shorter than a second.
+ * <p>
+ * In {@link ExecutionMode#VIRTUAL_THREADS} mode every dispense, scheduled or
+ * started with dispenseNow, runs on a virtual thread of its own, so a feeder
+ * whose actuator blocks for a long time does not hold a platform thread.
+ * <p>
+ * The outcome of every scheduled feeding is published to an {@link EventLog}
+ * (by default the shared console log) rather than printed on the
+ * scheduling thread.
+ * <p>
+ * {@link #getForecast()} tells how long the feeder's stock and energy
+ * budget last against the active schedules.
  */
 public class FeedingScheduler {
 
+    /**
+     * Where dispenses run.
+     */
+    public enum ExecutionMode {
+        /**
+         * Dispenses run on the thread of the scheduler or timing wheel.
+         */
+        PLATFORM_THREADS,
+        /**
+         * Every dispense runs on its own virtual thread.
+         */
+        VIRTUAL_THREADS
+    }
+
     private final PetFeeder petFeeder;
-    private final ScheduledExecutorService executor;
-    private ScheduledFuture<?> currentTask;
+    private final FeederClock clock;
+    /**
+     * The clock this scheduler created and shuts down, or null if the
+     * clock is shared.
+     */
+    private final SystemClock ownClock;
+    /**
+     * Virtual-thread-per-task executor, or null in platform thread mode.
+     */
+    private final ExecutorService dispenser;
+    private final Set<FeedingSchedule> schedules = new LinkedHashSet<>();
+    private FeedingSchedule currentSchedule;
+    private volatile EventLog eventLog = EventLog.console();
+    /**
+     * Depletion forecast, created on first use.
+     */
+    private StockForecast forecast;
 
     /**
      * Creates a feeding scheduler bound to a specific PetFeeder.
      * @param petFeeder The PetFeeder instance to use for dispensing meals.
      */
     public FeedingScheduler(PetFeeder petFeeder) {
+        this(petFeeder, ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Creates a feeding scheduler bound to a specific PetFeeder.
+     * @param petFeeder The PetFeeder instance to use for dispensing meals.
+     * @param mode Where dispenses run.
+     */
+    public FeedingScheduler(PetFeeder petFeeder, ExecutionMode mode) {
+        this(petFeeder, new SystemClock(), true, mode);
+    }
+
+    /**
+     * Creates a feeding scheduler bound to a specific PetFeeder that runs its
+     * schedules on a shared clock, such as a timing wheel, instead of its
+     * own thread.
+     * @param petFeeder The PetFeeder instance to use for dispensing meals.
+     * @param clock The clock to schedule feedings on.
+     */
+    public FeedingScheduler(PetFeeder petFeeder, FeederClock clock) {
+        this(petFeeder, clock, ExecutionMode.PLATFORM_THREADS);
+    }
+
+    /**
+     * Creates a feeding scheduler bound to a specific PetFeeder that runs its
+     * schedules on a shared clock, such as a timing wheel, instead of its
+     * own thread.
+     * @param petFeeder The PetFeeder instance to use for dispensing meals.
+     * @param clock The clock to schedule feedings on.
+     * @param mode Where dispenses run.
+     */
+    public FeedingScheduler(PetFeeder petFeeder, FeederClock clock, ExecutionMode mode) {
+        this(petFeeder, clock, false, mode);
+    }
+
+    private FeedingScheduler(PetFeeder petFeeder, FeederClock clock, boolean ownsClock, ExecutionMode mode) {
+        if (clock == null) {
+            throw new NullPointerException("Clock must not be null");
+        }
         this.petFeeder = petFeeder;
-        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.clock = clock;
+        this.ownClock = ownsClock ? (SystemClock) clock : null;
+        this.dispenser = createDispenser(mode);
+    }
+
+    private static ExecutorService createDispenser(ExecutionMode mode) {
+        return mode == ExecutionMode.VIRTUAL_THREADS ? Executors.newVirtualThreadPerTaskExecutor() : null;
     }
 
     /**
      * Starts a recurring feeding schedule. If a schedule is already active,
-     * it will be replaced by the new one.
+     * it will be replaced by the new one. Schedules started with
+     * addRecurringFeeding are not affected.
      * @param mealPlanIndex Index of the meal plan to dispense.
      * @param periodSeconds Interval in seconds between feedings.
      */
     public synchronized void scheduleRecurringFeeding(final int mealPlanIndex,
                                                       long periodSeconds) {
-        if (currentTask != null && !currentTask.isCancelled()) {
-            currentTask.cancel(false);
+        scheduleRecurringFeeding(mealPlanIndex, Duration.ofSeconds(periodSeconds));
+    }
+
+    /**
+     * Starts a recurring feeding schedule, replacing the one started
+     * earlier by scheduleRecurringFeeding, if any.
+     * @param mealPlanIndex Index of the meal plan to dispense.
+     * @param period Interval between feedings.
+     */
+    public synchronized void scheduleRecurringFeeding(final int mealPlanIndex, Duration period) {
+        FeedingSchedule schedule = addRecurringFeeding(mealPlanIndex, period);
+        if (currentSchedule != null) {
+            cancel(currentSchedule);
         }
+        currentSchedule = schedule;
+    }
+
+    /**
+     * Starts a recurring feeding schedule alongside any schedules that are
+     * already active.
+     * @param mealPlanIndex Index of the meal plan to dispense.
+     * @param periodSeconds Interval in seconds between feedings.
+     * @return FeedingSchedule A handle that can cancel the new schedule.
+     */
+    public synchronized FeedingSchedule addRecurringFeeding(final int mealPlanIndex,
+                                                            long periodSeconds) {
+        return addRecurringFeeding(mealPlanIndex, Duration.ofSeconds(periodSeconds));
+    }
 
-        currentTask = executor.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    boolean dispensed = petFeeder.dispenseMeal(mealPlanIndex);
-                    if (!dispensed) {
-                        System.out.println("[Scheduler] Scheduled meal could not be dispensed (insufficient ingredients or energy budget).");
-                    } else {
-                        MealPlan[] plans = petFeeder.getMealPlans();
-                        String name = (plans[mealPlanIndex] != null) ? plans[mealPlanIndex].getName() : "(unknown meal)";
-                        System.out.println("[Scheduler] Dispensed scheduled meal: " + name);
-                    }
-                } catch (Exception e) {
-                    System.out.println("[Scheduler] Error during scheduled feeding: " + e.getMessage());
-                }
+    /**
+     * Starts a recurring feeding schedule alongside any schedules that are
+     * already active. The first feeding is one period from now.
+     * @param mealPlanIndex Index of the meal plan to dispense.
+     * @param period Interval between feedings.
+     * @return FeedingSchedule A handle that can cancel the new schedule.
+     */
+    public synchronized FeedingSchedule addRecurringFeeding(final int mealPlanIndex, Duration period) {
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        long periodNanos = period.toNanos();
+        Runnable task = dispenser == null
+                ? () -> feed(mealPlanIndex)
+                : () -> dispenser.execute(() -> feed(mealPlanIndex));
+        FeedingSchedule schedule = new FeedingSchedule(this, mealPlanIndex, periodNanos,
+                clock.schedule(task, periodNanos, periodNanos, TimeUnit.NANOSECONDS));
+        schedules.add(schedule);
+        if (forecast != null) {
+            forecast.scheduleAdded(mealPlanIndex, periodNanos);
+        }
+        return schedule;
+    }
+
+    /**
+     * Dispenses a meal right away, outside any schedule. In virtual thread
+     * mode it runs on a new virtual thread; otherwise as a timer of the
+     * clock without delay (with a manual clock, on its next advance).
+     * @param mealPlanIndex Index of the meal plan to dispense.
+     * @return CompletableFuture Completes with true if the meal was dispensed.
+     */
+    public CompletableFuture<Boolean> dispenseNow(final int mealPlanIndex) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(petFeeder.dispenseMeal(mealPlanIndex));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        if (dispenser != null) {
+            dispenser.execute(task);
+        } else {
+            clock.schedule(task, 0, 0, TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private void feed(int mealPlanIndex) {
+        EventLog log = eventLog;
+        FeederMetrics metrics = null;
+        long start = 0;
+        try {
+            metrics = petFeeder.getMetrics();
+            start = metrics != null ? System.nanoTime() : 0;
+            MealPlan plan = petFeeder.getMealPlan(mealPlanIndex);
+            if (petFeeder.dispenseMeal(mealPlanIndex)) {
+                log.publish(FeederEvent.Type.DISPENSED, mealPlanIndex, plan != null ? plan.getName() : null, null);
+            } else {
+                log.publish(FeederEvent.Type.DISPENSE_FAILED, mealPlanIndex, null, null);
             }
-        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.publish(FeederEvent.Type.ERROR, mealPlanIndex, null, e.getMessage());
+        }
+        if (metrics != null) {
+            metrics.getTickLatency().recordSince(start);
+        }
+    }
+
+    /**
+     * Sends the scheduler's events to the given log instead of the shared
+     * console log. Scheduled feedings only publish to the log, so a slow
+     * output never delays a feeding.
+     * @param eventLog The log to publish feeding events to.
+     */
+    public void setEventLog(EventLog eventLog) {
+        if (eventLog == null) {
+            throw new NullPointerException("Event log must not be null");
+        }
+        this.eventLog = eventLog;
+    }
+
+    EventLog getEventLog() {
+        return eventLog;
     }
 
     /**
-     * Stops the current feeding schedule, if any.
+     * Cancels one schedule of this scheduler.
+     * @param schedule The schedule to cancel.
+     */
+    synchronized void cancel(FeedingSchedule schedule) {
+        if (schedules.remove(schedule)) {
+            schedule.cancelTask();
+            if (forecast != null) {
+                forecast.scheduleRemoved(schedule.getMealPlanIndex(), schedule.getPeriodNanos());
+            }
+        }
+        if (schedule == currentSchedule) {
+            currentSchedule = null;
+        }
+    }
+
+    /**
+     * Returns the schedules that are currently active.
+     * @return List
+     */
+    public synchronized List<FeedingSchedule> getActiveSchedules() {
+        return new ArrayList<>(schedules);
+    }
+
+    /**
+     * Returns the schedule started by scheduleRecurringFeeding, or null.
+     * @return FeedingSchedule
+     */
+    synchronized FeedingSchedule getCurrentSchedule() {
+        return currentSchedule;
+    }
+
+    /**
+     * Returns the forecast of when the feeder runs out of each ingredient
+     * and of energy at the rate of this scheduler's active schedules. It is
+     * created on the first call and then kept up to date as schedules and
+     * meal plans change. A feeder tells only the forecast of the scheduler
+     * that created one last about meal plan changes, so use one scheduler
+     * per feeder.
+     * @return StockForecast
+     */
+    public synchronized StockForecast getForecast() {
+        if (forecast == null) {
+            forecast = new StockForecast(petFeeder);
+            for (FeedingSchedule schedule : schedules) {
+                forecast.scheduleAdded(schedule.getMealPlanIndex(), schedule.getPeriodNanos());
+            }
+            petFeeder.setForecast(forecast);
+        }
+        return forecast;
+    }
+
+    /**
+     * Stops all feeding schedules, if any.
      */
     public synchronized void stop() {
-        if (currentTask != null) {
-            currentTask.cancel(false);
-            currentTask = null;
+        for (FeedingSchedule schedule : schedules) {
+            schedule.cancelTask();
+        }
+        schedules.clear();
+        currentSchedule = null;
+        if (forecast != null) {
+            forecast.schedulesCleared();
         }
     }
 
@@ -69,15 +315,29 @@ public class FeedingScheduler {
      * @return boolean
      */
     public synchronized boolean hasActiveSchedule() {
-        return currentTask != null && !currentTask.isCancelled();
+        return !schedules.isEmpty();
     }
 
     /**
-     * Shuts down the underlying executor service.
+     * Returns the clock schedules run on.
+     * @return FeederClock
+     */
+    public FeederClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Cancels this scheduler's schedules and stops its own clock thread,
+     * if it has one. A shared clock is left running.
      * Should be called before the program exits if possible.
      */
     public void shutdown() {
-        executor.shutdownNow();
+        stop();
+        if (ownClock != null) {
+            ownClock.shutdown();
+        }
+        if (dispenser != null) {
+            dispenser.shutdownNow();
+        }
     }
 }
-
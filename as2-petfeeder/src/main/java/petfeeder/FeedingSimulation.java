@@ -0,0 +1,301 @@
+package petfeeder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs recurring feedings and replenishments of a {@link FeederFleet} on a
+ * virtual clock instead of in real time, so weeks of schedules for
+ * thousands of feeders take seconds.
+ * <p>
+ * Virtual time is a {@link ManualClock}. Every recurring feeding or
+ * replenishment is one entry in a binary heap of primitive arrays, ordered
+ * by its next firing time and then by the order it was added. The
+ * simulation pops the earliest entry, advances the clock to its time,
+ * dispenses or replenishes on the calling thread and pushes the entry back
+ * one period later; nothing sleeps and no thread is started. Like
+ * scheduleAtFixedRate, an entry first fires one period after the start.
+ * Timers scheduled on the clock, such as reservation expiries of feeders
+ * given the clock with setClock, run as the clock passes their due time.
+ * <p>
+ * Feeders dispense through their normal dispenseMeal path, so stock,
+ * energy budget, journal and metrics behave as in real time. Rolling
+ * energy windows must use the virtual clock; give feeders a budget from
+ * {@link #newEnergyBudget}. A feeder whose actuate blocks slows the
+ * simulation down by the same time.
+ */
+public final class FeedingSimulation {
+
+    private static final int INITIAL_ENTRIES = 64;
+
+    private final FeederFleet fleet;
+    private final ManualClock clock;
+    /**
+     * Clock time at which the simulation started.
+     */
+    private final long startNanos;
+
+    private int size;
+    private PetFeeder[] feeders = new PetFeeder[INITIAL_ENTRIES];
+    /**
+     * Meal plan index of a feeding, or -1 for a replenishment.
+     */
+    private int[] mealPlans = new int[INITIAL_ENTRIES];
+    /**
+     * Amounts of a replenishment, four per entry.
+     */
+    private int[] amounts = new int[4 * INITIAL_ENTRIES];
+    private long[] periods = new long[INITIAL_ENTRIES];
+    private long[] nextTimes = new long[INITIAL_ENTRIES];
+    /**
+     * Binary min-heap of entry numbers.
+     */
+    private int[] heap = new int[INITIAL_ENTRIES];
+
+    /**
+     * Creates a simulation of the feeders of a fleet on a clock of its own.
+     * @param fleet The fleet whose feeders are simulated.
+     */
+    public FeedingSimulation(FeederFleet fleet) {
+        this(fleet, new ManualClock());
+    }
+
+    /**
+     * Creates a simulation of the feeders of a fleet that advances the
+     * given clock, starting at its current time. The clock must not be
+     * advanced by anyone else while the simulation runs.
+     * @param fleet The fleet whose feeders are simulated.
+     * @param clock The clock to advance.
+     */
+    public FeedingSimulation(FeederFleet fleet, ManualClock clock) {
+        this.fleet = fleet;
+        this.clock = clock;
+        this.startNanos = clock.nanoTime();
+    }
+
+    /**
+     * Returns the clock the simulation advances.
+     * @return ManualClock
+     */
+    public ManualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns the virtual time since the start of the simulation.
+     * @return Duration
+     */
+    public Duration getTime() {
+        return Duration.ofNanos(clock.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns a rolling-window energy budget that reads the virtual clock.
+     * @param limit The energy that may be used within any one window.
+     * @param window The length of the window.
+     * @return EnergyBudget
+     */
+    public EnergyBudget newEnergyBudget(int limit, Duration window) {
+        return new EnergyBudget(limit, window, clock);
+    }
+
+    /**
+     * Adds a recurring feeding of one feeder.
+     * @param feederId The id of the feeder.
+     * @param mealPlanIndex The index of the meal plan to dispense.
+     * @param periodSeconds Interval in seconds between feedings.
+     */
+    public void addFeeding(int feederId, int mealPlanIndex, long periodSeconds) {
+        if (mealPlanIndex < 0) {
+            throw new IllegalArgumentException("Meal plan index must not be negative");
+        }
+        add(feederId, mealPlanIndex, TimeUnit.SECONDS.toNanos(periodSeconds));
+    }
+
+    /**
+     * Adds a recurring feeding of one feeder.
+     * @param feederId The id of the feeder.
+     * @param mealPlanIndex The index of the meal plan to dispense.
+     * @param period Interval between feedings.
+     */
+    public void addFeeding(int feederId, int mealPlanIndex, Duration period) {
+        if (mealPlanIndex < 0) {
+            throw new IllegalArgumentException("Meal plan index must not be negative");
+        }
+        add(feederId, mealPlanIndex, period.toNanos());
+    }
+
+    /**
+     * Adds every active schedule of a feeder's scheduler as a recurring
+     * feeding. The scheduler itself is left as it is; stop it first so the
+     * feeder is not also fed in real time.
+     * @param feederId The id of the feeder.
+     * @param scheduler The feeder's scheduler.
+     */
+    public void addFeedings(int feederId, FeedingScheduler scheduler) {
+        for (FeedingSchedule schedule : scheduler.getActiveSchedules()) {
+            add(feederId, schedule.getMealPlanIndex(), schedule.getPeriodNanos());
+        }
+    }
+
+    /**
+     * Adds a recurring replenishment of one feeder.
+     * @param feederId The id of the feeder.
+     * @param periodSeconds Interval in seconds between replenishments.
+     * @param kibble The amount of kibble to add.
+     * @param water The amount of water to add.
+     * @param wetFood The amount of wet food to add.
+     * @param treats The amount of treats to add.
+     */
+    public void addReplenishment(int feederId, long periodSeconds, int kibble, int water, int wetFood, int treats) {
+        if ((kibble | water | wetFood | treats) < 0) {
+            throw new IllegalArgumentException("Amounts must not be negative");
+        }
+        int entry = add(feederId, -1, TimeUnit.SECONDS.toNanos(periodSeconds));
+        amounts[4 * entry] = kibble;
+        amounts[4 * entry + 1] = water;
+        amounts[4 * entry + 2] = wetFood;
+        amounts[4 * entry + 3] = treats;
+    }
+
+    private int add(int feederId, int mealPlanIndex, long periodNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        PetFeeder feeder = fleet.getFeeder(feederId);
+        if (feeder == null) {
+            throw new IllegalArgumentException("No feeder with id " + feederId);
+        }
+        if (size == heap.length) {
+            int length = size * 2;
+            feeders = Arrays.copyOf(feeders, length);
+            mealPlans = Arrays.copyOf(mealPlans, length);
+            amounts = Arrays.copyOf(amounts, 4 * length);
+            periods = Arrays.copyOf(periods, length);
+            nextTimes = Arrays.copyOf(nextTimes, length);
+            heap = Arrays.copyOf(heap, length);
+        }
+        int entry = size;
+        feeders[entry] = feeder;
+        mealPlans[entry] = mealPlanIndex;
+        periods[entry] = periodNanos;
+        nextTimes[entry] = clock.nanoTime() + periods[entry];
+        heap[size++] = entry;
+        siftUp(size - 1);
+        return entry;
+    }
+
+    /**
+     * Runs every feeding and replenishment due within the given virtual
+     * time, sampling the fleet's total stock and remaining energy at the
+     * start and then every sample interval. The simulation may be run
+     * again to continue from where it stopped.
+     * @param duration The virtual time to simulate.
+     * @param sampleInterval The virtual time between stock samples.
+     * @return SimulationReport What happened during this run.
+     */
+    public SimulationReport run(Duration duration, Duration sampleInterval) {
+        long sampleNanos = sampleInterval.toNanos();
+        if (duration.isNegative() || sampleNanos <= 0) {
+            throw new IllegalArgumentException("Invalid duration or sample interval");
+        }
+        long end = clock.nanoTime() + duration.toNanos();
+        int samples = (int) Math.min(Integer.MAX_VALUE - 1, duration.toNanos() / sampleNanos) + 1;
+        long[][] curves = new long[StockForecast.Resource.values().length][samples];
+        long[] counts = new long[SimulationReport.COUNTERS];
+        long wallStart = System.nanoTime();
+
+        int sample = 0;
+        long nextSample = clock.nanoTime();
+        while (size > 0 && nextTimes[heap[0]] <= end) {
+            int entry = heap[0];
+            long time = nextTimes[entry];
+            while (nextSample < time && sample < samples) {
+                advanceTo(nextSample);
+                sample(curves, sample++);
+                nextSample += sampleNanos;
+            }
+            advanceTo(time);
+            fire(entry, counts);
+            nextTimes[entry] = time + periods[entry];
+            siftDown(0);
+        }
+        while (sample < samples) {
+            advanceTo(nextSample);
+            sample(curves, sample++);
+            nextSample += sampleNanos;
+        }
+        advanceTo(end);
+        return new SimulationReport(counts, duration, sampleInterval, curves, System.nanoTime() - wallStart);
+    }
+
+    /**
+     * Advances the clock to the given time, running the timers due by then.
+     */
+    private void advanceTo(long timeNanos) {
+        long now = clock.nanoTime();
+        if (timeNanos > now) {
+            clock.advance(timeNanos - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void fire(int entry, long[] counts) {
+        PetFeeder feeder = feeders[entry];
+        int mealPlanIndex = mealPlans[entry];
+        if (mealPlanIndex < 0) {
+            int at = 4 * entry;
+            if (feeder.replenishFood(amounts[at], amounts[at + 1], amounts[at + 2], amounts[at + 3])) {
+                counts[SimulationReport.REPLENISHED]++;
+            }
+        } else {
+            counts[feeder.dispenseWithOutcome(mealPlanIndex).ordinal()]++;
+        }
+        counts[SimulationReport.EVENTS]++;
+    }
+
+    private void sample(long[][] curves, int sample) {
+        fleet.forEach((feeder, id) -> {
+            FoodContainer stock = feeder.getFoodContainer();
+            curves[0][sample] += stock.getKibble();
+            curves[1][sample] += stock.getWater();
+            curves[2][sample] += stock.getWetFood();
+            curves[3][sample] += stock.getTreats();
+            curves[4][sample] += feeder.getRemainingEnergyBudget();
+        });
+    }
+
+    private boolean before(int a, int b) {
+        return nextTimes[a] < nextTimes[b] || (nextTimes[a] == nextTimes[b] && a < b);
+    }
+
+    private void siftUp(int i) {
+        int entry = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(entry, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    private void siftDown(int i) {
+        int entry = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], entry)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+    }
+}
@@ -0,0 +1,439 @@
+package petfeeder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Binary command server for a {@link FeederFleet}: dispense and replenish
+ * at high rates over a compact, length-prefixed protocol, served by one
+ * non-blocking NIO selector thread.
+ * <p>
+ * Every frame is a big-endian int giving the length of the rest of the
+ * frame, then the rest. A request is
+ * <pre>
+ * int length, byte opcode, int requestId, int feederId, arguments
+ *   DISPENSE  (length 13): int mealPlanIndex
+ *   REPLENISH (length 25): int kibble, int water, int wetFood, int treats
+ * </pre>
+ * and every request is answered by one response of {@link #RESPONSE_SIZE} bytes:
+ * <pre>
+ * int length (6), int requestId, byte opcode, byte status
+ * </pre>
+ * A client may send many requests without waiting (pipelining); responses
+ * come back in the order of the requests, and the request id is echoed so
+ * a client can match them up anyway. A frame whose length is out of range
+ * closes the connection, since the stream cannot be trusted after it.
+ * <p>
+ * Each connection borrows a direct read and write buffer from a pool kept
+ * by the selector thread and returns them when it closes. Requests are
+ * decoded in place from the read buffer into calls on the feeder, and
+ * responses written in place into the write buffer, so serving a request
+ * creates no objects. When a client does not read its responses fast
+ * enough and the write buffer fills up, the server stops reading from that
+ * connection until the buffer drains. Build requests with
+ * {@link #putDispense} and {@link #putReplenish}.
+ * <p>
+ * Requests run on the selector thread itself, so everything a request does
+ * delays every connection: the feeder's {@link PetFeeder#actuate} and, for a
+ * journaled feeder with sync on commit, the journal's force to disk. Serve
+ * feeders with slow actuators or synced journals another way. A request
+ * whose feeder throws is answered with {@link #STATUS_ERROR} and the server
+ * goes on.
+ */
+public final class FleetCommandServer implements Closeable {
+
+    /**
+     * Opcode of a dispense request.
+     */
+    public static final byte DISPENSE = 1;
+    /**
+     * Opcode of a replenish request.
+     */
+    public static final byte REPLENISH = 2;
+
+    /**
+     * Statuses 0 to 3 are the DispenseResult.Outcome ordinals: OK,
+     * INSUFFICIENT_STOCK, ENERGY_EXCEEDED and NO_PLAN.
+     */
+    public static final byte STATUS_OK = 0;
+    /**
+     * A replenish whose amounts were negative or too large.
+     */
+    public static final byte STATUS_REJECTED = 4;
+    /**
+     * No feeder with the request's feeder id.
+     */
+    public static final byte STATUS_NO_FEEDER = 5;
+    /**
+     * An unknown opcode, or a length that does not fit the opcode.
+     */
+    public static final byte STATUS_BAD_REQUEST = 6;
+    /**
+     * The feeder failed while running the request, such as an actuator
+     * that threw. A dispense may have taken its meal.
+     */
+    public static final byte STATUS_ERROR = 7;
+
+    /**
+     * Size of a dispense request, length prefix included.
+     */
+    public static final int DISPENSE_SIZE = 17;
+    /**
+     * Size of a replenish request, length prefix included.
+     */
+    public static final int REPLENISH_SIZE = 29;
+    /**
+     * Size of a response, length prefix included.
+     */
+    public static final int RESPONSE_SIZE = 10;
+
+    /**
+     * Shortest and longest frame, not counting the length prefix.
+     */
+    private static final int MIN_FRAME = 9;
+    private static final int MAX_FRAME = 256;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    private final FeederFleet fleet;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread selectorThread;
+    /**
+     * Free direct buffers, only touched by the selector thread.
+     */
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private volatile boolean closed;
+    private boolean started;
+
+    /**
+     * Creates a server for the feeders of a fleet, bound to the given
+     * address but not yet started. Port 0 picks a free port.
+     * @param fleet The fleet whose feeders are controlled.
+     * @param address The address to listen on, such as localhost.
+     * @throws IOException if the address cannot be bound.
+     */
+    public FleetCommandServer(FeederFleet fleet, InetSocketAddress address) throws IOException {
+        this.fleet = fleet;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address, 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.selectorThread = new Thread(this::serve, "petfeeder-commands");
+        selectorThread.setDaemon(true);
+    }
+
+    /**
+     * Starts serving requests on the selector thread.
+     */
+    public synchronized void start() {
+        if (!closed && !started) {
+            started = true;
+            selectorThread.start();
+        }
+    }
+
+    /**
+     * Returns the address the server listens on, with the actual port.
+     * @return InetSocketAddress
+     * @throws IOException if the server is closed.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stops serving and closes every connection.
+     */
+    public void close() {
+        boolean serving;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            serving = started;
+        }
+        if (!serving) {
+            closeAll();
+            return;
+        }
+        // The selector thread closes everything on its way out.
+        selector.wakeup();
+        if (Thread.currentThread() != selectorThread) {
+            try {
+                selectorThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Writes a dispense request into a buffer.
+     * @param buffer The buffer to write to, with at least DISPENSE_SIZE bytes remaining.
+     * @param requestId The id the response echoes.
+     * @param feederId The id of the feeder in the fleet.
+     * @param mealPlanIndex The index of the meal plan to dispense.
+     */
+    public static void putDispense(ByteBuffer buffer, int requestId, int feederId, int mealPlanIndex) {
+        buffer.putInt(DISPENSE_SIZE - 4).put(DISPENSE).putInt(requestId).putInt(feederId).putInt(mealPlanIndex);
+    }
+
+    /**
+     * Writes a replenish request into a buffer.
+     * @param buffer The buffer to write to, with at least REPLENISH_SIZE bytes remaining.
+     * @param requestId The id the response echoes.
+     * @param feederId The id of the feeder in the fleet.
+     * @param kibble The amount of kibble to add.
+     * @param water The amount of water to add.
+     * @param wetFood The amount of wet food to add.
+     * @param treats The amount of treats to add.
+     */
+    public static void putReplenish(ByteBuffer buffer, int requestId, int feederId,
+                                    int kibble, int water, int wetFood, int treats) {
+        buffer.putInt(REPLENISH_SIZE - 4).put(REPLENISH).putInt(requestId).putInt(feederId)
+                .putInt(kibble).putInt(water).putInt(wetFood).putInt(treats);
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            connection.writable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.readable();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // Only this connection is lost; the others go on.
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The selector failed; fall through and close everything.
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel, acquire(), acquire());
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            // Nothing more to release.
+        }
+        bufferPool.clear();
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.push(buffer);
+        }
+    }
+
+    /**
+     * Runs the request whose frame starts at the given index of the read
+     * buffer and returns its status.
+     */
+    private byte execute(ByteBuffer in, int at, int length) {
+        try {
+            return run(in, at, length);
+        } catch (RuntimeException e) {
+            return STATUS_ERROR;
+        }
+    }
+
+    private byte run(ByteBuffer in, int at, int length) {
+        byte opcode = in.get(at + 4);
+        PetFeeder feeder = fleet.getFeeder(in.getInt(at + 9));
+        if (opcode == DISPENSE && length == DISPENSE_SIZE - 4) {
+            if (feeder == null) {
+                return STATUS_NO_FEEDER;
+            }
+            return (byte) feeder.dispenseWithOutcome(in.getInt(at + 13)).ordinal();
+        }
+        if (opcode == REPLENISH && length == REPLENISH_SIZE - 4) {
+            if (feeder == null) {
+                return STATUS_NO_FEEDER;
+            }
+            boolean replenished = feeder.replenishFood(in.getInt(at + 13), in.getInt(at + 17),
+                    in.getInt(at + 21), in.getInt(at + 25));
+            return replenished ? STATUS_OK : STATUS_REJECTED;
+        }
+        return STATUS_BAD_REQUEST;
+    }
+
+    /**
+     * One client connection with its pooled buffers. Both buffers are kept
+     * ready for writing into between events: in holds received bytes not
+     * yet decoded, out holds responses not yet sent.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private ByteBuffer in;
+        private ByteBuffer out;
+        private SelectionKey key;
+        private int interestOps = SelectionKey.OP_READ;
+
+        Connection(SocketChannel channel, ByteBuffer in, ByteBuffer out) {
+            this.channel = channel;
+            this.in = in;
+            this.out = out;
+        }
+
+        void readable() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+        }
+
+        void writable() throws IOException {
+            flush();
+            if (out.position() == 0) {
+                // Requests held back while the write buffer was full.
+                process();
+            }
+        }
+
+        /**
+         * Runs and answers received requests until none are left or the
+         * socket takes no more responses.
+         */
+        private void process() throws IOException {
+            boolean more;
+            do {
+                more = decode();
+                if (in == null) {
+                    return;
+                }
+                flush();
+            } while (more && out.position() == 0);
+        }
+
+        /**
+         * Runs every complete request in the read buffer that has room
+         * for its response, and returns true if one was held back for
+         * lack of room.
+         */
+        private boolean decode() {
+            in.flip();
+            int at = in.position();
+            int limit = in.limit();
+            boolean full = false;
+            while (limit - at >= 4) {
+                int length = in.getInt(at);
+                if (length < MIN_FRAME || length > MAX_FRAME) {
+                    close();
+                    return false;
+                }
+                if (limit - at - 4 < length) {
+                    break;
+                }
+                if (out.remaining() < RESPONSE_SIZE) {
+                    full = true;
+                    break;
+                }
+                byte status = execute(in, at, length);
+                out.putInt(RESPONSE_SIZE - 4).putInt(in.getInt(at + 5)).put(in.get(at + 4)).put(status);
+                at += 4 + length;
+            }
+            in.position(at);
+            in.compact();
+            return full;
+        }
+
+        /**
+         * Sends what the socket takes. Reads stop while responses are left
+         * over and resume once they are sent.
+         */
+        private void flush() throws IOException {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            out.flip();
+            if (out.hasRemaining()) {
+                channel.write(out);
+            }
+            out.compact();
+            int ops = out.position() == 0 ? SelectionKey.OP_READ : SelectionKey.OP_WRITE;
+            if (ops != interestOps) {
+                interestOps = ops;
+                key.interestOps(ops);
+            }
+        }
+
+        void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone.
+            }
+            if (in != null) {
+                release(in);
+                release(out);
+                in = null;
+                out = null;
+            }
+        }
+    }
+}
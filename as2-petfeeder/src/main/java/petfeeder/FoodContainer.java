@@ -7,10 +7,10 @@ import petfeeder.exceptions.FoodStockException;
  */
 public class FoodContainer {
     
-    private static int kibble;
-    private static int water;
-    private static int wetFood;
-    private static int treats;
+    private int kibble;
+    private int water;
+    private int wetFood;
+    private int treats;
     
     /**
      * Creates a pet feeder food container object and
@@ -39,7 +39,7 @@ public class FoodContainer {
      */
     public synchronized void setTreats(int treats) {
         if(treats >= 0) {
-            FoodContainer.treats = treats;
+            this.treats = treats;
         }
     }
     
@@ -56,11 +56,27 @@ public class FoodContainer {
         } catch (NumberFormatException e) {
             throw new FoodStockException("Units of treats must be a positive integer");
         }
-        if (amtTreats >= 0) {
-            FoodContainer.treats += amtTreats;
-        } else {
+        if (amtTreats < 0) {
             throw new FoodStockException("Units of treats must be a positive integer");
         }
+        if (!addTreats(amtTreats)) {
+            throw new FoodStockException("Units of treats exceed the container capacity");
+        }
+    }
+    
+    /**
+     * Add the number of treat units in the container 
+     * to the current amount of treat units.
+     * @param amtTreats The amount of treats to add.
+     * @return boolean True if added, false if the amount is negative
+     * or would exceed the container capacity.
+     */
+    public synchronized boolean addTreats(int amtTreats) {
+        if (amtTreats < 0 || amtTreats > Integer.MAX_VALUE - this.treats) {
+            return false;
+        }
+        this.treats += amtTreats;
+        return true;
     }
     
     /**
@@ -79,7 +95,7 @@ public class FoodContainer {
      */
     public synchronized void setKibble(int kibble) {
         if(kibble >= 0) {
-            FoodContainer.kibble = kibble;
+            this.kibble = kibble;
         }
     }
     
@@ -96,11 +112,27 @@ public class FoodContainer {
         } catch (NumberFormatException e) {
             throw new FoodStockException("Units of kibble must be a positive integer");
         }
-        if (amtKibble >= 0) {
-            FoodContainer.kibble += amtKibble;
-        } else {
+        if (amtKibble < 0) {
             throw new FoodStockException("Units of kibble must be a positive integer");
         }
+        if (!addKibble(amtKibble)) {
+            throw new FoodStockException("Units of kibble exceed the container capacity");
+        }
+    }
+    
+    /**
+     * Add the number of kibble units in the container 
+     * to the current amount of kibble units.
+     * @param amtKibble The amount of kibble to add.
+     * @return boolean True if added, false if the amount is negative
+     * or would exceed the container capacity.
+     */
+    public synchronized boolean addKibble(int amtKibble) {
+        if (amtKibble < 0 || amtKibble > Integer.MAX_VALUE - this.kibble) {
+            return false;
+        }
+        this.kibble += amtKibble;
+        return true;
     }
     
     /**
@@ -119,7 +151,7 @@ public class FoodContainer {
      */
     public synchronized void setWater(int water) {
         if(water >= 0) {
-            FoodContainer.water = water;
+            this.water = water;
         }
     }
     
@@ -136,11 +168,27 @@ public class FoodContainer {
         } catch (NumberFormatException e) {
             throw new FoodStockException("Units of water must be a positive integer");
         }
-        if (amtWater >= 0) {
-            FoodContainer.water += amtWater;
-        } else {
+        if (amtWater < 0) {
             throw new FoodStockException("Units of water must be a positive integer");
         }
+        if (!addWater(amtWater)) {
+            throw new FoodStockException("Units of water exceed the container capacity");
+        }
+    }
+    
+    /**
+     * Add the number of water units in the container 
+     * to the current amount of water units.
+     * @param amtWater The amount of water to add.
+     * @return boolean True if added, false if the amount is negative
+     * or would exceed the container capacity.
+     */
+    public synchronized boolean addWater(int amtWater) {
+        if (amtWater < 0 || amtWater > Integer.MAX_VALUE - this.water) {
+            return false;
+        }
+        this.water += amtWater;
+        return true;
     }
     
     /**
@@ -159,7 +207,7 @@ public class FoodContainer {
      */
     public synchronized void setWetFood(int wetFood) {
         if(wetFood >= 0) {
-            FoodContainer.wetFood = wetFood;
+            this.wetFood = wetFood;
         }
     }
     
@@ -176,11 +224,50 @@ public class FoodContainer {
         } catch (NumberFormatException e) {
             throw new FoodStockException("Units of wet food must be a positive integer");
         }
-        if (amtWetFood >= 0) {
-            FoodContainer.wetFood += amtWetFood;
-        } else {
+        if (amtWetFood < 0) {
             throw new FoodStockException("Units of wet food must be a positive integer");
         }
+        if (!addWetFood(amtWetFood)) {
+            throw new FoodStockException("Units of wet food exceed the container capacity");
+        }
+    }
+    
+    /**
+     * Add the number of wet food units in the container 
+     * to the current amount of wet food units.
+     * @param amtWetFood The amount of wet food to add.
+     * @return boolean True if added, false if the amount is negative
+     * or would exceed the container capacity.
+     */
+    public synchronized boolean addWetFood(int amtWetFood) {
+        if (amtWetFood < 0 || amtWetFood > Integer.MAX_VALUE - this.wetFood) {
+            return false;
+        }
+        this.wetFood += amtWetFood;
+        return true;
+    }
+    
+    /**
+     * Adds all four ingredients at once. Nothing is added unless
+     * every amount can be added.
+     * @param amtKibble The amount of kibble to add.
+     * @param amtWater The amount of water to add.
+     * @param amtWetFood The amount of wet food to add.
+     * @param amtTreats The amount of treats to add.
+     * @return boolean True if the stock was replenished.
+     */
+    public synchronized boolean addIngredients(int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        if (amtKibble < 0 || amtKibble > Integer.MAX_VALUE - this.kibble
+                || amtWater < 0 || amtWater > Integer.MAX_VALUE - this.water
+                || amtWetFood < 0 || amtWetFood > Integer.MAX_VALUE - this.wetFood
+                || amtTreats < 0 || amtTreats > Integer.MAX_VALUE - this.treats) {
+            return false;
+        }
+        this.kibble += amtKibble;
+        this.water += amtWater;
+        this.wetFood += amtWetFood;
+        this.treats += amtTreats;
+        return true;
     }
     
     /**
@@ -190,41 +277,59 @@ public class FoodContainer {
      * @return boolean
      */
     protected synchronized boolean enoughIngredients(MealPlan m) {
-        boolean isEnough = true;
-        if(FoodContainer.kibble < m.getAmtKibble()) {
-            isEnough = false;
-        }
-        if(FoodContainer.water < m.getAmtWater()) {
-            isEnough = false;
-        }
-        if(FoodContainer.wetFood < m.getAmtWetFood()) {
-            isEnough = false;
-        }
-        if(FoodContainer.treats < m.getAmtTreats()) {
-            isEnough = false;
-        }
-        return isEnough;
+        long need = m.getIngredients();
+        return this.kibble >= IngredientVector.kibble(need)
+                && this.water >= IngredientVector.water(need)
+                && this.wetFood >= IngredientVector.wetFood(need)
+                && this.treats >= IngredientVector.treats(need);
     }
     
     /**
      * Removes the ingredients used to make the specified 
-     * meal. Assumes that the user has checked that there
-     * are enough ingredients to make.
+     * meal if there are enough of all of them.
      * @param m The meal plan to dispense.
      * @return boolean True if ingredients were successfully used.
      */
     public synchronized boolean useIngredients(MealPlan m) {
         if (enoughIngredients(m)) {
-            FoodContainer.kibble -= m.getAmtKibble();
-            FoodContainer.water -= m.getAmtWater();
-            FoodContainer.wetFood -= m.getAmtWetFood();
-            FoodContainer.treats -= m.getAmtTreats();
+            long need = m.getIngredients();
+            this.kibble -= IngredientVector.kibble(need);
+            this.water -= IngredientVector.water(need);
+            this.wetFood -= IngredientVector.wetFood(need);
+            this.treats -= IngredientVector.treats(need);
             return true;
         } else {
             return false;
         }
     }
     
+    /**
+     * Copies the kibble, water, wet food and treats, in that order, into
+     * the array starting at offset. All four are read at the same moment.
+     * @param stock The array to copy into.
+     * @param offset The index to copy the kibble to.
+     */
+    synchronized void copyStock(int[] stock, int offset) {
+        stock[offset] = this.kibble;
+        stock[offset + 1] = this.water;
+        stock[offset + 2] = this.wetFood;
+        stock[offset + 3] = this.treats;
+    }
+    
+    /**
+     * Puts back the ingredients of a meal that was taken but not
+     * dispensed. Unlike addIngredients this always succeeds: a lane that
+     * was filled up meanwhile is filled to its capacity and the rest of
+     * that lane's amount is dropped, while the other lanes get theirs back.
+     * @param ingredients The packed amounts, see IngredientVector.
+     */
+    synchronized void putBack(long ingredients) {
+        this.kibble = (int) Math.min(Integer.MAX_VALUE, (long) this.kibble + IngredientVector.kibble(ingredients));
+        this.water = (int) Math.min(Integer.MAX_VALUE, (long) this.water + IngredientVector.water(ingredients));
+        this.wetFood = (int) Math.min(Integer.MAX_VALUE, (long) this.wetFood + IngredientVector.wetFood(ingredients));
+        this.treats = (int) Math.min(Integer.MAX_VALUE, (long) this.treats + IngredientVector.treats(ingredients));
+    }
+    
     /**
      * Returns a string describing the current contents 
      * of the food container.
@@ -0,0 +1,97 @@
+package petfeeder;
+
+/**
+ * Packs the four ingredient amounts (kibble, water, wet food, treats) into a
+ * single long so that they can be compared and updated as one word.
+ * Each ingredient uses a 16-bit lane whose top bit is kept clear as a guard
+ * bit, which limits every lane to {@link #MAX_UNITS} units.
+ */
+final class IngredientVector {
+
+    /**
+     * Largest number of units that fits in a single lane.
+     */
+    static final int MAX_UNITS = 0x7FFF;
+
+    private static final int KIBBLE_SHIFT = 0;
+    private static final int WATER_SHIFT = 16;
+    private static final int WETFOOD_SHIFT = 32;
+    private static final int TREATS_SHIFT = 48;
+    private static final long LANE_MASK = 0xFFFFL;
+    /**
+     * The top bit of every lane.
+     */
+    private static final long GUARD_BITS = 0x8000800080008000L;
+
+    private IngredientVector() {
+    }
+
+    /**
+     * Returns true if the amount fits in a lane.
+     * @param amount The amount to check.
+     * @return boolean
+     */
+    static boolean fits(int amount) {
+        return amount >= 0 && amount <= MAX_UNITS;
+    }
+
+    /**
+     * Packs the four amounts into one vector. All amounts must fit in a lane.
+     * @param kibble The amount of kibble.
+     * @param water The amount of water.
+     * @param wetFood The amount of wet food.
+     * @param treats The amount of treats.
+     * @return long The packed vector.
+     */
+    static long of(int kibble, int water, int wetFood, int treats) {
+        return ((long) kibble << KIBBLE_SHIFT)
+                | ((long) water << WATER_SHIFT)
+                | ((long) wetFood << WETFOOD_SHIFT)
+                | ((long) treats << TREATS_SHIFT);
+    }
+
+    static int kibble(long vector) {
+        return (int) ((vector >>> KIBBLE_SHIFT) & LANE_MASK);
+    }
+
+    static int water(long vector) {
+        return (int) ((vector >>> WATER_SHIFT) & LANE_MASK);
+    }
+
+    static int wetFood(long vector) {
+        return (int) ((vector >>> WETFOOD_SHIFT) & LANE_MASK);
+    }
+
+    static int treats(long vector) {
+        return (int) ((vector >>> TREATS_SHIFT) & LANE_MASK);
+    }
+
+    static long withKibble(long vector, int kibble) {
+        return (vector & ~(LANE_MASK << KIBBLE_SHIFT)) | ((long) kibble << KIBBLE_SHIFT);
+    }
+
+    static long withWater(long vector, int water) {
+        return (vector & ~(LANE_MASK << WATER_SHIFT)) | ((long) water << WATER_SHIFT);
+    }
+
+    static long withWetFood(long vector, int wetFood) {
+        return (vector & ~(LANE_MASK << WETFOOD_SHIFT)) | ((long) wetFood << WETFOOD_SHIFT);
+    }
+
+    static long withTreats(long vector, int treats) {
+        return (vector & ~(LANE_MASK << TREATS_SHIFT)) | ((long) treats << TREATS_SHIFT);
+    }
+
+    /**
+     * Returns true if every lane of the stock is at least the
+     * corresponding lane of the need. Setting the guard bits before
+     * subtracting keeps each lane from borrowing from its neighbour, and a
+     * guard bit survives only if that lane did not go negative.
+     * @param stock The available amounts.
+     * @param need The required amounts.
+     * @return boolean
+     */
+    static boolean covers(long stock, long need) {
+        return (((stock | GUARD_BITS) - need) & GUARD_BITS) == GUARD_BITS;
+    }
+}
@@ -0,0 +1,254 @@
+package petfeeder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Food container that keeps all four ingredient counts in one packed word
+ * and updates it with compare-and-set instead of locking. Checking and
+ * deducting the ingredients for a meal is a single CAS, so a meal is either
+ * dispensed completely or not at all.
+ * Each ingredient can hold at most {@link IngredientVector#MAX_UNITS} units;
+ * setting more throws IllegalArgumentException and adding more is refused.
+ */
+public class LockFreeFoodContainer extends FoodContainer {
+
+    private static final VarHandle STOCK;
+
+    static {
+        try {
+            STOCK = MethodHandles.lookup().findVarHandle(LockFreeFoodContainer.class, "stock", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Every ingredient at full capacity.
+     */
+    private static final long FULL = IngredientVector.of(IngredientVector.MAX_UNITS, IngredientVector.MAX_UNITS,
+            IngredientVector.MAX_UNITS, IngredientVector.MAX_UNITS);
+
+    /**
+     * Packed ingredient counts, see {@link IngredientVector}.
+     */
+    private volatile long stock;
+
+    /**
+     * Creates a lock-free food container and fills each
+     * item in the container with 15 units.
+     */
+    public LockFreeFoodContainer() {
+        super();
+    }
+
+    @Override
+    public int getTreats() {
+        return IngredientVector.treats(stock);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the amount is above {@link IngredientVector#MAX_UNITS}.
+     */
+    @Override
+    public void setTreats(int treats) {
+        if (checkCapacity(treats)) {
+            long current;
+            do {
+                current = stock;
+            } while (!STOCK.compareAndSet(this, current, IngredientVector.withTreats(current, treats)));
+        }
+    }
+
+    @Override
+    public boolean addTreats(int amtTreats) {
+        return IngredientVector.fits(amtTreats) && add(IngredientVector.of(0, 0, 0, amtTreats));
+    }
+
+    @Override
+    public int getKibble() {
+        return IngredientVector.kibble(stock);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the amount is above {@link IngredientVector#MAX_UNITS}.
+     */
+    @Override
+    public void setKibble(int kibble) {
+        if (checkCapacity(kibble)) {
+            long current;
+            do {
+                current = stock;
+            } while (!STOCK.compareAndSet(this, current, IngredientVector.withKibble(current, kibble)));
+        }
+    }
+
+    @Override
+    public boolean addKibble(int amtKibble) {
+        return IngredientVector.fits(amtKibble) && add(IngredientVector.of(amtKibble, 0, 0, 0));
+    }
+
+    @Override
+    public int getWater() {
+        return IngredientVector.water(stock);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the amount is above {@link IngredientVector#MAX_UNITS}.
+     */
+    @Override
+    public void setWater(int water) {
+        if (checkCapacity(water)) {
+            long current;
+            do {
+                current = stock;
+            } while (!STOCK.compareAndSet(this, current, IngredientVector.withWater(current, water)));
+        }
+    }
+
+    @Override
+    public boolean addWater(int amtWater) {
+        return IngredientVector.fits(amtWater) && add(IngredientVector.of(0, amtWater, 0, 0));
+    }
+
+    @Override
+    public int getWetFood() {
+        return IngredientVector.wetFood(stock);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if the amount is above {@link IngredientVector#MAX_UNITS}.
+     */
+    @Override
+    public void setWetFood(int wetFood) {
+        if (checkCapacity(wetFood)) {
+            long current;
+            do {
+                current = stock;
+            } while (!STOCK.compareAndSet(this, current, IngredientVector.withWetFood(current, wetFood)));
+        }
+    }
+
+    @Override
+    public boolean addWetFood(int amtWetFood) {
+        return IngredientVector.fits(amtWetFood) && add(IngredientVector.of(0, 0, amtWetFood, 0));
+    }
+
+    /**
+     * Returns true if there are enough ingredients to make
+     * the meal.
+     * @param m The meal plan to check against the food stock.
+     * @return boolean
+     */
+    @Override
+    protected boolean enoughIngredients(MealPlan m) {
+        return IngredientVector.covers(stock, m.getIngredients());
+    }
+
+    /**
+     * Removes the ingredients used to make the specified meal in a
+     * single compare-and-set. Nothing is removed if any ingredient is short.
+     * @param m The meal plan to dispense.
+     * @return boolean True if ingredients were successfully used.
+     */
+    @Override
+    public boolean useIngredients(MealPlan m) {
+        long need = m.getIngredients();
+        long current;
+        do {
+            current = stock;
+            if (!IngredientVector.covers(current, need)) {
+                return false;
+            }
+        } while (!STOCK.compareAndSet(this, current, current - need));
+        return true;
+    }
+
+    /**
+     * Copies all four ingredient counts from one read of the packed stock.
+     */
+    @Override
+    void copyStock(int[] stock, int offset) {
+        long current = this.stock;
+        stock[offset] = IngredientVector.kibble(current);
+        stock[offset + 1] = IngredientVector.water(current);
+        stock[offset + 2] = IngredientVector.wetFood(current);
+        stock[offset + 3] = IngredientVector.treats(current);
+    }
+
+    /**
+     * Returns a string describing the current contents
+     * of the food container, read from one consistent snapshot.
+     * @return String
+     */
+    @Override
+    public String toString() {
+        long current = stock;
+        return "Kibble: " + IngredientVector.kibble(current) + "\n"
+                + "Water: " + IngredientVector.water(current) + "\n"
+                + "Wet Food: " + IngredientVector.wetFood(current) + "\n"
+                + "Treats: " + IngredientVector.treats(current) + "\n";
+    }
+
+    /**
+     * Adds all four ingredients in a single compare-and-set.
+     */
+    @Override
+    public boolean addIngredients(int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        return IngredientVector.fits(amtKibble) && IngredientVector.fits(amtWater)
+                && IngredientVector.fits(amtWetFood) && IngredientVector.fits(amtTreats)
+                && add(IngredientVector.of(amtKibble, amtWater, amtWetFood, amtTreats));
+    }
+
+    /**
+     * Returns true if a set amount should be stored. Negative amounts are
+     * ignored as in FoodContainer, but an amount that does not fit in a
+     * lane is rejected rather than dropped, since a restored or configured
+     * stock would otherwise silently stay at its old value.
+     */
+    private static boolean checkCapacity(int amount) {
+        if (amount > IngredientVector.MAX_UNITS) {
+            throw new IllegalArgumentException("At most " + IngredientVector.MAX_UNITS + " units fit, not " + amount);
+        }
+        return amount >= 0;
+    }
+
+    @Override
+    void putBack(long ingredients) {
+        long current;
+        long updated;
+        do {
+            current = stock;
+            updated = IngredientVector.of(
+                    capped(IngredientVector.kibble(current), IngredientVector.kibble(ingredients)),
+                    capped(IngredientVector.water(current), IngredientVector.water(ingredients)),
+                    capped(IngredientVector.wetFood(current), IngredientVector.wetFood(ingredients)),
+                    capped(IngredientVector.treats(current), IngredientVector.treats(ingredients)));
+        } while (!STOCK.compareAndSet(this, current, updated));
+    }
+
+    private static int capped(int stock, int amount) {
+        return Math.min(IngredientVector.MAX_UNITS, stock + amount);
+    }
+
+    /**
+     * Adds the packed amount to the stock unless a lane would overflow.
+     * Each lane of the amount must fit in a lane.
+     */
+    private boolean add(long amount) {
+        long current;
+        long updated;
+        do {
+            current = stock;
+            updated = current + amount;
+            if (!IngredientVector.covers(FULL, updated)) {
+                return false;
+            }
+        } while (!STOCK.compareAndSet(this, current, updated));
+        return true;
+    }
+}
@@ -1,8 +1,16 @@
 package petfeeder;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 
 import petfeeder.exceptions.FoodStockException;
 import petfeeder.exceptions.MealPlanException;
@@ -78,7 +86,7 @@ public class Main {
         //Read in amt treats
         String treatsString = inputOutput("\nPlease enter the units of treats in the meal: ");
                 
-        MealPlan m = new MealPlan();
+        MealPlan.Builder m = new MealPlan.Builder();
         try {
             m.setName(name);
             m.setAmtKibble(kibbleString);
@@ -86,7 +94,7 @@ public class Main {
             m.setAmtWetFood(wetFoodString);
             m.setAmtTreats(treatsString);
             
-            boolean added = petFeeder.addMealPlan(m);
+            boolean added = petFeeder.addMealPlan(m.build());
             
             if(added) {
                 System.out.println(name + " successfully added.\n");
@@ -156,14 +164,14 @@ public class Main {
         //Read in amt treats
         String treatsString = inputOutput("\nPlease enter the units of treats in the meal: ");
         
-        MealPlan newPlan = new MealPlan();
+        MealPlan.Builder newPlan = new MealPlan.Builder();
         try {
             newPlan.setAmtKibble(kibbleString);
             newPlan.setAmtWater(waterString);
             newPlan.setAmtWetFood(wetFoodString);
             newPlan.setAmtTreats(treatsString);
             
-            String edited = petFeeder.editMealPlan(planToEdit, newPlan);
+            String edited = petFeeder.editMealPlan(planToEdit, newPlan.build());
             
             if (edited != null) {
                 System.out.println(edited + " successfully edited.\n");
@@ -321,24 +329,81 @@ public class Main {
         int plan = 0;
         try {
             plan = Integer.parseInt(userSelection) - 1;
-            if (plan >= 0 && plan <=2) {
+            if (plan >= 0 && plan < petFeeder.getMealPlans().length) {
                 //do nothing here.
             } else {
                 plan = -1;
             }
         } catch (NumberFormatException e) {
-            System.out.println("Please select a number from 1-3.");
+            System.out.println("Please select a number from 1-" + petFeeder.getMealPlans().length + ".");
             plan = -1;
         }
         return plan;
     }
     
     /**
-     * Starts the pet feeder program.
+     * Runs a command script without the menu, see BatchRunner, and
+     * returns the exit status: 0 if every command ran, 1 otherwise.
+     * @param script The script file, or "-" for standard input.
+     * @return int The exit status.
+     */
+    public static int runBatch(String script) {
+        BatchRunner runner = new BatchRunner(petFeeder);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        try (Reader reader = script.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new FileReader(script, StandardCharsets.UTF_8)) {
+            runner.run(new BufferedReader(reader, 1 << 16), out);
+        } catch (IOException e) {
+            System.err.println("Error running " + script + ": " + e.getMessage());
+            return 1;
+        } finally {
+            if (runner.getFeedingScheduler() != null) {
+                runner.getFeedingScheduler().shutdown();
+            }
+        }
+        return runner.getErrors() == 0 ? 0 : 1;
+    }
+
+    /**
+     * Serves the HTTP control API on localhost until the program is
+     * stopped, see FeederHttpServer. Turns off Nagle's algorithm for the
+     * JDK's HTTP server unless sun.net.httpserver.nodelay is already set.
+     * @param port The port to listen on.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static void serveHttp(int port) throws IOException {
+        // Must be set before the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        feedingScheduler = new FeedingScheduler(petFeeder);
+        FeederHttpServer server = new FeederHttpServer(petFeeder, feedingScheduler,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.start();
+        System.out.println("Serving the PetFeeder API on http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    /**
+     * Starts the pet feeder program. With "--batch [file]" it runs a
+     * command script from the file, or from standard input, and exits;
+     * with "--http [port]" it serves the HTTP API instead of the menu.
      * @param args Command line arguments.
      */
     public static void main(String[] args) {
         petFeeder = new PetFeeder();
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(runBatch(args.length > 1 ? args[1] : "-"));
+        }
+        if (args.length > 0 && args[0].equals("--http")) {
+            try {
+                serveHttp(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Could not start the HTTP API: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
         feedingScheduler = new FeedingScheduler(petFeeder);
         System.out.println("Welcome to the PetFeeder!\n");
         System.out.println("Maximum total energy budget for this run: " + petFeeder.getEnergyLimit() + " energy points.\n");
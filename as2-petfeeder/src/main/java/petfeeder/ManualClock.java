@@ -0,0 +1,173 @@
+package petfeeder;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that only moves when it is advanced. Advancing runs every timer
+ * that becomes due, in order of its due time, on the advancing thread and
+ * with the clock set to that due time, so a test can drive hours of
+ * schedules in milliseconds and without sleeping.
+ * <p>
+ * A recurring timer runs once for every period that passes, as at a fixed
+ * rate. A timer scheduled without delay runs on the next advance, even one
+ * by zero. Tasks run without any lock of the clock held, so they may
+ * schedule or cancel timers themselves; only one thread advances at a time.
+ */
+public final class ManualClock implements FeederClock {
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Object advancing = new Object();
+    private long nowNanos;
+    private long sequence;
+
+    /**
+     * A scheduled task. Cancelled entries stay queued and are skipped.
+     */
+    private final class Entry implements Timer, Comparable<Entry> {
+        private final Runnable task;
+        private final long periodNanos;
+        private long deadlineNanos;
+        private long order;
+        private volatile boolean active = true;
+
+        Entry(Runnable task, long deadlineNanos, long periodNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (ManualClock.this) {
+                boolean cancelled = active;
+                active = false;
+                return cancelled;
+            }
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDeadline = Long.compare(deadlineNanos, other.deadlineNanos);
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return nowNanos;
+    }
+
+    /**
+     * Returns the time the clock has been advanced by.
+     * @return Duration
+     */
+    public Duration getTime() {
+        return Duration.ofNanos(nanoTime());
+    }
+
+    @Override
+    public synchronized Timer schedule(Runnable task, long delay, long period, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (delay < 0 || period < 0) {
+            throw new IllegalArgumentException("Delay and period must not be negative");
+        }
+        Entry entry = new Entry(task, nowNanos + unit.toNanos(delay), unit.toNanos(period));
+        enqueue(entry);
+        return entry;
+    }
+
+    private void enqueue(Entry entry) {
+        entry.order = sequence++;
+        queue.add(entry);
+    }
+
+    /**
+     * Moves the clock forward and runs every timer that becomes due.
+     * @param time The time to advance by.
+     * @param unit The unit of time.
+     * @return int The number of task runs.
+     */
+    public int advance(long time, TimeUnit unit) {
+        if (time < 0) {
+            throw new IllegalArgumentException("Time must not be negative");
+        }
+        synchronized (advancing) {
+            long target;
+            synchronized (this) {
+                target = nowNanos + unit.toNanos(time);
+            }
+            int runs = 0;
+            Entry entry;
+            while ((entry = nextDue(target)) != null) {
+                try {
+                    entry.task.run();
+                } catch (RuntimeException e) {
+                    // One failing task must not stop the others.
+                }
+                runs++;
+                synchronized (this) {
+                    if (entry.active) {
+                        if (entry.periodNanos > 0) {
+                            entry.deadlineNanos += entry.periodNanos;
+                            enqueue(entry);
+                        } else {
+                            entry.active = false;
+                        }
+                    }
+                }
+            }
+            synchronized (this) {
+                nowNanos = Math.max(nowNanos, target);
+            }
+            return runs;
+        }
+    }
+
+    /**
+     * Moves the clock forward and runs every timer that becomes due.
+     * @param time The time to advance by.
+     * @return int The number of task runs.
+     */
+    public int advance(Duration time) {
+        return advance(time.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes the earliest active entry due by the target off the queue and
+     * sets the clock to its due time, or returns null.
+     */
+    private synchronized Entry nextDue(long target) {
+        Entry entry;
+        while ((entry = queue.peek()) != null && entry.deadlineNanos <= target) {
+            queue.poll();
+            if (entry.active) {
+                nowNanos = Math.max(nowNanos, entry.deadlineNanos);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of timers that are still scheduled to run.
+     * @return int
+     */
+    public synchronized int activeTimers() {
+        int active = 0;
+        for (Entry entry : queue) {
+            if (entry.active) {
+                active++;
+            }
+        }
+        return active;
+    }
+}
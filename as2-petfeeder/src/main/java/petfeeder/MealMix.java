@@ -0,0 +1,105 @@
+package petfeeder;
+
+/**
+ * How many times to dispense each meal plan, as chosen by a
+ * {@link MealMixOptimizer}. Counts are by meal plan index.
+ */
+public final class MealMix {
+
+    private final MealPlan[] mealPlans;
+    private final int[] counts;
+    private final int meals;
+    private final int energy;
+    private final boolean optimal;
+
+    MealMix(MealPlan[] mealPlans, int[] counts, boolean optimal) {
+        this.mealPlans = mealPlans;
+        this.counts = counts;
+        this.optimal = optimal;
+        long totalMeals = 0;
+        long totalEnergy = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                totalMeals += counts[i];
+                totalEnergy += (long) counts[i] * mealPlans[i].getEnergyCost();
+            }
+        }
+        this.meals = (int) Math.min(Integer.MAX_VALUE, totalMeals);
+        this.energy = (int) Math.min(Integer.MAX_VALUE, totalEnergy);
+    }
+
+    /**
+     * Returns how many times the meal plan at the given index is dispensed.
+     * @param mealPlanIndex The index of the meal plan.
+     * @return int
+     */
+    public int getCount(int mealPlanIndex) {
+        return mealPlanIndex >= 0 && mealPlanIndex < counts.length ? counts[mealPlanIndex] : 0;
+    }
+
+    /**
+     * Returns the count for every meal plan index.
+     * @return int[] A copy of the counts.
+     */
+    public int[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Returns the total number of meals.
+     * @return int
+     */
+    public int getMeals() {
+        return meals;
+    }
+
+    /**
+     * Returns the total energy of all meals.
+     * @return int
+     */
+    public int getEnergy() {
+        return energy;
+    }
+
+    /**
+     * Returns true if the mix is proven to be the best one; false if the
+     * search stopped at its node limit and this is the best mix it found.
+     * @return boolean
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * Dispenses the mix from a feeder, meal plan by meal plan, and stops a
+     * meal plan at its first meal that cannot be dispensed.
+     * @param feeder The feeder the mix was planned for.
+     * @return int The number of meals that were dispensed.
+     */
+    public int dispense(PetFeeder feeder) {
+        int dispensed = 0;
+        for (int i = 0; i < counts.length; i++) {
+            for (int n = 0; n < counts[i] && feeder.dispenseMeal(i); n++) {
+                dispensed++;
+            }
+        }
+        return dispensed;
+    }
+
+    /**
+     * Returns the meals of the mix, such as "2 x Breakfast, 1 x Dinner".
+     * @return String
+     */
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                if (mix.length() > 0) {
+                    mix.append(", ");
+                }
+                mix.append(counts[i]).append(" x ").append(mealPlans[i].getName());
+            }
+        }
+        return mix.length() == 0 ? "(no meals)" : mix.toString();
+    }
+}
@@ -0,0 +1,469 @@
+package petfeeder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chooses how many times to dispense each meal plan so that the stock and
+ * the remaining energy budget are put to the best use: either the most
+ * meals, or the most energy that does not exceed a target.
+ * <p>
+ * This is an integer knapsack over five limits (four ingredients and
+ * energy), solved by depth-first branch and bound. Plans that another plan
+ * beats in every respect are dropped first, the rest are tried best value
+ * per resource first, and a branch is cut as soon as a relaxed bound shows
+ * it cannot beat the best mix found so far. The bound prices all five limits
+ * at once with the dual of the linear relaxation, so it is close to the
+ * integer optimum and most searches prove their result optimal within a few
+ * thousand nodes. Solving stops after a fixed number of search nodes and
+ * then returns the best mix found, marked as not proven optimal.
+ * <p>
+ * Results are cached by the stock, the energy left, the goal and the meal
+ * plans, so asking again before anything changed costs one lookup. The
+ * optimizer is thread safe and may be shared by many feeders.
+ */
+public final class MealMixOptimizer {
+
+    /**
+     * Number of results kept in the cache by default.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * Number of search nodes visited before the search stops by default.
+     */
+    public static final int DEFAULT_NODE_LIMIT = 2_000_000;
+
+    private static final int LIMITS = 5;
+    private static final int ENERGY = 4;
+    private static final int MOST_MEALS = -1;
+
+    private final int nodeLimit;
+    private final Map<Key, MealMix> cache;
+
+    /**
+     * Creates an optimizer with the default cache size and node limit.
+     */
+    public MealMixOptimizer() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_NODE_LIMIT);
+    }
+
+    /**
+     * Creates an optimizer.
+     * @param cacheSize The number of results to keep, or 0 for no cache.
+     * @param nodeLimit The number of search nodes visited per solve.
+     */
+    public MealMixOptimizer(int cacheSize, int nodeLimit) {
+        if (cacheSize < 0 || nodeLimit <= 0) {
+            throw new IllegalArgumentException("Invalid cache size or node limit");
+        }
+        this.nodeLimit = nodeLimit;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, MealMix> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the mix with the most meals the feeder can dispense now.
+     * @param feeder The feeder to plan for.
+     * @return MealMix
+     */
+    public MealMix mostMeals(PetFeeder feeder) {
+        return optimize(feeder, MOST_MEALS);
+    }
+
+    /**
+     * Returns the mix whose energy comes closest to the target without
+     * exceeding it, among those the feeder can dispense now.
+     * @param feeder The feeder to plan for.
+     * @param targetEnergy The energy to aim for.
+     * @return MealMix
+     */
+    public MealMix closestToEnergy(PetFeeder feeder, int targetEnergy) {
+        if (targetEnergy < 0) {
+            throw new IllegalArgumentException("Target energy must not be negative");
+        }
+        return optimize(feeder, targetEnergy);
+    }
+
+    private MealMix optimize(PetFeeder feeder, int target) {
+        FoodContainer stock = feeder.getFoodContainer();
+        return solve(stock.getKibble(), stock.getWater(), stock.getWetFood(), stock.getTreats(),
+                feeder.getRemainingEnergyBudget(), feeder.sharedMealPlans(), target);
+    }
+
+    /**
+     * Returns the best mix for the given stock, energy and meal plans,
+     * from the cache if it was solved before.
+     * @param target The energy to aim for, or -1 for the most meals.
+     */
+    MealMix solve(int kibble, int water, int wetFood, int treats, int energy, MealPlan[] plans, int target) {
+        int[] limits = {kibble, water, wetFood, treats, target == MOST_MEALS ? energy : Math.min(energy, target)};
+        for (int d = 0; d < LIMITS; d++) {
+            limits[d] = Math.max(0, limits[d]);
+        }
+        Key key = new Key(limits, target == MOST_MEALS, plans);
+        synchronized (cache) {
+            MealMix cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MealMix mix = new Search(limits, target == MOST_MEALS, plans, nodeLimit).run();
+        synchronized (cache) {
+            cache.put(key, mix);
+        }
+        return mix;
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Cache key: the limits, the goal and the meal plans. Meal plans compare
+     * by name and ingredients.
+     */
+    private static final class Key {
+        private final int[] limits;
+        private final boolean mostMeals;
+        private final MealPlan[] plans;
+        private final int hash;
+
+        Key(int[] limits, boolean mostMeals, MealPlan[] plans) {
+            this.limits = limits;
+            this.mostMeals = mostMeals;
+            this.plans = plans;
+            this.hash = 31 * (31 * Arrays.hashCode(limits) + Boolean.hashCode(mostMeals)) + Arrays.hashCode(plans);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && mostMeals == other.mostMeals
+                    && Arrays.equals(limits, other.limits) && Arrays.equals(plans, other.plans);
+        }
+    }
+
+    /**
+     * One branch and bound run. Items are the usable meal plans in search
+     * order; every item needs some energy, so every bound is finite.
+     */
+    private static final class Search {
+        private final MealPlan[] plans;
+        private final int[] slots;
+        private final int[][] needs;
+        private final long[] values;
+        /**
+         * ratios[d][i] is the best value per unit of limit d among items
+         * i and later, or infinity if one of them does not use limit d.
+         */
+        private final double[][] ratios;
+        /**
+         * Price per unit of each limit from the dual of the linear
+         * relaxation over all items, scaled so that no item is worth more
+         * than the limits it uses. Pricing the remaining limits then bounds
+         * what any items can still add. Null if there is no such price.
+         */
+        private final double[] prices;
+        /**
+         * True if pricing the limits together bounds the root tighter than
+         * the best single limit does, in which case each node solves the
+         * relaxation of its own remaining limits and items. Otherwise, as
+         * when closest to energy is limited by the target, the relaxation
+         * adds nothing and is skipped.
+         */
+        private final boolean priceNodes;
+        private final int[] remaining;
+        private final int[] counts;
+        private int[] best;
+        private long bestValue = -1;
+        private long nodes;
+        private final long nodeLimit;
+        private boolean stopped;
+
+        Search(int[] limits, boolean mostMeals, MealPlan[] plans, int nodeLimit) {
+            this.plans = plans;
+            this.nodeLimit = nodeLimit;
+            this.remaining = limits.clone();
+
+            int[] candidates = new int[plans.length];
+            int n = 0;
+            for (int slot = 0; slot < plans.length; slot++) {
+                if (plans[slot] != null && plans[slot].getEnergyCost() > 0 && fits(needsOf(plans[slot]), limits)) {
+                    candidates[n++] = slot;
+                }
+            }
+            Integer[] order = dropDominated(candidates, n, mostMeals);
+            Arrays.sort(order, (a, b) -> Double.compare(score(plans[b], mostMeals, limits),
+                    score(plans[a], mostMeals, limits)));
+
+            int m = order.length;
+            slots = new int[m];
+            needs = new int[m][];
+            values = new long[m];
+            for (int i = 0; i < m; i++) {
+                slots[i] = order[i];
+                needs[i] = needsOf(plans[order[i]]);
+                values[i] = mostMeals ? 1 : plans[order[i]].getEnergyCost();
+            }
+            ratios = new double[LIMITS][m + 1];
+            for (int d = 0; d < LIMITS; d++) {
+                for (int i = m - 1; i >= 0; i--) {
+                    double ratio = needs[i][d] == 0 ? Double.POSITIVE_INFINITY : (double) values[i] / needs[i][d];
+                    ratios[d][i] = Math.max(ratio, ratios[d][i + 1]);
+                }
+            }
+            prices = dualPrices(needs, values, limits, 0);
+            priceNodes = prices != null && pricedBound(prices) < singleLimitBound(0);
+            counts = new int[m];
+            best = new int[m];
+        }
+
+        /**
+         * Solves the linear relaxation max values.x subject to needs.x at
+         * most limits over items from and later by the simplex method and
+         * returns its dual prices, scaled up where rounding left an item
+         * worth more than its price.
+         */
+        private static double[] dualPrices(int[][] needs, long[] values, int[] limits, int from) {
+            int m = needs.length;
+            if (m == from) {
+                return null;
+            }
+            // One row per limit over the items and a slack per limit, and
+            // the reduced costs in the last row.
+            int columns = m + LIMITS;
+            double[][] tableau = new double[LIMITS + 1][columns + 1];
+            for (int d = 0; d < LIMITS; d++) {
+                for (int i = 0; i < m; i++) {
+                    tableau[d][i] = needs[i][d];
+                }
+                tableau[d][m + d] = 1;
+                tableau[d][columns] = limits[d];
+            }
+            // Earlier items keep a zero value and are never chosen.
+            for (int i = from; i < m; i++) {
+                tableau[LIMITS][i] = values[i];
+            }
+            // Bland's rule cannot cycle; the pivot count stays small since
+            // there are only five rows.
+            for (int pivots = 0; pivots < 50 * columns; pivots++) {
+                int enter = -1;
+                for (int j = 0; j < columns && enter < 0; j++) {
+                    if (tableau[LIMITS][j] > 1e-9) {
+                        enter = j;
+                    }
+                }
+                if (enter < 0) {
+                    break;
+                }
+                int leave = -1;
+                for (int d = 0; d < LIMITS; d++) {
+                    if (tableau[d][enter] > 1e-9 && (leave < 0 || tableau[d][columns] * tableau[leave][enter]
+                            < tableau[leave][columns] * tableau[d][enter])) {
+                        leave = d;
+                    }
+                }
+                if (leave < 0) {
+                    return null;
+                }
+                double[] row = tableau[leave];
+                double pivot = row[enter];
+                for (int j = 0; j <= columns; j++) {
+                    row[j] /= pivot;
+                }
+                for (int d = 0; d <= LIMITS; d++) {
+                    double factor = tableau[d][enter];
+                    if (d != leave && factor != 0) {
+                        for (int j = 0; j <= columns; j++) {
+                            tableau[d][j] -= factor * row[j];
+                        }
+                    }
+                }
+            }
+            double[] prices = new double[LIMITS];
+            for (int d = 0; d < LIMITS; d++) {
+                prices[d] = Math.max(0, -tableau[LIMITS][m + d]);
+            }
+            // Every item must cost at least its value at these prices for
+            // the bound to hold; make up for rounding.
+            double scale = 1;
+            for (int i = from; i < m; i++) {
+                double cost = 0;
+                for (int d = 0; d < LIMITS; d++) {
+                    cost += needs[i][d] * prices[d];
+                }
+                if (cost <= 0) {
+                    return null;
+                }
+                scale = Math.max(scale, values[i] / cost);
+            }
+            for (int d = 0; d < LIMITS; d++) {
+                prices[d] *= scale;
+            }
+            return prices;
+        }
+
+        private static int[] needsOf(MealPlan plan) {
+            return new int[] {plan.getAmtKibble(), plan.getAmtWater(), plan.getAmtWetFood(), plan.getAmtTreats(),
+                    plan.getEnergyCost()};
+        }
+
+        private static boolean fits(int[] need, int[] limits) {
+            for (int d = 0; d < LIMITS; d++) {
+                if (need[d] > limits[d]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Keeps only the plans that no other plan beats: one that needs no
+         * more of anything and is worth at least as much. Of equal plans
+         * the lowest index is kept.
+         */
+        private Integer[] dropDominated(int[] candidates, int n, boolean mostMeals) {
+            boolean[] dropped = new boolean[n];
+            int kept = n;
+            for (int a = 0; a < n; a++) {
+                if (dropped[a]) {
+                    continue;
+                }
+                int[] needA = needsOf(plans[candidates[a]]);
+                for (int b = 0; b < n; b++) {
+                    if (a == b || dropped[b]) {
+                        continue;
+                    }
+                    int[] needB = needsOf(plans[candidates[b]]);
+                    if (fits(needA, needB) && (mostMeals || needA[ENERGY] >= needB[ENERGY])
+                            && (!Arrays.equals(needA, needB) || a < b)) {
+                        dropped[b] = true;
+                        kept--;
+                    }
+                }
+            }
+            Integer[] order = new Integer[kept];
+            for (int i = 0, k = 0; i < n; i++) {
+                if (!dropped[i]) {
+                    order[k++] = candidates[i];
+                }
+            }
+            return order;
+        }
+
+        /**
+         * Value per share of the limits a plan uses; higher is tried first.
+         */
+        private static double score(MealPlan plan, boolean mostMeals, int[] limits) {
+            int[] need = needsOf(plan);
+            double share = 0;
+            for (int d = 0; d < LIMITS; d++) {
+                if (need[d] > 0) {
+                    share += (double) need[d] / limits[d];
+                }
+            }
+            return (mostMeals ? 1 : plan.getEnergyCost()) / share;
+        }
+
+        MealMix run() {
+            search(0, 0);
+            int[] mix = new int[plans.length];
+            for (int i = 0; i < slots.length; i++) {
+                mix[slots[i]] = best[i];
+            }
+            return new MealMix(plans, mix, !stopped);
+        }
+
+        /**
+         * Returns the most value items i and later could add to the
+         * remaining limits if they could be dispensed in fractions: the
+         * lower of the best value per unit of any one limit and the price
+         * of all remaining limits.
+         */
+        private long bound(int i) {
+            long bound = singleLimitBound(i);
+            return prices == null ? bound : Math.min(bound, pricedBound(prices));
+        }
+
+        private long singleLimitBound(int i) {
+            double bound = Double.POSITIVE_INFINITY;
+            for (int d = 0; d < LIMITS; d++) {
+                if (ratios[d][i] != Double.POSITIVE_INFINITY) {
+                    bound = Math.min(bound, remaining[d] * ratios[d][i]);
+                }
+            }
+            return (long) bound;
+        }
+
+        private long pricedBound(double[] prices) {
+            double priced = 0;
+            for (int d = 0; d < LIMITS; d++) {
+                priced += remaining[d] * prices[d];
+            }
+            // Leave room for rounding so a bound is never too low.
+            return (long) (priced + 1e-6);
+        }
+
+        private void search(int i, long value) {
+            if (++nodes > nodeLimit) {
+                stopped = true;
+                return;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                best = counts.clone();
+            }
+            if (i == slots.length || value + bound(i) <= bestValue) {
+                return;
+            }
+            if (priceNodes) {
+                double[] nodePrices = dualPrices(needs, values, remaining, i);
+                if (nodePrices != null && value + pricedBound(nodePrices) <= bestValue) {
+                    return;
+                }
+            }
+            int[] need = needs[i];
+            int most = Integer.MAX_VALUE;
+            for (int d = 0; d < LIMITS; d++) {
+                if (need[d] > 0) {
+                    most = Math.min(most, remaining[d] / need[d]);
+                }
+            }
+            for (int d = 0; d < LIMITS; d++) {
+                remaining[d] -= most * need[d];
+            }
+            for (int count = most; ; count--) {
+                counts[i] = count;
+                if (value + count * values[i] + bound(i + 1) > bestValue) {
+                    search(i + 1, value + count * values[i]);
+                }
+                if (count == 0 || stopped) {
+                    break;
+                }
+                for (int d = 0; d < LIMITS; d++) {
+                    remaining[d] += need[d];
+                }
+            }
+            counts[i] = 0;
+        }
+    }
+}
@@ -2,25 +2,14 @@ package petfeeder;
 
 import petfeeder.exceptions.MealPlanException;
 
-public class MealPlan {
-    private String name;
-    private int energyCost;
-    private int amtKibble;
-    private int amtWater;
-    private int amtWetFood;
-    private int amtTreats;
-
-    /**
-     * Creates a default meal plan for the pet feeder.
-     */
-    public MealPlan() {
-        this.name = "";
-        this.amtKibble = 0;
-        this.amtWater = 0;
-        this.amtWetFood = 0;
-        this.amtTreats = 0;
-        this.energyCost = 0;
-    }
+/**
+ * Immutable meal plan. Plans are created with a {@link Builder}; the
+ * ingredient amounts are stored as one packed {@link IngredientVector}, and
+ * the energy cost and hash code are computed once at construction, so a plan
+ * can be shared between threads without synchronization and used as a map key.
+ * Each ingredient amount is at most {@link IngredientVector#MAX_UNITS} units.
+ */
+public final class MealPlan {
 
     /**
      * Per-unit energy values (abstract "energy points", can be read as kcal).
@@ -30,16 +19,20 @@ public class MealPlan {
     private static final int WETFOOD_ENERGY = 15;
     private static final int TREATS_ENERGY = 20;
 
-    /**
-     * Recalculates the total energy cost based on ingredient amounts and
-     * fixed per-unit energy values.
-     */
-    private void updateEnergyCost() {
+    private final String name;
+    private final long ingredients;
+    private final int energyCost;
+    private final int hash;
+
+    private MealPlan(String name, int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        this.name = name;
+        this.ingredients = IngredientVector.of(amtKibble, amtWater, amtWetFood, amtTreats);
         this.energyCost =
                 (amtKibble * KIBBLE_ENERGY) +
                         (amtWater * WATER_ENERGY) +
                         (amtWetFood * WETFOOD_ENERGY) +
                         (amtTreats * TREATS_ENERGY);
+        this.hash = 31 * name.hashCode() + Long.hashCode(ingredients);
     }
 
     /**
@@ -48,28 +41,7 @@ public class MealPlan {
      * @return int
      */
     public int getAmtTreats() {
-        return amtTreats;
-    }
-
-    /**
-     * Sets the amount of treats required for the meal.
-     *
-     * @param treats The amount of treats to set (as a string).
-     * @throws MealPlanException if the input is not a positive integer.
-     */
-    public void setAmtTreats(String treats) throws MealPlanException {
-        int amtTreats = 0;
-        try {
-            amtTreats = Integer.parseInt(treats);
-        } catch (NumberFormatException e) {
-            throw new MealPlanException("Units of treats must be a positive integer");
-        }
-        if (amtTreats >= 0) {
-            this.amtTreats = amtTreats;
-            updateEnergyCost();
-        } else {
-            throw new MealPlanException("Units of treats must be a positive integer");
-        }
+        return IngredientVector.treats(ingredients);
     }
 
     /**
@@ -78,28 +50,7 @@ public class MealPlan {
      * @return int
      */
     public int getAmtKibble() {
-        return amtKibble;
-    }
-
-    /**
-     * Sets the amount of kibble required for the meal.
-     *
-     * @param kibble The amount of kibble to set (as a string).
-     * @throws MealPlanException if the input is not a positive integer.
-     */
-    public void setAmtKibble(String kibble) throws MealPlanException {
-        int amtKibble = 0;
-        try {
-            amtKibble = Integer.parseInt(kibble);
-        } catch (NumberFormatException e) {
-            throw new MealPlanException("Units of kibble must be a positive integer");
-        }
-        if (amtKibble >= 0) {
-            this.amtKibble = amtKibble;
-            updateEnergyCost();
-        } else {
-            throw new MealPlanException("Units of kibble must be a positive integer");
-        }
+        return IngredientVector.kibble(ingredients);
     }
 
     /**
@@ -108,28 +59,7 @@ public class MealPlan {
      * @return int
      */
     public int getAmtWater() {
-        return amtWater;
-    }
-
-    /**
-     * Sets the amount of water required for the meal.
-     *
-     * @param water The amount of water to set (as a string).
-     * @throws MealPlanException if the input is not a positive integer.
-     */
-    public void setAmtWater(String water) throws MealPlanException {
-        int amtWater = 0;
-        try {
-            amtWater = Integer.parseInt(water);
-        } catch (NumberFormatException e) {
-            throw new MealPlanException("Units of water must be a positive integer");
-        }
-        if (amtWater >= 0) {
-            this.amtWater = amtWater;
-            updateEnergyCost();
-        } else {
-            throw new MealPlanException("Units of water must be a positive integer");
-        }
+        return IngredientVector.water(ingredients);
     }
 
     /**
@@ -138,28 +68,16 @@ public class MealPlan {
      * @return int
      */
     public int getAmtWetFood() {
-        return amtWetFood;
+        return IngredientVector.wetFood(ingredients);
     }
 
     /**
-     * Sets the amount of wet food required for the meal.
+     * Returns all four ingredient amounts packed as an {@link IngredientVector}.
      *
-     * @param wetFood The amount of wet food to set (as a string).
-     * @throws MealPlanException if the input is not a positive integer.
+     * @return long
      */
-    public void setAmtWetFood(String wetFood) throws MealPlanException {
-        int amtWetFood = 0;
-        try {
-            amtWetFood = Integer.parseInt(wetFood);
-        } catch (NumberFormatException e) {
-            throw new MealPlanException("Units of wet food must be a positive integer");
-        }
-        if (amtWetFood >= 0) {
-            this.amtWetFood = amtWetFood;
-            updateEnergyCost();
-        } else {
-            throw new MealPlanException("Units of wet food must be a positive integer");
-        }
+    long getIngredients() {
+        return ingredients;
     }
 
     /**
@@ -171,17 +89,6 @@ public class MealPlan {
         return name;
     }
 
-    /**
-     * Sets the name of the meal plan.
-     *
-     * @param name The name to set.
-     */
-    public void setName(String name) {
-        if (name != null) {
-            this.name = name;
-        }
-    }
-
     /**
      * Returns the energy cost of the meal plan.
      *
@@ -202,10 +109,7 @@ public class MealPlan {
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + ((name == null) ? 0 : name.hashCode());
-        return result;
+        return hash;
     }
 
     @Override
@@ -217,12 +121,185 @@ public class MealPlan {
         if (getClass() != obj.getClass())
             return false;
         final MealPlan other = (MealPlan) obj;
-        if (name == null) {
-            if (other.name != null)
+        return this.hash == other.hash && this.ingredients == other.ingredients && this.name.equals(other.name);
+    }
+
+    /**
+     * Collects the name and ingredient amounts of a meal plan.
+     * A builder is not thread-safe; the plans it builds are.
+     */
+    public static final class Builder {
+        private String name;
+        private int amtKibble;
+        private int amtWater;
+        private int amtWetFood;
+        private int amtTreats;
+
+        /**
+         * Creates a builder for an empty meal plan with no name.
+         */
+        public Builder() {
+            this.name = "";
+        }
+
+        /**
+         * Creates a builder starting from the values of an existing plan.
+         *
+         * @param plan The plan to copy.
+         */
+        public Builder(MealPlan plan) {
+            this.name = plan.getName();
+            this.amtKibble = plan.getAmtKibble();
+            this.amtWater = plan.getAmtWater();
+            this.amtWetFood = plan.getAmtWetFood();
+            this.amtTreats = plan.getAmtTreats();
+        }
+
+        /**
+         * Sets the name of the meal plan.
+         *
+         * @param name The name to set.
+         */
+        public void setName(String name) {
+            if (name != null) {
+                this.name = name;
+            }
+        }
+
+        /**
+         * Sets the amount of treats required for the meal.
+         *
+         * @param treats The amount of treats to set (as a string).
+         * @throws MealPlanException if the input is not a positive integer or is too large.
+         */
+        public void setAmtTreats(String treats) throws MealPlanException {
+            int amtTreats = parseAmount(treats, "treats");
+            if (!setAmtTreats(amtTreats)) {
+                throw invalidAmount(amtTreats, "treats");
+            }
+        }
+
+        /**
+         * Sets the amount of treats required for the meal.
+         *
+         * @param amtTreats The amount of treats to set.
+         * @return boolean True if set, false if the amount is negative or too large.
+         */
+        public boolean setAmtTreats(int amtTreats) {
+            if (IngredientVector.fits(amtTreats)) {
+                this.amtTreats = amtTreats;
+                return true;
+            } else {
                 return false;
-        } else if (!name.equals(other.name))
-            return false;
+            }
+        }
+
+        /**
+         * Sets the amount of kibble required for the meal.
+         *
+         * @param kibble The amount of kibble to set (as a string).
+         * @throws MealPlanException if the input is not a positive integer or is too large.
+         */
+        public void setAmtKibble(String kibble) throws MealPlanException {
+            int amtKibble = parseAmount(kibble, "kibble");
+            if (!setAmtKibble(amtKibble)) {
+                throw invalidAmount(amtKibble, "kibble");
+            }
+        }
 
-        return this.amtKibble == other.amtKibble && this.amtWater == other.amtWater && this.amtWetFood == other.amtWetFood && this.amtTreats == other.amtTreats;
+        /**
+         * Sets the amount of kibble required for the meal.
+         *
+         * @param amtKibble The amount of kibble to set.
+         * @return boolean True if set, false if the amount is negative or too large.
+         */
+        public boolean setAmtKibble(int amtKibble) {
+            if (IngredientVector.fits(amtKibble)) {
+                this.amtKibble = amtKibble;
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Sets the amount of water required for the meal.
+         *
+         * @param water The amount of water to set (as a string).
+         * @throws MealPlanException if the input is not a positive integer or is too large.
+         */
+        public void setAmtWater(String water) throws MealPlanException {
+            int amtWater = parseAmount(water, "water");
+            if (!setAmtWater(amtWater)) {
+                throw invalidAmount(amtWater, "water");
+            }
+        }
+
+        /**
+         * Sets the amount of water required for the meal.
+         *
+         * @param amtWater The amount of water to set.
+         * @return boolean True if set, false if the amount is negative or too large.
+         */
+        public boolean setAmtWater(int amtWater) {
+            if (IngredientVector.fits(amtWater)) {
+                this.amtWater = amtWater;
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Sets the amount of wet food required for the meal.
+         *
+         * @param wetFood The amount of wet food to set (as a string).
+         * @throws MealPlanException if the input is not a positive integer or is too large.
+         */
+        public void setAmtWetFood(String wetFood) throws MealPlanException {
+            int amtWetFood = parseAmount(wetFood, "wet food");
+            if (!setAmtWetFood(amtWetFood)) {
+                throw invalidAmount(amtWetFood, "wet food");
+            }
+        }
+
+        /**
+         * Sets the amount of wet food required for the meal.
+         *
+         * @param amtWetFood The amount of wet food to set.
+         * @return boolean True if set, false if the amount is negative or too large.
+         */
+        public boolean setAmtWetFood(int amtWetFood) {
+            if (IngredientVector.fits(amtWetFood)) {
+                this.amtWetFood = amtWetFood;
+                return true;
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Returns a new immutable meal plan with the current values.
+         *
+         * @return MealPlan
+         */
+        public MealPlan build() {
+            return new MealPlan(name, amtKibble, amtWater, amtWetFood, amtTreats);
+        }
+
+        private static int parseAmount(String amount, String ingredient) throws MealPlanException {
+            try {
+                return Integer.parseInt(amount);
+            } catch (NumberFormatException e) {
+                throw new MealPlanException("Units of " + ingredient + " must be a positive integer");
+            }
+        }
+
+        private static MealPlanException invalidAmount(int amount, String ingredient) {
+            if (amount < 0) {
+                return new MealPlanException("Units of " + ingredient + " must be a positive integer");
+            }
+            return new MealPlanException("Units of " + ingredient + " must be at most " + IngredientVector.MAX_UNITS);
+        }
     }
 }
@@ -1,32 +1,154 @@
 package petfeeder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class MealPlanBook {
 
     /**
-     * Array of meal plans in the pet feeder
+     * Array of meal plans in the pet feeder. A published array is never
+     * modified: writers copy it, change the copy and publish the copy, so
+     * readers see a consistent snapshot with a single volatile read.
+     */
+    private volatile MealPlan[] mealPlanArray;
+    /**
+     * Initial number of meal plan slots; the book doubles when it is full.
      */
-    private MealPlan[] mealPlanArray;
+    private static final int NUM_MEALPLANS = 4;
     /**
-     * Number of meal plans slots
+     * Slots holding a plan with a given name. Plans may share a name as
+     * long as their ingredients differ, so each name maps to a list that
+     * is almost always a single slot.
      */
-    private final int NUM_MEALPLANS = 4;
+    private final Map<String, List<Integer>> slotsByName;
+    /**
+     * Stack of empty slots; the next plan is added at freeSlots[freeCount - 1].
+     */
+    private int[] freeSlots;
+    private int freeCount;
+    /**
+     * Number of meal plans in the book.
+     */
+    private int size;
+    /**
+     * Struct-of-arrays view of the last published plan array, built on
+     * first use by maxDispensable.
+     */
+    private volatile PlanColumns columns;
 
     /**
      * Default constructor for a MealPlanBook.
      */
     public MealPlanBook() {
         mealPlanArray = new MealPlan[NUM_MEALPLANS];
+        slotsByName = new HashMap<>();
+        freeSlots = new int[NUM_MEALPLANS];
+        pushFreeSlots(0, NUM_MEALPLANS);
     }
 
     /**
-     * Returns the meal plan array.
+     * Returns a copy of the meal plan array, taken without locking.
+     * Empty slots are null, and later changes to the book do not show up
+     * in the copy.
      *
      * @return MealPlan[]
      */
-    public synchronized MealPlan[] getMealPlans() {
+    public MealPlan[] getMealPlans() {
+        return mealPlanArray.clone();
+    }
+
+    /**
+     * Returns the published meal plan array itself, without copying. It is
+     * shared by every reader, and caches such as maxDispensable's are keyed
+     * on its identity, so it must never be modified.
+     */
+    MealPlan[] sharedMealPlans() {
         return mealPlanArray;
     }
 
+    /**
+     * Returns the meal plan at the given index without locking, or null if
+     * the slot is empty or out of range.
+     *
+     * @param index The index of the meal plan.
+     * @return MealPlan
+     */
+    public MealPlan getMealPlan(int index) {
+        MealPlan[] plans = mealPlanArray;
+        return index >= 0 && index < plans.length ? plans[index] : null;
+    }
+
+    /**
+     * Returns, for every slot, how many times its meal plan could be
+     * dispensed in a row from the given stock and energy. Empty slots get 0,
+     * and a plan that uses no ingredients and no energy gets
+     * Integer.MAX_VALUE. Does not lock the book.
+     * <p>
+     * The answer comes from one pass over a struct-of-arrays copy of the
+     * plans that holds the reciprocal of every amount, so each slot costs
+     * five multiplications and no division. The loop has no branches and
+     * reads plain double arrays, which lets the JIT vectorize it.
+     *
+     * @param kibble  The kibble in stock.
+     * @param water   The water in stock.
+     * @param wetFood The wet food in stock.
+     * @param treats  The treats in stock.
+     * @param energy  The energy budget left.
+     * @return int[] The count for every slot.
+     */
+    public int[] maxDispensable(int kibble, int water, int wetFood, int treats, int energy) {
+        MealPlan[] plans = mealPlanArray;
+        PlanColumns view = columns;
+        if (view == null || view.plans != plans) {
+            view = new PlanColumns(plans);
+            columns = view;
+        }
+        // floor((n + 0.5) / amount) is exactly floor(n / amount): the
+        // quotient is at least 0.5 / amount away from an integer, far more
+        // than the rounding error of a double for any int stock.
+        double k = Math.max(0, kibble) + 0.5;
+        double w = Math.max(0, water) + 0.5;
+        double wf = Math.max(0, wetFood) + 0.5;
+        double t = Math.max(0, treats) + 0.5;
+        double e = Math.max(0, energy) + 0.5;
+        double[] perKibble = view.perKibble;
+        double[] perWater = view.perWater;
+        double[] perWetFood = view.perWetFood;
+        double[] perTreat = view.perTreat;
+        double[] perEnergy = view.perEnergy;
+        int[] counts = new int[plans.length];
+        for (int i = 0; i < counts.length; i++) {
+            double count = Math.min(Math.min(k * perKibble[i], w * perWater[i]),
+                    Math.min(Math.min(wf * perWetFood[i], t * perTreat[i]), e * perEnergy[i]));
+            counts[i] = (int) count;
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of meal plans in the book.
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index of a meal plan with the given name,
+     * or -1 if there is none.
+     *
+     * @param name The name of the meal plan.
+     * @return int The index of the meal plan.
+     */
+    public synchronized int indexOf(String name) {
+        List<Integer> slots = slotsByName.get(name);
+        return slots == null ? -1 : slots.get(0);
+    }
+
     /**
      * Returns true if the meal plan is added to the
      * list of meal plans in the MealPlanBook and false
@@ -36,31 +158,25 @@ public class MealPlanBook {
      * @return boolean
      */
     public synchronized boolean addMealPlan(MealPlan m) {
-        //Assume meal plan doesn't exist in the array until 
-        //find out otherwise
-        boolean exists = false;
-        //Check that meal plan doesn't already exist in array
         if (m == null) {
             return false;
         }
-        for (int i = 0; i < mealPlanArray.length; i++) {
-            if (m.equals(mealPlanArray[i])) {
-                exists = true;
-            }
-        }
-        //Assume meal plan cannot be added until find an empty
-        //spot
-        boolean added = false;
-        //Check for first empty spot in array
-        if (!exists) {
-            for (int i = 0; i < mealPlanArray.length && !added; i++) {
-                if (mealPlanArray[i] == null) {
-                    mealPlanArray[i] = m;
-                    added = true;
+        //Check that meal plan doesn't already exist in array
+        List<Integer> sameName = slotsByName.get(m.getName());
+        if (sameName != null) {
+            for (int slot : sameName) {
+                if (m.equals(mealPlanArray[slot])) {
+                    return false;
                 }
             }
         }
-        return added;
+        MealPlan[] plans = freeCount == 0 ? grow() : mealPlanArray.clone();
+        int slot = freeSlots[--freeCount];
+        plans[slot] = m;
+        mealPlanArray = plans;
+        index(slot, m);
+        size++;
+        return true;
     }
 
     /**
@@ -73,7 +189,12 @@ public class MealPlanBook {
     public synchronized String deleteMealPlan(int mealPlanToDelete) throws ArrayIndexOutOfBoundsException {
         if (mealPlanArray[mealPlanToDelete] != null) {
             String name = mealPlanArray[mealPlanToDelete].getName();
-            mealPlanArray[mealPlanToDelete] = null;
+            unindex(mealPlanToDelete, mealPlanArray[mealPlanToDelete]);
+            MealPlan[] plans = mealPlanArray.clone();
+            plans[mealPlanToDelete] = null;
+            mealPlanArray = plans;
+            freeSlots[freeCount++] = mealPlanToDelete;
+            size--;
             return name;
         } else {
             return null;
@@ -92,12 +213,154 @@ public class MealPlanBook {
         if (mealPlanToEdit < 0 || mealPlanToEdit >= mealPlanArray.length) {
             return null;
         }
-        if (mealPlanArray[mealPlanToEdit] != null) {
+        if (mealPlanArray[mealPlanToEdit] != null && newMealPlan != null) {
             String name = mealPlanArray[mealPlanToEdit].getName();
-            mealPlanArray[mealPlanToEdit] = newMealPlan;
+            unindex(mealPlanToEdit, mealPlanArray[mealPlanToEdit]);
+            MealPlan[] plans = mealPlanArray.clone();
+            plans[mealPlanToEdit] = newMealPlan;
+            mealPlanArray = plans;
+            index(mealPlanToEdit, newMealPlan);
             return name;
         } else {
             return null;
         }
     }
+
+    /**
+     * Returns the empty slots in the order they are used, the next one to
+     * be used last. Saved with the plans so that a restored book adds
+     * plans at the same indexes as this one.
+     *
+     * @return int[]
+     */
+    synchronized int[] getFreeSlots() {
+        return Arrays.copyOf(freeSlots, freeCount);
+    }
+
+    /**
+     * Replaces the whole book with the given slots, keeping every plan at
+     * its index. Used when a feeder is restored from saved state.
+     *
+     * @param plans The meal plan slots; empty slots are null.
+     */
+    synchronized void restore(MealPlan[] plans) {
+        restore(plans, null);
+    }
+
+    /**
+     * Replaces the whole book with the given slots, keeping every plan at
+     * its index, and reuses the empty slots in the given order.
+     *
+     * @param plans     The meal plan slots; empty slots are null.
+     * @param freeOrder Every empty slot as returned by getFreeSlots, or
+     *                  null to use the lowest empty slot first.
+     * @throws IllegalArgumentException if freeOrder does not list exactly the empty slots.
+     */
+    synchronized void restore(MealPlan[] plans, int[] freeOrder) {
+        int length = Math.max(NUM_MEALPLANS, plans.length);
+        MealPlan[] restored = Arrays.copyOf(plans, length);
+        int[] free = new int[length];
+        int count = 0;
+        if (freeOrder == null) {
+            for (int slot = length - 1; slot >= 0; slot--) {
+                if (restored[slot] == null) {
+                    free[count++] = slot;
+                }
+            }
+        } else {
+            boolean[] listed = new boolean[length];
+            for (int slot : freeOrder) {
+                if (slot < 0 || slot >= length || restored[slot] != null || listed[slot]) {
+                    throw new IllegalArgumentException("Not an empty slot: " + slot);
+                }
+                listed[slot] = true;
+                free[count++] = slot;
+            }
+            for (int slot = 0; slot < length; slot++) {
+                if (restored[slot] == null && !listed[slot]) {
+                    throw new IllegalArgumentException("Empty slot " + slot + " is not listed");
+                }
+            }
+        }
+        slotsByName.clear();
+        freeSlots = free;
+        freeCount = count;
+        size = 0;
+        for (int slot = 0; slot < length; slot++) {
+            if (restored[slot] != null) {
+                index(slot, restored[slot]);
+                size++;
+            }
+        }
+        mealPlanArray = restored;
+    }
+
+    /**
+     * Returns an unpublished copy of the meal plans with twice as many
+     * slots and makes the new slots available.
+     */
+    private MealPlan[] grow() {
+        int oldLength = mealPlanArray.length;
+        freeSlots = Arrays.copyOf(freeSlots, oldLength * 2);
+        pushFreeSlots(oldLength, oldLength * 2);
+        return Arrays.copyOf(mealPlanArray, oldLength * 2);
+    }
+
+    /**
+     * Pushes the slots from..to-1 so that the lowest one is used first.
+     */
+    private void pushFreeSlots(int from, int to) {
+        for (int slot = to - 1; slot >= from; slot--) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Reciprocal amounts of every plan, one array per ingredient. An amount
+     * of zero gives an infinite reciprocal, which never limits the count;
+     * an empty slot gives zero, which always does.
+     */
+    private static final class PlanColumns {
+        final MealPlan[] plans;
+        final double[] perKibble;
+        final double[] perWater;
+        final double[] perWetFood;
+        final double[] perTreat;
+        final double[] perEnergy;
+
+        PlanColumns(MealPlan[] plans) {
+            this.plans = plans;
+            int n = plans.length;
+            perKibble = new double[n];
+            perWater = new double[n];
+            perWetFood = new double[n];
+            perTreat = new double[n];
+            perEnergy = new double[n];
+            for (int i = 0; i < n; i++) {
+                MealPlan plan = plans[i];
+                if (plan != null) {
+                    long need = plan.getIngredients();
+                    perKibble[i] = 1.0 / IngredientVector.kibble(need);
+                    perWater[i] = 1.0 / IngredientVector.water(need);
+                    perWetFood[i] = 1.0 / IngredientVector.wetFood(need);
+                    perTreat[i] = 1.0 / IngredientVector.treats(need);
+                    perEnergy[i] = 1.0 / plan.getEnergyCost();
+                }
+            }
+        }
+    }
+
+    private void index(int slot, MealPlan m) {
+        slotsByName.computeIfAbsent(m.getName(), name -> new ArrayList<>(1)).add(slot);
+    }
+
+    private void unindex(int slot, MealPlan m) {
+        List<Integer> slots = slotsByName.get(m.getName());
+        if (slots != null) {
+            slots.remove(Integer.valueOf(slot));
+            if (slots.isEmpty()) {
+                slotsByName.remove(m.getName());
+            }
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package petfeeder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ingredients and energy held back for one meal, see
+ * {@link PetFeeder#reserveMeal}.
+ * <p>
+ * While a reservation is pending its ingredients and energy are already
+ * taken, so other dispenses only see the stock that is left, and no monitor
+ * is held while the caller drives the dispenser. The caller then commits
+ * the reservation once the meal was dispensed, or aborts it to give
+ * everything back. A reservation that is neither committed nor aborted in
+ * time expires and is given back as if it had been aborted.
+ * <p>
+ * A journaled feeder logs the reservation with its deadline and logs how
+ * it was settled. A reservation still pending when the feeder restarts is
+ * held again until its deadline and then given back, since the caller that
+ * would have settled it is gone.
+ */
+public final class MealReservation {
+
+    /**
+     * Where a reservation stands.
+     */
+    public enum State {
+        /**
+         * Nothing was reserved; see getOutcome for the reason.
+         */
+        FAILED,
+        /**
+         * The ingredients and energy are held.
+         */
+        PENDING,
+        /**
+         * The meal was dispensed.
+         */
+        COMMITTED,
+        /**
+         * The reservation was aborted and given back.
+         */
+        ABORTED,
+        /**
+         * The reservation timed out and was given back.
+         */
+        EXPIRED
+    }
+
+    private final PetFeeder feeder;
+    /**
+     * Identifies the reservation in the feeder's journal; 0 if the feeder
+     * has no journal.
+     */
+    private final long id;
+    /**
+     * Wall-clock time in milliseconds at which a journaled reservation expires.
+     */
+    private final long deadlineMillis;
+    private final int mealPlanIndex;
+    private final MealPlan mealPlan;
+    private final DispenseResult.Outcome outcome;
+    private final EnergyBudget budget;
+    private final long booked;
+    private final AtomicReference<State> state;
+    private volatile FeederClock.Timer expiry;
+
+    MealReservation(PetFeeder feeder, int mealPlanIndex, MealPlan mealPlan,
+                    DispenseResult.Outcome outcome, EnergyBudget budget, long booked) {
+        this(feeder, 0, 0, mealPlanIndex, mealPlan, outcome, budget, booked);
+    }
+
+    MealReservation(PetFeeder feeder, long id, long deadlineMillis, int mealPlanIndex, MealPlan mealPlan,
+                    DispenseResult.Outcome outcome, EnergyBudget budget, long booked) {
+        this.feeder = feeder;
+        this.id = id;
+        this.deadlineMillis = deadlineMillis;
+        this.mealPlanIndex = mealPlanIndex;
+        this.mealPlan = mealPlan;
+        this.outcome = outcome;
+        this.budget = budget;
+        this.booked = booked;
+        this.state = new AtomicReference<>(outcome == DispenseResult.Outcome.OK ? State.PENDING : State.FAILED);
+    }
+
+    void setExpiry(FeederClock.Timer expiry) {
+        this.expiry = expiry;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    EnergyBudget getBudget() {
+        return budget;
+    }
+
+    long getBooked() {
+        return booked;
+    }
+
+    /**
+     * Returns true if the ingredients and energy were reserved.
+     * @return boolean
+     */
+    public boolean isReserved() {
+        return outcome == DispenseResult.Outcome.OK;
+    }
+
+    /**
+     * Returns the outcome of the reservation request; OK if it was reserved.
+     * @return Outcome
+     */
+    public DispenseResult.Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns the current state.
+     * @return State
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Returns the requested meal plan index.
+     * @return int
+     */
+    public int getMealPlanIndex() {
+        return mealPlanIndex;
+    }
+
+    /**
+     * Returns the reserved meal plan, or null for NO_PLAN.
+     * @return MealPlan
+     */
+    public MealPlan getMealPlan() {
+        return mealPlan;
+    }
+
+    /**
+     * Confirms that the meal was dispensed; the reserved ingredients and
+     * energy stay used.
+     * @return boolean False if the reservation was not pending, for
+     * example because it had already expired.
+     */
+    public boolean commit() {
+        if (!state.compareAndSet(State.PENDING, State.COMMITTED)) {
+            return false;
+        }
+        cancelExpiry();
+        feeder.settle(this);
+        return true;
+    }
+
+    /**
+     * Gives the reserved ingredients and energy back.
+     * @return boolean False if the reservation was not pending.
+     */
+    public boolean abort() {
+        if (!state.compareAndSet(State.PENDING, State.ABORTED)) {
+            return false;
+        }
+        cancelExpiry();
+        feeder.release(this);
+        return true;
+    }
+
+    /**
+     * Gives the reservation back if it is still pending when its time is up.
+     */
+    void expire() {
+        if (state.compareAndSet(State.PENDING, State.EXPIRED)) {
+            feeder.release(this);
+        }
+    }
+
+    private void cancelExpiry() {
+        FeederClock.Timer timer = expiry;
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    /**
+     * Returns the state and the meal plan name.
+     * @return String
+     */
+    public String toString() {
+        return state.get() + (mealPlan != null ? " " + mealPlan.getName() : "");
+    }
+}
@@ -1,5 +1,19 @@
 package petfeeder;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import petfeeder.exceptions.FoodStockException;
 
 public class PetFeeder {
@@ -7,27 +21,149 @@ public class PetFeeder {
     /**
      * Array of meal plans in pet feeder
      */
-    private static MealPlanBook mealPlanBook;
+    private final MealPlanBook mealPlanBook;
     /**
      * Food container (inventory) of the pet feeder
      */
-    private static FoodContainer foodContainer;
+    private final FoodContainer foodContainer;
     /**
      * Simple total energy limit (in the same abstract energy points as meal energyCost).
      */
     private static final int ENERGY_LIMIT = 500;
+    private static final long TAKE_ENERGY_EXCEEDED = -1;
+    private static final long TAKE_INSUFFICIENT_STOCK = -2;
+    private static final long TAKE_NO_PLAN = -3;
+    /**
+     * Energy the feeder may still dispense. Lock-free, so checking it needs
+     * no monitor.
+     */
+    private volatile EnergyBudget energyBudget = new EnergyBudget(ENERGY_LIMIT);
+    /**
+     * Write-ahead log of state changes, or null if the feeder is not journaled.
+     */
+    private final FeederJournal journal;
     /**
-     * Energy consumed so far since the feeder was started.
+     * Latency histograms to record into, or null to record nothing.
      */
-    private int energyConsumedSoFar;
+    private volatile FeederMetrics metrics;
+    /**
+     * Clock that expires meal reservations, or null for the shared
+     * real-time reservation timer.
+     */
+    private volatile FeederClock clock;
+    /**
+     * Forecast to tell about meal plan changes, or null.
+     */
+    private volatile StockForecast forecast;
+    /**
+     * Pending reservations of a journaled feeder by id, saved in journal
+     * checkpoints. Guarded by the feeder monitor; null until the first one.
+     */
+    private Map<Long, MealReservation> pendingReservations;
+    /**
+     * Id of the next journaled reservation. Guarded by the feeder monitor.
+     */
+    private long nextReservationId = 1;
 
     /**
      * Constructor for the pet feeder.
      */
     public PetFeeder() {
+        this(new FoodContainer());
+    }
+
+    /**
+     * Constructor for a pet feeder that uses the given food container,
+     * for example a {@link LockFreeFoodContainer}.
+     *
+     * @param container The food container to dispense from.
+     */
+    public PetFeeder(FoodContainer container) {
         mealPlanBook = new MealPlanBook();
-        foodContainer = new FoodContainer();
-        this.energyConsumedSoFar = 0;
+        foodContainer = container;
+        this.journal = null;
+    }
+
+    /**
+     * Constructor for a journaled pet feeder that takes over the state
+     * replayed onto another feeder.
+     */
+    private PetFeeder(PetFeeder replayed, FeederJournal journal) {
+        mealPlanBook = replayed.mealPlanBook;
+        foodContainer = replayed.foodContainer;
+        energyBudget = replayed.energyBudget;
+        pendingReservations = replayed.pendingReservations;
+        nextReservationId = replayed.nextReservationId;
+        this.journal = journal;
+    }
+
+    /**
+     * Returns a pet feeder whose meal plans, stock and energy use are kept
+     * in a write-ahead log. The state already in the journal is replayed
+     * onto the new feeder, so the container must start out the same way
+     * every time (a new container holds 15 units of everything).
+     *
+     * @param container The food container to dispense from.
+     * @param journal   The journal to restore from and log to.
+     * @return PetFeeder The restored feeder, which owns the journal.
+     * @throws IllegalStateException if the journal already belongs to a feeder.
+     */
+    public static PetFeeder open(FoodContainer container, FeederJournal journal) {
+        return open(container, new EnergyBudget(ENERGY_LIMIT), journal);
+    }
+
+    /**
+     * Returns a journaled pet feeder like {@link #open(FoodContainer, FeederJournal)}
+     * with the given energy budget. The energy of the replayed dispenses is
+     * booked in this budget, so pass the budget here rather than setting
+     * it afterwards, which would drop the replayed energy use.
+     *
+     * @param container The food container to dispense from.
+     * @param budget    The energy budget, with no energy used yet.
+     * @param journal   The journal to restore from and log to.
+     * @return PetFeeder The restored feeder, which owns the journal.
+     * @throws IllegalStateException if the journal already belongs to a feeder.
+     */
+    public static PetFeeder open(FoodContainer container, EnergyBudget budget, FeederJournal journal) {
+        // Replayed onto a feeder without a journal, so the replayed events
+        // are not logged a second time.
+        PetFeeder replayed = new PetFeeder(container);
+        replayed.setEnergyBudget(budget);
+        journal.replay(replayed);
+        PetFeeder feeder = new PetFeeder(replayed, journal);
+        journal.attach(feeder);
+        feeder.rearmReservations();
+        return feeder;
+    }
+
+    /**
+     * Takes over the reservations that were pending when the journal was
+     * last written. Those whose deadline has passed are given back at once;
+     * the others expire at their deadline.
+     */
+    private void rearmReservations() {
+        List<MealReservation> replayed;
+        synchronized (this) {
+            if (pendingReservations == null) {
+                return;
+            }
+            replayed = new ArrayList<>(pendingReservations.values());
+        }
+        long now = System.currentTimeMillis();
+        for (MealReservation old : replayed) {
+            MealReservation reservation = new MealReservation(this, old.getId(), old.getDeadlineMillis(),
+                    old.getMealPlanIndex(), old.getMealPlan(), DispenseResult.Outcome.OK,
+                    old.getBudget(), old.getBooked());
+            synchronized (this) {
+                pendingReservations.put(reservation.getId(), reservation);
+            }
+            long remaining = reservation.getDeadlineMillis() - now;
+            if (remaining > 0) {
+                scheduleExpiry(reservation, remaining, TimeUnit.MILLISECONDS);
+            } else {
+                reservation.expire();
+            }
+        }
     }
 
     /**
@@ -39,7 +175,23 @@ public class PetFeeder {
      * @return boolean
      */
     public boolean addMealPlan(MealPlan m) {
-        return mealPlanBook.addMealPlan(m);
+        boolean added;
+        long logged = -1;
+        if (journal == null) {
+            added = mealPlanBook.addMealPlan(m);
+        } else {
+            synchronized (this) {
+                added = mealPlanBook.addMealPlan(m);
+                if (added) {
+                    logged = journal.logAddMealPlan(m);
+                }
+            }
+        }
+        commit(logged);
+        if (added) {
+            mealPlansChanged();
+        }
+        return added;
     }
 
     /**
@@ -50,7 +202,23 @@ public class PetFeeder {
      * @return String
      */
     public String deleteMealPlan(int mealPlanToDelete) {
-        return mealPlanBook.deleteMealPlan(mealPlanToDelete);
+        String deleted;
+        long logged = -1;
+        if (journal == null) {
+            deleted = mealPlanBook.deleteMealPlan(mealPlanToDelete);
+        } else {
+            synchronized (this) {
+                deleted = mealPlanBook.deleteMealPlan(mealPlanToDelete);
+                if (deleted != null) {
+                    logged = journal.logDeleteMealPlan(mealPlanToDelete);
+                }
+            }
+        }
+        commit(logged);
+        if (deleted != null) {
+            mealPlanChanged(mealPlanToDelete);
+        }
+        return deleted;
     }
 
     /**
@@ -62,7 +230,23 @@ public class PetFeeder {
      * @return String
      */
     public String editMealPlan(int mealPlanToEdit, MealPlan m) {
-        return mealPlanBook.editMealPlan(mealPlanToEdit, m);
+        String edited;
+        long logged = -1;
+        if (journal == null) {
+            edited = mealPlanBook.editMealPlan(mealPlanToEdit, m);
+        } else {
+            synchronized (this) {
+                edited = mealPlanBook.editMealPlan(mealPlanToEdit, m);
+                if (edited != null) {
+                    logged = journal.logEditMealPlan(mealPlanToEdit, m);
+                }
+            }
+        }
+        commit(logged);
+        if (edited != null) {
+            mealPlanChanged(mealPlanToEdit);
+        }
+        return edited;
     }
 
     /**
@@ -74,12 +258,73 @@ public class PetFeeder {
      * @param amtTreats  The amount of treats to add.
      * @throws FoodStockException if inputs are invalid.
      */
-    public synchronized void replenishFood(String amtKibble, String amtWater, String amtWetFood, String amtTreats) throws FoodStockException {
-        foodContainer.addKibble(amtKibble);
-        foodContainer.addWater(amtWater);
-        // This will call the method with the seeded bug
-        foodContainer.addWetFood(amtWetFood);
-        foodContainer.addTreats(amtTreats);
+    public void replenishFood(String amtKibble, String amtWater, String amtWetFood, String amtTreats) throws FoodStockException {
+        FeederMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        long logged = -1;
+        try {
+            synchronized (this) {
+                recordLockWait(m, start);
+                int kibble = foodContainer.getKibble();
+                int water = foodContainer.getWater();
+                int wetFood = foodContainer.getWetFood();
+                int treats = foodContainer.getTreats();
+                try {
+                    foodContainer.addKibble(amtKibble);
+                    foodContainer.addWater(amtWater);
+                    // This will call the method with the seeded bug
+                    foodContainer.addWetFood(amtWetFood);
+                    foodContainer.addTreats(amtTreats);
+                } finally {
+                    // Log what was actually added, also when a later amount was invalid.
+                    if (journal != null) {
+                        logged = logReplenish(foodContainer.getKibble() - kibble, foodContainer.getWater() - water,
+                                foodContainer.getWetFood() - wetFood, foodContainer.getTreats() - treats);
+                    }
+                }
+            }
+        } finally {
+            commit(logged);
+            if (m != null) {
+                m.getReplenishLatency().recordSince(start);
+            }
+        }
+    }
+
+    /**
+     * Replenishes all four ingredients at once without parsing or
+     * throwing. Nothing is added unless every amount is valid.
+     *
+     * @param amtKibble  The amount of kibble to add.
+     * @param amtWater   The amount of water to add.
+     * @param amtWetFood The amount of wet food to add.
+     * @param amtTreats  The amount of treats to add.
+     * @return boolean True if the food stock was replenished.
+     */
+    public boolean replenishFood(int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        FeederMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        boolean replenished;
+        long logged = -1;
+        synchronized (this) {
+            recordLockWait(m, start);
+            replenished = foodContainer.addIngredients(amtKibble, amtWater, amtWetFood, amtTreats);
+            if (replenished && journal != null) {
+                logged = logReplenish(amtKibble, amtWater, amtWetFood, amtTreats);
+            }
+        }
+        commit(logged);
+        if (m != null) {
+            m.getReplenishLatency().recordSince(start);
+        }
+        return replenished;
+    }
+
+    private long logReplenish(int amtKibble, int amtWater, int amtWetFood, int amtTreats) {
+        if ((amtKibble | amtWater | amtWetFood | amtTreats) == 0) {
+            return -1;
+        }
+        return journal.logReplenish(amtKibble, amtWater, amtWetFood, amtTreats);
     }
 
     /**
@@ -98,59 +343,624 @@ public class PetFeeder {
      * @param mealPlanToPurchase The index of the meal plan selected by the user.
      * @return boolean True if dispensing succeeded.
      */
-    public synchronized boolean dispenseMeal(int mealPlanToPurchase) {
-        boolean dispensed = false;
-        MealPlan[] plans = getMealPlans();
-        if (mealPlanToPurchase < 0 || mealPlanToPurchase >= plans.length) {
-            return false;
+    public boolean dispenseMeal(int mealPlanToPurchase) {
+        return dispenseAndActuate(mealPlanBook.getMealPlan(mealPlanToPurchase)) == DispenseResult.Outcome.OK;
+    }
+
+    /**
+     * Dispenses the selected meal plan like dispenseMeal and tells why it
+     * failed, without the timestamps of a DispenseResult.
+     */
+    DispenseResult.Outcome dispenseWithOutcome(int mealPlanToPurchase) {
+        return dispenseAndActuate(mealPlanBook.getMealPlan(mealPlanToPurchase));
+    }
+
+    /**
+     * Dispenses the selected meal plan on a shared, bounded pool of worker
+     * threads and returns at once. The caller never waits for the stock
+     * check or the actuation. If the pool's queue is full, the returned
+     * future fails with a RejectedExecutionException.
+     *
+     * @param mealPlanToPurchase The index of the meal plan to dispense.
+     * @return CompletableFuture Completes with the outcome after actuation.
+     */
+    public CompletableFuture<DispenseResult> dispenseMealAsync(int mealPlanToPurchase) {
+        return dispenseMealAsync(mealPlanToPurchase, AsyncExecutor.POOL);
+    }
+
+    /**
+     * Dispenses the selected meal plan on the given executor and returns at once.
+     *
+     * @param mealPlanToPurchase The index of the meal plan to dispense.
+     * @param executor           The executor to check, deduct and actuate on.
+     * @return CompletableFuture Completes with the outcome after actuation.
+     */
+    public CompletableFuture<DispenseResult> dispenseMealAsync(int mealPlanToPurchase, Executor executor) {
+        Instant requestedAt = Instant.now();
+        long requestedNanos = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                MealPlan selected = mealPlanBook.getMealPlan(mealPlanToPurchase);
+                DispenseResult.Outcome outcome = dispenseAndActuate(selected);
+                return new DispenseResult(outcome, mealPlanToPurchase, selected, requestedAt,
+                        Instant.now(), System.nanoTime() - requestedNanos);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
         }
-        if (plans[mealPlanToPurchase] == null) {
-            dispensed = false;
+    }
+
+    /**
+     * Attempts to dispense a batch of meal plans.
+     * Entries are applied in array order, and each one succeeds or fails
+     * against the stock and energy budget left by the entries before it.
+     * A failed entry uses nothing and does not stop the entries after it.
+     * A journaled feeder holds its monitor once for the whole batch and
+     * commits the records once. Otherwise no monitor is taken, as for a
+     * single dispense, so the entries are not isolated from dispenses on
+     * other threads: one of those may take stock between two entries.
+     * The dispensed meals are actuated after the monitor is released.
+     *
+     * @param mealPlansToPurchase The indexes of the meal plans to dispense.
+     * @return BitSet Bit i is set if entry i was dispensed.
+     */
+    public BitSet dispenseMeals(int[] mealPlansToPurchase) {
+        BitSet dispensed = new BitSet(mealPlansToPurchase.length);
+        MealPlan[] plans = sharedMealPlans();
+        FeederMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        long logged = -1;
+        if (journal == null) {
+            dispenseEach(plans, mealPlansToPurchase, dispensed);
         } else {
-            MealPlan selected = plans[mealPlanToPurchase];
-            int mealEnergy = selected.getEnergyCost();
-            int remainingEnergyBudget = ENERGY_LIMIT - energyConsumedSoFar;
-
-            // Require enough remaining total energy budget.
-            if (mealEnergy <= remainingEnergyBudget) {
-                if (foodContainer.useIngredients(selected)) {
-                    energyConsumedSoFar += mealEnergy;
-                    dispensed = true;
-                } else {
-                    dispensed = false;
+            synchronized (this) {
+                recordLockWait(m, start);
+                logged = dispenseEach(plans, mealPlansToPurchase, dispensed);
+            }
+        }
+        // One commit covers the whole batch.
+        commit(logged);
+        for (int i = dispensed.nextSetBit(0); i >= 0; i = dispensed.nextSetBit(i + 1)) {
+            actuate(plans[mealPlansToPurchase[i]]);
+        }
+        return dispensed;
+    }
+
+    /**
+     * Dispenses the entries of a batch and logs them if the feeder is
+     * journaled, returning the position of the last record or -1.
+     */
+    private long dispenseEach(MealPlan[] plans, int[] mealPlansToPurchase, BitSet dispensed) {
+        long logged = -1;
+        for (int i = 0; i < mealPlansToPurchase.length; i++) {
+            int index = mealPlansToPurchase[i];
+            if (index >= 0 && index < plans.length
+                    && dispense(plans[index]) == DispenseResult.Outcome.OK) {
+                dispensed.set(i);
+                if (journal != null) {
+                    logged = journal.logDispense(plans[index]);
                 }
-            } else {
-                dispensed = false;
             }
         }
+        return logged;
+    }
 
-        return dispensed;
+    /**
+     * Reserves the ingredients and energy of the selected meal plan without
+     * dispensing it. Other dispenses go on against the stock that is left
+     * while the caller drives the dispenser, and the caller then commits or
+     * aborts the reservation. If it does neither within the timeout, the
+     * reservation expires and everything is given back. The timeout runs
+     * on the feeder's clock, see setClock.
+     *
+     * @param mealPlanToPurchase The index of the meal plan to reserve.
+     * @param timeout            How long the reservation is held.
+     * @param unit               The unit of the timeout.
+     * @return MealReservation The reservation; check isReserved.
+     */
+    public MealReservation reserveMeal(int mealPlanToPurchase, long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Reservation timeout must be positive");
+        }
+        MealPlan selected = mealPlanBook.getMealPlan(mealPlanToPurchase);
+        EnergyBudget budget = energyBudget;
+        long taken;
+        MealReservation reservation = null;
+        long logged = -1;
+        if (journal == null) {
+            taken = take(selected, budget);
+        } else {
+            // Logged with its wall-clock deadline, so that a reservation
+            // still pending at a restart can be held until then.
+            synchronized (this) {
+                taken = take(selected, budget);
+                if (taken >= 0) {
+                    long id = nextReservationId++;
+                    long deadlineMillis = System.currentTimeMillis() + Math.max(1, unit.toMillis(timeout));
+                    reservation = new MealReservation(this, id, deadlineMillis, mealPlanToPurchase, selected,
+                            DispenseResult.Outcome.OK, budget, taken);
+                    pendingReservations().put(id, reservation);
+                    logged = journal.logReserve(id, deadlineMillis, mealPlanToPurchase, selected);
+                }
+            }
+        }
+        commit(logged);
+        if (reservation == null) {
+            reservation = new MealReservation(this, mealPlanToPurchase, selected, outcomeOf(taken), budget, taken);
+        }
+        if (reservation.isReserved()) {
+            scheduleExpiry(reservation, timeout, unit);
+        }
+        return reservation;
+    }
+
+    private void scheduleExpiry(MealReservation reservation, long timeout, TimeUnit unit) {
+        FeederClock expiryClock = clock != null ? clock : ReservationTimer.WHEEL;
+        reservation.setExpiry(expiryClock.schedule(reservation::expire, timeout, 0, unit));
+    }
+
+    private Map<Long, MealReservation> pendingReservations() {
+        if (pendingReservations == null) {
+            pendingReservations = new LinkedHashMap<>();
+        }
+        return pendingReservations;
+    }
+
+    /**
+     * Logs that a reservation was committed. Its ingredients and energy
+     * stay used.
+     */
+    void settle(MealReservation reservation) {
+        if (journal == null) {
+            return;
+        }
+        long logged;
+        synchronized (this) {
+            pendingReservations.remove(reservation.getId());
+            logged = journal.logCommitReservation(reservation.getId());
+        }
+        commit(logged);
+    }
+
+    /**
+     * Gives back the ingredients and energy of an aborted or expired reservation.
+     */
+    void release(MealReservation reservation) {
+        long logged = -1;
+        synchronized (this) {
+            giveBack(reservation);
+            if (journal != null) {
+                pendingReservations.remove(reservation.getId());
+                logged = journal.logRelease(reservation.getId());
+            }
+        }
+        commit(logged);
+    }
+
+    /**
+     * Gives back the stock and energy of a reservation. The stock always
+     * goes back, even into lanes that were replenished to capacity while
+     * the reservation was pending; see FoodContainer.putBack.
+     */
+    private void giveBack(MealReservation reservation) {
+        MealPlan meal = reservation.getMealPlan();
+        foodContainer.putBack(meal.getIngredients());
+        reservation.getBudget().release(reservation.getBooked(), meal.getEnergyCost());
+    }
+
+    /**
+     * Returns the pending reservations of a journaled feeder. Must be
+     * called while holding the feeder monitor. Used when saving the
+     * feeder's state.
+     */
+    Collection<MealReservation> getPendingReservations() {
+        return pendingReservations == null ? List.of() : pendingReservations.values();
     }
 
     /**
-     * Returns the list of MealPlans in the MealPlanBook.
+     * Drives the dispensing hardware for a meal whose ingredients and
+     * energy have already been taken. It is called without holding any
+     * monitor of the feeder, so a slow actuator only blocks the calling
+     * thread (and never pins a virtual thread to its carrier).
+     * Does nothing by default; override it to drive a real dispenser.
+     *
+     * @param dispensed The meal plan that was dispensed.
+     */
+    protected void actuate(MealPlan dispensed) {
+    }
+
+    /**
+     * Dispenses the selected meal plan and actuates it once the monitors are
+     * released. A journaled feeder dispenses and logs under the feeder
+     * monitor, so records are logged in the order the state changed, and
+     * actuates once the record is committed. Otherwise the energy budget
+     * and the food container are both thread-safe on their own, and the
+     * feeder monitor is not taken at all.
+     */
+    private DispenseResult.Outcome dispenseAndActuate(MealPlan selected) {
+        FeederMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        DispenseResult.Outcome outcome;
+        long logged = -1;
+        if (journal == null) {
+            outcome = dispense(selected);
+        } else {
+            synchronized (this) {
+                recordLockWait(m, start);
+                outcome = dispense(selected);
+                if (outcome == DispenseResult.Outcome.OK) {
+                    logged = journal.logDispense(selected);
+                }
+            }
+        }
+        if (outcome == DispenseResult.Outcome.OK) {
+            commit(logged);
+            actuate(selected);
+        }
+        if (m != null) {
+            m.getDispenseLatency().recordSince(start);
+        }
+        return outcome;
+    }
+
+    /**
+     * Records how long a journaled feeder waited for its monitor, using the
+     * start time of the whole call so the clock is read only once more.
+     * A feeder without a journal does not take its monitor to dispense, so
+     * it is rarely contended, and timing it would cost a clock read on every call.
+     */
+    private void recordLockWait(FeederMetrics m, long start) {
+        if (m != null && journal != null) {
+            m.getLockWait().recordSince(start);
+        }
+    }
+
+    /**
+     * Waits for a journal record to be durable. Must be called without
+     * holding the feeder monitor, so one slow disk flush does not block
+     * every other caller.
+     */
+    private void commit(long logged) {
+        if (logged >= 0) {
+            journal.commit(logged);
+        }
+    }
+
+    /**
+     * Starts or stops recording latencies. One FeederMetrics can be shared
+     * by several feeders. Without metrics (the default) the feeder does not
+     * read the clock at all.
+     *
+     * @param metrics The histograms to record into, or null to stop recording.
+     */
+    public void setMetrics(FeederMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the histograms the feeder records into, or null.
+     *
+     * @return FeederMetrics
+     */
+    public FeederMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the clock that expires meal reservations, for example the
+     * ManualClock that also drives the feeder's scheduler and energy
+     * budget. By default reservations expire in real time on a timing
+     * wheel shared by all feeders.
+     *
+     * @param clock The clock, or null for the shared real-time timer.
+     */
+    public void setClock(FeederClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the forecast to tell about meal plan changes, or null for none.
+     * Set by the feeder's FeedingScheduler when its forecast is created.
+     */
+    void setForecast(StockForecast forecast) {
+        this.forecast = forecast;
+    }
+
+    private void mealPlansChanged() {
+        StockForecast f = forecast;
+        if (f != null) {
+            f.mealPlansChanged();
+        }
+    }
+
+    private void mealPlanChanged(int slot) {
+        StockForecast f = forecast;
+        if (f != null) {
+            f.mealPlanChanged(slot);
+        }
+    }
+
+    /**
+     * Rewrites the journal as a single checkpoint of the current state.
+     * The journal also compacts itself when it is full.
+     *
+     * @throws IllegalStateException if the feeder has no journal.
+     */
+    public void compactJournal() {
+        if (journal == null) {
+            throw new IllegalStateException("Feeder has no journal");
+        }
+        long logged;
+        synchronized (this) {
+            logged = journal.compact();
+        }
+        commit(logged);
+    }
+
+    /**
+     * Returns the food container. Used when saving the feeder's state.
+     */
+    FoodContainer getFoodContainer() {
+        return foodContainer;
+    }
+
+    /**
+     * Returns the energy consumed so far. Used when saving the feeder's state.
+     */
+    int getEnergyConsumed() {
+        return energyBudget.getConsumed();
+    }
+
+    /**
+     * Returns the empty meal plan slots in the order they are reused.
+     * Used when saving the feeder's state.
+     */
+    int[] getFreeMealPlanSlots() {
+        return mealPlanBook.getFreeSlots();
+    }
+
+    /**
+     * Replaces the stock, energy use and meal plans with saved values.
+     * The empty slots are reused in the given order, or lowest first if
+     * it is null.
+     */
+    synchronized void restoreState(int kibble, int water, int wetFood, int treats,
+                                   int energyConsumed, MealPlan[] plans, int[] freeSlots) {
+        foodContainer.setKibble(kibble);
+        foodContainer.setWater(water);
+        foodContainer.setWetFood(wetFood);
+        foodContainer.setTreats(treats);
+        energyBudget.restore(energyConsumed);
+        mealPlanBook.restore(plans, freeSlots);
+        pendingReservations = null;
+        mealPlansChanged();
+    }
+
+    /**
+     * Takes the stock and energy of a meal that was dispensed before a
+     * restart, without actuating it again. The meal was allowed when it
+     * was dispensed, so neither the stock nor the budget is checked again.
+     */
+    synchronized void restoreDispense(MealPlan meal) {
+        restoreTake(meal);
+    }
+
+    /**
+     * Takes the stock and energy of a meal without checking either, and
+     * returns the slice the energy was booked in.
+     */
+    private long restoreTake(MealPlan meal) {
+        long need = meal.getIngredients();
+        if (!foodContainer.useIngredients(meal)) {
+            // The container started out with less than when the meal was
+            // dispensed; take what is there.
+            foodContainer.setKibble(Math.max(0, foodContainer.getKibble() - IngredientVector.kibble(need)));
+            foodContainer.setWater(Math.max(0, foodContainer.getWater() - IngredientVector.water(need)));
+            foodContainer.setWetFood(Math.max(0, foodContainer.getWetFood() - IngredientVector.wetFood(need)));
+            foodContainer.setTreats(Math.max(0, foodContainer.getTreats() - IngredientVector.treats(need)));
+        }
+        return energyBudget.book(meal.getEnergyCost());
+    }
+
+    /**
+     * Takes the stock and energy of a reservation made before a restart
+     * and holds it as pending.
+     */
+    synchronized void restoreReservation(long id, long deadlineMillis, int mealPlanIndex, MealPlan meal) {
+        restorePending(id, deadlineMillis, mealPlanIndex, meal, restoreTake(meal));
+    }
+
+    /**
+     * Holds a reservation saved in a checkpoint as pending. Its stock and
+     * energy are already part of the checkpoint, which books all energy
+     * in the current slice.
+     */
+    synchronized void restorePendingReservation(long id, long deadlineMillis, int mealPlanIndex, MealPlan meal) {
+        restorePending(id, deadlineMillis, mealPlanIndex, meal, energyBudget.currentSlice());
+    }
+
+    private void restorePending(long id, long deadlineMillis, int mealPlanIndex, MealPlan meal, long booked) {
+        pendingReservations().put(id, new MealReservation(this, id, deadlineMillis, mealPlanIndex, meal,
+                DispenseResult.Outcome.OK, energyBudget, booked));
+        nextReservationId = Math.max(nextReservationId, id + 1);
+    }
+
+    /**
+     * Forgets a reservation that was committed before a restart; its
+     * stock and energy stay used.
+     */
+    synchronized void restoreCommitReservation(long id) {
+        if (pendingReservations != null) {
+            pendingReservations.remove(id);
+        }
+    }
+
+    /**
+     * Gives back the stock and energy of a reservation that was released
+     * before a restart.
+     */
+    synchronized void restoreRelease(long id) {
+        MealReservation released = pendingReservations == null ? null : pendingReservations.remove(id);
+        if (released != null) {
+            giveBack(released);
+        }
+    }
+
+    /**
+     * Dispenses the selected meal plan, or fails if it is null.
+     */
+    private DispenseResult.Outcome dispense(MealPlan selected) {
+        return outcomeOf(take(selected, energyBudget));
+    }
+
+    /**
+     * Takes the energy and ingredients of the selected meal plan. The
+     * energy is taken first and given back if the stock is too low.
+     * Returns the slice the energy was booked in, or one of the negative
+     * TAKE_ codes.
+     */
+    private long take(MealPlan selected, EnergyBudget budget) {
+        if (selected == null) {
+            return TAKE_NO_PLAN;
+        }
+        int mealEnergy = selected.getEnergyCost();
+        long booked = budget.acquire(mealEnergy);
+
+        // Require enough remaining energy budget.
+        if (booked < 0) {
+            return TAKE_ENERGY_EXCEEDED;
+        }
+        if (!foodContainer.useIngredients(selected)) {
+            budget.release(booked, mealEnergy);
+            return TAKE_INSUFFICIENT_STOCK;
+        }
+        return booked;
+    }
+
+    private static DispenseResult.Outcome outcomeOf(long taken) {
+        if (taken >= 0) {
+            return DispenseResult.Outcome.OK;
+        } else if (taken == TAKE_ENERGY_EXCEEDED) {
+            return DispenseResult.Outcome.ENERGY_EXCEEDED;
+        } else if (taken == TAKE_INSUFFICIENT_STOCK) {
+            return DispenseResult.Outcome.INSUFFICIENT_STOCK;
+        }
+        return DispenseResult.Outcome.NO_PLAN;
+    }
+
+    /**
+     * Returns a copy of the MealPlans in the MealPlanBook.
+     * Reading it does not lock the feeder.
      *
      * @return MealPlan[]
      */
-    public synchronized MealPlan[] getMealPlans() {
+    public MealPlan[] getMealPlans() {
         return mealPlanBook.getMealPlans();
     }
 
     /**
-     * Returns the configured total energy limit for this feeder.
+     * Returns the meal plan array the book published last, without
+     * copying it. It must never be modified; see MealPlanBook.sharedMealPlans.
+     */
+    MealPlan[] sharedMealPlans() {
+        return mealPlanBook.sharedMealPlans();
+    }
+
+    /**
+     * Returns, for every meal plan slot, how many more times the plan could
+     * be dispensed with the current stock and remaining energy budget, if
+     * nothing else were dispensed. Empty slots get 0. Takes no lock; under
+     * concurrent dispenses the answer reflects some recent stock.
+     *
+     * @return int[] The count for every meal plan index.
+     */
+    public int[] feasibility() {
+        return mealPlanBook.maxDispensable(foodContainer.getKibble(), foodContainer.getWater(),
+                foodContainer.getWetFood(), foodContainer.getTreats(), getRemainingEnergyBudget());
+    }
+
+    /**
+     * Returns the meal plan at the given index, or null if there is none.
+     * Reading it does not lock the feeder.
+     *
+     * @param index The index of the meal plan.
+     * @return MealPlan
+     */
+    public MealPlan getMealPlan(int index) {
+        return mealPlanBook.getMealPlan(index);
+    }
+
+    /**
+     * Returns the configured energy limit for this feeder, per window if
+     * the budget has one.
      *
      * @return int
      */
     public int getEnergyLimit() {
-        return ENERGY_LIMIT;
+        return energyBudget.getLimit();
     }
 
     /**
-     * Returns the remaining energy budget (limit minus energy consumed so far).
+     * Returns the remaining energy budget (limit minus energy consumed so
+     * far, or within the current window).
      *
      * @return int
      */
     public int getRemainingEnergyBudget() {
-        return ENERGY_LIMIT - energyConsumedSoFar;
+        return energyBudget.getRemaining();
+    }
+
+    /**
+     * Replaces the energy budget, for example with a rolling window such
+     * as {@link EnergyBudget#perDay}. Energy consumed under the old budget
+     * does not count against the new one. By default a feeder may use
+     * 500 energy points in total.
+     *
+     * @param budget The new energy budget.
+     */
+    public void setEnergyBudget(EnergyBudget budget) {
+        if (budget == null) {
+            throw new NullPointerException("Energy budget must not be null");
+        }
+        this.energyBudget = budget;
+    }
+
+    /**
+     * Returns the energy budget.
+     *
+     * @return EnergyBudget
+     */
+    public EnergyBudget getEnergyBudget() {
+        return energyBudget;
+    }
+
+    /**
+     * Timing wheel shared by all feeders that expires meal reservations,
+     * created on first use.
+     */
+    private static final class ReservationTimer {
+        static final TimingWheel WHEEL = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+    }
+
+    /**
+     * Worker pool shared by all feeders for dispenseMealAsync, created on
+     * first use. Actuation blocks, so it has more threads than processors;
+     * the queue is bounded so a flood of requests is rejected instead of
+     * piling up without limit.
+     */
+    private static final class AsyncExecutor {
+        private static final int QUEUE_CAPACITY = 10_000;
+        static final ThreadPoolExecutor POOL;
+
+        static {
+            int threads = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+            POOL = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                        Thread t = new Thread(r, "petfeeder-dispense");
+                        t.setDaemon(true);
+                        return t;
+                    });
+            POOL.allowCoreThreadTimeOut(true);
+        }
     }
 }
@@ -0,0 +1,135 @@
+package petfeeder;
+
+import java.time.Duration;
+
+/**
+ * What happened during one run of a {@link FeedingSimulation}: the meals
+ * dispensed, the feedings that failed and why, the replenishments, and
+ * the fleet's total stock and remaining energy over virtual time.
+ */
+public final class SimulationReport {
+
+    /**
+     * Counter indexes; the first ones are the ordinals of DispenseResult.Outcome.
+     */
+    static final int REPLENISHED = DispenseResult.Outcome.values().length;
+    static final int EVENTS = REPLENISHED + 1;
+    static final int COUNTERS = EVENTS + 1;
+
+    private final long[] counts;
+    private final Duration duration;
+    private final Duration sampleInterval;
+    private final long[][] curves;
+    private final long wallNanos;
+
+    SimulationReport(long[] counts, Duration duration, Duration sampleInterval, long[][] curves, long wallNanos) {
+        this.counts = counts;
+        this.duration = duration;
+        this.sampleInterval = sampleInterval;
+        this.curves = curves;
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * Returns the number of meals dispensed.
+     * @return long
+     */
+    public long getDispensed() {
+        return counts[DispenseResult.Outcome.OK.ordinal()];
+    }
+
+    /**
+     * Returns the number of feedings that ended with the given outcome.
+     * @param outcome The outcome, OK for dispensed meals.
+     * @return long
+     */
+    public long getCount(DispenseResult.Outcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    /**
+     * Returns the number of feedings that failed for any reason.
+     * @return long
+     */
+    public long getFailures() {
+        long failures = 0;
+        for (DispenseResult.Outcome outcome : DispenseResult.Outcome.values()) {
+            if (outcome != DispenseResult.Outcome.OK) {
+                failures += counts[outcome.ordinal()];
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Returns the number of replenishments that added stock.
+     * @return long
+     */
+    public long getReplenishments() {
+        return counts[REPLENISHED];
+    }
+
+    /**
+     * Returns the number of feedings and replenishments that fired.
+     * @return long
+     */
+    public long getEvents() {
+        return counts[EVENTS];
+    }
+
+    /**
+     * Returns the virtual time that was simulated.
+     * @return Duration
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the virtual time between two samples of a curve.
+     * @return Duration
+     */
+    public Duration getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * Returns the fleet's total stock of an ingredient, or with ENERGY the
+     * total remaining energy budget, at the start of the run and after
+     * every sample interval.
+     * @param resource The resource.
+     * @return long[] A copy of the samples.
+     */
+    public long[] getCurve(StockForecast.Resource resource) {
+        return curves[resource.ordinal()].clone();
+    }
+
+    /**
+     * Returns the wall-clock time the run took.
+     * @return Duration
+     */
+    public Duration getWallTime() {
+        return Duration.ofNanos(wallNanos);
+    }
+
+    /**
+     * Returns the events simulated per wall-clock second.
+     * @return double
+     */
+    public double getEventsPerSecond() {
+        return wallNanos == 0 ? 0 : counts[EVENTS] * 1e9 / wallNanos;
+    }
+
+    /**
+     * Returns a one-line summary of the run.
+     * @return String
+     */
+    public String toString() {
+        return String.format("Simulated %s in %d ms: %d events (%.0f/s), %d dispensed, %d failed "
+                        + "(%d insufficient stock, %d energy exceeded, %d no plan), %d replenished",
+                duration, getWallTime().toMillis(), getEvents(), getEventsPerSecond(), getDispensed(),
+                getFailures(), getCount(DispenseResult.Outcome.INSUFFICIENT_STOCK),
+                getCount(DispenseResult.Outcome.ENERGY_EXCEEDED), getCount(DispenseResult.Outcome.NO_PLAN),
+                getReplenishments());
+    }
+}
@@ -0,0 +1,283 @@
+package petfeeder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Projects a feeder's stock and energy budget forward against the active
+ * schedules of its {@link FeedingScheduler}, and tells how long each
+ * ingredient and the energy budget last at the scheduled rate.
+ * <p>
+ * The forecast keeps the scheduled feedings per second of every meal plan
+ * slot and the use per second of every resource. The scheduler updates it
+ * when a schedule starts or is cancelled and the feeder when a meal plan
+ * is added, edited or deleted, each change taking the slot's old use out of
+ * the totals and adding its new use. Stock and remaining energy are read
+ * when asked, so a replenish or dispense needs no update at all, and a
+ * query never walks the schedules or the fleet.
+ * <p>
+ * Time to empty is the stock divided by the use per second, so it is an
+ * average: a meal that no longer fits fails up to one period earlier.
+ * Obtain a forecast with {@link FeedingScheduler#getForecast()}.
+ */
+public final class StockForecast {
+
+    /**
+     * What a feeder can run out of.
+     */
+    public enum Resource {
+        KIBBLE,
+        WATER,
+        WET_FOOD,
+        TREATS,
+        ENERGY
+    }
+
+    private static final int RESOURCES = 5;
+    private static final int ENERGY = 4;
+
+    private final PetFeeder feeder;
+    /**
+     * Number of active schedules on every meal plan slot.
+     */
+    private int[] scheduleCounts = new int[0];
+    /**
+     * Scheduled feedings per second of every meal plan slot.
+     */
+    private double[] feedingsPerSecond = new double[0];
+    /**
+     * The meal plan whose amounts are counted in usePerSecond, by slot.
+     */
+    private MealPlan[] counted = new MealPlan[0];
+    private final double[] usePerSecond = new double[RESOURCES];
+    /**
+     * Number of counted slots whose plan uses each resource. A total is
+     * reset to exactly zero when its last user goes, so rounding never
+     * leaves a tiny use behind.
+     */
+    private final int[] users = new int[RESOURCES];
+
+    StockForecast(PetFeeder feeder) {
+        this.feeder = feeder;
+    }
+
+    /**
+     * Counts a schedule that was started.
+     */
+    synchronized void scheduleAdded(int mealPlanIndex, long periodNanos) {
+        if (mealPlanIndex < 0) {
+            return;
+        }
+        if (mealPlanIndex >= scheduleCounts.length) {
+            int length = Math.max(mealPlanIndex + 1, scheduleCounts.length * 2);
+            scheduleCounts = Arrays.copyOf(scheduleCounts, length);
+            feedingsPerSecond = Arrays.copyOf(feedingsPerSecond, length);
+            counted = Arrays.copyOf(counted, length);
+        }
+        uncount(mealPlanIndex);
+        scheduleCounts[mealPlanIndex]++;
+        feedingsPerSecond[mealPlanIndex] += 1e9 / periodNanos;
+        counted[mealPlanIndex] = feeder.getMealPlan(mealPlanIndex);
+        count(mealPlanIndex);
+    }
+
+    /**
+     * Stops counting a schedule that was cancelled.
+     */
+    synchronized void scheduleRemoved(int mealPlanIndex, long periodNanos) {
+        if (mealPlanIndex < 0 || mealPlanIndex >= scheduleCounts.length || scheduleCounts[mealPlanIndex] == 0) {
+            return;
+        }
+        uncount(mealPlanIndex);
+        if (--scheduleCounts[mealPlanIndex] == 0) {
+            // Reset exactly, so rounding never leaves a tiny use behind.
+            feedingsPerSecond[mealPlanIndex] = 0;
+            counted[mealPlanIndex] = null;
+        } else {
+            feedingsPerSecond[mealPlanIndex] -= 1e9 / periodNanos;
+            count(mealPlanIndex);
+        }
+    }
+
+    /**
+     * Stops counting every schedule.
+     */
+    synchronized void schedulesCleared() {
+        Arrays.fill(scheduleCounts, 0);
+        Arrays.fill(feedingsPerSecond, 0);
+        Arrays.fill(counted, null);
+        Arrays.fill(usePerSecond, 0);
+        Arrays.fill(users, 0);
+    }
+
+    /**
+     * Picks up meal plans that were added or restored on any slot that has
+     * schedules. Meal plans are immutable, so a slot changed if it holds a
+     * different plan object.
+     */
+    synchronized void mealPlansChanged() {
+        for (int slot = 0; slot < scheduleCounts.length; slot++) {
+            mealPlanChanged(slot);
+        }
+    }
+
+    /**
+     * Picks up a meal plan that was edited or deleted on one slot.
+     */
+    synchronized void mealPlanChanged(int slot) {
+        if (slot < 0 || slot >= scheduleCounts.length || scheduleCounts[slot] == 0) {
+            return;
+        }
+        MealPlan plan = feeder.getMealPlan(slot);
+        if (plan != counted[slot]) {
+            uncount(slot);
+            counted[slot] = plan;
+            count(slot);
+        }
+    }
+
+    /**
+     * Adds the use of a slot to the totals; a slot whose plan is missing
+     * is scheduled but uses nothing.
+     */
+    private void count(int slot) {
+        MealPlan plan = counted[slot];
+        if (plan != null) {
+            double rate = feedingsPerSecond[slot];
+            for (int r = 0; r < RESOURCES; r++) {
+                int amount = amountOf(plan, r);
+                if (amount > 0) {
+                    users[r]++;
+                    usePerSecond[r] += rate * amount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Takes the use of a slot out of the totals again.
+     */
+    private void uncount(int slot) {
+        MealPlan plan = counted[slot];
+        if (plan != null) {
+            double rate = feedingsPerSecond[slot];
+            for (int r = 0; r < RESOURCES; r++) {
+                int amount = amountOf(plan, r);
+                if (amount > 0) {
+                    usePerSecond[r] = --users[r] == 0 ? 0 : usePerSecond[r] - rate * amount;
+                }
+            }
+        }
+    }
+
+    private static int amountOf(MealPlan plan, int r) {
+        switch (r) {
+            case 0:
+                return plan.getAmtKibble();
+            case 1:
+                return plan.getAmtWater();
+            case 2:
+                return plan.getAmtWetFood();
+            case 3:
+                return plan.getAmtTreats();
+            default:
+                return plan.getEnergyCost();
+        }
+    }
+
+    /**
+     * Returns how much of a resource the active schedules use per second.
+     * @param resource The resource.
+     * @return double
+     */
+    public synchronized double getUsePerSecond(Resource resource) {
+        return usePerSecond[resource.ordinal()];
+    }
+
+    /**
+     * Returns the seconds until a resource runs out at the scheduled rate,
+     * or infinity if the schedules do not use it. An energy budget with a
+     * window never runs out if the schedules use no more than its limit
+     * per window; otherwise the remaining energy is divided by the use and
+     * energy that leaves the window meanwhile is not counted.
+     * @param resource The resource.
+     * @return double
+     */
+    public double getSecondsToEmpty(Resource resource) {
+        int r = resource.ordinal();
+        double use = getUsePerSecond(resource);
+        if (use <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (r == ENERGY) {
+            EnergyBudget budget = feeder.getEnergyBudget();
+            Duration window = budget.getWindow();
+            if (!window.isZero() && use * window.toNanos() / 1e9 <= budget.getLimit()) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return budget.getRemaining() / use;
+        }
+        return stockOf(feeder.getFoodContainer(), r) / use;
+    }
+
+    private static int stockOf(FoodContainer stock, int r) {
+        switch (r) {
+            case 0:
+                return stock.getKibble();
+            case 1:
+                return stock.getWater();
+            case 2:
+                return stock.getWetFood();
+            default:
+                return stock.getTreats();
+        }
+    }
+
+    /**
+     * Returns the time until a resource runs out at the scheduled rate,
+     * or null if it never does.
+     * @param resource The resource.
+     * @return Duration
+     */
+    public Duration getTimeToEmpty(Resource resource) {
+        double seconds = getSecondsToEmpty(resource);
+        if (seconds == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        return Duration.ofNanos((long) Math.min(Long.MAX_VALUE, seconds * 1e9));
+    }
+
+    /**
+     * Returns the resource that runs out first, or null if none does.
+     * @return Resource
+     */
+    public Resource getFirstToRunOut() {
+        Resource first = null;
+        double soonest = Double.POSITIVE_INFINITY;
+        for (Resource resource : Resource.values()) {
+            double seconds = getSecondsToEmpty(resource);
+            if (seconds < soonest) {
+                soonest = seconds;
+                first = resource;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the time until every resource runs out, such as
+     * "KIBBLE=PT1M, WATER=never".
+     * @return String
+     */
+    public String toString() {
+        StringBuilder forecast = new StringBuilder();
+        for (Resource resource : Resource.values()) {
+            if (forecast.length() > 0) {
+                forecast.append(", ");
+            }
+            Duration left = getTimeToEmpty(resource);
+            forecast.append(resource).append('=').append(left == null ? "never" : left.toString());
+        }
+        return forecast.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package petfeeder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Real-time clock that runs its timers on one thread of its own.
+ */
+public final class SystemClock implements FeederClock {
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates a clock with its own timer thread.
+     */
+    public SystemClock() {
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Timer schedule(Runnable task, long delay, long period, TimeUnit unit) {
+        if (delay < 0 || period < 0) {
+            throw new IllegalArgumentException("Delay and period must not be negative");
+        }
+        ScheduledFuture<?> future = period == 0
+                ? executor.schedule(task, delay, unit)
+                : executor.scheduleAtFixedRate(task, delay, period, unit);
+        return new Timer() {
+            @Override
+            public boolean cancel() {
+                return future.cancel(false);
+            }
+
+            @Override
+            public boolean isActive() {
+                return !future.isDone();
+            }
+        };
+    }
+
+    /**
+     * Stops the timer thread. Timers that have not run are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,362 @@
+package petfeeder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel for running very many recurring tasks on a
+ * small, fixed set of threads.
+ * <p>
+ * Time is divided into ticks. The wheel has four levels of 64 slots; level 0
+ * holds tasks due within 64 ticks, level 1 within 64^2 ticks and so on, and
+ * a slot of a higher level is moved down a level each time the level below
+ * wraps around. Scheduling and cancelling only append to a queue and are
+ * O(1); a single ticker thread owns the slots. All tasks due in the same
+ * tick are handed to the worker threads together in a few batches instead
+ * of one submission per task, and a recurring task that is still running
+ * when it is due again skips that run.
+ * <p>
+ * A timing wheel is a real-time {@link FeederClock} that many feeders can share.
+ * The class is final because its constructor starts the ticker thread.
+ */
+public final class TimingWheel implements FeederClock {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    /**
+     * Largest number of tasks run by one worker submission.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    private static final int ACTIVE = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /**
+     * Handle of a task scheduled on the wheel.
+     */
+    public static final class Timeout implements FeederClock.Timer {
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long periodNanos;
+        private volatile int state;
+        private volatile boolean running;
+
+        // Owned by the ticker thread once the timeout has been added.
+        private long deadlineNanos;
+        private long deadlineTick;
+        private int level = -1;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineNanos, long periodNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        /**
+         * Cancels the task. A run that has already started is not interrupted.
+         * @return boolean True if this call cancelled the task.
+         */
+        @Override
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, ACTIVE, CANCELLED)) {
+                wheel.active.decrementAndGet();
+                wheel.cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if the task was cancelled.
+         * @return boolean
+         */
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        /**
+         * Returns true if the task is still scheduled to run.
+         * @return boolean
+         */
+        @Override
+        public boolean isActive() {
+            return state == ACTIVE;
+        }
+
+        private void run() {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // One failing task must not stop the rest of its batch.
+            } finally {
+                running = false;
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] slots = new Timeout[LEVELS][WHEEL_SIZE];
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final ExecutorService workers;
+    private final Thread ticker;
+    private volatile boolean stopped;
+    /**
+     * The last tick processed. Owned by the ticker thread.
+     */
+    private long currentTick;
+
+    /**
+     * Creates a timing wheel with 10 ms ticks and one worker
+     * thread per available processor.
+     */
+    public TimingWheel() {
+        this(10, TimeUnit.MILLISECONDS, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a timing wheel.
+     * @param tickDuration The length of one tick; tasks fire on tick boundaries.
+     * @param unit The unit of tickDuration.
+     * @param workerThreads The number of threads that run due tasks.
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int workerThreads) {
+        if (tickDuration <= 0 || workerThreads <= 0) {
+            throw new IllegalArgumentException("Tick duration and worker threads must be positive");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.workers = Executors.newFixedThreadPool(workerThreads, r -> {
+            Thread t = new Thread(r, "timing-wheel-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(this::tickLoop, "timing-wheel-ticker");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Schedules a task to run after the delay and then once every period,
+     * at a fixed rate. A period of zero runs the task only once.
+     * @param task The task to run.
+     * @param delay The delay before the first run.
+     * @param period The time between runs, or 0 for a one-shot task.
+     * @param unit The unit of delay and period.
+     * @return Timeout A handle that can cancel the task.
+     */
+    @Override
+    public Timeout schedule(Runnable task, long delay, long period, TimeUnit unit) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        if (delay < 0 || period < 0) {
+            throw new IllegalArgumentException("Delay and period must not be negative");
+        }
+        if (stopped) {
+            throw new IllegalStateException("Timing wheel is shut down");
+        }
+        Timeout timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay), unit.toNanos(period));
+        active.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Returns the number of tasks that are scheduled and not cancelled
+     * or finished.
+     * @return int
+     */
+    public int activeTimeouts() {
+        return active.get();
+    }
+
+    /**
+     * Stops the ticker and the worker threads. Tasks that have not run are dropped.
+     */
+    public void shutdown() {
+        stopped = true;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    private void tickLoop() {
+        List<Timeout> due = new ArrayList<>();
+        while (!stopped) {
+            long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+            long wait = nextTickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            transferAdded();
+            removeCancelled();
+            currentTick++;
+            expire(currentTick, due);
+            dispatch(due);
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state == ACTIVE) {
+                timeout.deadlineTick = Math.max(toTick(timeout.deadlineNanos), currentTick + 1);
+                insert(timeout, currentTick);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.level >= 0) {
+                unlink(timeout);
+            }
+        }
+    }
+
+    /**
+     * Cascades the higher levels that are due at this tick, then collects
+     * every task of the level 0 slot for this tick.
+     */
+    private void expire(long tick, List<Timeout> due) {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((tick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                Timeout timeout = slots[level][slot];
+                slots[level][slot] = null;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.prev = null;
+                    timeout.next = null;
+                    timeout.level = -1;
+                    insert(timeout, tick);
+                    timeout = next;
+                }
+            }
+        }
+        int slot = (int) (tick & WHEEL_MASK);
+        Timeout timeout = slots[0][slot];
+        slots[0][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            if (timeout.state == ACTIVE) {
+                if (timeout.periodNanos > 0) {
+                    // Advance the exact deadline, not the rounded tick, so
+                    // periods that are not a whole number of ticks do not drift.
+                    timeout.deadlineNanos += timeout.periodNanos;
+                    timeout.deadlineTick = Math.max(toTick(timeout.deadlineNanos), tick + 1);
+                    insert(timeout, tick);
+                } else if (Timeout.STATE.compareAndSet(timeout, ACTIVE, EXPIRED)) {
+                    active.decrementAndGet();
+                } else {
+                    timeout = next;
+                    continue;
+                }
+                if (!timeout.running) {
+                    timeout.running = true;
+                    due.add(timeout);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Hands the due tasks to the workers in batches of at most BATCH_SIZE.
+     */
+    private void dispatch(List<Timeout> due) {
+        int size = due.size();
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            Timeout[] batch = due.subList(from, Math.min(size, from + BATCH_SIZE)).toArray(new Timeout[0]);
+            try {
+                workers.execute(() -> {
+                    for (Timeout timeout : batch) {
+                        timeout.run();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Rejected after shutdown.
+                return;
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * Returns the first tick at or after the given time.
+     */
+    private long toTick(long nanos) {
+        long elapsed = nanos - startNanos;
+        return elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    /**
+     * Links the timeout into the slot for its deadline as seen from the given tick.
+     */
+    private void insert(Timeout timeout, long tick) {
+        long delta = timeout.deadlineTick - tick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        long position = timeout.deadlineTick;
+        if (level == LEVELS - 1 && delta >= (1L << (WHEEL_BITS * LEVELS))) {
+            // Beyond the range of the wheel: park it in the last slot of the
+            // top level and place it again when that slot is cascaded.
+            position = tick + ((long) WHEEL_MASK << (WHEEL_BITS * level));
+        }
+        int slot = (int) ((position >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+}
@@ -0,0 +1,157 @@
+package petfeeder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for BatchRunner.
+ * Verifies every command, the order of batched dispense results, and
+ * the handling of malformed lines.
+ */
+public class BatchRunnerTest {
+
+    private PetFeeder feeder;
+    private BatchRunner runner;
+
+    @BeforeEach
+    public void setUp() {
+        feeder = new PetFeeder();
+        runner = new BatchRunner(feeder);
+    }
+
+    private String run(String script) throws IOException {
+        StringWriter out = new StringWriter();
+        runner.run(new BufferedReader(new StringReader(script)), out);
+        return out.toString();
+    }
+
+    /**
+     * Tests adding, editing, deleting, replenishing and checking stock.
+     */
+    @Test
+    public void testMealPlanAndStockCommands() throws IOException {
+        String out = run("# provisioning\n"
+                + "add Dry 5 0 0 0\n"
+                + "add Dry 5 0 0 0\n"
+                + "\n"
+                + "edit 1 3 2 0 1\n"
+                + "replenish 10 0 5 0\n"
+                + "stock\n"
+                + "delete 1\n"
+                + "delete 1\n"
+                + "delete 99\n");
+        assertEquals("2 ok add Dry\n"
+                + "3 fail add Dry\n"
+                + "5 ok edit Dry\n"
+                + "6 ok replenish\n"
+                + "7 ok stock 25 15 20 15\n"
+                + "8 ok delete Dry\n"
+                + "9 fail delete\n"
+                + "10 fail delete\n", out);
+        assertEquals(8, runner.getCommands());
+        assertEquals(3, runner.getFailures());
+        assertEquals(0, runner.getErrors());
+        assertNull(feeder.getMealPlan(0));
+    }
+
+    /**
+     * Tests that consecutive dispenses are answered in script order and
+     * against the stock left by the commands before them.
+     */
+    @Test
+    public void testDispenseBatches() throws IOException {
+        StringBuilder script = new StringBuilder("add Dry 5 0 0 0\n");
+        for (int i = 0; i < 4; i++) {
+            script.append("dispense 1\n");
+        }
+        script.append("replenish 5 0 0 0\n");
+        script.append("dispense 1\ndispense 2\n");
+        String out = run(script.toString());
+        assertEquals("1 ok add Dry\n"
+                + "2 ok dispense 1\n"
+                + "3 ok dispense 1\n"
+                + "4 ok dispense 1\n"
+                + "5 fail dispense 1\n"
+                + "6 ok replenish\n"
+                + "7 ok dispense 1\n"
+                + "8 fail dispense 2\n", out);
+        assertEquals(0, feeder.getFoodContainer().getKibble());
+    }
+
+    /**
+     * Tests a run longer than one batch.
+     */
+    @Test
+    public void testMoreDispensesThanOneBatch() throws IOException {
+        StringBuilder script = new StringBuilder("add Empty 0 0 0 0\n");
+        int dispenses = 3 * BatchRunner.MAX_BATCH + 7;
+        for (int i = 0; i < dispenses; i++) {
+            script.append("dispense 1\n");
+        }
+        String[] lines = run(script.toString()).split("\n");
+        assertEquals(dispenses + 1, lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            assertEquals((i + 1) + " ok dispense 1", lines[i]);
+        }
+        assertEquals(0, runner.getFailures());
+    }
+
+    /**
+     * Tests malformed lines, and that dispenses before an error are
+     * answered before it.
+     */
+    @Test
+    public void testErrors() throws IOException {
+        String out = run("add Dry 5 0 0 0\n"
+                + "dispense 1\n"
+                + "dispense one\n"
+                + "feed 1\n"
+                + "add Wet 1 2\n"
+                + "add Wet 0 0 -1 0\n"
+                + "stock now\n"
+                + "schedule 1 0\n");
+        assertEquals("1 ok add Dry\n"
+                + "2 ok dispense 1\n"
+                + "3 error dispense Not a number: one\n"
+                + "4 error feed Unknown command\n"
+                + "5 error add Expected 5 arguments\n"
+                + "6 error add Amounts must be non-negative and not too large\n"
+                + "7 error stock Expected 0 arguments\n"
+                + "8 error schedule Interval must be a positive integer\n", out);
+        assertEquals(6, runner.getErrors());
+        assertNull(runner.getFeedingScheduler(), "No feeding was scheduled");
+    }
+
+    /**
+     * Tests scheduling and stopping feedings.
+     */
+    @Test
+    public void testScheduleAndStop() throws IOException {
+        try {
+            String out = run("stop\n"
+                    + "add Dry 1 0 0 0\n"
+                    + "schedule 2 60\n"
+                    + "schedule 1 3600\n"
+                    + "stop\n");
+            assertEquals("1 fail stop\n"
+                    + "2 ok add Dry\n"
+                    + "3 fail schedule\n"
+                    + "4 ok schedule\n"
+                    + "5 ok stop\n", out);
+            assertFalse(runner.getFeedingScheduler().hasActiveSchedule());
+            assertSame(EventLog.standardError(), runner.getFeedingScheduler().getEventLog(),
+                    "Feeding messages must not mix with the results on standard output");
+        } finally {
+            if (runner.getFeedingScheduler() != null) {
+                runner.getFeedingScheduler().shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for EnergyBudget.
+ * Verifies lifetime and rolling-window budgets with a manual clock, and
+ * that concurrent callers never overspend.
+ */
+public class EnergyBudgetTest {
+
+    /**
+     * Tests that a lifetime budget never frees energy.
+     */
+    @Test
+    public void testLifetimeBudget() {
+        EnergyBudget budget = new EnergyBudget(100);
+        assertTrue(budget.tryConsume(60));
+        assertFalse(budget.tryConsume(41), "Only 40 points are left");
+        assertTrue(budget.tryConsume(40));
+        assertEquals(0, budget.getRemaining());
+        assertEquals(Duration.ZERO, budget.getWindow());
+        assertThrows(IllegalArgumentException.class, () -> budget.tryConsume(-1));
+    }
+
+    /**
+     * Tests that energy leaves a rolling window one bucket at a time.
+     */
+    @Test
+    public void testRollingWindow() {
+        long[] now = {0};
+        EnergyBudget budget = new EnergyBudget(100, 1000, 4, () -> now[0]);
+        assertTrue(budget.tryConsume(30));
+        now[0] = 300;
+        assertTrue(budget.tryConsume(70));
+        assertFalse(budget.tryConsume(1), "The window is full");
+
+        now[0] = 999;
+        assertEquals(100, budget.getConsumed(), "Nothing has left the window yet");
+        now[0] = 1000;
+        assertEquals(70, budget.getConsumed(), "The first bucket has left the window");
+        assertTrue(budget.tryConsume(30));
+        assertFalse(budget.tryConsume(1));
+        now[0] = 1250;
+        assertEquals(30, budget.getConsumed(), "The second bucket has left the window");
+
+        now[0] = 100_000;
+        assertEquals(100, budget.getRemaining(), "A long pause frees the whole budget");
+        assertTrue(budget.tryConsume(100));
+    }
+
+    /**
+     * Tests that released energy is given back to its own bucket only.
+     */
+    @Test
+    public void testRelease() {
+        long[] now = {0};
+        EnergyBudget budget = new EnergyBudget(100, 1000, 4, () -> now[0]);
+        long slice = budget.acquire(80);
+        assertTrue(slice >= 0);
+        budget.release(slice, 80);
+        assertEquals(0, budget.getConsumed());
+
+        slice = budget.acquire(50);
+        now[0] = 2000;
+        budget.release(slice, 50);
+        assertEquals(0, budget.getConsumed(), "Releasing an expired booking changes nothing");
+        assertEquals(-1, budget.acquire(101));
+    }
+
+    /**
+     * Tests that restoring books the saved energy in the current window.
+     */
+    @Test
+    public void testRestore() {
+        long[] now = {0};
+        EnergyBudget budget = new EnergyBudget(100, 1000, 4, () -> now[0]);
+        budget.tryConsume(10);
+        now[0] = 500;
+        budget.restore(90);
+        assertEquals(90, budget.getConsumed());
+        now[0] = 1499;
+        assertEquals(90, budget.getConsumed());
+        now[0] = 1500;
+        assertEquals(0, budget.getConsumed());
+    }
+
+    /**
+     * Tests that booking ignores the limit and expires like consumed energy.
+     */
+    @Test
+    public void testBookIgnoresLimit() {
+        long[] now = {0};
+        EnergyBudget budget = new EnergyBudget(100, 1000, 4, () -> now[0]);
+        budget.book(150);
+        assertEquals(150, budget.getConsumed());
+        assertEquals(0, budget.getRemaining());
+        assertFalse(budget.tryConsume(1));
+        now[0] = 1000;
+        assertEquals(0, budget.getConsumed());
+    }
+
+    /**
+     * Tests that many threads consuming at once never exceed the limit.
+     */
+    @Test
+    public void testConcurrentConsumersNeverOverspend() throws Exception {
+        EnergyBudget budget = EnergyBudget.perHour(10_000);
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    if (budget.tryConsume(1)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10_000, granted.get(), "Exactly the limit should be granted");
+        assertEquals(10_000, budget.getConsumed());
+    }
+}
@@ -0,0 +1,128 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for EventLog.
+ * Verifies that events are written in order by the writer thread, that a
+ * full ring drops events instead of blocking, and the file output format.
+ */
+public class EventLogTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Output that keeps the messages it was given.
+     */
+    private static final class CollectingOutput implements EventOutput {
+        final List<String> messages = new ArrayList<>();
+        volatile boolean closed;
+
+        @Override
+        public synchronized void write(FeederEvent event) {
+            messages.add(event.getMessage());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Tests that every event published from several threads is written
+     * once, and that close writes the remaining events.
+     */
+    @Test
+    public void testEventsWrittenOnClose() throws Exception {
+        CollectingOutput output = new CollectingOutput();
+        EventLog log = new EventLog(output, 1024);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    log.publish(FeederEvent.Type.DISPENSED, i, "Meal" + i, null);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        assertEquals(800, output.messages.size() + log.getDroppedEvents(), "Every event is written or counted as dropped");
+        assertTrue(output.messages.contains("[Scheduler] Dispensed scheduled meal: Meal199"));
+        assertTrue(output.closed, "Closing the log closes its output");
+        assertFalse(log.publish(FeederEvent.Type.ERROR, -1, null, "late"), "A closed log drops events");
+    }
+
+    /**
+     * Tests that a stalled output makes the log drop events instead of
+     * blocking the publisher.
+     */
+    @Test
+    public void testFullRingDropsEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        EventLog log = new EventLog(event -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 4);
+        try {
+            assertTrue(log.publish(FeederEvent.Type.DISPENSED, 0, "A", null));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            int accepted = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                if (log.publish(FeederEvent.Type.DISPENSED, i, "B", null)) {
+                    accepted++;
+                }
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Publishing should not wait for the output");
+            assertEquals(3, accepted, "Only the free slots of the ring take events");
+            assertEquals(97, log.getDroppedEvents());
+            assertEquals(4, log.getPendingEvents());
+        } finally {
+            release.countDown();
+            log.close();
+        }
+        assertEquals(0, log.getPendingEvents());
+    }
+
+    /**
+     * Tests that the file output appends one JSON object per line.
+     */
+    @Test
+    public void testFileOutput() throws Exception {
+        Path file = dir.resolve("events.jsonl");
+        try (EventLog log = new EventLog(EventOutput.file(file))) {
+            log.publish(FeederEvent.Type.DISPENSED, 2, "Tuna \"deluxe\"", null);
+            log.publish(FeederEvent.Type.ERROR, 1, null, "line\nbreak");
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).matches("\\{\"time\":\"[^\"]+\",\"type\":\"DISPENSED\",\"mealPlanIndex\":2,"
+                + "\"mealName\":\"Tuna \\\\\"deluxe\\\\\"\"}"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("\"type\":\"ERROR\",\"mealPlanIndex\":1,\"detail\":\"line\\u000abreak\"}"),
+                lines.get(1));
+    }
+}
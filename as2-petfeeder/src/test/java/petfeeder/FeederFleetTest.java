@@ -0,0 +1,142 @@
+package petfeeder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FeederFleet.
+ * Verifies that feeders in a fleet keep independent state and can be
+ * added, looked up and removed by id.
+ */
+public class FeederFleetTest {
+
+    private FeederFleet fleet;
+
+    /**
+     * Sets up a fleet with four shards before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        fleet = new FeederFleet(4, FoodContainer::new);
+    }
+
+    /**
+     * Helper method to create a meal plan using one unit of every ingredient.
+     */
+    private MealPlan createSnack() throws Exception {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Snack");
+        plan.setAmtKibble("1");
+        plan.setAmtWater("1");
+        plan.setAmtWetFood("1");
+        plan.setAmtTreats("1");
+        return plan.build();
+    }
+
+    /**
+     * Tests that new feeders get distinct ids and can be looked up.
+     */
+    @Test
+    public void testAddAndGetFeeder() {
+        int first = fleet.addFeeder();
+        int second = fleet.addFeeder();
+
+        assertNotEquals(first, second, "Each feeder should get its own id");
+        assertNotNull(fleet.getFeeder(first));
+        assertNotSame(fleet.getFeeder(first), fleet.getFeeder(second));
+        assertEquals(2, fleet.size());
+    }
+
+    /**
+     * Tests looking up ids that were never handed out.
+     */
+    @Test
+    public void testGetUnknownFeeder() {
+        assertNull(fleet.getFeeder(-1));
+        assertNull(fleet.getFeeder(1000));
+        assertFalse(fleet.dispenseMeal(1000, 0), "Dispensing on an unknown feeder should fail");
+    }
+
+    /**
+     * Tests that creating a feeder does not reset the stock of another,
+     * and that dispensing on one feeder leaves the others untouched.
+     */
+    @Test
+    public void testFeedersHaveIndependentState() throws Exception {
+        int first = fleet.addFeeder();
+        fleet.getFeeder(first).addMealPlan(createSnack());
+        fleet.getFeeder(first).replenishFood("5", "0", "0", "0");
+
+        int second = fleet.addFeeder();
+        fleet.getFeeder(second).addMealPlan(createSnack());
+
+        assertTrue(fleet.dispenseMeal(first, 0));
+        assertTrue(fleet.getFeeder(first).checkFoodStock().contains("Kibble: 19"));
+        assertTrue(fleet.getFeeder(second).checkFoodStock().contains("Kibble: 15"));
+        assertEquals(fleet.getFeeder(second).getEnergyLimit(), fleet.getFeeder(second).getRemainingEnergyBudget());
+    }
+
+    /**
+     * Tests removing a feeder.
+     */
+    @Test
+    public void testRemoveFeeder() {
+        int id = fleet.addFeeder();
+        PetFeeder feeder = fleet.getFeeder(id);
+
+        assertSame(feeder, fleet.removeFeeder(id));
+        assertNull(fleet.getFeeder(id));
+        assertNull(fleet.removeFeeder(id), "Removing twice should return null");
+        assertEquals(0, fleet.size());
+    }
+
+    /**
+     * Tests that the fleet grows past the initial shard capacity and
+     * forEach visits every feeder with its id.
+     */
+    @Test
+    public void testManyFeeders() {
+        for (int i = 0; i < 1000; i++) {
+            fleet.addFeeder();
+        }
+        int[] visited = new int[1];
+        fleet.forEach((feeder, id) -> {
+            assertSame(feeder, fleet.getFeeder(id));
+            visited[0]++;
+        });
+        assertEquals(1000, fleet.size());
+        assertEquals(1000, visited[0]);
+    }
+
+    /**
+     * Tests that feeders can be added and dispensed from concurrently.
+     */
+    @Test
+    public void testConcurrentAddAndDispense() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Future<?>[] workers = new Future<?>[8];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = pool.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    int id = fleet.addFeeder();
+                    fleet.getFeeder(id).addMealPlan(createSnack());
+                    assertTrue(fleet.dispenseMeal(id, 0));
+                }
+                return null;
+            });
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(800, fleet.size());
+    }
+}
@@ -0,0 +1,178 @@
+package petfeeder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for FeederHttpServer.
+ * Runs the API on a free localhost port and verifies every route, the
+ * status codes of refused requests and the JSON body parser.
+ */
+public class FeederHttpServerTest {
+
+    private PetFeeder feeder;
+    private ManualClock clock;
+    private FeedingScheduler scheduler;
+    private FeederHttpServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        feeder = new PetFeeder();
+        clock = new ManualClock();
+        scheduler = new FeedingScheduler(feeder, clock);
+        server = new FeederHttpServer(feeder, scheduler,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        scheduler.shutdown();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(body);
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getAddress().getPort() + path))
+                .method(method, publisher)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Tests adding, listing, editing and deleting meal plans.
+     */
+    @Test
+    public void testMealPlans() throws Exception {
+        HttpResponse<String> added = send("POST", "/plans",
+                "{\"name\": \"Dry \\\"crunch\\\"\", \"kibble\": 2, \"water\": 1}");
+        assertEquals(201, added.statusCode());
+        assertEquals("{\"added\":\"Dry \\\"crunch\\\"\"}", added.body());
+        assertEquals(409, send("POST", "/plans", "{\"name\":\"Dry \\\"crunch\\\"\",\"kibble\":2,\"water\":1}")
+                .statusCode(), "The same plan is not added twice");
+
+        assertEquals("[{\"mealPlanIndex\":0,\"name\":\"Dry \\\"crunch\\\"\",\"kibble\":2,\"water\":1,"
+                + "\"wetFood\":0,\"treats\":0,\"energyCost\":25}]", send("GET", "/plans", null).body());
+
+        HttpResponse<String> edited = send("PUT", "/plans/0", "{\"kibble\":3,\"treats\":1}");
+        assertEquals(200, edited.statusCode());
+        assertEquals(3, feeder.getMealPlan(0).getAmtKibble());
+        assertEquals(0, feeder.getMealPlan(0).getAmtWater());
+        assertEquals("Dry \"crunch\"", feeder.getMealPlan(0).getName(), "An edited plan keeps its name");
+
+        assertEquals(404, send("PUT", "/plans/5", "{\"kibble\":1}").statusCode());
+        assertEquals(200, send("DELETE", "/plans/0", null).statusCode());
+        assertEquals(404, send("DELETE", "/plans/0", null).statusCode());
+        assertEquals(404, send("DELETE", "/plans/99", null).statusCode());
+        send("POST", "/plans", "{\"name\":\"Wet\",\"wetFood\":1}");
+        assertEquals(404, send("GET", "/plansX0", null).statusCode(), "Only paths below /plans are plans");
+        assertEquals(404, send("GET", "/stocks", null).statusCode());
+        assertEquals(200, send("GET", "/plans/0", null).statusCode());
+        assertEquals(200, send("DELETE", "/plans/0", null).statusCode());
+        assertEquals("[]", send("GET", "/plans", null).body());
+    }
+
+    /**
+     * Tests replenishing, checking stock and dispensing.
+     */
+    @Test
+    public void testStockAndDispense() throws Exception {
+        send("POST", "/plans", "{\"name\":\"Dry\",\"kibble\":10}");
+
+        HttpResponse<String> replenished = send("POST", "/replenish", "{\"kibble\":5,\"treats\":1}");
+        assertEquals(200, replenished.statusCode());
+        assertEquals("{\"kibble\":20,\"water\":15,\"wetFood\":15,\"treats\":16,\"remainingEnergy\":500}",
+                replenished.body());
+        assertEquals(replenished.body(), send("GET", "/stock", null).body());
+        assertEquals(400, send("POST", "/replenish", "{\"kibble\":-1}").statusCode());
+
+        HttpResponse<String> dispensed = send("POST", "/dispense", "{\"mealPlanIndex\":0}");
+        assertEquals(200, dispensed.statusCode());
+        assertEquals("{\"outcome\":\"OK\",\"mealPlanIndex\":0,\"remainingEnergy\":400}", dispensed.body());
+        send("POST", "/dispense", "{\"mealPlanIndex\":0}");
+
+        HttpResponse<String> empty = send("POST", "/dispense", "{\"mealPlanIndex\":0}");
+        assertEquals(409, empty.statusCode());
+        assertTrue(empty.body().contains("INSUFFICIENT_STOCK"));
+        assertEquals(404, send("POST", "/dispense", "{\"mealPlanIndex\":3}").statusCode());
+        assertEquals(405, send("GET", "/dispense", null).statusCode());
+    }
+
+    /**
+     * Tests starting, listing and cancelling schedules.
+     */
+    @Test
+    public void testSchedules() throws Exception {
+        send("POST", "/plans", "{\"name\":\"Dry\",\"kibble\":1}");
+
+        HttpResponse<String> scheduled = send("POST", "/schedules", "{\"mealPlanIndex\":0,\"periodSeconds\":60}");
+        assertEquals(201, scheduled.statusCode());
+        assertEquals("[{\"mealPlanIndex\":0,\"period\":\"PT1M\"}]", scheduled.body());
+        send("POST", "/schedules", "{\"mealPlanIndex\":0,\"periodSeconds\":3600}");
+        assertEquals(404, send("POST", "/schedules", "{\"mealPlanIndex\":1,\"periodSeconds\":60}").statusCode());
+        assertEquals(400, send("POST", "/schedules", "{\"mealPlanIndex\":0,\"periodSeconds\":0}").statusCode());
+
+        clock.advance(2, TimeUnit.MINUTES);
+        assertEquals(13, feeder.getFoodContainer().getKibble(), "The schedule runs on the scheduler's clock");
+
+        assertEquals("[{\"mealPlanIndex\":0,\"period\":\"PT1H\"}]", send("DELETE", "/schedules/0", null).body());
+        assertEquals(404, send("DELETE", "/schedules/1", null).statusCode());
+        assertEquals(200, send("DELETE", "/schedules", null).statusCode());
+        assertFalse(scheduler.hasActiveSchedule());
+
+        scheduler.addRecurringFeeding(0, Duration.ofMillis(250));
+        assertEquals("[{\"mealPlanIndex\":0,\"period\":\"PT0.25S\"}]", send("GET", "/schedules", null).body(),
+                "A sub-second period is not truncated");
+    }
+
+    /**
+     * Tests malformed requests.
+     */
+    @Test
+    public void testBadRequests() throws Exception {
+        assertEquals(400, send("POST", "/plans", "{\"name\":\"Dry\",\"kibble\":}").statusCode());
+        assertEquals(400, send("POST", "/plans", "{\"kibble\":1}").statusCode());
+        assertEquals(400, send("POST", "/plans", "{\"name\":\"Dry\",\"kibble\":\"lots\"}").statusCode());
+        assertEquals(400, send("PUT", "/plans/x", "{}").statusCode());
+        assertEquals(400, send("POST", "/dispense", "[1]").statusCode());
+        assertEquals(400, send("POST", "/dispense", "").statusCode(), "An empty body names no plan");
+        assertEquals(400, send("POST", "/schedules", "{\"periodSeconds\":60}").statusCode());
+        assertEquals(405, send("PATCH", "/plans", "{}").statusCode());
+    }
+
+    /**
+     * Tests the JSON object parser on its own.
+     */
+    @Test
+    public void testParseObject() {
+        assertEquals(Map.of("a", "1", "b", "x,y}", "c", "-2"),
+                FeederHttpServer.parseObject(" { \"a\" : 1 , \"b\":\"x,y}\", \"c\":-2 } "));
+        assertTrue(FeederHttpServer.parseObject("{}").isEmpty());
+        assertTrue(FeederHttpServer.parseObject("  ").isEmpty());
+        assertNull(FeederHttpServer.parseObject("{\"a\":null}").get("a"));
+        assertEquals("é\n", FeederHttpServer.parseObject("{\"a\":\"\\u00e9\\n\"}").get("a"));
+        assertThrows(IllegalArgumentException.class, () -> FeederHttpServer.parseObject("{\"a\":1"));
+        assertThrows(IllegalArgumentException.class, () -> FeederHttpServer.parseObject("{\"a\":1} x"));
+        assertThrows(IllegalArgumentException.class, () -> FeederHttpServer.parseObject("{a:1}"));
+    }
+}
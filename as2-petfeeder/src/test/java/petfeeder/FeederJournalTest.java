@@ -0,0 +1,413 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for FeederJournal.
+ * Verifies that a journaled feeder comes back with the same meal plans,
+ * stock and energy use after it is reopened, also after compaction and
+ * after a torn write.
+ */
+public class FeederJournalTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Helper method to open a journaled feeder on the given file.
+     */
+    private PetFeeder open(FeederJournal journal) {
+        return PetFeeder.open(new FoodContainer(), journal);
+    }
+
+    /**
+     * Tests that meal plans, stock and energy are restored after reopening.
+     */
+    @Test
+    public void testReplayRestoresState() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Breakfast", 2, 1, 0, 0));
+            feeder.addMealPlan(plan("Dinner", 3, 1, 0, 0));
+            feeder.replenishFood(10, 0, 0, 0);
+            feeder.replenishFood("1", "2", "3", "4");
+            assertTrue(feeder.dispenseMeal(1));
+            assertEquals(1, feeder.dispenseMeals(new int[] {0, 5}).cardinality());
+        }
+
+        try (FeederJournal journal = new FeederJournal(file)) {
+            PetFeeder restored = open(journal);
+            assertEquals("Breakfast", restored.getMealPlan(0).getName());
+            assertEquals("Dinner", restored.getMealPlan(1).getName());
+            assertTrue(restored.checkFoodStock().contains("Kibble: 21"), "26 kibble minus two meals");
+            assertTrue(restored.checkFoodStock().contains("Water: 15"), "17 water minus two meals");
+            assertTrue(restored.checkFoodStock().contains("Treats: 19"));
+            assertEquals(500 - 25 - 35, restored.getRemainingEnergyBudget());
+        }
+    }
+
+    /**
+     * Tests that replayed dispenses take their stock and energy even when
+     * they would not fit the default budget.
+     */
+    @Test
+    public void testReplayWithLargerBudget() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = PetFeeder.open(new FoodContainer(), new EnergyBudget(100_000), journal);
+            feeder.addMealPlan(plan("Big", 10, 1, 0, 0));
+            feeder.replenishFood(100, 0, 0, 0);
+            for (int i = 0; i < 8; i++) {
+                assertTrue(feeder.dispenseMeal(0));
+            }
+            assertTrue(feeder.checkFoodStock().contains("Kibble: 35"));
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = PetFeeder.open(new FoodContainer(), new EnergyBudget(100_000), journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 35"));
+            assertTrue(restored.getRemainingEnergyBudget() < 100_000 - 500,
+                    "More energy was used than the default budget allows");
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 35"), "Replay does not check the budget");
+            assertEquals(0, restored.getRemainingEnergyBudget());
+        }
+    }
+
+    /**
+     * Tests that deletes and edits are replayed at the same indexes.
+     */
+    @Test
+    public void testReplayKeepsPlanIndexes() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("A", 1, 1, 0, 0));
+            feeder.addMealPlan(plan("B", 1, 1, 0, 0));
+            feeder.addMealPlan(plan("C", 1, 1, 0, 0));
+            assertEquals("A", feeder.deleteMealPlan(0));
+            assertEquals("C", feeder.editMealPlan(2, plan("C2", 4, 1, 0, 0)));
+            assertNull(feeder.editMealPlan(0, plan("X", 1, 1, 0, 0)), "Editing an empty slot is not logged");
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertNull(restored.getMealPlan(0));
+            assertEquals("B", restored.getMealPlan(1).getName());
+            assertEquals(4, restored.getMealPlan(2).getAmtKibble());
+            restored.addMealPlan(plan("D", 1, 1, 0, 0));
+            assertEquals("D", restored.getMealPlan(0).getName(), "The free slot should be reused as before");
+        }
+    }
+
+    /**
+     * Tests that a full journal compacts itself and keeps the state.
+     */
+    @Test
+    public void testCompactionWhenFull() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 256, true)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 1, 1, 0, 0));
+            for (int i = 0; i < 200; i++) {
+                assertTrue(feeder.replenishFood(1, 1, 0, 0));
+                feeder.dispenseMeal(0);
+            }
+            assertTrue(journal.size() <= journal.capacity());
+            assertEquals(256, Files.size(file), "The file should not grow while the state is small");
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 256, true)) {
+            PetFeeder restored = open(journal);
+            // The 500 point budget allows 33 snacks of 15 points.
+            assertEquals("Snack", restored.getMealPlan(0).getName());
+            assertTrue(restored.checkFoodStock().contains("Kibble: " + (15 + 200 - 33)));
+            assertEquals(500 - 33 * 15, restored.getRemainingEnergyBudget(), "Energy use should be restored");
+        }
+    }
+
+    /**
+     * Tests that a journal whose compaction fails keeps using the old file,
+     * growing it when full, and loses nothing.
+     */
+    @Test
+    public void testFailedCompactionKeepsOldFile() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        // A non-empty directory where the new file goes makes compaction fail.
+        Path blocker = Files.createDirectory(dir.resolve("feeder.journal.compact"));
+        Files.createFile(blocker.resolve("keep"));
+        try (FeederJournal journal = new FeederJournal(file, 256, true)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 1, 1, 0, 0));
+            for (int i = 0; i < 200; i++) {
+                assertTrue(feeder.replenishFood(1, 1, 0, 0));
+                feeder.dispenseMeal(0);
+            }
+            assertTrue(Files.size(file) > 256, "The old file should grow instead");
+            assertThrows(UncheckedIOException.class, feeder::compactJournal);
+            assertTrue(feeder.replenishFood(1, 0, 0, 0), "The journal should still take records");
+        }
+
+        Files.delete(blocker.resolve("keep"));
+        try (FeederJournal journal = new FeederJournal(file, 256, true)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: " + (15 + 201 - 33)));
+            assertEquals(500 - 33 * 15, restored.getRemainingEnergyBudget());
+            restored.compactJournal();
+            assertTrue(Files.notExists(blocker), "The leftover should be replaced");
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 256, true)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: " + (15 + 201 - 33)));
+            assertEquals(500 - 33 * 15, restored.getRemainingEnergyBudget());
+        }
+    }
+
+    /**
+     * Tests that threads committing while others fill the journal and
+     * compact it do not deadlock.
+     */
+    @Test
+    public void testConcurrentCommitAndCompaction() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, true)) {
+            PetFeeder feeder = open(journal);
+            Thread[] threads = new Thread[16];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        feeder.replenishFood(1, 0, 0, 0);
+                    }
+                });
+                threads[t].setDaemon(true);
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+                assertFalse(thread.isAlive(), "Replenishing threads should not deadlock");
+            }
+            assertTrue(feeder.checkFoodStock().contains("Kibble: " + (15 + 16 * 1000)));
+        }
+    }
+
+    /**
+     * Tests that plans added after a checkpoint are replayed into the same
+     * empty slots the live feeder used.
+     */
+    @Test
+    public void testReplayAfterCompactionKeepsFreeSlotOrder() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        MealPlan[] live;
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            for (int i = 0; i < 4; i++) {
+                feeder.addMealPlan(plan("P" + i, 1, 1, 0, 0));
+            }
+            feeder.deleteMealPlan(1);
+            feeder.deleteMealPlan(3);
+            feeder.compactJournal();
+            feeder.addMealPlan(plan("New", 1, 1, 0, 0));
+            live = feeder.getMealPlans();
+            assertEquals("New", live[3].getName(), "The last deleted slot is reused first");
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            assertArrayEquals(live, open(journal).getMealPlans());
+        }
+    }
+
+    /**
+     * Tests that a journaled feeder records how long it waited for its
+     * monitor on every call that takes it.
+     */
+    @Test
+    public void testMetricsRecordLockWait() throws Exception {
+        try (FeederJournal journal = new FeederJournal(dir.resolve("feeder.journal"), 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 1, 1, 0, 0));
+            FeederMetrics metrics = new FeederMetrics();
+            feeder.setMetrics(metrics);
+            feeder.dispenseMeal(0);
+            feeder.replenishFood(1, 0, 0, 0);
+            feeder.dispenseMeals(new int[] {0, 0});
+            assertEquals(3, metrics.getLockWait().getCount());
+            assertEquals(1, metrics.getDispenseLatency().getCount());
+        }
+    }
+
+    /**
+     * Tests that an explicit compaction shrinks the log to one checkpoint.
+     */
+    @Test
+    public void testCompactJournal() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 1, 1, 0, 0));
+            for (int i = 0; i < 10; i++) {
+                feeder.dispenseMeal(0);
+            }
+            int before = journal.size();
+            feeder.compactJournal();
+            assertTrue(journal.size() < before, "Compaction should shrink the log");
+            feeder.dispenseMeal(0);
+        }
+
+        try (FeederJournal journal = new FeederJournal(file)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 4"));
+            assertEquals(500 - 11 * 15, restored.getRemainingEnergyBudget());
+        }
+    }
+
+    /**
+     * Tests that a record torn by a crash is ignored on replay and
+     * overwritten by the next append.
+     */
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        int end;
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 1, 1, 0, 0));
+            int first = journal.size();
+            feeder.dispenseMeal(0);
+            end = journal.size();
+            // Corrupt the payload of the dispense record.
+            try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+                raw.seek(end - 1);
+                raw.write(0x7F);
+            }
+            assertTrue(end > first);
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 15"), "The torn dispense should not be replayed");
+            assertTrue(journal.size() < end);
+            restored.replenishFood(5, 0, 0, 0);
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            assertTrue(open(journal).checkFoodStock().contains("Kibble: 20"));
+        }
+    }
+
+    /**
+     * Tests that an aborted reservation is given back after a restart,
+     * and a committed one stays used.
+     */
+    @Test
+    public void testReplayReservations() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.addMealPlan(plan("Snack", 4, 1, 0, 0));
+            assertTrue(feeder.reserveMeal(0, 1, TimeUnit.MINUTES).commit());
+            assertTrue(feeder.reserveMeal(0, 1, TimeUnit.MINUTES).abort());
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 11"), "Only the committed meal uses kibble");
+            assertEquals(500 - 45, restored.getRemainingEnergyBudget());
+        }
+    }
+
+    /**
+     * Tests that a reservation still pending at a restart stays held,
+     * also across a compaction, and can be released afterwards.
+     */
+    @Test
+    public void testReplayPendingReservation() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.setClock(new ManualClock());
+            feeder.addMealPlan(plan("Snack", 4, 1, 0, 0));
+            assertTrue(feeder.reserveMeal(0, 1, TimeUnit.HOURS).isReserved());
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 11"), "The pending reservation keeps its kibble");
+            assertEquals(500 - 45, restored.getRemainingEnergyBudget());
+            restored.compactJournal();
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 11"), "The checkpoint keeps the reservation");
+            assertEquals(1, restored.getPendingReservations().size());
+            restored.getPendingReservations().iterator().next().abort();
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 15"), "The released kibble is back");
+            assertEquals(500, restored.getRemainingEnergyBudget());
+            assertTrue(restored.getPendingReservations().isEmpty());
+        }
+    }
+
+    /**
+     * Tests that a reservation whose deadline passed while the feeder was
+     * down is released when it is opened.
+     */
+    @Test
+    public void testReplayExpiredReservation() throws Exception {
+        Path file = dir.resolve("feeder.journal");
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder feeder = open(journal);
+            feeder.setClock(new ManualClock());
+            feeder.addMealPlan(plan("Snack", 4, 1, 0, 0));
+            assertTrue(feeder.reserveMeal(0, 10, TimeUnit.MILLISECONDS).isReserved());
+        }
+        Thread.sleep(50);
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            PetFeeder restored = open(journal);
+            assertTrue(restored.checkFoodStock().contains("Kibble: 15"), "The expired reservation is given back");
+            assertEquals(500, restored.getRemainingEnergyBudget());
+        }
+
+        try (FeederJournal journal = new FeederJournal(file, 4096, false)) {
+            assertTrue(open(journal).checkFoodStock().contains("Kibble: 15"), "The release was logged");
+        }
+    }
+
+    /**
+     * Tests that a file that is not a journal is rejected, and that a
+     * journal cannot be shared by two feeders.
+     */
+    @Test
+    public void testInvalidUse() throws Exception {
+        Path other = dir.resolve("other.bin");
+        Files.write(other, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> new FeederJournal(other, 4096, false));
+        assertEquals(8, Files.size(other), "A rejected file should not be changed");
+
+        try (FeederJournal journal = new FeederJournal(dir.resolve("feeder.journal"), 4096, false)) {
+            open(journal);
+            assertThrows(IllegalStateException.class, () -> open(journal));
+        }
+        assertThrows(IllegalStateException.class, () -> new PetFeeder().compactJournal());
+    }
+}
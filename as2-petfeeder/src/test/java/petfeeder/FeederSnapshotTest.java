@@ -0,0 +1,170 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for FeederSnapshot.
+ * Verifies that a fleet written to a snapshot comes back with the same
+ * feeder ids, meal plans, stock, energy use and schedules.
+ */
+public class FeederSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Tests that feeders come back under their ids with the same plans,
+     * empty slots, stock and energy use.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        FeederFleet fleet = new FeederFleet(4, FoodContainer::new);
+        for (int i = 0; i < 10; i++) {
+            fleet.addFeeder();
+        }
+        fleet.removeFeeder(3);
+        PetFeeder first = fleet.getFeeder(0);
+        first.addMealPlan(plan("Breakfast", 2, 0, 0, 1));
+        first.addMealPlan(plan("Dinner", 3, 0, 0, 1));
+        first.deleteMealPlan(0);
+        first.replenishFood(5, 6, 7, 8);
+        assertTrue(first.dispenseMeal(1));
+        PetFeeder last = fleet.getFeeder(9);
+        last.addMealPlan(plan("Dinner", 3, 0, 0, 1));
+
+        Path file = dir.resolve("fleet.snapshot");
+        FeederSnapshot.capture(fleet, id -> null).writeTo(file);
+        FeederSnapshot snapshot = FeederSnapshot.readFrom(file);
+        assertEquals(9, snapshot.size());
+
+        FeederFleet restored = new FeederFleet(2, FoodContainer::new);
+        snapshot.restoreInto(restored);
+        assertEquals(9, restored.size());
+        assertNull(restored.getFeeder(3), "A removed feeder should stay removed");
+        PetFeeder feeder = restored.getFeeder(0);
+        assertNull(feeder.getMealPlan(0), "An empty slot should stay empty");
+        assertEquals(plan("Dinner", 3, 0, 0, 1), feeder.getMealPlan(1));
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 17"));
+        assertTrue(feeder.checkFoodStock().contains("Water: 21"));
+        assertTrue(feeder.checkFoodStock().contains("Treats: 22"));
+        assertEquals(first.getRemainingEnergyBudget(), feeder.getRemainingEnergyBudget());
+        assertEquals("Dinner", restored.getFeeder(9).getMealPlan(0).getName());
+        assertEquals(10, restored.addFeeder(), "New ids should follow the restored ones");
+
+        feeder.addMealPlan(plan("Lunch", 1, 0, 0, 1));
+        assertEquals("Lunch", feeder.getMealPlan(0).getName(), "The free slot should be reused");
+    }
+
+    /**
+     * Tests that the active schedules of every feeder are started again.
+     */
+    @Test
+    public void testSchedulesRestored() throws Exception {
+        FeederFleet fleet = new FeederFleet(1, FoodContainer::new);
+        int id = fleet.addFeeder();
+        fleet.addFeeder();
+        PetFeeder feeder = fleet.getFeeder(id);
+        feeder.addMealPlan(plan("Breakfast", 1, 0, 0, 1));
+        feeder.addMealPlan(plan("Dinner", 1, 0, 0, 1));
+
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+        try {
+            FeedingScheduler scheduler = new FeedingScheduler(feeder, wheel);
+            scheduler.addRecurringFeeding(1, 3600);
+            scheduler.scheduleRecurringFeeding(0, 7200);
+            Path file = dir.resolve("fleet.snapshot");
+            FeederSnapshot.capture(fleet, i -> i == id ? scheduler : null).writeTo(file);
+            scheduler.shutdown();
+
+            FeederFleet restored = new FeederFleet(1, FoodContainer::new);
+            FeederSnapshot snapshot = FeederSnapshot.readFrom(file);
+            snapshot.restoreInto(restored);
+            Map<Integer, FeedingScheduler> schedulers =
+                    snapshot.restoreSchedules(restored, f -> new FeedingScheduler(f, wheel));
+            assertEquals(1, schedulers.size(), "Only the feeder with schedules should get a scheduler");
+            FeedingScheduler restoredScheduler = schedulers.get(id);
+            List<FeedingSchedule> active = restoredScheduler.getActiveSchedules();
+            assertEquals(2, active.size());
+            FeedingSchedule current = restoredScheduler.getCurrentSchedule();
+            assertEquals(0, current.getMealPlanIndex());
+            assertEquals(7200, current.getPeriodSeconds());
+            active.remove(current);
+            assertEquals(1, active.get(0).getMealPlanIndex());
+            assertEquals(3600, active.get(0).getPeriodSeconds());
+            restoredScheduler.shutdown();
+        } finally {
+            wheel.shutdown();
+        }
+    }
+
+    /**
+     * Tests that files that are not snapshots, or are cut short, are rejected.
+     */
+    @Test
+    public void testInvalidFile() throws Exception {
+        Path other = dir.resolve("other.bin");
+        Files.write(other, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> FeederSnapshot.readFrom(other));
+
+        FeederFleet fleet = new FeederFleet(1, FoodContainer::new);
+        fleet.getFeeder(fleet.addFeeder()).addMealPlan(plan("Snack", 1, 0, 0, 1));
+        Path file = dir.resolve("fleet.snapshot");
+        FeederSnapshot.capture(fleet, null).writeTo(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> FeederSnapshot.readFrom(file), "A truncated snapshot should be rejected");
+    }
+
+    /**
+     * Tests that the stock of a lock-free feeder is captured from one
+     * moment while other threads dispense without the feeder monitor.
+     */
+    @Test
+    public void testCaptureDuringDispenses() throws Exception {
+        FeederFleet fleet = new FeederFleet(1, LockFreeFoodContainer::new);
+        PetFeeder feeder = fleet.getFeeder(fleet.addFeeder());
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Even");
+        plan.setAmtKibble(1);
+        plan.setAmtWater(1);
+        plan.setAmtWetFood(1);
+        plan.setAmtTreats(1);
+        feeder.addMealPlan(plan.build());
+        feeder.setEnergyBudget(new EnergyBudget(Integer.MAX_VALUE));
+        feeder.replenishFood(30_000, 30_000, 30_000, 30_000);
+        Thread dispenser = new Thread(() -> {
+            while (feeder.dispenseMeal(0)) {
+                // Until the stock runs out.
+            }
+        });
+        dispenser.start();
+        try {
+            for (int i = 0; i < 100; i++) {
+                Path file = dir.resolve("fleet.snapshot");
+                FeederSnapshot.capture(fleet, null).writeTo(file);
+                FeederFleet restored = new FeederFleet(1, LockFreeFoodContainer::new);
+                FeederSnapshot.readFrom(file).restoreInto(restored);
+                FoodContainer stock = restored.getFeeder(0).getFoodContainer();
+                int kibble = stock.getKibble();
+                assertEquals(kibble, stock.getWater(), "All four amounts should come from the same moment");
+                assertEquals(kibble, stock.getWetFood());
+                assertEquals(kibble, stock.getTreats());
+            }
+        } finally {
+            feeder.setEnergyBudget(new EnergyBudget(0));
+            dispenser.join();
+        }
+    }
+}
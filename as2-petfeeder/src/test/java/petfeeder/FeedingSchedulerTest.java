@@ -1,11 +1,20 @@
 package petfeeder;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class FeedingSchedulerTest {
     
     private FeedingScheduler scheduler;
@@ -30,13 +39,13 @@ public class FeedingSchedulerTest {
      * @throws Exception If input strings cannot be parsed into valid ingredient amounts
      */
     private MealPlan createTestMealPlan(String kibble, String treats, String water, String wetFood) throws Exception{
-        MealPlan plan = new MealPlan();
+        MealPlan.Builder plan = new MealPlan.Builder();
         plan.setName("TestMeal");
         plan.setAmtKibble(kibble);
         plan.setAmtTreats(treats);
         plan.setAmtWater(water);
         plan.setAmtWetFood(wetFood);
-        return plan;
+        return plan.build();
     }
 
     /**
@@ -117,36 +126,39 @@ public class FeedingSchedulerTest {
 
     /**
      * Tests the background runnable task simulating a successful meal dispensing event.
-     * The thread is paused to allow the scheduled task enough time to execute.
+     * A manual clock runs the scheduled task without waiting for it.
      */
     @Test
     void testRunnableSuccess() throws Exception {
         MealPlan plan = createTestMealPlan("1", "1", "1", "1");
         feeder.addMealPlan(plan);
         feeder.replenishFood("20", "20", "20", "20");
+        ManualClock clock = new ManualClock();
+        FeedingScheduler manualScheduler = new FeedingScheduler(feeder, clock);
 
-
-        scheduler.scheduleRecurringFeeding(0, 1);
-
-        Thread.sleep(1500);
-        scheduler.stop();
+        manualScheduler.scheduleRecurringFeeding(0, 1);
+        clock.advance(1500, TimeUnit.MILLISECONDS);
+        manualScheduler.stop();
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 34"), "One meal should have been dispensed");
     }
 
     /**
      * Tests the background runnable task simulating a failed meal dispensing event
      * (e.g., due to insufficient ingredients or energy).
-     * The thread is paused to allow the scheduled task enough time to execute and fail gracefully.
+     * A manual clock runs the scheduled task, which should fail gracefully.
      */
     @Test
     void testRunnableFailDispense() throws Exception {
         MealPlan plan = createTestMealPlan("100", "100", "100", "100");
         feeder.addMealPlan(plan);
         feeder.replenishFood("10", "10", "10", "10");
+        ManualClock clock = new ManualClock();
+        FeedingScheduler manualScheduler = new FeedingScheduler(feeder, clock);
 
-        scheduler.scheduleRecurringFeeding(0, 1);
-
-        Thread.sleep(1500);
-        scheduler.stop();
+        manualScheduler.scheduleRecurringFeeding(0, 1);
+        assertEquals(1, clock.advance(1500, TimeUnit.MILLISECONDS));
+        manualScheduler.stop();
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 25"), "Nothing should have been dispensed");
     }
 
     /**
@@ -156,13 +168,217 @@ public class FeedingSchedulerTest {
      */
     @Test
     void testRunnableException() throws Exception {
-        FeedingScheduler badScheduler = new FeedingScheduler(null);
+        ManualClock clock = new ManualClock();
+        FeedingScheduler badScheduler = new FeedingScheduler(null, clock);
         badScheduler.scheduleRecurringFeeding(0, 1);
 
-        Thread.sleep(1500);
+        assertEquals(1, clock.advance(1500, TimeUnit.MILLISECONDS));
         badScheduler.stop();
     }
 
+    /**
+     * Tests a day of hourly and sub-second schedules on a manual clock.
+     */
+    @Test
+    void testSchedulesOnManualClock() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("1", "0", "0", "0"));
+        feeder.addMealPlan(createTestMealPlan("0", "0", "0", "1"));
+        feeder.replenishFood("100", "0", "100", "0");
+        feeder.setEnergyBudget(new EnergyBudget(100_000));
+        ManualClock clock = new ManualClock();
+        FeedingScheduler manualScheduler = new FeedingScheduler(feeder, clock);
 
-    
+        FeedingSchedule hourly = manualScheduler.addRecurringFeeding(0, 3600);
+        FeedingSchedule fast = manualScheduler.addRecurringFeeding(1, Duration.ofMillis(250));
+        assertEquals(Duration.ofMillis(250), fast.getPeriod());
+        assertEquals(0, fast.getPeriodSeconds());
+
+        assertEquals(4, clock.advance(Duration.ofSeconds(1)), "A 250 ms schedule feeds four times a second");
+        fast.cancel();
+        assertEquals(24, clock.advance(Duration.ofHours(24)));
+        assertEquals(Duration.ofHours(24).plusSeconds(1), clock.getTime());
+        assertTrue(hourly.isActive());
+        manualScheduler.shutdown();
+        assertFalse(hourly.isActive());
+        assertEquals(0, clock.activeTimers());
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 91"));
+        assertTrue(feeder.checkFoodStock().contains("Wet Food: 111"));
+        assertThrows(IllegalArgumentException.class, () -> manualScheduler.addRecurringFeeding(0, Duration.ZERO));
+    }
+
+    /**
+     * Tests that an on-demand dispense on a manual clock runs on its next advance.
+     */
+    @Test
+    void testDispenseNowOnManualClock() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("1", "1", "1", "1"));
+        ManualClock clock = new ManualClock();
+        FeedingScheduler manualScheduler = new FeedingScheduler(feeder, clock);
+
+        CompletableFuture<Boolean> dispensed = manualScheduler.dispenseNow(0);
+        assertFalse(dispensed.isDone());
+        clock.advance(0, TimeUnit.SECONDS);
+        assertTrue(dispensed.getNow(false));
+    }
+
+    /**
+     * Tests that addRecurringFeeding keeps earlier schedules, while
+     * scheduleRecurringFeeding only replaces its own schedule.
+     */
+    @Test
+    void testMultipleSchedulesOnTimingWheel() {
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+        try {
+            FeedingScheduler wheelScheduler = new FeedingScheduler(feeder, wheel);
+            FeedingSchedule breakfast = wheelScheduler.addRecurringFeeding(0, 60);
+            FeedingSchedule dinner = wheelScheduler.addRecurringFeeding(1, 120);
+            wheelScheduler.scheduleRecurringFeeding(0, 30);
+            wheelScheduler.scheduleRecurringFeeding(1, 30);
+
+            List<FeedingSchedule> active = wheelScheduler.getActiveSchedules();
+            assertEquals(3, active.size(), "Replacing the current schedule should keep added ones");
+            assertEquals(3, wheel.activeTimeouts());
+            assertEquals(120, dinner.getPeriodSeconds());
+
+            breakfast.cancel();
+            assertFalse(breakfast.isActive());
+            assertTrue(dinner.isActive());
+            assertEquals(2, wheelScheduler.getActiveSchedules().size());
+
+            wheelScheduler.shutdown();
+            assertFalse(wheelScheduler.hasActiveSchedule());
+            assertEquals(0, wheel.activeTimeouts(), "Shutting down a scheduler should cancel its schedules on the wheel");
+        } finally {
+            wheel.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a schedule on a shared timing wheel dispenses meals.
+     */
+    @Test
+    void testTimingWheelScheduleDispenses() throws Exception {
+        CountDownLatch dispensed = new CountDownLatch(1);
+        PetFeeder actuatedFeeder = new PetFeeder() {
+            @Override
+            protected void actuate(MealPlan meal) {
+                dispensed.countDown();
+            }
+        };
+        actuatedFeeder.addMealPlan(createTestMealPlan("1", "1", "1", "1"));
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+        try {
+            FeedingScheduler wheelScheduler = new FeedingScheduler(actuatedFeeder, wheel);
+            wheelScheduler.scheduleRecurringFeeding(0, 1);
+
+            assertTrue(dispensed.await(5, TimeUnit.SECONDS), "The schedule should dispense a meal");
+            wheelScheduler.stop();
+            // The next feeding is a second away, so stopping cancels it.
+            assertEquals(14, actuatedFeeder.getFoodContainer().getKibble(), "One meal should have been dispensed");
+        } finally {
+            wheel.shutdown();
+        }
+    }
+
+    /**
+     * Tests that in virtual thread mode an on-demand dispense runs on a
+     * virtual thread and reports its result.
+     */
+    @Test
+    void testDispenseNowOnVirtualThread() throws Exception {
+        boolean[] onVirtualThread = new boolean[1];
+        PetFeeder actuatedFeeder = new PetFeeder() {
+            @Override
+            protected void actuate(MealPlan dispensed) {
+                onVirtualThread[0] = Thread.currentThread().isVirtual();
+            }
+        };
+        actuatedFeeder.addMealPlan(createTestMealPlan("1", "1", "1", "1"));
+        FeedingScheduler virtualScheduler =
+                new FeedingScheduler(actuatedFeeder, FeedingScheduler.ExecutionMode.VIRTUAL_THREADS);
+        try {
+            assertTrue(virtualScheduler.dispenseNow(0).get(5, TimeUnit.SECONDS));
+            assertTrue(onVirtualThread[0], "The dispense should run on a virtual thread");
+            assertFalse(virtualScheduler.dispenseNow(7).get(5, TimeUnit.SECONDS), "Missing plan should not dispense");
+        } finally {
+            virtualScheduler.shutdown();
+        }
+    }
+
+    /**
+     * Tests that on-demand dispenses also work in platform thread mode,
+     * both with an own executor and on a timing wheel.
+     */
+    @Test
+    void testDispenseNowOnPlatformThreads() throws Exception {
+        MealPlan plan = createTestMealPlan("1", "1", "1", "1");
+        feeder.addMealPlan(plan);
+        assertTrue(scheduler.dispenseNow(0).get(5, TimeUnit.SECONDS));
+
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+        try {
+            FeedingScheduler wheelScheduler = new FeedingScheduler(feeder, wheel);
+            assertTrue(wheelScheduler.dispenseNow(0).get(5, TimeUnit.SECONDS));
+            assertTrue(feeder.checkFoodStock().contains("Kibble: 13"));
+        } finally {
+            wheel.shutdown();
+        }
+    }
+
+    /**
+     * Tests that in virtual thread mode two dispenses blocked in the
+     * actuator do not wait for each other, even on a one-worker timing wheel.
+     */
+    @Test
+    void testVirtualThreadDispensesDoNotBlockEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch dispensed = new CountDownLatch(2);
+        PetFeeder slowFeeder = new PetFeeder() {
+            @Override
+            protected void actuate(MealPlan meal) {
+                dispensed.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        slowFeeder.addMealPlan(createTestMealPlan("1", "1", "1", "1"));
+        TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 1);
+        try {
+            FeedingScheduler virtualScheduler =
+                    new FeedingScheduler(slowFeeder, wheel, FeedingScheduler.ExecutionMode.VIRTUAL_THREADS);
+            virtualScheduler.dispenseNow(0);
+            virtualScheduler.dispenseNow(0);
+            assertTrue(dispensed.await(5, TimeUnit.SECONDS), "Both dispenses should be actuating at once");
+            virtualScheduler.shutdown();
+        } finally {
+            release.countDown();
+            wheel.shutdown();
+        }
+    }
+
+    /**
+     * Tests that scheduled feedings publish their outcome to the scheduler's event log.
+     */
+    @Test
+    void testScheduledFeedingsPublishEvents() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("10", "0", "0", "0"));
+        List<String> messages = new CopyOnWriteArrayList<>();
+        EventLog log = new EventLog(event -> messages.add(event.getType() + " " + event.getMealName()), 64);
+        ManualClock clock = new ManualClock();
+        FeedingScheduler manualScheduler = new FeedingScheduler(feeder, clock);
+        try {
+            manualScheduler.setEventLog(log);
+            manualScheduler.addRecurringFeeding(0, 1);
+            clock.advance(2, TimeUnit.SECONDS);
+        } finally {
+            manualScheduler.shutdown();
+            log.close();
+        }
+        assertEquals(2, messages.size(), "Both feedings should be logged");
+        assertEquals("DISPENSED TestMeal", messages.get(0));
+        assertEquals("DISPENSE_FAILED null", messages.get(1), "The second meal runs out of kibble");
+    }
 }
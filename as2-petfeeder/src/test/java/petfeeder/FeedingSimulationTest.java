@@ -0,0 +1,156 @@
+package petfeeder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for FeedingSimulation.
+ * Verifies the order and count of simulated feedings, the report and the
+ * stock curves, and energy windows on the virtual clock.
+ */
+public class FeedingSimulationTest {
+
+    private FeederFleet fleet;
+    private FeedingSimulation simulation;
+
+    @BeforeEach
+    public void setUp() {
+        fleet = new FeederFleet(2, FoodContainer::new);
+        simulation = new FeedingSimulation(fleet);
+    }
+
+    private int addFeeder(MealPlan... plans) {
+        int id = fleet.addFeeder();
+        for (MealPlan plan : plans) {
+            fleet.getFeeder(id).addMealPlan(plan);
+        }
+        fleet.getFeeder(id).setEnergyBudget(new EnergyBudget(1_000_000));
+        return id;
+    }
+
+    /**
+     * Tests that a feeding fires once per period, first after one period,
+     * and fails once the stock is used up.
+     */
+    @Test
+    public void testFeedingsUntilEmpty() {
+        int id = addFeeder(plan("Dry", 1, 0, 0, 0));
+        simulation.addFeeding(id, 0, 3600);
+
+        SimulationReport report = simulation.run(Duration.ofDays(1), Duration.ofHours(6));
+        assertEquals(24, report.getEvents(), "One feeding per hour, the first after one hour");
+        assertEquals(15, report.getDispensed(), "15 kibble last 15 meals");
+        assertEquals(9, report.getCount(DispenseResult.Outcome.INSUFFICIENT_STOCK));
+        assertEquals(9, report.getFailures());
+        assertEquals(Duration.ofDays(1), simulation.getTime());
+        assertArrayEquals(new long[] {15, 9, 3, 0, 0}, report.getCurve(StockForecast.Resource.KIBBLE),
+                "Kibble at 0, 6, 12, 18 and 24 hours");
+        assertArrayEquals(new long[] {15, 15, 15, 15, 15}, report.getCurve(StockForecast.Resource.WATER));
+    }
+
+    /**
+     * Tests that replenishments keep a feeder going, that feedings due at
+     * the same time fire in the order they were added, and that a second
+     * run continues where the first stopped.
+     */
+    @Test
+    public void testReplenishAndContinue() {
+        int id = addFeeder(plan("Dry", 5, 0, 0, 0), plan("Wet", 0, 0, 5, 0));
+        simulation.addReplenishment(id, 3600, 5, 0, 0, 0);
+        simulation.addFeeding(id, 0, 3600);
+        simulation.addFeeding(id, 1, 7200);
+
+        SimulationReport first = simulation.run(Duration.ofHours(10), Duration.ofHours(10));
+        assertEquals(10, first.getReplenishments());
+        assertEquals(10 + 3, first.getDispensed(), "Kibble every hour, wet food three times");
+        assertEquals(2, first.getFailures());
+        assertEquals(15, fleet.getFeeder(id).getFoodContainer().getKibble(),
+                "Every replenishment comes before the feeding due at the same time");
+
+        SimulationReport second = simulation.run(Duration.ofHours(2), Duration.ofHours(1));
+        assertEquals(2 + 2 + 1, second.getEvents());
+        assertEquals(Duration.ofHours(12), simulation.getTime());
+    }
+
+    /**
+     * Tests that a rolling energy window made by the simulation follows the
+     * virtual clock, and that missing plans are counted.
+     */
+    @Test
+    public void testEnergyWindowAndMissingPlan() {
+        int id = addFeeder(plan("Dry", 1, 0, 0, 0));
+        PetFeeder feeder = fleet.getFeeder(id);
+        feeder.replenishFood(1000, 0, 0, 0);
+        feeder.setEnergyBudget(simulation.newEnergyBudget(30, Duration.ofHours(4)));
+        simulation.addFeeding(id, 0, 3600);
+        simulation.addFeeding(id, 3, 3600);
+
+        SimulationReport report = simulation.run(Duration.ofHours(48), Duration.ofHours(48));
+        assertEquals(48, report.getCount(DispenseResult.Outcome.NO_PLAN));
+        assertEquals(36, report.getDispensed(), "Three meals fit in any four hours");
+        assertEquals(12, report.getCount(DispenseResult.Outcome.ENERGY_EXCEEDED));
+    }
+
+    /**
+     * Tests that timers on the simulation's clock, such as a reservation's
+     * expiry, run as virtual time passes, and that a simulation can share
+     * a clock that was already advanced.
+     */
+    @Test
+    public void testClockTimers() {
+        ManualClock clock = new ManualClock();
+        clock.advance(Duration.ofDays(1));
+        simulation = new FeedingSimulation(fleet, clock);
+        int id = addFeeder(plan("Dry", 5, 0, 0, 0));
+        PetFeeder feeder = fleet.getFeeder(id);
+        feeder.setClock(simulation.getClock());
+        MealReservation reservation = feeder.reserveMeal(0, 90, TimeUnit.MINUTES);
+        simulation.addFeeding(id, 0, 3600);
+
+        SimulationReport report = simulation.run(Duration.ofHours(2), Duration.ofHours(1));
+        assertEquals(MealReservation.State.EXPIRED, reservation.getState());
+        assertEquals(2, report.getDispensed(), "The first feeding finds 10 kibble, the second 15");
+        assertEquals(5, feeder.getFoodContainer().getKibble());
+        assertEquals(Duration.ofHours(2), simulation.getTime());
+        assertEquals(Duration.ofHours(26), clock.getTime());
+    }
+
+    /**
+     * Tests that a scheduler's active schedules are imported.
+     */
+    @Test
+    public void testAddFeedingsFromScheduler() {
+        int id = addFeeder(plan("Dry", 1, 0, 0, 0), plan("Wet", 0, 0, 1, 0));
+        FeedingScheduler scheduler = new FeedingScheduler(fleet.getFeeder(id));
+        try {
+            scheduler.addRecurringFeeding(0, 36_000);
+            scheduler.addRecurringFeeding(1, 72_000);
+            simulation.addFeedings(id, scheduler);
+        } finally {
+            scheduler.shutdown();
+        }
+        SimulationReport report = simulation.run(Duration.ofHours(20), Duration.ofHours(20));
+        assertEquals(3, report.getDispensed());
+        assertEquals(13, fleet.getFeeder(id).getFoodContainer().getKibble());
+        assertEquals(14, fleet.getFeeder(id).getFoodContainer().getWetFood());
+    }
+
+    /**
+     * Tests invalid arguments.
+     */
+    @Test
+    public void testInvalidArguments() {
+        int id = addFeeder(plan("Dry", 1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> simulation.addFeeding(id + 1, 0, 60));
+        assertThrows(IllegalArgumentException.class, () -> simulation.addFeeding(id, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> simulation.addFeeding(id, -1, 60));
+        assertThrows(IllegalArgumentException.class, () -> simulation.addReplenishment(id, 60, -1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> simulation.run(Duration.ofHours(1), Duration.ZERO));
+    }
+}
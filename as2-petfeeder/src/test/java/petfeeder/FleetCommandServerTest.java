@@ -0,0 +1,205 @@
+package petfeeder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for FleetCommandServer.
+ * Sends pipelined binary requests over loopback and verifies the
+ * responses, backpressure when the client reads slowly, and that a
+ * malformed frame closes the connection.
+ */
+public class FleetCommandServerTest {
+
+    private FeederFleet fleet;
+    private FleetCommandServer server;
+    private SocketChannel client;
+    private int dry;
+    private int wet;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fleet = new FeederFleet(2, FoodContainer::new);
+        dry = addFeeder(plan("Dry", 5, 0, 0, 0));
+        wet = addFeeder(plan("Wet", 0, 0, 5, 0));
+        server = new FleetCommandServer(fleet, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        client = SocketChannel.open(server.getAddress());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private int addFeeder(MealPlan plan) {
+        int id = fleet.addFeeder();
+        fleet.getFeeder(id).addMealPlan(plan);
+        fleet.getFeeder(id).setEnergyBudget(new EnergyBudget(1_000_000));
+        return id;
+    }
+
+    private void send(ByteBuffer requests) throws IOException {
+        requests.flip();
+        while (requests.hasRemaining()) {
+            client.write(requests);
+        }
+    }
+
+    private ByteBuffer receive(int responses) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(responses * FleetCommandServer.RESPONSE_SIZE);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                fail("The server closed the connection");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void assertResponse(ByteBuffer responses, int requestId, byte opcode, int status) {
+        assertEquals(FleetCommandServer.RESPONSE_SIZE - 4, responses.getInt());
+        assertEquals(requestId, responses.getInt());
+        assertEquals(opcode, responses.get());
+        assertEquals(status, responses.get(), "Status of request " + requestId);
+    }
+
+    /**
+     * Tests a pipeline of dispenses and replenishes on several feeders,
+     * answered in order.
+     */
+    @Test
+    public void testPipelinedRequests() throws IOException {
+        ByteBuffer requests = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 4; i++) {
+            FleetCommandServer.putDispense(requests, i, dry, 0);
+        }
+        FleetCommandServer.putReplenish(requests, 4, dry, 5, 0, 0, 0);
+        FleetCommandServer.putDispense(requests, 5, dry, 0);
+        FleetCommandServer.putDispense(requests, 6, wet, 0);
+        FleetCommandServer.putDispense(requests, 7, wet, 2);
+        FleetCommandServer.putDispense(requests, 8, 99, 0);
+        FleetCommandServer.putReplenish(requests, 9, wet, -1, 0, 0, 0);
+        // A frame of a valid length with an unknown opcode.
+        requests.putInt(13).put((byte) 9).putInt(10).putInt(dry).putInt(0);
+        send(requests);
+
+        ByteBuffer responses = receive(11);
+        assertResponse(responses, 0, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 1, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 2, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 3, FleetCommandServer.DISPENSE, DispenseResult.Outcome.INSUFFICIENT_STOCK.ordinal());
+        assertResponse(responses, 4, FleetCommandServer.REPLENISH, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 5, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 6, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 7, FleetCommandServer.DISPENSE, DispenseResult.Outcome.NO_PLAN.ordinal());
+        assertResponse(responses, 8, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_NO_FEEDER);
+        assertResponse(responses, 9, FleetCommandServer.REPLENISH, FleetCommandServer.STATUS_REJECTED);
+        assertResponse(responses, 10, (byte) 9, FleetCommandServer.STATUS_BAD_REQUEST);
+
+        assertEquals(0, fleet.getFeeder(dry).getFoodContainer().getKibble());
+        assertEquals(10, fleet.getFeeder(wet).getFoodContainer().getWetFood());
+    }
+
+    /**
+     * Tests a request split across writes, and many more requests than the
+     * server's write buffer holds responses for, sent before any response
+     * is read.
+     */
+    @Test
+    public void testPartialFramesAndBackpressure() throws Exception {
+        ByteBuffer split = ByteBuffer.allocate(FleetCommandServer.REPLENISH_SIZE);
+        FleetCommandServer.putReplenish(split, 7, dry, 1_000, 0, 0, 0);
+        split.flip();
+        for (int i = 0; i < split.capacity(); i += 10) {
+            ByteBuffer part = split.duplicate();
+            part.position(i).limit(Math.min(i + 10, split.capacity()));
+            client.write(part);
+            Thread.sleep(5);
+        }
+        assertResponse(receive(1), 7, FleetCommandServer.REPLENISH, FleetCommandServer.STATUS_OK);
+
+        int count = 4 * FleetCommandServer.BUFFER_SIZE / FleetCommandServer.RESPONSE_SIZE;
+        Thread writer = new Thread(() -> {
+            ByteBuffer requests = ByteBuffer.allocate(count * FleetCommandServer.DISPENSE_SIZE);
+            for (int i = 0; i < count; i++) {
+                FleetCommandServer.putDispense(requests, i, dry, 0);
+            }
+            try {
+                send(requests);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(200);
+        ByteBuffer responses = receive(count);
+        writer.join();
+        int ok = 0;
+        for (int i = 0; i < count; i++) {
+            responses.position(i * FleetCommandServer.RESPONSE_SIZE + 4);
+            assertEquals(i, responses.getInt(), "Responses come back in request order");
+            responses.get();
+            if (responses.get() == FleetCommandServer.STATUS_OK) {
+                ok++;
+            }
+        }
+        assertEquals(203, ok, "1015 kibble last 203 meals");
+    }
+
+    /**
+     * Tests that a feeder that throws is answered with an error and that
+     * the server goes on serving the same connection.
+     */
+    @Test
+    public void testFailingFeeder() throws IOException {
+        int broken = fleet.addFeeder();
+        fleet.putFeeder(broken, new PetFeeder(new FoodContainer()) {
+            @Override
+            protected void actuate(MealPlan dispensed) {
+                throw new IllegalStateException("Dispenser jammed");
+            }
+        });
+        fleet.getFeeder(broken).addMealPlan(plan("Dry", 5, 0, 0, 0));
+
+        ByteBuffer requests = ByteBuffer.allocate(3 * FleetCommandServer.DISPENSE_SIZE);
+        FleetCommandServer.putDispense(requests, 1, broken, 0);
+        FleetCommandServer.putDispense(requests, 2, dry, 0);
+        FleetCommandServer.putDispense(requests, 3, broken, 0);
+        send(requests);
+
+        ByteBuffer responses = receive(3);
+        assertResponse(responses, 1, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_ERROR);
+        assertResponse(responses, 2, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+        assertResponse(responses, 3, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_ERROR);
+    }
+
+    /**
+     * Tests that a frame with an impossible length closes the connection
+     * and that the server goes on serving other connections.
+     */
+    @Test
+    public void testMalformedFrameClosesConnection() throws IOException {
+        ByteBuffer garbage = ByteBuffer.allocate(8);
+        garbage.putInt(1 << 20).putInt(0);
+        send(garbage);
+        assertEquals(-1, client.read(ByteBuffer.allocate(16)));
+
+        client.close();
+        client = SocketChannel.open(server.getAddress());
+        ByteBuffer requests = ByteBuffer.allocate(FleetCommandServer.DISPENSE_SIZE);
+        FleetCommandServer.putDispense(requests, 1, wet, 0);
+        send(requests);
+        assertResponse(receive(1), 1, FleetCommandServer.DISPENSE, FleetCommandServer.STATUS_OK);
+    }
+}
@@ -68,13 +68,13 @@ public class FoodContainerTest {
      */
     @Test
     public void testEnoughIngredientsSuccess() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtKibble("10");
         meal.setAmtWater("10");
         meal.setAmtWetFood("10");
         meal.setAmtTreats("10");
 
-        assertTrue(container.enoughIngredients(meal), "Should return true when stock is sufficient");
+        assertTrue(container.enoughIngredients(meal.build()), "Should return true when stock is sufficient");
     }
 
     /**
@@ -82,10 +82,10 @@ public class FoodContainerTest {
      */
     @Test
     public void testEnoughIngredientsInsufficientKibble() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtKibble("20"); // Stock is only 15
 
-        assertFalse(container.enoughIngredients(meal), "Should return false when kibble stock is insufficient");
+        assertFalse(container.enoughIngredients(meal.build()), "Should return false when kibble stock is insufficient");
     }
 
     /**
@@ -93,10 +93,10 @@ public class FoodContainerTest {
      */
     @Test
     public void testEnoughIngredientsInsufficientWater() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtWater("20"); // Stock is only 15
 
-        assertFalse(container.enoughIngredients(meal), "Should return false when water stock is insufficient");
+        assertFalse(container.enoughIngredients(meal.build()), "Should return false when water stock is insufficient");
     }
 
     /**
@@ -104,10 +104,10 @@ public class FoodContainerTest {
      */
     @Test
     public void testEnoughIngredientsInsufficientWetFood() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtWetFood("20"); // Stock is only 15
 
-        assertFalse(container.enoughIngredients(meal), "Should return false when wet food stock is insufficient");
+        assertFalse(container.enoughIngredients(meal.build()), "Should return false when wet food stock is insufficient");
     }
 
     /**
@@ -115,10 +115,10 @@ public class FoodContainerTest {
      */
     @Test
     public void testEnoughIngredientsInsufficientTreats() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtTreats("20"); // Stock is only 15
 
-        assertFalse(container.enoughIngredients(meal), "Should return false when treats stock is insufficient");
+        assertFalse(container.enoughIngredients(meal.build()), "Should return false when treats stock is insufficient");
     }
 
     /**
@@ -126,13 +126,13 @@ public class FoodContainerTest {
      */
     @Test
     public void testUseIngredientsSuccess() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtKibble("5");
         meal.setAmtWater("5");
         meal.setAmtWetFood("5");
         meal.setAmtTreats("5");
 
-        boolean result = container.useIngredients(meal);
+        boolean result = container.useIngredients(meal.build());
 
         assertTrue(result, "Should successfully use ingredients");
         assertEquals(10, container.getKibble(), "Kibble should be reduced to 10");
@@ -147,10 +147,10 @@ public class FoodContainerTest {
      */
     @Test
     public void testUseIngredientsFailure() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtKibble("20"); // Stock is only 15
 
-        boolean result = container.useIngredients(meal);
+        boolean result = container.useIngredients(meal.build());
 
         assertFalse(result, "Should return false when there are not enough ingredients");
         assertEquals(15, container.getKibble(), "Kibble stock should remain unchanged");
@@ -198,5 +198,33 @@ public class FoodContainerTest {
         assertEquals(0, container.getTreats(), "Treats should be successfully set to 0");
     }
 
+    /**
+     * Tests the numeric overloads for adding ingredients.
+     */
+    @Test
+    public void testAddIntAmounts() {
+        assertTrue(container.addKibble(5), "Adding a positive amount should succeed");
+        assertTrue(container.addWater(0), "Adding zero should succeed");
+        assertFalse(container.addWetFood(-1), "Adding a negative amount should fail");
+        assertFalse(container.addTreats(Integer.MAX_VALUE), "Overflowing the stock should fail");
+        assertEquals(20, container.getKibble());
+        assertEquals(15, container.getWater());
+        assertEquals(15, container.getWetFood());
+        assertEquals(15, container.getTreats());
+    }
 
-}
\ No newline at end of file
+    /**
+     * Tests that addIngredients adds nothing unless every amount is valid.
+     */
+    @Test
+    public void testAddIngredientsAllOrNothing() {
+        assertFalse(container.addIngredients(5, 5, -1, 5), "A negative amount should reject the whole replenish");
+        assertEquals(15, container.getKibble(), "Kibble should be unchanged after a rejected replenish");
+
+        assertTrue(container.addIngredients(1, 2, 3, 4));
+        assertEquals(16, container.getKibble());
+        assertEquals(17, container.getWater());
+        assertEquals(18, container.getWetFood());
+        assertEquals(19, container.getTreats());
+    }
+}
@@ -0,0 +1,90 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram.
+ * Verifies bucket precision, percentiles and concurrent recording.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Tests that every value maps to a bucket whose reported value is at
+     * most about 3% above it.
+     */
+    @Test
+    public void testBucketPrecision() {
+        long[] values = {0, 1, 63, 64, 65, 1000, 123_456, 10_000_000_000L, Long.MAX_VALUE};
+        int previous = -1;
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            long reported = LatencyHistogram.highestValueIn(index);
+            assertTrue(reported >= value, "Bucket of " + value + " should include it");
+            assertTrue(reported - value <= value / 32, "Bucket of " + value + " is too wide");
+            assertTrue(index >= previous, "Larger values should not go to earlier buckets");
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.indexOf(64), LatencyHistogram.indexOf(65), "64 and 65 share a bucket");
+    }
+
+    /**
+     * Tests percentiles over a uniform spread of values.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99), "An empty histogram reports 0");
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_000, snapshot.getP50(), 5_000_000 / 32.0);
+        assertEquals(9_900_000, snapshot.getP99(), 9_900_000 / 32.0);
+        assertEquals(9_990_000, snapshot.getP999(), 9_990_000 / 32.0);
+        assertEquals(10_000_000, snapshot.getValueAtPercentile(100), "p100 is the maximum");
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(0), "A negative value counts as zero");
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    /**
+     * Tests that no values are lost when many threads record at once.
+     */
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                long base = t * 100;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        histogram.record(base + i % 100);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(200_000, histogram.getCount(), "Every value should be counted");
+        assertEquals(399, histogram.getMax());
+    }
+}
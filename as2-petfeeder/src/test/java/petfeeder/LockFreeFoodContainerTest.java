@@ -0,0 +1,185 @@
+package petfeeder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import petfeeder.exceptions.FoodStockException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LockFreeFoodContainer.
+ * Verifies that the packed, CAS-based container behaves like the
+ * monitor-based FoodContainer and keeps all-or-nothing semantics under contention.
+ */
+public class LockFreeFoodContainerTest {
+    private LockFreeFoodContainer container;
+
+    /**
+     * Sets up a fresh LockFreeFoodContainer before each test.
+     * The default constructor sets all ingredient levels to 15.
+     */
+    @BeforeEach
+    public void setUp() {
+        container = new LockFreeFoodContainer();
+    }
+
+    /**
+     * Helper method to create a meal plan with the given ingredient amounts.
+     */
+    private MealPlan createMealPlan(String kibble, String water, String wetFood, String treats) throws Exception {
+        MealPlan.Builder meal = new MealPlan.Builder();
+        meal.setAmtKibble(kibble);
+        meal.setAmtWater(water);
+        meal.setAmtWetFood(wetFood);
+        meal.setAmtTreats(treats);
+        return meal.build();
+    }
+
+    /**
+     * Tests the default constructor to ensure initial values are correctly set.
+     */
+    @Test
+    public void testInitialStock() {
+        assertEquals(15, container.getKibble(), "Initial kibble should be 15");
+        assertEquals(15, container.getWater(), "Initial water should be 15");
+        assertEquals(15, container.getWetFood(), "Initial wet food should be 15");
+        assertEquals(15, container.getTreats(), "Initial treats should be 15");
+    }
+
+    /**
+     * Tests that adding one ingredient leaves the other lanes untouched.
+     */
+    @Test
+    public void testAddKibbleOnlyChangesKibble() throws FoodStockException {
+        container.addKibble("5");
+        assertEquals(20, container.getKibble(), "Kibble should increase by 5, totaling 20");
+        assertEquals(15, container.getWater(), "Water should be unchanged");
+        assertEquals(15, container.getWetFood(), "Wet food should be unchanged");
+        assertEquals(15, container.getTreats(), "Treats should be unchanged");
+    }
+
+    /**
+     * Tests adding negative and non-numeric amounts, expecting exceptions.
+     */
+    @Test
+    public void testAddInvalidAmounts() {
+        assertThrows(FoodStockException.class, () -> container.addWater("-1"), "Adding a negative amount should throw a FoodStockException");
+        assertThrows(FoodStockException.class, () -> container.addTreats("abc"), "Adding a non-numeric string should throw a FoodStockException");
+    }
+
+    /**
+     * Tests that filling an ingredient past its capacity is rejected and leaves the stock unchanged.
+     */
+    @Test
+    public void testAddBeyondCapacity() {
+        container.setWetFood(IngredientVector.MAX_UNITS);
+        assertThrows(FoodStockException.class, () -> container.addWetFood("1"), "Overflowing a lane should throw a FoodStockException");
+        assertEquals(IngredientVector.MAX_UNITS, container.getWetFood(), "Wet food should stay at capacity");
+        assertEquals(15, container.getTreats(), "An overflow must not carry into the treats lane");
+    }
+
+    /**
+     * Tests that setting more than a lane holds is rejected loudly and
+     * leaves the stock unchanged.
+     */
+    @Test
+    public void testSetBeyondCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> container.setKibble(IngredientVector.MAX_UNITS + 1),
+                "Setting more than a lane holds should throw");
+        assertEquals(15, container.getKibble(), "Kibble should be unchanged");
+        container.setTreats(-1);
+        assertEquals(15, container.getTreats(), "A negative amount is ignored as in FoodContainer");
+    }
+
+    /**
+     * Tests that using ingredients removes every amount of the meal.
+     */
+    @Test
+    public void testUseIngredientsSuccess() throws Exception {
+        assertTrue(container.useIngredients(createMealPlan("5", "4", "3", "2")), "Should successfully use ingredients");
+        assertEquals(10, container.getKibble());
+        assertEquals(11, container.getWater());
+        assertEquals(12, container.getWetFood());
+        assertEquals(13, container.getTreats());
+    }
+
+    /**
+     * Tests that a meal short of one ingredient removes nothing.
+     */
+    @Test
+    public void testUseIngredientsFailure() throws Exception {
+        MealPlan meal = createMealPlan("1", "1", "1", "16");
+
+        assertFalse(container.enoughIngredients(meal), "Treats stock is insufficient");
+        assertFalse(container.useIngredients(meal), "Should return false when there are not enough ingredients");
+        assertEquals("Kibble: 15\nWater: 15\nWet Food: 15\nTreats: 15\n", container.toString(), "Stock should remain unchanged");
+    }
+
+    /**
+     * Tests that concurrent dispensing never oversells the stock.
+     * 8 threads compete for 1000 meals' worth of ingredients.
+     */
+    @Test
+    public void testConcurrentUseIngredientsIsAllOrNothing() throws Exception {
+        container.setKibble(1000);
+        container.setWater(2000);
+        container.setWetFood(1000);
+        container.setTreats(1000);
+        MealPlan meal = createMealPlan("1", "2", "1", "1");
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Future<?>[] workers = new Future<?>[8];
+        int[] successes = new int[8];
+        for (int t = 0; t < workers.length; t++) {
+            final int id = t;
+            workers[t] = pool.submit(() -> {
+                while (container.useIngredients(meal)) {
+                    successes[id]++;
+                }
+            });
+        }
+        int total = 0;
+        for (int t = 0; t < workers.length; t++) {
+            workers[t].get();
+            total += successes[t];
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1000, total, "Exactly 1000 meals should be dispensed");
+        assertEquals(0, container.getKibble());
+        assertEquals(0, container.getWater());
+        assertEquals(0, container.getWetFood());
+        assertEquals(0, container.getTreats());
+    }
+
+    /**
+     * Tests that a PetFeeder can dispense from a lock-free container.
+     */
+    @Test
+    public void testPetFeederWithLockFreeContainer() throws Exception {
+        PetFeeder feeder = new PetFeeder(container);
+        feeder.addMealPlan(createMealPlan("1", "1", "1", "1"));
+
+        assertTrue(feeder.dispenseMeal(0));
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 14"));
+    }
+
+    /**
+     * Tests that addIngredients is all-or-nothing and respects the lane capacity.
+     */
+    @Test
+    public void testAddIngredients() {
+        assertTrue(container.addIngredients(1, 2, 3, 4));
+        assertEquals("Kibble: 16\nWater: 17\nWet Food: 18\nTreats: 19\n", container.toString());
+
+        assertFalse(container.addIngredients(0, 0, 0, IngredientVector.MAX_UNITS), "Overflowing treats should fail");
+        assertFalse(container.addKibble(-1), "A negative amount should fail");
+        assertEquals("Kibble: 16\nWater: 17\nWet Food: 18\nTreats: 19\n", container.toString());
+    }
+}
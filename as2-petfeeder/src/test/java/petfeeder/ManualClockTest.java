@@ -0,0 +1,101 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for ManualClock.
+ * Verifies the order of timers, recurring and cancelled timers, and that
+ * energy budgets and reservation timeouts follow the clock.
+ */
+public class ManualClockTest {
+
+    /**
+     * Tests that timers run in order of their due time, each with the clock
+     * set to that time, and that recurring timers run once per period.
+     */
+    @Test
+    public void testTimersRunInOrder() {
+        ManualClock clock = new ManualClock();
+        List<String> runs = new ArrayList<>();
+        clock.schedule(() -> runs.add("b@" + clock.nanoTime()), 2, 0, TimeUnit.SECONDS);
+        clock.schedule(() -> runs.add("a@" + clock.nanoTime()), 1, 2, TimeUnit.SECONDS);
+        clock.schedule(() -> runs.add("c@" + clock.nanoTime()), 2, 0, TimeUnit.SECONDS);
+
+        assertEquals(0, clock.advance(999, TimeUnit.MILLISECONDS));
+        assertEquals(5, clock.advance(Duration.ofSeconds(5)));
+        assertEquals(List.of("a@1000000000", "b@2000000000", "c@2000000000", "a@3000000000", "a@5000000000"),
+                runs, "Equal due times run in the order they were scheduled");
+        assertEquals(Duration.ofNanos(5_999_000_000L), clock.getTime());
+        assertEquals(1, clock.activeTimers(), "Only the recurring timer is left");
+    }
+
+    /**
+     * Tests cancelling a timer from outside and from its own task.
+     */
+    @Test
+    public void testCancel() {
+        ManualClock clock = new ManualClock();
+        int[] runs = new int[2];
+        FeederClock.Timer outside = clock.schedule(() -> runs[0]++, 1, 1, TimeUnit.SECONDS);
+        FeederClock.Timer[] self = new FeederClock.Timer[1];
+        self[0] = clock.schedule(() -> {
+            if (++runs[1] == 3) {
+                self[0].cancel();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        clock.advance(2, TimeUnit.SECONDS);
+        assertTrue(outside.cancel());
+        assertFalse(outside.cancel(), "A timer is cancelled once");
+        clock.advance(10, TimeUnit.SECONDS);
+        assertEquals(2, runs[0]);
+        assertEquals(3, runs[1]);
+        assertFalse(self[0].isActive());
+        assertEquals(0, clock.activeTimers());
+        assertThrows(IllegalArgumentException.class, () -> clock.advance(-1, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Tests an energy window that rolls on the manual clock.
+     */
+    @Test
+    public void testEnergyBudgetWindow() {
+        ManualClock clock = new ManualClock();
+        EnergyBudget budget = new EnergyBudget(100, Duration.ofHours(1), clock);
+        assertTrue(budget.tryConsume(100));
+        assertFalse(budget.tryConsume(1));
+        clock.advance(Duration.ofMinutes(30));
+        assertFalse(budget.tryConsume(1));
+        clock.advance(Duration.ofMinutes(31));
+        assertEquals(100, budget.getRemaining(), "The energy should have left the window");
+    }
+
+    /**
+     * Tests that a meal reservation expires on the feeder's clock.
+     */
+    @Test
+    public void testReservationTimeout() {
+        ManualClock clock = new ManualClock();
+        PetFeeder feeder = new PetFeeder();
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Dry");
+        plan.setAmtKibble(5);
+        feeder.addMealPlan(plan.build());
+        feeder.setClock(clock);
+
+        MealReservation reservation = feeder.reserveMeal(0, 30, TimeUnit.SECONDS);
+        assertEquals(MealReservation.State.PENDING, reservation.getState());
+        clock.advance(29, TimeUnit.SECONDS);
+        assertEquals(MealReservation.State.PENDING, reservation.getState());
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(MealReservation.State.EXPIRED, reservation.getState());
+        assertEquals(15, feeder.getFoodContainer().getKibble(), "The kibble should be given back");
+    }
+}
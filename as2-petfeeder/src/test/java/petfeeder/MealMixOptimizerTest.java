@@ -0,0 +1,192 @@
+package petfeeder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for MealMixOptimizer.
+ * Verifies the chosen mixes against exhaustive search on small inputs,
+ * that they always fit the stock and energy, and the result cache.
+ */
+public class MealMixOptimizerTest {
+
+    private static MealPlan[] randomPlans(Random random, int count, int maxAmount) {
+        MealPlan[] plans = new MealPlan[count];
+        for (int i = 0; i < count; i++) {
+            plans[i] = plan("Meal " + i, random.nextInt(maxAmount), random.nextInt(maxAmount),
+                    random.nextInt(maxAmount), random.nextInt(maxAmount));
+        }
+        return plans;
+    }
+
+    /**
+     * Returns {most meals, most energy not above energy} over every mix.
+     */
+    private static int[] exhaustive(MealPlan[] plans, int slot, int[] left, int meals, int energy) {
+        int[] best = {meals, energy};
+        if (slot == plans.length) {
+            return best;
+        }
+        MealPlan plan = plans[slot];
+        int[] need = {plan.getAmtKibble(), plan.getAmtWater(), plan.getAmtWetFood(), plan.getAmtTreats(),
+                plan.getEnergyCost()};
+        for (int count = 0; ; count++) {
+            int[] result = exhaustive(plans, slot + 1, left, meals + count, energy + count * need[4]);
+            best[0] = Math.max(best[0], result[0]);
+            best[1] = Math.max(best[1], result[1]);
+            boolean fits = need[4] > 0;
+            for (int d = 0; d < need.length; d++) {
+                fits &= left[d] >= need[d];
+            }
+            if (!fits) {
+                for (int d = 0; d < need.length; d++) {
+                    left[d] += count * need[d];
+                }
+                return best;
+            }
+            for (int d = 0; d < need.length; d++) {
+                left[d] -= need[d];
+            }
+        }
+    }
+
+    private static void assertFits(MealMix mix, MealPlan[] plans, int[] limits) {
+        long[] used = new long[5];
+        for (int i = 0; i < plans.length; i++) {
+            int count = mix.getCount(i);
+            if (count > 0) {
+                used[0] += (long) count * plans[i].getAmtKibble();
+                used[1] += (long) count * plans[i].getAmtWater();
+                used[2] += (long) count * plans[i].getAmtWetFood();
+                used[3] += (long) count * plans[i].getAmtTreats();
+                used[4] += (long) count * plans[i].getEnergyCost();
+            }
+        }
+        for (int d = 0; d < used.length; d++) {
+            assertTrue(used[d] <= limits[d], "The mix should fit limit " + d + ": " + mix);
+        }
+    }
+
+    /**
+     * Tests both goals against exhaustive search on small random inputs.
+     */
+    @Test
+    public void testMatchesExhaustiveSearch() {
+        Random random = new Random(7);
+        MealMixOptimizer optimizer = new MealMixOptimizer();
+        for (int round = 0; round < 100; round++) {
+            MealPlan[] plans = randomPlans(random, 1 + random.nextInt(4), 4);
+            int[] limits = {random.nextInt(12), random.nextInt(12), random.nextInt(12), random.nextInt(12),
+                    random.nextInt(400)};
+            int[] expected = exhaustive(plans, 0, limits.clone(), 0, 0);
+
+            MealMix most = optimizer.solve(limits[0], limits[1], limits[2], limits[3], limits[4], plans, -1);
+            assertEquals(expected[0], most.getMeals(), "Most meals in round " + round);
+            assertTrue(most.isOptimal());
+            assertFits(most, plans, limits);
+
+            MealMix closest = optimizer.solve(limits[0], limits[1], limits[2], limits[3], limits[4], plans,
+                    limits[4]);
+            assertEquals(expected[1], closest.getEnergy(), "Most energy in round " + round);
+            assertFits(closest, plans, limits);
+        }
+    }
+
+    /**
+     * Tests a feeder mix that favours the cheap meal, dispensing it, and
+     * aiming for an energy target.
+     */
+    @Test
+    public void testFeederMix() {
+        PetFeeder feeder = new PetFeeder();
+        feeder.addMealPlan(plan("Big", 5, 5, 5, 0));
+        feeder.addMealPlan(plan("Small", 1, 1, 0, 0));
+        MealMixOptimizer optimizer = new MealMixOptimizer();
+
+        MealMix mix = optimizer.mostMeals(feeder);
+        assertEquals(15, mix.getMeals(), "15 kibble and water allow 15 small meals");
+        assertEquals(15, mix.getCount(1));
+        assertEquals("15 x Small", mix.toString());
+        assertEquals(15, mix.dispense(feeder));
+        assertEquals(0, optimizer.mostMeals(feeder).getMeals(), "Nothing is left");
+
+        feeder.replenishFood(15, 15, 0, 0);
+        MealMix target = optimizer.closestToEnergy(feeder, 100);
+        assertEquals(90, target.getEnergy(), "Six small meals of 15 come closest to 100");
+        assertThrows(IllegalArgumentException.class, () -> optimizer.closestToEnergy(feeder, -1));
+    }
+
+    /**
+     * Tests that a repeated question is answered from the cache, and that a
+     * change of stock or plans asks the solver again.
+     */
+    @Test
+    public void testCache() {
+        PetFeeder feeder = new PetFeeder();
+        feeder.addMealPlan(plan("Small", 1, 1, 0, 0));
+        MealMixOptimizer optimizer = new MealMixOptimizer();
+
+        MealMix first = optimizer.mostMeals(feeder);
+        assertSame(first, optimizer.mostMeals(feeder), "The same question should hit the cache");
+
+        feeder.dispenseMeal(0);
+        MealMix afterDispense = optimizer.mostMeals(feeder);
+        assertNotSame(first, afterDispense);
+        assertEquals(14, afterDispense.getMeals());
+
+        feeder.editMealPlan(0, plan("Small", 2, 1, 0, 0));
+        assertEquals(7, optimizer.mostMeals(feeder).getMeals(), "A new plan should be solved again");
+
+        optimizer.clearCache();
+        assertNotSame(afterDispense, optimizer.mostMeals(feeder));
+    }
+
+    /**
+     * Tests that hundreds of plans are solved quickly and proven optimal,
+     * and that the mix is at least as good as the best single plan.
+     */
+    @Test
+    public void testHundredsOfPlans() {
+        Random random = new Random(3);
+        MealPlan[] plans = randomPlans(random, 400, 20);
+        int[] limits = {500, 500, 500, 500, 20_000};
+        MealMixOptimizer optimizer = new MealMixOptimizer();
+
+        long start = System.nanoTime();
+        MealMix mix = optimizer.solve(limits[0], limits[1], limits[2], limits[3], limits[4], plans, -1);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertTrue(millis < 5000, "Solving took " + millis + " ms");
+        assertTrue(mix.isOptimal(), "The relaxation bound should prove the mix optimal");
+        assertFits(mix, plans, limits);
+
+        MealPlanBook book = new MealPlanBook();
+        book.restore(plans);
+        int bestSingle = 0;
+        for (int count : book.maxDispensable(limits[0], limits[1], limits[2], limits[3], limits[4])) {
+            if (count != Integer.MAX_VALUE) {
+                bestSingle = Math.max(bestSingle, count);
+            }
+        }
+        assertTrue(mix.getMeals() >= bestSingle, "The mix should beat the best single plan");
+    }
+
+    /**
+     * Tests that a search cut short by its node limit still returns a mix
+     * that fits, marked as not proven optimal.
+     */
+    @Test
+    public void testNodeLimit() {
+        Random random = new Random(5);
+        MealPlan[] plans = randomPlans(random, 50, 10);
+        int[] limits = {300, 300, 300, 300, 10_000};
+        MealMix mix = new MealMixOptimizer(0, 10).solve(limits[0], limits[1], limits[2], limits[3], limits[4],
+                plans, -1);
+        assertFalse(mix.isOptimal());
+        assertFits(mix, plans, limits);
+        assertTrue(mix.getMeals() > 0, "The first dive should already find meals");
+    }
+}
@@ -28,13 +28,13 @@ public class MealPlanBookTest {
      */
     @Test
     public void testAddMealPlanSuccess() {
-        MealPlan plan = new MealPlan();
+        MealPlan.Builder plan = new MealPlan.Builder();
         plan.setName("Breakfast");
 
-        boolean result = book.addMealPlan(plan);
+        boolean result = book.addMealPlan(plan.build());
 
         assertTrue(result, "It should be possible to add a meal plan to an empty book");
-        assertEquals(plan, book.getMealPlans()[0], "The plan should be in the first available slot (index 0)");
+        assertEquals(plan.build(), book.getMealPlans()[0], "The plan should be in the first available slot (index 0)");
     }
 
     /**
@@ -43,32 +43,96 @@ public class MealPlanBookTest {
      */
     @Test
     public void testAddDuplicateMealPlan() {
-        MealPlan plan = new MealPlan();
+        MealPlan.Builder plan = new MealPlan.Builder();
         plan.setName("Breakfast");
 
-        book.addMealPlan(plan);
-        boolean result = book.addMealPlan(plan);
+        book.addMealPlan(plan.build());
+        boolean result = book.addMealPlan(plan.build());
 
         assertFalse(result, "It should not be possible to add the exact same meal plan twice");
     }
 
     /**
-     * Tests adding a meal plan when the book has reached its maximum capacity.
-     * Verifies that the system prevents adding more plans than the allowed maximum.
+     * Tests adding a meal plan when all initial slots are taken.
+     * Verifies that the book grows instead of rejecting the plan.
      */
     @Test
-    public void testAddMealPlanWhenFull() {
+    public void testAddMealPlanGrowsWhenFull() {
         for (int i = 0; i < 4; i++) {
-            MealPlan plan = new MealPlan();
+            MealPlan.Builder plan = new MealPlan.Builder();
             plan.setName("Meal " + i);
-            book.addMealPlan(plan);
+            book.addMealPlan(plan.build());
         }
 
-        MealPlan extraPlan = new MealPlan();
+        MealPlan.Builder extraPlan = new MealPlan.Builder();
         extraPlan.setName("Extra meal");
-        boolean result = book.addMealPlan(extraPlan);
+        boolean result = book.addMealPlan(extraPlan.build());
 
-        assertFalse(result, "It should not be possible to add a fifth plan when the book is full");
+        assertTrue(result, "A fifth plan should be added once the book grows");
+        assertEquals(extraPlan.build(), book.getMealPlans()[4], "The fifth plan should be in the first new slot");
+        assertEquals(5, book.size());
+    }
+
+    /**
+     * Tests a book holding thousands of plans.
+     * Verifies that every plan can be found by name at the index it was added at.
+     */
+    @Test
+    public void testThousandsOfMealPlans() {
+        for (int i = 0; i < 5000; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            assertTrue(book.addMealPlan(plan.build()));
+        }
+
+        assertEquals(5000, book.size());
+        assertEquals(0, book.indexOf("Meal 0"));
+        assertEquals(4999, book.indexOf("Meal 4999"));
+        assertEquals("Meal 1234", book.getMealPlans()[1234].getName());
+    }
+
+    /**
+     * Tests that a deleted slot is reused by the next added plan,
+     * and that the name index follows deletes and edits.
+     */
+    @Test
+    public void testDeletedSlotIsReused() {
+        for (int i = 0; i < 3; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            book.addMealPlan(plan.build());
+        }
+        book.deleteMealPlan(1);
+        assertEquals(-1, book.indexOf("Meal 1"), "A deleted plan should not be found by name");
+
+        MealPlan.Builder newPlan = new MealPlan.Builder();
+        newPlan.setName("Lunch");
+        book.addMealPlan(newPlan.build());
+        assertEquals(1, book.indexOf("Lunch"), "The freed slot should be reused");
+
+        MealPlan.Builder renamed = new MealPlan.Builder();
+        renamed.setName("Supper");
+        book.editMealPlan(1, renamed.build());
+        assertEquals(-1, book.indexOf("Lunch"));
+        assertEquals(1, book.indexOf("Supper"));
+    }
+
+    /**
+     * Tests adding two plans with the same name but different ingredients.
+     * Only exact duplicates are rejected.
+     */
+    @Test
+    public void testAddSameNameDifferentIngredients() {
+        MealPlan.Builder first = new MealPlan.Builder();
+        first.setName("Breakfast");
+        MealPlan.Builder second = new MealPlan.Builder();
+        second.setName("Breakfast");
+        second.setAmtKibble(2);
+
+        assertTrue(book.addMealPlan(first.build()));
+        assertTrue(book.addMealPlan(second.build()), "A plan with the same name but other ingredients should be added");
+        book.deleteMealPlan(0);
+        assertEquals(1, book.indexOf("Breakfast"), "The remaining plan should still be found by name");
     }
 
     /**
@@ -87,9 +151,9 @@ public class MealPlanBookTest {
      */
     @Test
     public void testDeleteMealPlanSuccess() {
-        MealPlan plan = new MealPlan();
+        MealPlan.Builder plan = new MealPlan.Builder();
         plan.setName("Dinner");
-        book.addMealPlan(plan);
+        book.addMealPlan(plan.build());
 
         String deletedName = book.deleteMealPlan(0);
 
@@ -124,14 +188,14 @@ public class MealPlanBookTest {
      */
     @Test
     public void testEditMealPlanSuccess() {
-        MealPlan oldPlan = new MealPlan();
+        MealPlan.Builder oldPlan = new MealPlan.Builder();
         oldPlan.setName("Old Plan");
-        book.addMealPlan(oldPlan);
+        book.addMealPlan(oldPlan.build());
 
-        MealPlan newPlan = new MealPlan();
+        MealPlan.Builder newPlan = new MealPlan.Builder();
         newPlan.setName("New Plan");
 
-        String returnedName = book.editMealPlan(0, newPlan);
+        String returnedName = book.editMealPlan(0, newPlan.build());
 
         assertEquals("Old Plan", returnedName, "The method should return the name of the old plan");
         assertEquals("New Plan", book.getMealPlans()[0].getName(), "The new plan should retain its name after editing");
@@ -143,10 +207,137 @@ public class MealPlanBookTest {
      */
     @Test
     public void testEditMealPlanEmptySlot() {
-        MealPlan newPlan = new MealPlan();
+        MealPlan.Builder newPlan = new MealPlan.Builder();
         newPlan.setName("New Plan");
 
-        String result = book.editMealPlan(0, newPlan);
+        String result = book.editMealPlan(0, newPlan.build());
         assertNull(result, "Editing an empty slot should return null");
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a snapshot returned by getMealPlans does not change when
+     * the book is edited afterwards.
+     */
+    @Test
+    public void testSnapshotIsNotChangedByLaterEdits() {
+        MealPlan.Builder builder = new MealPlan.Builder();
+        builder.setName("Breakfast");
+        MealPlan breakfast = builder.build();
+        book.addMealPlan(breakfast);
+        MealPlan[] snapshot = book.getMealPlans();
+
+        builder.setName("Dinner");
+        MealPlan dinner = builder.build();
+        book.addMealPlan(dinner);
+        book.deleteMealPlan(0);
+
+        assertSame(breakfast, snapshot[0], "The old snapshot should still hold the deleted plan");
+        assertNull(snapshot[1], "The old snapshot should not see the later add");
+        assertNull(book.getMealPlan(0));
+        assertSame(dinner, book.getMealPlan(1));
+    }
+
+    /**
+     * Tests that writing into the returned array does not change the book.
+     */
+    @Test
+    public void testGetMealPlansReturnsCopy() {
+        MealPlan.Builder builder = new MealPlan.Builder();
+        builder.setName("Breakfast");
+        MealPlan breakfast = builder.build();
+        book.addMealPlan(breakfast);
+
+        MealPlan[] copy = book.getMealPlans();
+        copy[0] = null;
+        builder.setName("Dinner");
+        copy[1] = builder.build();
+
+        assertSame(breakfast, book.getMealPlan(0));
+        assertNull(book.getMealPlan(1));
+        assertTrue(book.addMealPlan(builder.build()), "Slot 1 should still be free");
+    }
+
+    /**
+     * Tests getMealPlan with indexes outside the book.
+     */
+    @Test
+    public void testGetMealPlanOutOfRange() {
+        assertNull(book.getMealPlan(-1));
+        assertNull(book.getMealPlan(100));
+    }
+
+    /**
+     * Tests maxDispensable on small cases: exact multiples, unused
+     * ingredients, the energy limit and empty slots.
+     */
+    @Test
+    public void testMaxDispensable() {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Kibble");
+        plan.setAmtKibble(3);
+        book.addMealPlan(plan.build());
+        plan.setName("Mixed");
+        plan.setAmtWater(2);
+        book.addMealPlan(plan.build());
+        MealPlan.Builder nothing = new MealPlan.Builder();
+        nothing.setName("Nothing");
+        book.addMealPlan(nothing.build());
+
+        int[] counts = book.maxDispensable(9, 3, 0, 0, 1000);
+        assertEquals(book.getMealPlans().length, counts.length, "There should be one count per slot");
+        assertEquals(3, counts[0], "9 kibble is exactly three meals of 3");
+        assertEquals(1, counts[1], "3 water is one meal of 2");
+        assertEquals(Integer.MAX_VALUE, counts[2], "A plan that needs nothing is unlimited");
+        assertEquals(0, counts[3], "An empty slot should count 0");
+
+        counts = book.maxDispensable(9, 3, 0, 0, 59);
+        assertEquals(1, counts[0], "59 energy is one meal of 30");
+    }
+
+    /**
+     * Tests maxDispensable against plain integer division for many plans and
+     * large stock, and that the answer follows later edits.
+     */
+    @Test
+    public void testMaxDispensableMatchesDivision() {
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < 200; i++) {
+            MealPlan.Builder plan = new MealPlan.Builder();
+            plan.setName("Meal " + i);
+            plan.setAmtKibble(random.nextInt(50));
+            plan.setAmtWater(random.nextInt(50));
+            plan.setAmtWetFood(random.nextInt(50));
+            plan.setAmtTreats(1 + random.nextInt(IngredientVector.MAX_UNITS));
+            book.addMealPlan(plan.build());
+        }
+        for (int round = 0; round < 20; round++) {
+            int[] stock = {random.nextInt(Integer.MAX_VALUE), random.nextInt(1000),
+                    random.nextInt(Integer.MAX_VALUE), random.nextInt(Integer.MAX_VALUE)};
+            int energy = round == 0 ? Integer.MAX_VALUE : random.nextInt(Integer.MAX_VALUE);
+            int[] counts = book.maxDispensable(stock[0], stock[1], stock[2], stock[3], energy);
+            MealPlan[] plans = book.getMealPlans();
+            for (int i = 0; i < plans.length; i++) {
+                assertEquals(expectedCount(plans[i], stock, energy), counts[i], "Slot " + i);
+            }
+        }
+
+        book.deleteMealPlan(0);
+        assertEquals(0, book.maxDispensable(100, 100, 100, 100, 100)[0], "A deleted plan should count 0");
+    }
+
+    private static int expectedCount(MealPlan plan, int[] stock, int energy) {
+        if (plan == null) {
+            return 0;
+        }
+        int[] needs = {plan.getAmtKibble(), plan.getAmtWater(), plan.getAmtWetFood(), plan.getAmtTreats(),
+                plan.getEnergyCost()};
+        int[] have = {stock[0], stock[1], stock[2], stock[3], energy};
+        int count = Integer.MAX_VALUE;
+        for (int i = 0; i < needs.length; i++) {
+            if (needs[i] > 0) {
+                count = Math.min(count, have[i] / needs[i]);
+            }
+        }
+        return count;
+    }
+}
@@ -14,14 +14,14 @@ import org.junit.jupiter.api.Test;
  * including both normal execution and erroneous inputs.
  */
 public class MealPlanTest {
-    private MealPlan mp;
+    private MealPlan.Builder mp;
 
     /**
-     * Sets up a fresh MealPlan instance before each test.
+     * Sets up a fresh MealPlan builder before each test.
      */
     @BeforeEach
     public void setUp() {
-        mp = new MealPlan();
+        mp = new MealPlan.Builder();
     }
 
     /**
@@ -31,7 +31,7 @@ public class MealPlanTest {
     @Test
     void testSetAmtTreats_Normal() throws Exception {
         mp.setAmtTreats("5");
-        assertEquals(5, mp.getAmtTreats());
+        assertEquals(5, mp.build().getAmtTreats());
     }
 
     /**
@@ -64,7 +64,7 @@ public class MealPlanTest {
     void testSetAmtTreats_Zero() throws Exception {
         // Setting to zero should be valid and result in 0 treats.
         mp.setAmtTreats("0");
-        assertEquals(0, mp.getAmtTreats());
+        assertEquals(0, mp.build().getAmtTreats());
     }
 
     /**
@@ -74,7 +74,7 @@ public class MealPlanTest {
     @Test
     void testSetAmtKibble_Normal() throws Exception {
         mp.setAmtKibble("4");
-        assertEquals(4, mp.getAmtKibble());
+        assertEquals(4, mp.build().getAmtKibble());
     }
 
     /**
@@ -106,7 +106,7 @@ public class MealPlanTest {
     @Test
     void testSetAmtWater_Normal() throws Exception {
         mp.setAmtWater("2");
-        assertEquals(2, mp.getAmtWater());
+        assertEquals(2, mp.build().getAmtWater());
     }
 
     /**
@@ -138,7 +138,7 @@ public class MealPlanTest {
     @Test
     void testSetAmtWetFood_Normal() throws Exception {
         mp.setAmtWetFood("3");
-        assertEquals(3, mp.getAmtWetFood());
+        assertEquals(3, mp.build().getAmtWetFood());
     }
 
     /**
@@ -169,14 +169,14 @@ public class MealPlanTest {
      */
     @Test
     void testMealPlanEnergyCostCalculation_Normal() throws Exception {
-        MealPlan meal = new MealPlan();
+        MealPlan.Builder meal = new MealPlan.Builder();
         meal.setAmtKibble("2"); // 2 * 10 = 20
         meal.setAmtWater("1");  // 1 * 5  = 5
         meal.setAmtWetFood("1"); // 1 * 15 = 15
         meal.setAmtTreats("0"); // 0 * 20 = 0
 
         // Expected energy cost: 20 + 5 + 15 + 0 = 40
-        assertEquals(40, meal.getEnergyCost());
+        assertEquals(40, meal.build().getEnergyCost());
     }
 
     /**
@@ -186,7 +186,7 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_SameAttributes() throws Exception {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
 
         // Set attributes for Meal A
         mp1.setName("Meal A");
@@ -196,14 +196,14 @@ public class MealPlanTest {
         mp1.setAmtTreats("0");
 
         // Set the same attributes for another MealPlan object
-        MealPlan mp2 = new MealPlan();
+        MealPlan.Builder mp2 = new MealPlan.Builder();
         mp2.setName("Meal A");
         mp2.setAmtKibble("2");
         mp2.setAmtWater("1");
         mp2.setAmtWetFood("1");
         mp2.setAmtTreats("0");
 
-        assertEquals(mp1, mp2);
+        assertEquals(mp1.build(), mp2.build());
     }
 
     /**
@@ -213,21 +213,21 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_DifferentAttributes() throws Exception {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
         mp1.setAmtKibble("2");
         mp1.setAmtWater("1");
         mp1.setAmtWetFood("1");
         mp1.setAmtTreats("0");
 
-        MealPlan mp2 = new MealPlan();
+        MealPlan.Builder mp2 = new MealPlan.Builder();
         mp2.setName("Meal B"); // Different name
         mp2.setAmtKibble("2");
         mp2.setAmtWater("1");
         mp2.setAmtWetFood("1");
         mp2.setAmtTreats("0");
 
-        assertNotEquals(mp1, mp2);
+        assertNotEquals(mp1.build(), mp2.build());
     }
 
     /**
@@ -236,14 +236,14 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_SameNameDifferentIngredients() throws Exception {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
         mp1.setAmtKibble("2");
         mp1.setAmtWater("1");
         mp1.setAmtWetFood("1");
         mp1.setAmtTreats("0");
 
-        MealPlan mp2 = new MealPlan();
+        MealPlan.Builder mp2 = new MealPlan.Builder();
         mp2.setName("Meal A");
         mp2.setAmtKibble("1"); // Different amount of kibble(!)
         mp2.setAmtWater("1");
@@ -251,7 +251,7 @@ public class MealPlanTest {
         mp2.setAmtTreats("0");
 
         // Internally this calls the MealPlan equals method
-        assertNotEquals(mp1, mp2);
+        assertNotEquals(mp1.build(), mp2.build());
     }
 
     /**
@@ -260,11 +260,11 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_SameMeals() {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
 
         // Internally this calls the MealPlan equals method
-        assertEquals(mp1, mp1);
+        assertEquals(mp1.build(), mp1.build());
     }
 
     /**
@@ -273,13 +273,13 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_DifferentClass() {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
 
         String notAMealPlan = "I am not a meal plan";
 
         // Internally this calls the MealPlan equals method
-        assertNotEquals(mp1, notAMealPlan);
+        assertNotEquals(mp1.build(), notAMealPlan);
     }
 
     /**
@@ -288,11 +288,11 @@ public class MealPlanTest {
      */
     @Test
     void testEquals_Null() {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
 
         // Internally this calls the MealPlan equals method
-        assertNotEquals(mp1, null);
+        assertNotEquals(mp1.build(), null);
     }
 
     /**
@@ -301,13 +301,13 @@ public class MealPlanTest {
      */
     @Test
     void getHashCode_Valid() {
-        MealPlan mp1 = new MealPlan();
+        MealPlan.Builder mp1 = new MealPlan.Builder();
         mp1.setName("Meal A");
 
-        MealPlan mp2 = new MealPlan();
+        MealPlan.Builder mp2 = new MealPlan.Builder();
         mp2.setName("Meal A");
 
-        assertEquals(mp1.hashCode(), mp2.hashCode());
+        assertEquals(mp1.build().hashCode(), mp2.build().hashCode());
     }
 
     /**
@@ -317,7 +317,7 @@ public class MealPlanTest {
     @Test
     void testSetName_Normal() {
         mp.setName("My Meal Plan");
-        assertEquals("My Meal Plan", mp.getName());
+        assertEquals("My Meal Plan", mp.build().getName());
     }
 
     /**
@@ -327,7 +327,7 @@ public class MealPlanTest {
     @Test
     void testSetName_Null() {
         mp.setName(null);
-        assertEquals("", mp.getName());
+        assertEquals("", mp.build().getName());
     }
 
     /**
@@ -337,6 +337,79 @@ public class MealPlanTest {
     @Test
     void testToString() {
         mp.setName("Test Meal");
-        assertEquals("Test Meal", mp.toString());
+        assertEquals("Test Meal", mp.build().toString());
+    }
+
+    /**
+     * Tests the numeric setters: valid amounts update the energy cost,
+     * negative amounts are rejected and leave the plan unchanged.
+     */
+    @Test
+    void testSetAmtInt() {
+        assertTrue(mp.setAmtKibble(1));
+        assertTrue(mp.setAmtWater(1));
+        assertTrue(mp.setAmtWetFood(1));
+        assertTrue(mp.setAmtTreats(1));
+        assertEquals(50, mp.build().getEnergyCost());
+
+        assertFalse(mp.setAmtKibble(-1));
+        assertFalse(mp.setAmtWater(-1));
+        assertFalse(mp.setAmtWetFood(-1));
+        assertFalse(mp.setAmtTreats(-1));
+        assertEquals(1, mp.build().getAmtKibble());
+        assertEquals(50, mp.build().getEnergyCost());
+    }
+
+    /**
+     * Tests amounts above the largest amount a plan can hold.
+     * Verifies that they are rejected by both kinds of setters.
+     */
+    @Test
+    void testSetAmt_AboveMaximum() {
+        assertFalse(mp.setAmtKibble(IngredientVector.MAX_UNITS + 1));
+        assertThrows(MealPlanException.class, () -> mp.setAmtWater("40000"));
+        assertTrue(mp.setAmtTreats(IngredientVector.MAX_UNITS));
+        assertEquals(IngredientVector.MAX_UNITS, mp.build().getAmtTreats());
+    }
+
+    /**
+     * Tests that a built plan does not change when its builder is reused.
+     */
+    @Test
+    void testBuiltPlanIsImmutable() throws Exception {
+        mp.setName("Meal A");
+        mp.setAmtKibble("2");
+        MealPlan first = mp.build();
+
+        mp.setName("Meal B");
+        mp.setAmtKibble("3");
+        MealPlan second = mp.build();
+
+        assertEquals("Meal A", first.getName());
+        assertEquals(2, first.getAmtKibble());
+        assertEquals(20, first.getEnergyCost());
+        assertEquals(30, second.getEnergyCost());
+    }
+
+    /**
+     * Tests that equal plans have equal hash codes and that a builder
+     * started from a plan reproduces it.
+     */
+    @Test
+    void testHashCodeConsistentWithEquals() throws Exception {
+        mp.setName("Meal A");
+        mp.setAmtKibble("2");
+        mp.setAmtWater("1");
+        mp.setAmtWetFood("4");
+        mp.setAmtTreats("3");
+        MealPlan original = mp.build();
+        MealPlan copy = new MealPlan.Builder(original).build();
+
+        assertEquals(original, copy);
+        assertEquals(original.hashCode(), copy.hashCode());
+        assertEquals(2, copy.getAmtKibble());
+        assertEquals(1, copy.getAmtWater());
+        assertEquals(4, copy.getAmtWetFood());
+        assertEquals(3, copy.getAmtTreats());
     }
 }
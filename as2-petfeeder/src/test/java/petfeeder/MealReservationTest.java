@@ -0,0 +1,114 @@
+package petfeeder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for MealReservation.
+ * Verifies that reserved ingredients and energy are held, committed,
+ * given back on abort and given back when a reservation expires.
+ */
+public class MealReservationTest {
+
+    private PetFeeder feeder;
+
+    /**
+     * Sets up a feeder with a 10-kibble meal at index 0 before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        feeder = new PetFeeder();
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName("Dinner");
+        plan.setAmtKibble(10);
+        feeder.addMealPlan(plan.build());
+    }
+
+    /**
+     * Tests that a reservation holds its ingredients and energy until it
+     * is committed.
+     */
+    @Test
+    public void testReserveAndCommit() {
+        MealReservation reservation = feeder.reserveMeal(0, 1, TimeUnit.MINUTES);
+        assertTrue(reservation.isReserved());
+        assertEquals(MealReservation.State.PENDING, reservation.getState());
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 5"), "Reserved kibble is taken at once");
+        assertEquals(400, feeder.getRemainingEnergyBudget());
+        assertFalse(feeder.dispenseMeal(0), "Other dispenses only see the unreserved stock");
+
+        assertTrue(reservation.commit());
+        assertEquals(MealReservation.State.COMMITTED, reservation.getState());
+        assertFalse(reservation.abort(), "A committed reservation cannot be aborted");
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 5"));
+    }
+
+    /**
+     * Tests that aborting gives the ingredients and energy back.
+     */
+    @Test
+    public void testAbort() {
+        MealReservation reservation = feeder.reserveMeal(0, 1, TimeUnit.MINUTES);
+        assertTrue(reservation.abort());
+        assertEquals(MealReservation.State.ABORTED, reservation.getState());
+        assertFalse(reservation.commit());
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 15"));
+        assertEquals(500, feeder.getRemainingEnergyBudget());
+        assertTrue(feeder.dispenseMeal(0), "The stock can be used again");
+    }
+
+    /**
+     * Tests that an abort gives every ingredient back even after a
+     * replenish filled a lane to capacity meanwhile: the full lane stays
+     * full and the other lanes get their amounts back.
+     */
+    @Test
+    public void testAbortAfterReplenishToCapacity() {
+        feeder = new PetFeeder(new LockFreeFoodContainer());
+        feeder.addMealPlan(TestPlans.plan("Dinner", 10, 2, 0, 0));
+        MealReservation reservation = feeder.reserveMeal(0, 1, TimeUnit.MINUTES);
+        assertTrue(feeder.replenishFood(IngredientVector.MAX_UNITS - 5, 0, 0, 0));
+
+        assertTrue(reservation.abort());
+        assertEquals(IngredientVector.MAX_UNITS, feeder.getFoodContainer().getKibble());
+        assertEquals(15, feeder.getFoodContainer().getWater(), "The water is not lost with the kibble");
+        assertEquals(500, feeder.getRemainingEnergyBudget());
+    }
+
+    /**
+     * Tests that a reservation that is neither committed nor aborted expires.
+     */
+    @Test
+    public void testExpiry() {
+        ManualClock clock = new ManualClock();
+        feeder.setClock(clock);
+        MealReservation reservation = feeder.reserveMeal(0, 50, TimeUnit.MILLISECONDS);
+        clock.advance(49, TimeUnit.MILLISECONDS);
+        assertEquals(MealReservation.State.PENDING, reservation.getState());
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertEquals(MealReservation.State.EXPIRED, reservation.getState());
+        assertFalse(reservation.commit(), "An expired reservation cannot be committed");
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 15"));
+        assertEquals(500, feeder.getRemainingEnergyBudget());
+    }
+
+    /**
+     * Tests that a reservation that cannot be made takes nothing.
+     */
+    @Test
+    public void testFailedReservation() {
+        assertEquals(DispenseResult.Outcome.NO_PLAN, feeder.reserveMeal(3, 1, TimeUnit.SECONDS).getOutcome());
+        feeder.reserveMeal(0, 1, TimeUnit.MINUTES);
+        MealReservation second = feeder.reserveMeal(0, 1, TimeUnit.MINUTES);
+        assertFalse(second.isReserved());
+        assertEquals(DispenseResult.Outcome.INSUFFICIENT_STOCK, second.getOutcome());
+        assertEquals(MealReservation.State.FAILED, second.getState());
+        assertFalse(second.commit());
+        assertEquals(400, feeder.getRemainingEnergyBudget(), "A failed reservation gives its energy back");
+        assertThrows(IllegalArgumentException.class, () -> feeder.reserveMeal(0, 0, TimeUnit.SECONDS));
+    }
+}
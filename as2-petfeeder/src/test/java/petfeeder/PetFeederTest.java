@@ -6,6 +6,14 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -24,13 +32,13 @@ public class PetFeederTest {
      * Helper method to create a MealPlan with specified ingredient amounts.
      */
     private MealPlan createTestMealPlan(String kibble, String treats, String water, String wetFood) throws Exception {
-        MealPlan plan = new MealPlan();
+        MealPlan.Builder plan = new MealPlan.Builder();
         plan.setName("TestMeal");
         plan.setAmtKibble(kibble);
         plan.setAmtTreats(treats);
         plan.setAmtWater(water);
         plan.setAmtWetFood(wetFood);
-        return plan;
+        return plan.build();
     }
 
 
@@ -59,7 +67,7 @@ public class PetFeederTest {
 
     /**
      * Covers the branch: plans[mealPlanToPurchase] == null -> dispensed = false.
-     * Adds then deletes a plan to guarantee slot 0 is null despite static field sharing.
+     * Adds then deletes a plan to guarantee slot 0 is null.
      */
     @Test
     void testDispenseMealNullSlot() throws Exception {
@@ -245,4 +253,208 @@ public class PetFeederTest {
         });
         assertEquals(stockBefore, feeder.checkFoodStock());
     }
+
+    /**
+     * Test dispensing a batch where every entry can be served.
+     * Every bit should be set and the stock reduced once per entry.
+     */
+    @Test
+    void testDispenseMealsAllSucceed() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("1", "1", "1", "1"));
+
+        BitSet result = feeder.dispenseMeals(new int[] {0, 0, 0});
+
+        assertEquals(3, result.cardinality());
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 12"));
+        assertEquals(feeder.getEnergyLimit() - 3 * 50, feeder.getRemainingEnergyBudget());
+    }
+
+    /**
+     * Test a batch with invalid indexes and an entry that runs out of stock.
+     * Failed entries should not use anything or stop the entries after them.
+     */
+    @Test
+    void testDispenseMealsPartialSuccess() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("10", "0", "0", "0"));
+        feeder.addMealPlan(createTestMealPlan("1", "0", "0", "0"));
+
+        // kibble: 15 -> 5, then plan 0 needs 10 and fails, plan 1 still fits
+        BitSet result = feeder.dispenseMeals(new int[] {0, -1, 0, 9, 1, 3});
+
+        assertTrue(result.get(0));
+        assertFalse(result.get(1), "Negative index should fail");
+        assertFalse(result.get(2), "Second plan 0 should fail on kibble stock");
+        assertFalse(result.get(3), "Out of bounds index should fail");
+        assertTrue(result.get(4), "Later entries should still be dispensed");
+        assertFalse(result.get(5), "Empty slot should fail");
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 4"));
+    }
+
+    /**
+     * Test dispensing an empty batch.
+     */
+    @Test
+    void testDispenseMealsEmptyBatch() {
+        assertTrue(feeder.dispenseMeals(new int[0]).isEmpty());
+    }
+
+    /**
+     * Test replenishing food with the numeric overload.
+     * Invalid input should be rejected without changing the stock.
+     */
+    @Test
+    void testReplenishFoodInts() {
+        assertTrue(feeder.replenishFood(20, 0, 0, 0));
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 35"));
+
+        String stockBefore = feeder.checkFoodStock();
+        assertFalse(feeder.replenishFood(5, 5, 5, -5));
+        assertEquals(stockBefore, feeder.checkFoodStock());
+    }
+
+    /**
+     * Test that only dispensed meals are actuated, in order, and that the
+     * feeder monitor is not held while actuating.
+     */
+    @Test
+    void testActuateCalledOutsideMonitor() throws Exception {
+        List<String> actuated = new ArrayList<>();
+        boolean[] heldLock = new boolean[1];
+        PetFeeder actuatedFeeder = new PetFeeder() {
+            @Override
+            protected void actuate(MealPlan dispensed) {
+                heldLock[0] |= Thread.holdsLock(this);
+                actuated.add(dispensed.getName());
+            }
+        };
+        actuatedFeeder.addMealPlan(createTestMealPlan("10", "0", "0", "0"));
+
+        assertTrue(actuatedFeeder.dispenseMeal(0));
+        assertFalse(actuatedFeeder.dispenseMeal(0), "Second meal should fail on kibble stock");
+        assertFalse(actuatedFeeder.dispenseMeal(5));
+        actuatedFeeder.replenishFood(20, 0, 0, 0);
+        actuatedFeeder.dispenseMeals(new int[] {0, 3, 0});
+
+        assertEquals(List.of("TestMeal", "TestMeal", "TestMeal"), actuated);
+        assertFalse(heldLock[0], "Actuation should run without the feeder monitor");
+    }
+
+    /**
+     * Test that dispenseMealAsync reports each kind of outcome and
+     * timestamps the result.
+     */
+    @Test
+    void testDispenseMealAsyncOutcomes() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("10", "0", "0", "0"));
+        MealPlan.Builder feast = new MealPlan.Builder();
+        feast.setName("Feast");
+        feast.setAmtKibble(51);
+        feeder.addMealPlan(feast.build());
+
+        DispenseResult ok = feeder.dispenseMealAsync(0).get(5, TimeUnit.SECONDS);
+        assertEquals(DispenseResult.Outcome.OK, ok.getOutcome());
+        assertTrue(ok.isDispensed());
+        assertEquals("TestMeal", ok.getMealPlan().getName());
+        assertFalse(ok.getCompletedAt().isBefore(ok.getRequestedAt()), "Completion should not precede the request");
+        assertTrue(ok.getLatencyNanos() >= 0);
+
+        assertEquals(DispenseResult.Outcome.INSUFFICIENT_STOCK,
+                feeder.dispenseMealAsync(0).get(5, TimeUnit.SECONDS).getOutcome());
+        assertEquals(DispenseResult.Outcome.ENERGY_EXCEEDED,
+                feeder.dispenseMealAsync(1).get(5, TimeUnit.SECONDS).getOutcome());
+        DispenseResult noPlan = feeder.dispenseMealAsync(9).get(5, TimeUnit.SECONDS);
+        assertEquals(DispenseResult.Outcome.NO_PLAN, noPlan.getOutcome());
+        assertNull(noPlan.getMealPlan());
+        assertEquals(400, feeder.getRemainingEnergyBudget(), "Only the first meal should use energy");
+    }
+
+    /**
+     * Test that a full executor fails the future instead of throwing to the caller.
+     */
+    @Test
+    void testDispenseMealAsyncRejected() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("1", "0", "0", "0"));
+        CompletableFuture<DispenseResult> result = feeder.dispenseMealAsync(0, task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertTrue(feeder.checkFoodStock().contains("Kibble: 15"), "A rejected request should use nothing");
+    }
+
+    /**
+     * Test that a feeder with metrics records dispenses and replenishes,
+     * and no lock waits without a journal.
+     */
+    @Test
+    void testMetricsRecorded() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("1", "0", "0", "0"));
+        assertNull(feeder.getMetrics(), "Metrics are off by default");
+        feeder.dispenseMeal(0);
+
+        FeederMetrics metrics = new FeederMetrics();
+        feeder.setMetrics(metrics);
+        feeder.dispenseMeal(0);
+        feeder.dispenseMeal(5);
+        feeder.replenishFood(1, 0, 0, 0);
+        feeder.replenishFood("1", "0", "0", "0");
+        feeder.dispenseMeals(new int[] {0, 0});
+
+        assertEquals(2, metrics.getDispenseLatency().getCount(), "Failed dispenses are recorded too");
+        assertEquals(2, metrics.getReplenishLatency().getCount());
+        assertEquals(0, metrics.getLockWait().getCount(), "A feeder without a journal does not time its monitor");
+        assertTrue(metrics.getDispenseLatency().snapshot().getP99() > 0);
+
+        feeder.setMetrics(null);
+        feeder.dispenseMeal(0);
+        assertEquals(2, metrics.getDispenseLatency().getCount(), "Nothing is recorded after metrics are removed");
+    }
+
+    /**
+     * Test that a rolling energy budget refuses meals over the limit and
+     * gives back the energy of a meal that failed for lack of stock.
+     */
+    @Test
+    void testRollingEnergyBudget() throws Exception {
+        long[] now = {0};
+        feeder.setEnergyBudget(new EnergyBudget(300, 1000, 10, () -> now[0]));
+        feeder.addMealPlan(createTestMealPlan("1", "0", "0", "0"));
+        feeder.addMealPlan(createTestMealPlan("16", "0", "0", "0"));
+        feeder.addMealPlan(createTestMealPlan("0", "14", "0", "0"));
+
+        assertEquals(300, feeder.getEnergyLimit());
+        assertFalse(feeder.dispenseMeal(1), "Too little kibble");
+        assertEquals(300, feeder.getRemainingEnergyBudget(), "A meal that was not dispensed uses no energy");
+        assertTrue(feeder.dispenseMeal(2));
+        assertTrue(feeder.dispenseMeal(0));
+        assertEquals(10, feeder.getRemainingEnergyBudget());
+        assertTrue(feeder.dispenseMeal(0));
+        assertFalse(feeder.dispenseMeal(0), "The window's budget is used up");
+
+        now[0] = 1000;
+        assertEquals(300, feeder.getRemainingEnergyBudget(), "The energy leaves the window");
+        assertTrue(feeder.dispenseMeal(0));
+    }
+
+    /**
+     * Tests that feasibility counts how often each plan could still be
+     * dispensed, and that it follows stock and energy use.
+     */
+    @Test
+    void testFeasibility() throws Exception {
+        feeder.addMealPlan(createTestMealPlan("2", "1", "0", "0"));
+        feeder.addMealPlan(createTestMealPlan("0", "0", "5", "0"));
+
+        int[] counts = feeder.feasibility();
+        assertEquals(7, counts[0], "15 kibble is seven meals of 2");
+        assertEquals(3, counts[1], "15 water is three meals of 5");
+        assertEquals(0, counts[2], "An empty slot should count 0");
+
+        assertTrue(feeder.dispenseMeal(1));
+        assertTrue(feeder.dispenseMeal(1));
+        counts = feeder.feasibility();
+        assertEquals(1, counts[1], "Two of three meals are gone");
+        assertEquals(7, counts[0], "The energy left (450) still allows seven meals of 40");
+    }
 }
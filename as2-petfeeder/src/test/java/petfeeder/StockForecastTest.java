@@ -0,0 +1,159 @@
+package petfeeder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static petfeeder.TestPlans.plan;
+
+/**
+ * Test class for StockForecast.
+ * Schedules use long periods, so no feeding runs during a test.
+ */
+public class StockForecastTest {
+
+    private PetFeeder feeder;
+    private FeedingScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        feeder = new PetFeeder();
+        feeder.setEnergyBudget(new EnergyBudget(10_000));
+        scheduler = new FeedingScheduler(feeder);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Tests time to empty for one schedule, and that ingredients the
+     * schedule does not use never run out.
+     */
+    @Test
+    void testSingleSchedule() {
+        feeder.addMealPlan(plan("Dry", 3, 1, 0, 0));
+        StockForecast forecast = scheduler.getForecast();
+        assertNull(forecast.getFirstToRunOut(), "Nothing runs out without schedules");
+
+        scheduler.addRecurringFeeding(0, 3600);
+        assertEquals(3.0 / 3600, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE), 1e-12);
+        assertEquals(Duration.ofHours(5), forecast.getTimeToEmpty(StockForecast.Resource.KIBBLE),
+                "15 kibble at 3 per hour lasts 5 hours");
+        assertEquals(Duration.ofHours(15), forecast.getTimeToEmpty(StockForecast.Resource.WATER));
+        assertNull(forecast.getTimeToEmpty(StockForecast.Resource.TREATS));
+        assertEquals(StockForecast.Resource.KIBBLE, forecast.getFirstToRunOut());
+    }
+
+    /**
+     * Tests that stock changes show up at once, without telling the forecast.
+     */
+    @Test
+    void testFollowsStock() {
+        feeder.addMealPlan(plan("Dry", 3, 0, 0, 0));
+        scheduler.addRecurringFeeding(0, 60);
+        StockForecast forecast = scheduler.getForecast();
+        assertEquals(300, forecast.getSecondsToEmpty(StockForecast.Resource.KIBBLE), 1e-9);
+
+        feeder.replenishFood(15, 0, 0, 0);
+        assertEquals(600, forecast.getSecondsToEmpty(StockForecast.Resource.KIBBLE), 1e-9);
+        assertTrue(feeder.dispenseMeal(0));
+        assertEquals(540, forecast.getSecondsToEmpty(StockForecast.Resource.KIBBLE), 1e-9);
+    }
+
+    /**
+     * Tests that adding and cancelling schedules updates the forecast, also
+     * for schedules that started before the forecast was created.
+     */
+    @Test
+    void testSchedulesChange() {
+        feeder.addMealPlan(plan("Dry", 1, 0, 0, 0));
+        feeder.addMealPlan(plan("Wet", 1, 0, 1, 0));
+        FeedingSchedule dry = scheduler.addRecurringFeeding(0, 100);
+        StockForecast forecast = scheduler.getForecast();
+        assertEquals(0.01, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE), 1e-12);
+
+        FeedingSchedule wet = scheduler.addRecurringFeeding(1, 50);
+        assertEquals(0.03, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE), 1e-12);
+        assertEquals(0.02, forecast.getUsePerSecond(StockForecast.Resource.WET_FOOD), 1e-12);
+
+        dry.cancel();
+        assertEquals(0.02, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE), 1e-12);
+        wet.cancel();
+        assertEquals(0, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE));
+
+        scheduler.addRecurringFeeding(0, 10);
+        scheduler.stop();
+        assertEquals(0, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE));
+        assertNull(forecast.getFirstToRunOut());
+    }
+
+    /**
+     * Tests that a resource's use is exactly zero once the last schedule
+     * using it is cancelled, while other schedules still run.
+     */
+    @Test
+    void testCancelledUseLeavesNoRemainder() {
+        feeder.addMealPlan(plan("Dry", 1, 0, 0, 0));
+        feeder.addMealPlan(plan("Mixed", 3, 7, 0, 0));
+        scheduler.addRecurringFeeding(0, 7);
+        StockForecast forecast = scheduler.getForecast();
+        FeedingSchedule[] mixed = new FeedingSchedule[10];
+        for (int i = 0; i < mixed.length; i++) {
+            mixed[i] = scheduler.addRecurringFeeding(1, 3 + i);
+        }
+        for (FeedingSchedule schedule : mixed) {
+            schedule.cancel();
+        }
+        assertEquals(0, forecast.getUsePerSecond(StockForecast.Resource.WATER));
+        assertNull(forecast.getTimeToEmpty(StockForecast.Resource.WATER));
+        assertEquals(1.0 / 7, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE), 1e-12);
+    }
+
+    /**
+     * Tests that editing or deleting a scheduled meal plan updates the forecast.
+     */
+    @Test
+    void testMealPlansChange() {
+        feeder.addMealPlan(plan("Dry", 1, 0, 0, 0));
+        scheduler.addRecurringFeeding(0, 60);
+        StockForecast forecast = scheduler.getForecast();
+
+        feeder.editMealPlan(0, plan("Treat", 0, 0, 0, 5));
+        assertEquals(0, forecast.getUsePerSecond(StockForecast.Resource.KIBBLE));
+        assertEquals(StockForecast.Resource.TREATS, forecast.getFirstToRunOut());
+        assertEquals(Duration.ofMinutes(3), forecast.getTimeToEmpty(StockForecast.Resource.TREATS));
+
+        feeder.deleteMealPlan(0);
+        assertNull(forecast.getFirstToRunOut(), "A schedule on an empty slot uses nothing");
+
+        feeder.addMealPlan(plan("Water", 0, 1, 0, 0));
+        assertEquals(StockForecast.Resource.WATER, forecast.getFirstToRunOut());
+    }
+
+    /**
+     * Tests the energy forecast for a lifetime budget and for a rolling
+     * window the schedules stay within.
+     */
+    @Test
+    void testEnergy() {
+        feeder.addMealPlan(plan("Dry", 1, 0, 0, 0));
+        feeder.replenishFood(1000, 0, 0, 0);
+        feeder.setEnergyBudget(new EnergyBudget(100));
+        scheduler.addRecurringFeeding(0, 1);
+        StockForecast forecast = scheduler.getForecast();
+        assertEquals(10, forecast.getSecondsToEmpty(StockForecast.Resource.ENERGY), 1e-9,
+                "100 energy at 10 per second lasts 10 seconds");
+        assertEquals(StockForecast.Resource.ENERGY, forecast.getFirstToRunOut());
+
+        feeder.setEnergyBudget(new EnergyBudget(100, Duration.ofSeconds(10)));
+        assertNull(forecast.getTimeToEmpty(StockForecast.Resource.ENERGY),
+                "100 energy per 10 seconds is enough");
+        feeder.setEnergyBudget(new EnergyBudget(50, Duration.ofSeconds(10)));
+        assertEquals(5, forecast.getSecondsToEmpty(StockForecast.Resource.ENERGY), 1e-9);
+    }
+}
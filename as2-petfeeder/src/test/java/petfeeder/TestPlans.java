@@ -0,0 +1,23 @@
+package petfeeder;
+
+/**
+ * Meal plans shared by the tests.
+ */
+final class TestPlans {
+
+    private TestPlans() {
+    }
+
+    /**
+     * Returns a meal plan with the given name and ingredient amounts.
+     */
+    static MealPlan plan(String name, int kibble, int water, int wetFood, int treats) {
+        MealPlan.Builder plan = new MealPlan.Builder();
+        plan.setName(name);
+        plan.setAmtKibble(kibble);
+        plan.setAmtWater(water);
+        plan.setAmtWetFood(wetFood);
+        plan.setAmtTreats(treats);
+        return plan.build();
+    }
+}
@@ -0,0 +1,148 @@
+package petfeeder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for TimingWheel.
+ * Verifies one-shot and recurring tasks, cancellation and delays that
+ * need the higher wheel levels.
+ */
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+
+    /**
+     * Sets up a wheel with 1 ms ticks and two workers before each test.
+     */
+    @BeforeEach
+    public void setUp() {
+        wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, 2);
+    }
+
+    /**
+     * Stops the wheel after each test.
+     */
+    @AfterEach
+    public void tearDown() {
+        wheel.shutdown();
+    }
+
+    /**
+     * Tests that a one-shot task runs once, no earlier than its delay.
+     */
+    @Test
+    public void testOneShotRunsAfterDelay() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 20, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS), "Task should run");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), "Task should not run early");
+        assertFalse(timeout.isActive(), "A one-shot task is finished after it runs");
+        assertEquals(0, wheel.activeTimeouts());
+    }
+
+    /**
+     * Tests that a recurring task runs repeatedly.
+     */
+    @Test
+    public void testRecurringTask() throws Exception {
+        CountDownLatch ran = new CountDownLatch(5);
+        TimingWheel.Timeout timeout = wheel.schedule(ran::countDown, 1, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS), "Task should run five times");
+        assertTrue(timeout.isActive());
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel(), "Cancelling twice should return false");
+        assertTrue(timeout.isCancelled());
+    }
+
+    /**
+     * Tests that a cancelled task never runs.
+     */
+    @Test
+    public void testCancelBeforeRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 30, 0, TimeUnit.MILLISECONDS);
+        assertTrue(timeout.cancel());
+        assertEquals(0, wheel.activeTimeouts());
+
+        Thread.sleep(80);
+        assertEquals(0, runs.get(), "Cancelled task should not run");
+    }
+
+    /**
+     * Tests a delay beyond the first level of the wheel, so the task is
+     * cascaded down before it runs.
+     */
+    @Test
+    public void testDelayOnHigherLevel() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(ran::countDown, 150, 0, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS), "Task should run");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150), "Task should not run early");
+    }
+
+    /**
+     * Tests that many tasks due at the same tick all run, and that a
+     * failing task does not stop the others in its batch.
+     */
+    @Test
+    public void testManyTasksDueTogether() throws Exception {
+        int count = 5000;
+        CountDownLatch ran = new CountDownLatch(count);
+        wheel.schedule(() -> {
+            throw new IllegalStateException("failing task");
+        }, 10, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < count; i++) {
+            wheel.schedule(ran::countDown, 10, 0, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS), "Every task should run");
+    }
+
+    /**
+     * Tests that a recurring task that is still running skips its next run
+     * instead of running twice at once.
+     */
+    @Test
+    public void testSlowRecurringTaskDoesNotOverlap() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        TimingWheel.Timeout timeout = wheel.schedule(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+        }, 1, 1, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(100);
+        timeout.cancel();
+        assertEquals(1, maxRunning.get(), "Runs of one task should not overlap");
+    }
+
+    /**
+     * Tests that invalid arguments are rejected.
+     */
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(NullPointerException.class, () -> wheel.schedule(null, 1, 0, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(() -> { }, -1, 0, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel(0, TimeUnit.MILLISECONDS, 1));
+        wheel.shutdown();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, 1, 0, TimeUnit.MILLISECONDS));
+    }
+}